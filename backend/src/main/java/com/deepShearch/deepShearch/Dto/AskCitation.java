@@ -0,0 +1,13 @@
+package com.deepShearch.deepShearch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AskCitation {
+    private String pageId;
+    private Integer pageNumber;
+}
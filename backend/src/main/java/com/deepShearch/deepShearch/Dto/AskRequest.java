@@ -0,0 +1,14 @@
+package com.deepShearch.deepShearch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AskRequest {
+    private String question;
+    /** The question this one follows up on, whose retrieved passages are reused. */
+    private String previousQuestion;
+}
@@ -0,0 +1,18 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CatalogPageResponse {
+    /** Documents in the catalog, whatever the filters; null until the first full sync completed. */
+    private Long count;
+    /** Cursor of the next page, null on the last page. */
+    private String next;
+    private List<MayanDocumentResponse> results;
+}
@@ -0,0 +1,25 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Everything the reader needs to show a document, gathered in one round-trip.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DocumentOpenResponse {
+    private MayanDocumentResponse document;
+    private String documentVersionId;
+    private DocumentFilesResponse pages;
+    /** Summary of the whole version, null when it was not generated yet. */
+    private AiSumarizeResponse documentSummary;
+    /** Stored page summaries by document version page id. */
+    private Map<String, AiSumarizeResponse> pageSummaries;
+    /** Thumbnail of the first page as a data URI, null when it was not ready in time. */
+    private String firstPageThumbnail;
+}
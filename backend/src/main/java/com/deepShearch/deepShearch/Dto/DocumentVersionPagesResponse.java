@@ -0,0 +1,28 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DocumentVersionPagesResponse {
+    private Integer count;
+    private String next;
+    private String previous;
+    private List<DocumentVersionPageDto> results;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class DocumentVersionPageDto {
+        private Integer id;
+        private Integer document_version_id;
+        private Integer page_number;
+        private String image_url;
+        private String url;
+    }
+}
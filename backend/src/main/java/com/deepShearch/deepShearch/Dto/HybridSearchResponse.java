@@ -0,0 +1,32 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.util.List;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse.SearchHitDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HybridSearchResponse {
+    private String query;
+    private long total;
+    private int page;
+    private int size;
+    private long tookMs;
+    private boolean cached;
+    private List<DocumentHitDto> documents;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class DocumentHitDto {
+        private String documentId;
+        private String documentVersionId;
+        private double score;
+        private List<SearchHitDto> pages;
+    }
+}
@@ -0,0 +1,17 @@
+package com.deepShearch.deepShearch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionProgress {
+    private String documentId;
+    private String documentVersionId;
+    private String stage;
+    private Integer processedPages;
+    private Integer totalPages;
+    private String error;
+}
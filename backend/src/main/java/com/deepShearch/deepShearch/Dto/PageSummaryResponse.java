@@ -0,0 +1,18 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageSummaryResponse {
+    private String documentVersionPageId;
+    private String summary;
+    private List<String> keywords;
+    private LocalDateTime createdAt;
+}
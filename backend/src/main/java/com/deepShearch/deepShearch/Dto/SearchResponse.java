@@ -0,0 +1,31 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchResponse {
+    private String query;
+    private long total;
+    private int page;
+    private int size;
+    private long tookMs;
+    private List<SearchHitDto> hits;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class SearchHitDto {
+        private String documentId;
+        private String documentVersionId;
+        private String pageId;
+        private Integer pageNumber;
+        private float score;
+        private List<String> snippets;
+    }
+}
@@ -0,0 +1,12 @@
+package com.deepShearch.deepShearch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SummaryJobMessage {
+    private String jobId;
+}
@@ -0,0 +1,26 @@
+package com.deepShearch.deepShearch.Dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SummaryJobResponse {
+    private String jobId;
+    private String status;
+    private String documentId;
+    private String documentVersionId;
+    private String documentVersionPageId;
+    private String summary;
+    private List<String> keywords;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
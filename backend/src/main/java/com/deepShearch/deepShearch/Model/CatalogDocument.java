@@ -0,0 +1,82 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Local copy of a Mayan document as listed by {@code /api/v4/documents/}, kept
+ * up to date by the catalog synchronizer. The indexes match the keyset
+ * orderings of the catalog list, with the id as tie-breaker; the index serving
+ * the label prefix filter needs an operator class and is in
+ * {@code schema-postgresql.sql}.
+ */
+@Entity
+@Table(name = "catalog_documents", indexes = {
+        @Index(name = "idx_catalog_created", columnList = "datetime_created, id"),
+        @Index(name = "idx_catalog_label", columnList = "label_sort, id"),
+        @Index(name = "idx_catalog_type_created", columnList = "document_type_id, datetime_created, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogDocument {
+
+    @Id
+    private Long id;
+
+    private String uuid;
+
+    private String label;
+
+    /** Lower-cased label, for case-insensitive ordering and prefix filtering. */
+    @Column(name = "label_sort", nullable = false)
+    private String labelSort;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(name = "datetime_created", nullable = false)
+    private LocalDateTime datetimeCreated;
+
+    private String language;
+
+    @Column(name = "document_type_id")
+    private Long documentTypeId;
+
+    private String documentTypeLabel;
+
+    private Long fileLatestId;
+
+    private String fileLatestFilename;
+
+    private String fileLatestEncoding;
+
+    private String fileLatestMimeType;
+
+    private Long fileLatestSize;
+
+    private String fileLatestChecksum;
+
+    private Long versionActiveId;
+
+    private String versionActiveComment;
+
+    private Integer versionActiveNumber;
+
+    private String url;
+
+    /** Start of the last full sync that saw this document in Mayan. */
+    @Column(name = "last_seen_at", nullable = false)
+    private LocalDateTime lastSeenAt;
+
+    @Column(name = "synced_at", nullable = false)
+    private LocalDateTime syncedAt;
+}
@@ -0,0 +1,35 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Checkpoint of the catalog synchronizer, so a restart continues with an
+ * incremental sync instead of walking the whole Mayan catalog again.
+ */
+@Entity
+@Table(name = "catalog_sync_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogSyncState {
+
+    @Id
+    private String id;
+
+    /** Newest {@code datetime_created} synced: incremental syncs read Mayan down to it. */
+    private LocalDateTime lastCreated;
+
+    /** Completion of the last full walk of the catalog, or null if none completed yet. */
+    private LocalDateTime lastFullSyncAt;
+
+    private LocalDateTime lastIncrementalSyncAt;
+
+    private Long documentCount;
+}
@@ -0,0 +1,67 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of the post-upload pipeline of a document. Stored so that an
+ * interrupted ingestion resumes where it stopped after a restart.
+ */
+@Entity
+@Table(name = "ingestion_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJob {
+
+    @Id
+    private String documentId;
+
+    private String documentVersionId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Stage stage;
+
+    private Integer totalPages;
+
+    private Integer processedPages;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Stage {
+        WAITING_OCR,
+        PROCESSING_PAGES,
+        COMPLETED,
+        FAILED
+    }
+}
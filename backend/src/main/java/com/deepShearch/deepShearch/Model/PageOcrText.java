@@ -0,0 +1,51 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * OCR text of a document version page as returned by Mayan. The text of a
+ * version page never changes, so a row stays until its document gets a new
+ * version or is deleted.
+ */
+@Entity
+@Table(name = "page_ocr_texts", indexes = @Index(name = "idx_page_ocr_document", columnList = "documentId, documentVersionId"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageOcrText {
+
+    /** documentId|documentVersionId|documentVersionPageId */
+    @Id
+    @Column(name = "page_key")
+    private String pageKey;
+
+    @Column(nullable = false)
+    private String documentId;
+
+    @Column(nullable = false)
+    private String documentVersionId;
+
+    @Column(nullable = false)
+    private String documentVersionPageId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,33 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Claim row taken by the instance that is computing the summary of a page,
+ * so other instances wait for its result instead of calling the model again.
+ */
+@Entity
+@Table(name = "summary_claims")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SummaryClaim {
+
+    @Id
+    @Column(name = "page_key")
+    private String pageKey;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(name = "claimed_at", nullable = false)
+    private LocalDateTime claimedAt;
+}
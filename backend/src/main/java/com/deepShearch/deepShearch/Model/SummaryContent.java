@@ -0,0 +1,42 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Summary of a piece of text, keyed by the hash of its normalized content.
+ * Page summaries in {@link SummerizeDoc} point to it through their content hash.
+ */
+@Entity
+@Table(name = "summary_contents")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SummaryContent {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    private List<String> keyWords;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
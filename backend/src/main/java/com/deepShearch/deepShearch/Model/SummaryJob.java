@@ -0,0 +1,77 @@
+package com.deepShearch.deepShearch.Model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A summarization request processed asynchronously by the job queue consumers.
+ * A job without a page id summarizes the whole document version.
+ */
+@Entity
+@Table(name = "summary_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SummaryJob {
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String documentId;
+
+    @Column(nullable = false)
+    private String documentVersionId;
+
+    private String documentVersionPageId;
+
+    private String userId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private JobStatus status;
+
+    @Column(columnDefinition = "TEXT")
+    private String summary;
+
+    private List<String> keyWords;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum JobStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
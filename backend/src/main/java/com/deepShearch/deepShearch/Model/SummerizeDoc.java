@@ -8,6 +8,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
@@ -17,15 +18,20 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "documents",
+    // its index also finds the summaries of a version, or of some of its pages, ordered by page id
     uniqueConstraints = @UniqueConstraint(
         columnNames = {"documentId", "documentVersionId", "documentVersionPageId"}
-    )
+    ),
+    indexes = @Index(name = "idx_documents_content_hash", columnList = "contentHash")
 )
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class SummerizeDoc {
 
+    /** Page id under which the summary of a whole document version is stored. */
+    public static final String DOCUMENT_SUMMARY_PAGE_ID = "document";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -41,6 +47,9 @@ public class SummerizeDoc {
     private String documentVersionId;
     private String documentVersionPageId;
     private String userId;
+    /** Hash of the normalized OCR text, see {@link SummaryContent}. */
+    @Column(length = 64)
+    private String contentHash;
     private LocalDateTime createdAt;
 
     @PrePersist
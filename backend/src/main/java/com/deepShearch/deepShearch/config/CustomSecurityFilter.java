@@ -2,6 +2,7 @@ package com.deepShearch.deepShearch.config;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,37 +45,11 @@ public class CustomSecurityFilter implements Filter {
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             try {
                 String token = authorizationHeader.substring(7);
-                
-                // Decode and validate the JWT token
-                DecodedJWT decodedToken = JWT.decode(token);
-                
-                // Verify token signature (you may need to implement proper verification with RSA key)
-                // For now, we'll extract claims and set authentication
-                String username = decodedToken.getClaim("preferred_username").asString();
-                if (username == null) {
-                    username = decodedToken.getSubject();
-                }
-                
-                // Extract roles from token
-                List<String> roles = decodedToken.getClaim("realm_access")
-                    .asMap().containsKey("roles") ? 
-                    
-                    (List<String>) decodedToken.getClaim("realm_access").asMap().get("roles") : 
-                    List.of();
-                logger.debug("Roles from token: {}", roles);
-                
-                // Convert roles to Spring Security authorities
-                List<SimpleGrantedAuthority> authorities = roles.stream()
-                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()))
-                    .toList();
-                
-                // Create authentication token and set in security context
-                UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
+                UsernamePasswordAuthenticationToken authentication = authenticate(token);
                 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
                 
-                logger.debug("Authentication successful for user: {}", username);
+                logger.debug("Authentication successful for user: {}", authentication.getName());
                 chain.doFilter(request, response);
                 
             } catch (JWTDecodeException | IllegalArgumentException e) {
@@ -92,4 +67,41 @@ public class CustomSecurityFilter implements Filter {
             httpResponse.getWriter().write("Missing Authorization header");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Build the authentication carried by a bearer token: the user name as principal, the realm
+     * roles as authorities and the subject as details.
+     *
+     * @throws JWTDecodeException if the token cannot be decoded
+     */
+    static UsernamePasswordAuthenticationToken authenticate(String token) {
+        // Decode and validate the JWT token
+        DecodedJWT decodedToken = JWT.decode(token);
+        
+        // Verify token signature (you may need to implement proper verification with RSA key)
+        // For now, we'll extract claims and set authentication
+        String username = decodedToken.getClaim("preferred_username").asString();
+        if (username == null) {
+            username = decodedToken.getSubject();
+        }
+        
+        // Extract roles from token, ignoring a claim that is missing or not a list of names
+        Map<String, Object> realmAccess = decodedToken.getClaim("realm_access").asMap();
+        List<?> roles = realmAccess != null && realmAccess.get("roles") instanceof List<?> claimed
+                ? claimed
+                : List.of();
+        logger.debug("Roles from token: {}", roles);
+        
+        // Convert roles to Spring Security authorities
+        List<SimpleGrantedAuthority> authorities = roles.stream()
+                .filter(String.class::isInstance)
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + ((String) role).toUpperCase()))
+            .toList();
+        
+        UsernamePasswordAuthenticationToken authentication = 
+            new UsernamePasswordAuthenticationToken(username, null, authorities);
+        // the subject is the user id the frontend sends in websocket messages
+        authentication.setDetails(decodedToken.getSubject());
+        return authentication;
+    }
+}
@@ -1,13 +1,25 @@
 package com.deepShearch.deepShearch.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import com.auth0.jwt.exceptions.JWTDecodeException;
+
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
@@ -30,4 +42,39 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setHeartbeatTime(25000)
                 .setDisconnectDelay(5000);
     }
-}
\ No newline at end of file
+
+    /**
+     * The handshake skips {@link CustomSecurityFilter}, so the bearer token the
+     * client sends with STOMP CONNECT authenticates the session instead. The
+     * session user is named after the token subject, the id the frontend uses
+     * in user destinations and websocket messages.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+                    return message;
+                }
+                String authorization = accessor.getFirstNativeHeader("Authorization");
+                if (authorization == null || !authorization.startsWith("Bearer ")) {
+                    return message;
+                }
+                try {
+                    UsernamePasswordAuthenticationToken token =
+                            CustomSecurityFilter.authenticate(authorization.substring(7));
+                    String subject = token.getDetails() instanceof String id ? id : token.getName();
+                    UsernamePasswordAuthenticationToken user =
+                            new UsernamePasswordAuthenticationToken(subject, null, token.getAuthorities());
+                    user.setDetails(subject);
+                    accessor.setUser(user);
+                } catch (JWTDecodeException | IllegalArgumentException e) {
+                    log.debug("Websocket session left anonymous: {}", e.getMessage());
+                }
+                return message;
+            }
+        });
+    }
+}
@@ -1,20 +1,44 @@
 package com.deepShearch.deepShearch.controller;
 import com.deepShearch.deepShearch.Dto.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
 import org.apache.james.mime4j.dom.Multipart;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.deepShearch.deepShearch.services.MayanDocumentCache;
+import com.deepShearch.deepShearch.services.PageOcrCache;
+import com.deepShearch.deepShearch.services.interfaces.CatalogService;
+import com.deepShearch.deepShearch.services.interfaces.DocumentOpenService;
+import com.deepShearch.deepShearch.services.interfaces.DocumentQaService;
+import com.deepShearch.deepShearch.services.interfaces.ImageVariantService;
+import com.deepShearch.deepShearch.services.interfaces.IngestionService;
 import com.deepShearch.deepShearch.services.interfaces.Llmservice;
 import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.PageImageService;
+import com.deepShearch.deepShearch.services.interfaces.ReadAheadService;
+import com.deepShearch.deepShearch.services.interfaces.SearchService;
+import com.deepShearch.deepShearch.services.interfaces.SummaryLookupService;
 
 import lombok.AllArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -23,6 +47,17 @@ import reactor.core.publisher.Mono;
  public class DocumentController {
     private Llmservice llmservice;
     private MayanService mayanService;
+    private IngestionService ingestionService;
+    private SearchService searchService;
+    private DocumentQaService documentQaService;
+    private CatalogService catalogService;
+    private PageImageService pageImageService;
+    private ImageVariantService imageVariantService;
+    private PageOcrCache pageOcrCache;
+    private MayanDocumentCache mayanDocumentCache;
+    private ReadAheadService readAheadService;
+    private DocumentOpenService documentOpenService;
+    private SummaryLookupService summaryLookupService;
 
 
     @PostMapping("/Summrize/{documentId}/versions/{documentVersionId}/pages/{documentVersionPageId}/user/{userId}")
@@ -32,21 +67,124 @@ import reactor.core.publisher.Mono;
         return ResponseEntity.ok(llmservice.generateSummary(documentId, documentVersionId, documentVersionPageId, userId));
     }
 
+    /**
+     * Summarize a whole document version by mapping over its pages and reducing the page summaries
+     *
+     * @return Mono of the document summary and keywords
+     */
+    @PostMapping("/Summrize/{documentId}/versions/{documentVersionId}/user/{userId}")
+    public Mono<AiSumarizeResponse> SummrizeWholeDocument(@PathVariable String documentId,
+                                                          @PathVariable String documentVersionId,
+                                                          @PathVariable String userId) {
+        return llmservice.generateDocumentSummary(documentId, documentVersionId, userId);
+    }
+
+    /**
+     * Get the stored page summaries of a document version in one request, as
+     * newline-delimited JSON written while they are read from the database
+     *
+     * @param fromPage first page number to include, from the first page when absent
+     * @param toPage   last page number to include, to the last page when absent
+     * @return Mono of the streamed summaries, or 400 for an invalid page range
+     */
+    @GetMapping(value = "/Summrize/{documentId}/versions/{documentVersionId}/pages",
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<StreamingResponseBody>> getPageSummaries(@PathVariable String documentId,
+                                                                        @PathVariable String documentVersionId,
+                                                                        @RequestParam(required = false) Integer fromPage,
+                                                                        @RequestParam(required = false) Integer toPage) {
+        return summaryLookupService.streamPageSummaries(documentId, documentVersionId, fromPage, toPage)
+                .map(body -> ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
 
     /**
-     * Get list of documents from Mayan EDMS
+     * Stream the summary of a page as server-sent events while the model generates it
+     *
+     * @return Flux of "summary" token events, followed by "keywords" and "done"
+     */
+    @PostMapping(value = "/Summrize/{documentId}/versions/{documentVersionId}/pages/{documentVersionPageId}/user/{userId}/stream",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamSummrizeDocument(@PathVariable String documentId,
+                                                                @PathVariable String documentVersionId,
+                                                                @PathVariable String documentVersionPageId,
+                                                                @PathVariable String userId) {
+        return llmservice.streamSummary(documentId, documentVersionId, documentVersionPageId, userId);
+    }
+
+
+    /**
+     * Ask a question about a document, answered from its most relevant passages
+     *
+     * @param request the question, and optionally the previous question of the conversation
+     * @return Flux of a "citations" event with the pages used, "answer" token events, then "done"
+     */
+    @PostMapping(value = "/{documentId}/ask", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> askDocument(@PathVariable String documentId,
+                                                     @RequestBody AskRequest request) {
+        return documentQaService.ask(documentId, request.getQuestion(), request.getPreviousQuestion());
+    }
+
+    /**
+     * Get list of documents from Mayan EDMS. Served from the local catalog once it
+     * is synced, newest first, with a {@code next} link that continues by cursor;
+     * a custom ordering is still asked to Mayan, through a short-lived cache that
+     * is refreshed in the background.
      *
      * @param ordering Field to use when ordering the results
      * @param page     Page number within the paginated result set
      * @param pageSize Number of results to return per page
-     * @return Mono of paginated documents list
+     * @param cursor   the cursor of a "next" link of the catalog list
+     * @return Mono of paginated documents list, or 400 for an invalid cursor
      */
     @GetMapping("/mayan")
-    public Mono<MayanDocumentsListResponse> getMayanDocuments(
+    public Mono<ResponseEntity<MayanDocumentsListResponse>> getMayanDocuments(
             @RequestParam(required = false) String ordering,
             @RequestParam(required = false) Integer page,
-            @RequestParam(required = false) Integer pageSize) {
-        return mayanService.getDocuments(ordering, page, pageSize);
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String cursor) {
+        if (ordering == null && catalogService.isReady()) {
+            return catalogService.listPage(page != null ? page : 1, pageSize != null ? pageSize : 20, cursor)
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+        }
+        return mayanDocumentCache.getDocuments(ordering, page, pageSize).map(ResponseEntity::ok);
+    }
+
+    /**
+     * List the local copy of the Mayan catalog with keyset pagination: every page
+     * costs the same however far the list is scrolled
+     *
+     * @param ordering       created (newest first), label or id
+     * @param cursor         the "next" cursor of the previous page, absent for the first page
+     * @param limit          documents per page, at most 200
+     * @param documentTypeId keep only this document type
+     * @param label          keep only labels starting with this text, case-insensitive
+     * @return the page and the cursor of the next one, or 400 for an invalid cursor or ordering
+     */
+    @GetMapping("/catalog")
+    public Mono<ResponseEntity<CatalogPageResponse>> getCatalog(
+            @RequestParam(defaultValue = "created") String ordering,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) Long documentTypeId,
+            @RequestParam(required = false) String label) {
+        return Mono.fromCallable(() -> CatalogService.Ordering.valueOf(ordering.toUpperCase()))
+                .flatMap(order -> catalogService.list(order, cursor, limit, documentTypeId, label))
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Walk the whole Mayan catalog again in the background
+     *
+     * @return 202 once the sync has started
+     */
+    @PostMapping("/catalog/sync")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Void> syncCatalog() {
+        catalogService.syncAll();
+        return ResponseEntity.accepted().build();
     }
 
     /**
@@ -58,18 +196,79 @@ import reactor.core.publisher.Mono;
     @DeleteMapping("/mayan/{documentId}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public Mono<Void> deleteMayanDocument(@PathVariable String documentId) {
-        return mayanService.deleteDocument(documentId);
+        return mayanService.deleteDocument(documentId)
+                .doOnSuccess(done -> {
+                    mayanDocumentCache.documentRemoved(documentId);
+                    searchService.removeDocument(documentId);
+                })
+                .then(catalogService.remove(documentId))
+                .then(pageImageService.removeDocument(documentId))
+                .then(pageOcrCache.removeDocument(documentId));
     }
+    /**
+     * Get the file pages of a document, served from a cache that is refreshed in the
+     * background. The first time a document is opened the thumbnails of all its
+     * pages are rendered in the background for the sidebar.
+     */
     @GetMapping("/mayan/{documentId}")
     public Mono<DocumentFilesResponse> getDocumentById(@PathVariable String documentId) {
-        return mayanService.getDocumentsById(documentId);
+        return mayanDocumentCache.getDocumentsById(documentId)
+                .doOnNext(pages -> imageVariantService.generateThumbnails(documentId, pages));
     }
+    /**
+     * Everything the reader needs to open a document in one round-trip: the metadata,
+     * the file pages, the stored summaries of the version and, when it is ready in
+     * time, the first page thumbnail inlined as a data URI
+     *
+     * @param versionId the version to read the summaries of; the active one when absent
+     * @return Mono of the combined response
+     */
+    @GetMapping("/mayan/{documentId}/open")
+    public Mono<DocumentOpenResponse> openDocument(@PathVariable String documentId,
+                                                   @RequestParam(required = false) String versionId) {
+        return documentOpenService.open(documentId, versionId);
+    }
+    /**
+     * Get a page image, served from the local disk cache or streamed from Mayan.
+     * Supports If-None-Match / If-Modified-Since and single byte ranges; the
+     * optional rendering parameters are passed to Mayan and are part of the cache key.
+     */
     @GetMapping("/mayan/{documentId}/files/{fileId}/pages/{pageId}/image/")
-    public Mono<ResponseEntity<byte[]>> getDocumentByIdwithpage(@PathVariable String documentId, @PathVariable String fileId, @PathVariable String pageId) {
-        return mayanService.getDocumentsByIdwithPageId(documentId, fileId, pageId);
+    public Mono<ResponseEntity<StreamingResponseBody>> getDocumentByIdwithpage(@PathVariable String documentId, @PathVariable String fileId,
+                                                                               @PathVariable String pageId,
+                                                                               @RequestParam(required = false) Integer width,
+                                                                               @RequestParam(required = false) Integer height,
+                                                                               @RequestParam(required = false) Integer zoom,
+                                                                               @RequestParam(required = false) Integer rotation,
+                                                                               @RequestHeader HttpHeaders headers,
+                                                                               Authentication authentication) {
+        Map<String, String> rendering = new TreeMap<>();
+        Map.of("width", Optional.ofNullable(width), "height", Optional.ofNullable(height),
+                        "zoom", Optional.ofNullable(zoom), "rotation", Optional.ofNullable(rotation))
+                .forEach((name, value) -> value.ifPresent(v -> rendering.put(name, v.toString())));
+        readAheadService.pageRequested(readerId(authentication), documentId, fileId, pageId, rendering);
+        return pageImageService.getPageImage(documentId, fileId, pageId, rendering, headers);
     }
 
 
+    /**
+     * Get a downscaled JPEG of a page, rendered by the backend and cached. Without
+     * parameters this is the sidebar thumbnail. Width and quality are rounded to a
+     * few steps so that similar requests share the cached variant.
+     *
+     * @param width   maximum width in pixels, 16 to 2048
+     * @param quality JPEG quality, 0.1 to 1
+     */
+    @GetMapping("/mayan/{documentId}/files/{fileId}/pages/{pageId}/image/variant/")
+    public Mono<ResponseEntity<StreamingResponseBody>> getPageImageVariant(@PathVariable String documentId,
+                                                                           @PathVariable String fileId,
+                                                                           @PathVariable String pageId,
+                                                                           @RequestParam(required = false) Integer width,
+                                                                           @RequestParam(required = false) Float quality,
+                                                                           @RequestHeader HttpHeaders headers) {
+        return imageVariantService.getVariant(documentId, fileId, pageId, width, quality, headers);
+    }
+
     @PostMapping(value = "/mayan/upload", consumes = "multipart/form-data")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public Mono<MayanDocumentResponse> testUpload(
@@ -85,8 +284,38 @@ import reactor.core.publisher.Mono;
                 .file(file)
                 .build();
 
-        return mayanService.uploadDocument(request);
+        // OCR and pre-summarization continue in the background, progress goes to /topic/ingestion/{id}
+        return mayanService.uploadDocument(request)
+                .flatMap(response -> catalogService.upsert(response).thenReturn(response))
+                .doOnSuccess(response -> {
+                    mayanDocumentCache.documentAdded();
+                    if (response != null && response.getId() != null) {
+                        ingestionService.start(String.valueOf(response.getId()));
+                    }
+                });
     }
 
+    /**
+     * Get the progress of the background ingestion started by an upload
+     *
+     * @param documentId The ID of the uploaded document
+     * @return the ingestion stage and processed page count, or 404 when the document was not ingested
+     */
+    @GetMapping("/mayan/{documentId}/ingestion")
+    public ResponseEntity<IngestionProgress> getIngestionProgress(@PathVariable String documentId) {
+        return ingestionService.getProgress(documentId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * The reader id the frontend uses in websocket messages: the token subject, or the user name
+     */
+    static String readerId(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        return authentication.getDetails() instanceof String subject ? subject : authentication.getName();
+    }
 
 }
@@ -0,0 +1,31 @@
+package com.deepShearch.deepShearch.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import com.deepShearch.deepShearch.services.LlmAdmissionController;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns shed model calls into 429/503 answers with a Retry-After header so
+ * clients back off instead of retrying immediately.
+ */
+@Slf4j
+@RestControllerAdvice
+public class LlmAdmissionExceptionHandler {
+
+    @ExceptionHandler(LlmAdmissionController.RejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleRejected(LlmAdmissionController.RejectedException e) {
+        log.warn("Model call rejected: {} (retry after {}s)", e.getMessage(), e.getRetryAfterSeconds());
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", e.getMessage(),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()));
+    }
+}
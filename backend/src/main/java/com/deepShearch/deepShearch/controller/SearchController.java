@@ -0,0 +1,141 @@
+package com.deepShearch.deepShearch.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.services.interfaces.HybridSearchService;
+import com.deepShearch.deepShearch.services.interfaces.SearchService;
+import com.deepShearch.deepShearch.services.interfaces.SemanticSearchService;
+
+import lombok.AllArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1/search")
+public class SearchController {
+    private SearchService searchService;
+    private SemanticSearchService semanticSearchService;
+    private HybridSearchService hybridSearchService;
+
+    /**
+     * Search the OCR text of the indexed pages
+     *
+     * @param q          words, "exact phrases", OR, -excluded, prefix*
+     * @param documentId restrict the hits to one document
+     * @param page       0-based result page
+     * @param size       hits per page, at most 100
+     * @return BM25-ranked page hits with highlighted snippets, or 400 for an empty query
+     */
+    @GetMapping
+    public ResponseEntity<SearchResponse> search(@RequestParam String q,
+                                                 @RequestParam(required = false) String documentId,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = "10") int size) {
+        try {
+            return ResponseEntity.ok(searchService.search(q, documentId, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Search the indexed pages by meaning rather than by words
+     *
+     * @param q          natural language query
+     * @param documentId restrict the hits to one document
+     * @param k          pages to return, at most 100
+     * @param ef         candidates explored in the vector graph; raise it for recall, lower it for latency
+     * @return pages ranked by cosine similarity with their closest chunk, or 400 for an empty query
+     */
+    @GetMapping("/semantic")
+    public Mono<ResponseEntity<SearchResponse>> semanticSearch(@RequestParam String q,
+                                                               @RequestParam(required = false) String documentId,
+                                                               @RequestParam(defaultValue = "10") int k,
+                                                               @RequestParam(defaultValue = "0") int ef) {
+        return semanticSearchService.search(q, documentId, k, ef)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Keyword and semantic search in one ranking, grouped by document. The full
+     * ranking is cached, so asking for the next page does not search again.
+     *
+     * @param q          words, "exact phrases", OR, -excluded, prefix*
+     * @param documentId restrict the hits to one document
+     * @param page       0-based page of documents
+     * @param size       documents per page, at most 100
+     * @return documents with their best pages, or 400 for an empty or invalid query
+     */
+    @GetMapping("/hybrid")
+    public Mono<ResponseEntity<HybridSearchResponse>> hybridSearch(@RequestParam String q,
+                                                                   @RequestParam(required = false) String documentId,
+                                                                   @RequestParam(defaultValue = "0") int page,
+                                                                   @RequestParam(defaultValue = "10") int size) {
+        return hybridSearchService.search(q, documentId, page, size)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Pages similar to a page, from any document but that page
+     *
+     * @return similar pages, or 404 when the page has not been embedded
+     */
+    @GetMapping("/similar/documents/{documentId}/pages/{pageId}")
+    public Mono<ResponseEntity<SearchResponse>> similarPages(@PathVariable String documentId,
+                                                             @PathVariable String pageId,
+                                                             @RequestParam(defaultValue = "10") int k,
+                                                             @RequestParam(defaultValue = "0") int ef) {
+        return semanticSearchService.similarPages(documentId, pageId, k, ef)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Other documents similar to a document, each with its closest page
+     *
+     * @return similar documents, or 404 when the document has not been embedded
+     */
+    @GetMapping("/similar/documents/{documentId}")
+    public Mono<ResponseEntity<SearchResponse>> similarDocuments(@PathVariable String documentId,
+                                                                 @RequestParam(defaultValue = "10") int k,
+                                                                 @RequestParam(defaultValue = "0") int ef) {
+        return semanticSearchService.similarDocuments(documentId, k, ef)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Index every Mayan document in the background
+     *
+     * @return 202 once the reindexing has started
+     */
+    @PostMapping("/index")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Void> reindexAll() {
+        searchService.reindexAll();
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Index the OCR text of one document again in the background
+     *
+     * @return 202 once the reindexing has started
+     */
+    @PostMapping("/index/{documentId}")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Void> reindexDocument(@PathVariable String documentId) {
+        searchService.reindexDocument(documentId);
+        return ResponseEntity.accepted().build();
+    }
+}
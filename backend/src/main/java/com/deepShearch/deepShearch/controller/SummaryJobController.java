@@ -0,0 +1,55 @@
+package com.deepShearch.deepShearch.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.deepShearch.deepShearch.Dto.SummaryJobResponse;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobService;
+
+import lombok.AllArgsConstructor;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1/documents/Summrize/jobs")
+public class SummaryJobController {
+    private SummaryJobService summaryJobService;
+
+    /**
+     * Queue the summarization of a page; the user is notified on /queue/notifications when it completes
+     *
+     * @return 202 with the job id to poll
+     */
+    @PostMapping("/{documentId}/versions/{documentVersionId}/pages/{documentVersionPageId}/user/{userId}")
+    public ResponseEntity<SummaryJobResponse> submitPageJob(@PathVariable String documentId,
+                                                            @PathVariable String documentVersionId,
+                                                            @PathVariable String documentVersionPageId,
+                                                            @PathVariable String userId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(summaryJobService.submitPageJob(documentId, documentVersionId, documentVersionPageId, userId));
+    }
+
+    /**
+     * Queue the summarization of a whole document version
+     *
+     * @return 202 with the job id to poll
+     */
+    @PostMapping("/{documentId}/versions/{documentVersionId}/user/{userId}")
+    public ResponseEntity<SummaryJobResponse> submitDocumentJob(@PathVariable String documentId,
+                                                                @PathVariable String documentVersionId,
+                                                                @PathVariable String userId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(summaryJobService.submitDocumentJob(documentId, documentVersionId, userId));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<SummaryJobResponse> getJob(@PathVariable String jobId) {
+        return summaryJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
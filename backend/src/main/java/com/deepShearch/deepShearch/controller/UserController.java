@@ -1,5 +1,6 @@
 package com.deepShearch.deepShearch.controller;
 
+import java.security.Principal;
 import java.util.List;
 
 import com.deepShearch.deepShearch.Dto.WebsocketMessagae;
@@ -11,6 +12,7 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -21,6 +23,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.deepShearch.deepShearch.services.interfaces.ReadAheadService;
 import com.deepShearch.deepShearch.services.interfaces.UserService;
 
 import lombok.AllArgsConstructor;
@@ -32,16 +35,22 @@ import lombok.AllArgsConstructor;
 public class UserController {
     private UserService userService;
     private SimpMessagingTemplate messagingTemplate;
+    private ReadAheadService readAheadService;
 
     @GetMapping
     public ResponseEntity<List<UserRepresentation>> getAllUsers() {
         return ResponseEntity.ok(userService.getAllUsers());
     }
     @MessageMapping("/action")
-    public void makedAllAsRead(@RequestBody WebsocketMessagae message) {
+    public void makedAllAsRead(@RequestBody WebsocketMessagae message, Principal principal) {
         if (message == null || message.getSenderId() == null) {
             return;
         }
+        // only the reader's own sessions, whatever sender id the message claims
+        if (message.getTypeMessage() == WebsocketMessagae.TypeMessage.CLOSEBOOKSVIWER
+                && principal instanceof Authentication authentication) {
+            readAheadService.closeBook(DocumentController.readerId(authentication), message.getDocumentId());
+        }
         WebsocketMessagae message2 = userService.getActions(message);
         if(message2.getTypeMessage() == WebsocketMessagae.TypeMessage.Bloc_VIEWED){
             messagingTemplate.convertAndSendToUser(message2.getSenderId(), "/queue/action", message2);
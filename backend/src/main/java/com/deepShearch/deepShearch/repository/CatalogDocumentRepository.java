@@ -0,0 +1,33 @@
+package com.deepShearch.deepShearch.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.deepShearch.deepShearch.Model.CatalogDocument;
+
+@Repository
+public interface CatalogDocumentRepository extends JpaRepository<CatalogDocument, Long>,
+        JpaSpecificationExecutor<CatalogDocument> {
+
+    /**
+     * Read a page by offset without counting the rows
+     */
+    Slice<CatalogDocument> findAllBy(Pageable pageable);
+
+    /**
+     * Remove the documents a completed full sync did not see, they are no longer in Mayan
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CatalogDocument d WHERE d.lastSeenAt < :syncStart")
+    int deleteNotSeenSince(@Param("syncStart") LocalDateTime syncStart);
+}
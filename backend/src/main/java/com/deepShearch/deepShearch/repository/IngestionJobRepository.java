@@ -0,0 +1,15 @@
+package com.deepShearch.deepShearch.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.deepShearch.deepShearch.Model.IngestionJob;
+
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, String> {
+
+    List<IngestionJob> findByStageIn(Collection<IngestionJob.Stage> stages);
+}
@@ -0,0 +1,28 @@
+package com.deepShearch.deepShearch.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.deepShearch.deepShearch.Model.PageOcrText;
+
+@Repository
+public interface PageOcrTextRepository extends JpaRepository<PageOcrText, String> {
+
+    /**
+     * Remove the OCR text of the versions of a document other than {@code documentVersionId}
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageOcrText p WHERE p.documentId = :documentId AND p.documentVersionId <> :documentVersionId")
+    int deleteOtherVersions(@Param("documentId") String documentId,
+                            @Param("documentVersionId") String documentVersionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageOcrText p WHERE p.documentId = :documentId")
+    int deleteByDocument(@Param("documentId") String documentId);
+}
@@ -0,0 +1,38 @@
+package com.deepShearch.deepShearch.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.deepShearch.deepShearch.Model.SummaryClaim;
+
+@Repository
+public interface SummaryClaimRepository extends JpaRepository<SummaryClaim, String> {
+
+    /**
+     * Insert the claim unless another instance already holds it.
+     * @return 1 when the claim was taken, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO summary_claims (page_key, owner, claimed_at) VALUES (:pageKey, :owner, :claimedAt) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int tryClaim(@Param("pageKey") String pageKey,
+                 @Param("owner") String owner,
+                 @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SummaryClaim c WHERE c.pageKey = :pageKey AND c.owner = :owner")
+    int release(@Param("pageKey") String pageKey, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SummaryClaim c WHERE c.pageKey = :pageKey AND c.claimedAt < :cutoff")
+    int deleteStale(@Param("pageKey") String pageKey, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,10 @@
+package com.deepShearch.deepShearch.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.deepShearch.deepShearch.Model.SummaryContent;
+
+@Repository
+public interface SummaryContentRepository extends JpaRepository<SummaryContent, String> {
+}
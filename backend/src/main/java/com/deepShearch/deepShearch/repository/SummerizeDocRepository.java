@@ -1,15 +1,64 @@
 package com.deepShearch.deepShearch.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.deepShearch.deepShearch.Model.SummerizeDoc;
 
+import jakarta.persistence.QueryHint;
+
 public interface SummerizeDocRepository extends JpaRepository<SummerizeDoc, String> {
     Optional<SummerizeDoc> findFirstByDocumentIdAndDocumentVersionIdAndDocumentVersionPageIdOrderByCreatedAtDesc(
             String documentId,
             String documentVersionId, 
             String documentVersionPageId
     );
+
+    List<SummerizeDoc> findByDocumentIdAndDocumentVersionId(String documentId, String documentVersionId);
+
+    /**
+     * Only the columns a reader needs, so no entity is built or kept in the persistence context.
+     */
+    interface PageSummary {
+        String getDocumentVersionPageId();
+        String getSummary();
+        List<String> getKeyWords();
+        LocalDateTime getCreatedAt();
+    }
+
+    /**
+     * The page summaries of a version, one row per page, ordered by page id as text,
+     * which is not the page number order. The stream must be read
+     * and closed inside a transaction; rows are fetched from the database in batches.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT s.documentVersionPageId AS documentVersionPageId, s.summary AS summary, "
+            + "s.keyWords AS keyWords, s.createdAt AS createdAt FROM SummerizeDoc s "
+            + "WHERE s.documentId = :documentId AND s.documentVersionId = :documentVersionId "
+            + "AND s.documentVersionPageId <> '" + SummerizeDoc.DOCUMENT_SUMMARY_PAGE_ID + "' "
+            + "ORDER BY s.documentVersionPageId")
+    Stream<PageSummary> streamPageSummaries(@Param("documentId") String documentId,
+                                            @Param("documentVersionId") String documentVersionId);
+
+    /**
+     * As {@link #streamPageSummaries(String, String)}, for the given pages only.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT s.documentVersionPageId AS documentVersionPageId, s.summary AS summary, "
+            + "s.keyWords AS keyWords, s.createdAt AS createdAt FROM SummerizeDoc s "
+            + "WHERE s.documentId = :documentId AND s.documentVersionId = :documentVersionId "
+            + "AND s.documentVersionPageId IN :pageIds "
+            + "ORDER BY s.documentVersionPageId")
+    Stream<PageSummary> streamPageSummaries(@Param("documentId") String documentId,
+                                            @Param("documentVersionId") String documentVersionId,
+                                            @Param("pageIds") Collection<String> pageIds);
 }
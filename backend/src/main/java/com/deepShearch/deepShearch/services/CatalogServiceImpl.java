@@ -0,0 +1,488 @@
+package com.deepShearch.deepShearch.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.CatalogPageResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
+import com.deepShearch.deepShearch.Model.CatalogDocument;
+import com.deepShearch.deepShearch.Model.CatalogSyncState;
+import com.deepShearch.deepShearch.repository.CatalogDocumentRepository;
+import com.deepShearch.deepShearch.repository.CatalogSyncStateRepository;
+import com.deepShearch.deepShearch.services.interfaces.CatalogService;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+import jakarta.persistence.criteria.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Read model of the Mayan document list. A full sync walks Mayan's
+ * {@code next} links, fetching the following page while the current one is
+ * written, and drops the documents it did not see. Between full syncs an
+ * incremental sync reads the newest documents down to the stored
+ * {@code datetime_created} checkpoint. Mayan does not expose a modification
+ * time on documents, so label and version changes made outside this
+ * application are picked up by the periodic full sync; the ones made through
+ * it are written straight away by {@link #upsert} and {@link #remove}.
+ */
+@Slf4j
+@Service
+public class CatalogServiceImpl implements CatalogService {
+
+    private static final String STATE_ID = "mayan-documents";
+    private static final int MAX_LIMIT = 200;
+    private static final LocalDateTime UNKNOWN_CREATED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final CatalogDocumentRepository catalogDocumentRepository;
+    private final CatalogSyncStateRepository catalogSyncStateRepository;
+    private final MayanService mayanService;
+
+    private final boolean enabled;
+    private final int pageSize;
+    private final int prefetch;
+    private final Duration overlap;
+
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private volatile boolean ready;
+
+    public CatalogServiceImpl(CatalogDocumentRepository catalogDocumentRepository,
+                              CatalogSyncStateRepository catalogSyncStateRepository,
+                              MayanService mayanService,
+                              @Value("${catalog.sync.enabled:true}") boolean enabled,
+                              @Value("${catalog.sync.page-size:100}") int pageSize,
+                              @Value("${catalog.sync.prefetch:2}") int prefetch,
+                              @Value("${catalog.sync.overlap:PT10M}") Duration overlap) {
+        this.catalogDocumentRepository = catalogDocumentRepository;
+        this.catalogSyncStateRepository = catalogSyncStateRepository;
+        this.mayanService = mayanService;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.prefetch = Math.max(1, prefetch);
+        this.overlap = overlap;
+    }
+
+    @Override
+    public Mono<CatalogPageResponse> list(Ordering ordering, String cursor, int limit, Long documentTypeId,
+                                          String labelPrefix) {
+        Ordering order = ordering != null ? ordering : Ordering.CREATED;
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        return blocking(() -> {
+            Cursor after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor, order);
+            List<CatalogDocument> rows = keysetPage(order, after, boundedLimit, documentTypeId, labelPrefix);
+
+            boolean hasNext = rows.size() > boundedLimit;
+            List<CatalogDocument> page = hasNext ? rows.subList(0, boundedLimit) : rows;
+            String next = hasNext ? Cursor.of(order, page.get(page.size() - 1)).encode() : null;
+            return new CatalogPageResponse(storedCount(), next, page.stream().map(this::toResponse).toList());
+        });
+    }
+
+    @Override
+    public Mono<MayanDocumentsListResponse> listPage(int page, int size, String cursor) {
+        int boundedPage = Math.max(1, page);
+        int boundedSize = Math.max(1, Math.min(size, MAX_LIMIT));
+        return blocking(() -> {
+            boolean byCursor = cursor != null && !cursor.isBlank();
+            List<CatalogDocument> content;
+            boolean hasNext;
+            if (byCursor || boundedPage == 1) {
+                Cursor after = byCursor ? Cursor.decode(cursor, Ordering.CREATED) : null;
+                List<CatalogDocument> rows = keysetPage(Ordering.CREATED, after, boundedSize, null, null);
+                hasNext = rows.size() > boundedSize;
+                content = hasNext ? rows.subList(0, boundedSize) : rows;
+            } else {
+                // a page asked by number is still read with an offset, but never counted
+                Slice<CatalogDocument> rows = catalogDocumentRepository.findAllBy(
+                        PageRequest.of(boundedPage - 1, boundedSize, sortOf(Ordering.CREATED)));
+                hasNext = rows.hasNext();
+                content = rows.getContent();
+            }
+
+            // the pages that follow are read by keyset, whatever page the list was entered at
+            String next = hasNext
+                    ? "?cursor=" + Cursor.of(Ordering.CREATED, content.get(content.size() - 1)).encode()
+                    + "&pageSize=" + boundedSize
+                    : null;
+            String previous = !byCursor && boundedPage > 1
+                    ? "?page=" + (boundedPage - 1) + "&pageSize=" + boundedSize
+                    : null;
+            Long count = storedCount();
+            return new MayanDocumentsListResponse(count != null ? count.intValue() : null, next, previous,
+                    content.stream().map(this::toResponse).toList());
+        });
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Mono<Void> upsert(MayanDocumentResponse document) {
+        if (document == null || document.getId() == null) {
+            return Mono.empty();
+        }
+        return blocking(() -> upsertAll(List.of(document), LocalDateTime.now()))
+                .then()
+                .onErrorResume(error -> {
+                    log.warn("Could not add document {} to the catalog: {}", document.getId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<Void> remove(String documentId) {
+        return Mono.<Void>fromRunnable(() -> catalogDocumentRepository.deleteById(Long.valueOf(documentId)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Could not remove document {} from the catalog: {}", documentId, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public void syncAll() {
+        exclusive("full", fullSync());
+    }
+
+    /**
+     * Resume from the checkpoint, or walk the whole catalog if no full sync ever completed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSync() {
+        if (!enabled) {
+            return;
+        }
+        blocking(this::loadState)
+                .subscribe(state -> {
+                    ready = state.getLastFullSyncAt() != null;
+                    if (ready) {
+                        exclusive("incremental", incrementalSync());
+                    } else {
+                        syncAll();
+                    }
+                }, error -> log.error("Could not read the catalog checkpoint", error));
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.sync.interval:PT1M}", initialDelayString = "${catalog.sync.interval:PT1M}")
+    public void scheduledIncrementalSync() {
+        if (enabled && ready) {
+            exclusive("incremental", incrementalSync());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.sync.full-interval:PT6H}",
+            initialDelayString = "${catalog.sync.full-interval:PT6H}")
+    public void scheduledFullSync() {
+        if (enabled) {
+            syncAll();
+        }
+    }
+
+    private void exclusive(String kind, Mono<Void> sync) {
+        if (!syncing.compareAndSet(false, true)) {
+            log.debug("Catalog sync already running, skipping the {} sync", kind);
+            return;
+        }
+        long start = System.nanoTime();
+        sync.doFinally(signal -> syncing.set(false))
+                .subscribe(null,
+                        error -> log.error("Catalog {} sync failed", kind, error),
+                        () -> log.info("Catalog {} sync finished in {} ms", kind, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * Walk every page of the catalog, then delete what was not seen.
+     */
+    private Mono<Void> fullSync() {
+        return Mono.defer(() -> {
+            LocalDateTime syncStart = LocalDateTime.now();
+            return mayanService.getDocuments("id", 1, pageSize)
+                    .expand(page -> page.getNext() != null
+                            ? mayanService.getDocumentsPage(page.getNext())
+                            : Mono.empty())
+                    .concatMap(page -> blocking(() -> upsertAll(results(page), syncStart)), prefetch)
+                    .reduce(UNKNOWN_CREATED, CatalogServiceImpl::latest)
+                    .flatMap(newest -> blocking(() -> {
+                        int deleted = catalogDocumentRepository.deleteNotSeenSince(syncStart);
+                        CatalogSyncState state = loadState();
+                        state.setLastCreated(latest(newest, state.getLastCreated()));
+                        state.setLastFullSyncAt(LocalDateTime.now());
+                        state.setDocumentCount(catalogDocumentRepository.count());
+                        catalogSyncStateRepository.save(state);
+                        ready = true;
+                        log.info("Catalog holds {} documents, {} removed since the last full sync",
+                                state.getDocumentCount(), deleted);
+                        return state;
+                    }))
+                    .then();
+        });
+    }
+
+    /**
+     * Read the newest documents until the ones older than the checkpoint. The
+     * checkpoint is moved back by {@code overlap} so documents created while
+     * the previous sync was reading are not missed.
+     */
+    private Mono<Void> incrementalSync() {
+        return blocking(this::loadState).flatMap(state -> {
+            LocalDateTime cutoff = (state.getLastCreated() != null ? state.getLastCreated() : UNKNOWN_CREATED)
+                    .minus(overlap);
+            LocalDateTime seenAt = LocalDateTime.now();
+            return mayanService.getDocuments("-datetime_created", 1, pageSize)
+                    .expand(page -> page.getNext() != null && reachesBack(page, cutoff)
+                            ? mayanService.getDocumentsPage(page.getNext())
+                            : Mono.empty())
+                    .concatMap(page -> blocking(() -> upsertAll(results(page).stream()
+                            .filter(document -> created(document).isAfter(cutoff))
+                            .toList(), seenAt)), prefetch)
+                    .reduce(UNKNOWN_CREATED, CatalogServiceImpl::latest)
+                    .flatMap(newest -> blocking(() -> {
+                        CatalogSyncState current = loadState();
+                        current.setLastCreated(latest(newest, current.getLastCreated()));
+                        current.setLastIncrementalSyncAt(LocalDateTime.now());
+                        current.setDocumentCount(catalogDocumentRepository.count());
+                        return catalogSyncStateRepository.save(current);
+                    }))
+                    .then();
+        });
+    }
+
+    /**
+     * @return whether the page, ordered newest first, still reaches the cutoff
+     */
+    private static boolean reachesBack(MayanDocumentsListResponse page, LocalDateTime cutoff) {
+        List<MayanDocumentResponse> results = results(page);
+        return !results.isEmpty() && created(results.get(results.size() - 1)).isAfter(cutoff);
+    }
+
+    /**
+     * Insert or update a batch of documents.
+     * @return the newest creation time in the batch
+     */
+    private LocalDateTime upsertAll(List<MayanDocumentResponse> documents, LocalDateTime seenAt) {
+        if (documents.isEmpty()) {
+            return UNKNOWN_CREATED;
+        }
+        Map<Long, CatalogDocument> existing = catalogDocumentRepository
+                .findAllById(documents.stream().map(MayanDocumentResponse::getId).filter(Objects::nonNull).toList())
+                .stream()
+                .collect(Collectors.toMap(CatalogDocument::getId, Function.identity()));
+
+        LocalDateTime newest = UNKNOWN_CREATED;
+        List<CatalogDocument> rows = new ArrayList<>(documents.size());
+        for (MayanDocumentResponse document : documents) {
+            if (document.getId() == null) {
+                continue;
+            }
+            CatalogDocument row = existing.getOrDefault(document.getId(), new CatalogDocument());
+            apply(document, row, seenAt);
+            rows.add(row);
+            newest = latest(newest, row.getDatetimeCreated());
+        }
+        catalogDocumentRepository.saveAll(rows);
+        return newest;
+    }
+
+    private static void apply(MayanDocumentResponse document, CatalogDocument row, LocalDateTime seenAt) {
+        row.setId(document.getId());
+        row.setUuid(document.getUuid());
+        row.setLabel(document.getLabel());
+        row.setLabelSort(normalize(document.getLabel()));
+        row.setDescription(document.getDescription());
+        row.setDatetimeCreated(created(document));
+        row.setLanguage(document.getLanguage());
+        MayanDocumentResponse.DocumentTypeDto type = document.getDocumentType();
+        row.setDocumentTypeId(type != null ? type.getId() : null);
+        row.setDocumentTypeLabel(type != null ? type.getLabel() : null);
+        MayanDocumentResponse.DocumentFileDto file = document.getFileLatest();
+        row.setFileLatestId(file != null ? file.getId() : null);
+        row.setFileLatestFilename(file != null ? file.getFilename() : null);
+        row.setFileLatestEncoding(file != null ? file.getEncoding() : null);
+        row.setFileLatestMimeType(file != null ? file.getMimeType() : null);
+        row.setFileLatestSize(file != null ? file.getSize() : null);
+        row.setFileLatestChecksum(file != null ? file.getChecksum() : null);
+        MayanDocumentResponse.DocumentVersionDto version = document.getVersionActive();
+        row.setVersionActiveId(version != null ? version.getId() : null);
+        row.setVersionActiveComment(version != null ? version.getComment() : null);
+        row.setVersionActiveNumber(version != null ? version.getVersionNumber() : null);
+        row.setUrl(document.getUrl());
+        row.setLastSeenAt(seenAt);
+        row.setSyncedAt(LocalDateTime.now());
+    }
+
+    private MayanDocumentResponse toResponse(CatalogDocument row) {
+        MayanDocumentResponse document = new MayanDocumentResponse();
+        document.setId(row.getId());
+        document.setUuid(row.getUuid());
+        document.setLabel(row.getLabel());
+        document.setDescription(row.getDescription());
+        document.setDatetimeCreated(row.getDatetimeCreated());
+        document.setLanguage(row.getLanguage());
+        if (row.getDocumentTypeId() != null) {
+            document.setDocumentType(new MayanDocumentResponse.DocumentTypeDto(row.getDocumentTypeId(),
+                    row.getDocumentTypeLabel()));
+        }
+        if (row.getFileLatestId() != null) {
+            document.setFileLatest(new MayanDocumentResponse.DocumentFileDto(row.getFileLatestId(),
+                    row.getFileLatestFilename(), row.getFileLatestEncoding(), row.getFileLatestMimeType(),
+                    row.getFileLatestSize(), row.getFileLatestChecksum()));
+        }
+        if (row.getVersionActiveId() != null) {
+            document.setVersionActive(new MayanDocumentResponse.DocumentVersionDto(row.getVersionActiveId(),
+                    row.getVersionActiveComment(), row.getVersionActiveNumber()));
+        }
+        document.setUrl(row.getUrl());
+        return document;
+    }
+
+    /**
+     * Read up to {@code limit + 1} rows after {@code after} in {@code order}; the
+     * extra row tells whether there is a next page, without counting.
+     */
+    private List<CatalogDocument> keysetPage(Ordering order, Cursor after, int limit, Long documentTypeId,
+                                             String labelPrefix) {
+        Specification<CatalogDocument> filter = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (documentTypeId != null) {
+                predicates.add(cb.equal(root.get("documentTypeId"), documentTypeId));
+            }
+            if (labelPrefix != null && !labelPrefix.isBlank()) {
+                predicates.add(cb.like(root.<String>get("labelSort"), escapeLike(normalize(labelPrefix)) + "%", '\\'));
+            }
+            if (after != null) {
+                predicates.add(switch (order) {
+                    case CREATED -> cb.or(
+                            cb.lessThan(root.<LocalDateTime>get("datetimeCreated"), after.created()),
+                            cb.and(cb.equal(root.get("datetimeCreated"), after.created()),
+                                    cb.lessThan(root.<Long>get("id"), after.id())));
+                    case LABEL -> cb.or(
+                            cb.greaterThan(root.<String>get("labelSort"), after.label()),
+                            cb.and(cb.equal(root.get("labelSort"), after.label()),
+                                    cb.greaterThan(root.<Long>get("id"), after.id())));
+                    case ID -> cb.greaterThan(root.<Long>get("id"), after.id());
+                });
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+        return catalogDocumentRepository.findBy(filter, query -> query
+                .sortBy(sortOf(order))
+                .limit(limit + 1)
+                .all());
+    }
+
+    /**
+     * @return the document count recorded by the last sync, or null before the first one
+     */
+    private Long storedCount() {
+        return catalogSyncStateRepository.findById(STATE_ID)
+                .map(CatalogSyncState::getDocumentCount)
+                .orElse(null);
+    }
+
+    private CatalogSyncState loadState() {
+        return catalogSyncStateRepository.findById(STATE_ID)
+                .orElseGet(() -> new CatalogSyncState(STATE_ID, null, null, null, null));
+    }
+
+    private static Sort sortOf(Ordering ordering) {
+        return switch (ordering) {
+            case CREATED -> Sort.by(
+                    Sort.Order.desc("datetimeCreated"),
+                    Sort.Order.desc("id"));
+            case LABEL -> Sort.by("labelSort", "id");
+            case ID -> Sort.by("id");
+        };
+    }
+
+    private static List<MayanDocumentResponse> results(MayanDocumentsListResponse page) {
+        return page.getResults() != null ? page.getResults() : List.<MayanDocumentResponse>of();
+    }
+
+    private static LocalDateTime created(MayanDocumentResponse document) {
+        return document.getDatetimeCreated() != null ? document.getDatetimeCreated() : UNKNOWN_CREATED;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static String normalize(String label) {
+        return label == null ? "" : label.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Position after which the next keyset page starts, carried to the client as an opaque string.
+     */
+    record Cursor(Ordering ordering, long id, LocalDateTime created, String label) {
+
+        static Cursor of(Ordering ordering, CatalogDocument row) {
+            return new Cursor(ordering, row.getId(), row.getDatetimeCreated(), row.getLabelSort());
+        }
+
+        String encode() {
+            String value = switch (ordering) {
+                case CREATED -> created.toString();
+                case LABEL -> label;
+                case ID -> "";
+            };
+            String raw = ordering.name() + "|" + id + "|" + value;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor, Ordering expected) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", 3);
+                Ordering ordering = Ordering.valueOf(parts[0]);
+                if (ordering != expected) {
+                    throw new IllegalArgumentException("Cursor was issued for another ordering");
+                }
+                long id = Long.parseLong(parts[1]);
+                return switch (ordering) {
+                    case CREATED -> new Cursor(ordering, id, LocalDateTime.parse(parts[2]), null);
+                    case LABEL -> new Cursor(ordering, id, null, parts[2]);
+                    case ID -> new Cursor(ordering, id, null, null);
+                };
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid catalog cursor", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentOpenResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Model.SummerizeDoc;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
+import com.deepShearch.deepShearch.services.interfaces.DocumentOpenService;
+import com.deepShearch.deepShearch.services.interfaces.ImageVariantService;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Opening a document used to cost the reader several sequential round-trips:
+ * metadata, the page list, the first image and the page summaries. They are
+ * fetched here at the same time, the summaries of the version with a single
+ * query, and returned together.
+ * <p>
+ * The first page thumbnail is inlined when it is cached or can be rendered
+ * within {@code document-open.thumbnail-wait}; otherwise the reader loads it
+ * as usual. Opening also starts the rendering of the other thumbnails.
+ */
+@Slf4j
+@Service
+public class DocumentOpenServiceImpl implements DocumentOpenService {
+
+    private final MayanService mayanService;
+    private final MayanDocumentCache mayanDocumentCache;
+    private final SummerizeDocRepository sumerizeDocRepository;
+    private final ImageVariantService imageVariantService;
+    private final Duration thumbnailWait;
+    private final long thumbnailMaxSize;
+
+    public DocumentOpenServiceImpl(MayanService mayanService,
+                                   MayanDocumentCache mayanDocumentCache,
+                                   SummerizeDocRepository sumerizeDocRepository,
+                                   ImageVariantService imageVariantService,
+                                   @Value("${document-open.thumbnail-wait:300ms}") Duration thumbnailWait,
+                                   @Value("${document-open.thumbnail-max-size:32KB}") DataSize thumbnailMaxSize) {
+        this.mayanService = mayanService;
+        this.mayanDocumentCache = mayanDocumentCache;
+        this.sumerizeDocRepository = sumerizeDocRepository;
+        this.imageVariantService = imageVariantService;
+        this.thumbnailWait = thumbnailWait;
+        this.thumbnailMaxSize = thumbnailMaxSize.toBytes();
+    }
+
+    private record Summaries(String versionId, AiSumarizeResponse document, Map<String, AiSumarizeResponse> pages) {
+    }
+
+    @Override
+    public Mono<DocumentOpenResponse> open(String documentId, String documentVersionId) {
+        Mono<MayanDocumentResponse> documentMono = mayanService.getDocument(documentId);
+
+        // with a known version the summaries do not wait for the metadata
+        Mono<Tuple2<MayanDocumentResponse, Summaries>> documentWithSummaries = documentVersionId != null
+                ? Mono.zip(documentMono, summaries(documentId, documentVersionId))
+                : documentMono.flatMap(document -> summaries(documentId, activeVersionId(document))
+                        .map(summaries -> Tuples.of(document, summaries)));
+
+        Mono<Tuple2<DocumentFilesResponse, Optional<String>>> pagesWithThumbnail = mayanDocumentCache
+                .getDocumentsById(documentId)
+                .flatMap(pages -> {
+                    // started before the wait below, so the first page keeps rendering if the wait times out
+                    imageVariantService.generateThumbnails(documentId, pages);
+                    return firstPageThumbnail(documentId, pages).map(thumbnail -> Tuples.of(pages, thumbnail));
+                });
+
+        return Mono.zip(documentWithSummaries, pagesWithThumbnail)
+                .map(result -> {
+                    Summaries summaries = result.getT1().getT2();
+                    return new DocumentOpenResponse(result.getT1().getT1(), summaries.versionId(),
+                            result.getT2().getT1(), summaries.document(), summaries.pages(),
+                            result.getT2().getT2().orElse(null));
+                });
+    }
+
+    /**
+     * The stored summaries of a version, read with one query. A failure only
+     * leaves them out, the reader can still ask for them page by page.
+     */
+    private Mono<Summaries> summaries(String documentId, String documentVersionId) {
+        if (documentVersionId == null) {
+            return Mono.just(new Summaries(null, null, Map.of()));
+        }
+        return Mono.fromCallable(() -> {
+                    AiSumarizeResponse document = null;
+                    Map<String, AiSumarizeResponse> pages = new LinkedHashMap<>();
+                    for (SummerizeDoc stored : sumerizeDocRepository
+                            .findByDocumentIdAndDocumentVersionId(documentId, documentVersionId)) {
+                        AiSumarizeResponse summary = new AiSumarizeResponse(stored.getSummary(),
+                                stored.getKeyWords() != null ? List.copyOf(stored.getKeyWords()) : List.of());
+                        if (SummerizeDoc.DOCUMENT_SUMMARY_PAGE_ID.equals(stored.getDocumentVersionPageId())) {
+                            document = summary;
+                        } else {
+                            pages.putIfAbsent(stored.getDocumentVersionPageId(), summary);
+                        }
+                    }
+                    return new Summaries(documentVersionId, document, pages);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Could not read the summaries of document {} version {}: {}", documentId,
+                            documentVersionId, error.getMessage());
+                    return Mono.just(new Summaries(documentVersionId, null, Map.of()));
+                });
+    }
+
+    private Mono<Optional<String>> firstPageThumbnail(String documentId, DocumentFilesResponse pages) {
+        if (thumbnailWait.isZero() || pages.getResults() == null) {
+            return Mono.just(Optional.<String>empty());
+        }
+        return pages.getResults().stream()
+                .filter(page -> page.getDocument_file_id() != null && page.getId() != null)
+                .min((a, b) -> Integer.compare(
+                        a.getPage_number() != null ? a.getPage_number() : Integer.MAX_VALUE,
+                        b.getPage_number() != null ? b.getPage_number() : Integer.MAX_VALUE))
+                .map(page -> imageVariantService
+                        .getThumbnail(documentId, String.valueOf(page.getDocument_file_id()), String.valueOf(page.getId()))
+                        .filter(bytes -> bytes.length <= thumbnailMaxSize)
+                        .map(bytes -> Optional.of("data:image/jpeg;base64," + Base64.getEncoder().encodeToString(bytes)))
+                        // a timeout cancels only this wait: the thumbnail set renders the page independently,
+                        // and render() is single-flight, so this wait joins that render rather than owning it
+                        .timeout(thumbnailWait, Mono.just(Optional.<String>empty()))
+                        .onErrorResume(error -> {
+                            log.debug("No thumbnail for document {}: {}", documentId, error.toString());
+                            return Mono.just(Optional.<String>empty());
+                        })
+                        .defaultIfEmpty(Optional.<String>empty()))
+                .orElseGet(() -> Mono.just(Optional.<String>empty()));
+    }
+
+    private static String activeVersionId(MayanDocumentResponse document) {
+        return document.getVersionActive() != null && document.getVersionActive().getId() != null
+                ? String.valueOf(document.getVersionActive().getId())
+                : null;
+    }
+}
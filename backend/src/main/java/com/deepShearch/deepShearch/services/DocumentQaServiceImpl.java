@@ -0,0 +1,210 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.AskCitation;
+import com.deepShearch.deepShearch.services.interfaces.DocumentQaService;
+import com.deepShearch.deepShearch.utils.ContextPacker;
+import com.deepShearch.deepShearch.utils.ContextPacker.Passage;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+import com.deepShearch.deepShearch.utils.TextChunker;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Answers questions about one document from the chunks of its pages that are
+ * closest to the question in the vector index. The prompt holds at most
+ * {@code llm.ask.context-tokens} of passages whatever the length of the
+ * document, so answering a question about a long book costs about the same as
+ * about a short letter.
+ */
+@Slf4j
+@Service
+public class DocumentQaServiceImpl implements DocumentQaService {
+
+    private static final String ASK_PROMPT = """
+            Answer the question about a document using only the passages below.
+            Each passage starts with the page it comes from, like [p. 3].
+            Cite the pages that support your answer in the same form, for example [p. 3].
+            If the passages do not contain the answer, say that the document does not say.
+
+            Passages:
+
+            {context}
+
+            Question: {question}
+            """;
+
+    private final ChatClient chatClient;
+    private final LlmAdmissionController admissionController;
+    private final PageVectorIndex pageVectorIndex;
+    private final PageEmbedder pageEmbedder;
+    private final ContextPacker contextPacker;
+    private final int topK;
+    private final int ef;
+
+    /** Passages retrieved for a document and normalized question, most relevant first. */
+    private final LruCache<String, List<Passage>> contexts;
+    private final SingleFlight<List<Passage>> retrievals = new SingleFlight<>();
+
+    public DocumentQaServiceImpl(ChatClient.Builder chatClientBuilder,
+                                 LlmAdmissionController admissionController,
+                                 PageVectorIndex pageVectorIndex,
+                                 PageEmbedder pageEmbedder,
+                                 @Value("${llm.ask.top-k:16}") int topK,
+                                 @Value("${llm.ask.ef:100}") int ef,
+                                 @Value("${llm.ask.context-tokens:2000}") int contextTokens,
+                                 @Value("${llm.ask.duplicate-threshold:0.6}") double duplicateThreshold,
+                                 @Value("${llm.ask.cache.max-entries:200}") int cacheMaxEntries,
+                                 @Value("${llm.ask.cache.ttl:PT30M}") Duration cacheTtl) {
+        this.chatClient = chatClientBuilder.build();
+        this.admissionController = admissionController;
+        this.pageVectorIndex = pageVectorIndex;
+        this.pageEmbedder = pageEmbedder;
+        this.contextPacker = new ContextPacker(contextTokens, duplicateThreshold);
+        this.topK = Math.max(1, topK);
+        this.ef = Math.max(this.topK, ef);
+        this.contexts = new LruCache<>(cacheMaxEntries, cacheTtl);
+    }
+
+    @Override
+    public Flux<ServerSentEvent<Object>> ask(String documentId, String question, String previousQuestion) {
+        if (documentId == null || question == null || question.isBlank()) {
+            return Flux.just(sseEvent("error", "A document and a question are required."));
+        }
+
+        return context(documentId, question, previousQuestion)
+                .flatMapMany(passages -> {
+                    if (passages.isEmpty()) {
+                        return Flux.just(sseEvent("error", "The document has not been indexed yet."));
+                    }
+                    String prompt = ASK_PROMPT
+                            .replace("{context}", formatContext(passages))
+                            .replace("{question}", question.trim());
+                    log.debug("Answering a question on document {} from {} passages, prompt of ~{} tokens",
+                            documentId, passages.size(), TextChunker.estimateTokens(prompt));
+
+                    Flux<ServerSentEvent<Object>> answer = admissionController.executeMany(() -> chatClient
+                                    .prompt()
+                                    .user(prompt)
+                                    .stream()
+                                    .content())
+                            .filter(token -> !token.isEmpty())
+                            .map(token -> sseEvent("answer", token));
+                    return Flux.just(sseEvent("citations", citations(passages)))
+                            .concatWith(answer)
+                            .concatWith(Mono.just(sseEvent("done", "")));
+                })
+                .onErrorResume(LlmAdmissionController.RejectedException.class, error -> Flux.just(
+                        ServerSentEvent.<Object>builder()
+                                .event("error")
+                                .data(error.getMessage())
+                                .retry(Duration.ofSeconds(error.getRetryAfterSeconds()))
+                                .build()))
+                .onErrorResume(error -> {
+                    log.error("Answering a question on document {} failed", documentId, error);
+                    return Flux.just(sseEvent("error", "Failed to answer the question."));
+                });
+    }
+
+    @Override
+    public void invalidate(String documentId) {
+        String prefix = documentId + "|";
+        contexts.removeIf((key, passages) -> key.startsWith(prefix));
+    }
+
+    /**
+     * The packed passages for a question: its own passages first, then those
+     * of the question it follows up on to fill the remaining budget. The
+     * merge is made per request, so a cached question never carries the
+     * passages of another conversation.
+     */
+    private Mono<List<Passage>> context(String documentId, String question, String previousQuestion) {
+        List<Passage> previous = previousQuestion == null || previousQuestion.isBlank()
+                ? List.of()
+                : contexts.get(key(documentId, previousQuestion)).orElse(List.of());
+
+        return retrieve(documentId, question).map(own -> {
+            if (own.isEmpty()) {
+                return own;
+            }
+            List<Passage> candidates = new ArrayList<>(own);
+            candidates.addAll(previous);
+            return contextPacker.pack(candidates);
+        });
+    }
+
+    /**
+     * The passages closest to a question, retrieved once and then reused for
+     * the same question and for the follow-ups that name it.
+     */
+    private Mono<List<Passage>> retrieve(String documentId, String question) {
+        String key = key(documentId, question);
+        Optional<List<Passage>> cached = contexts.get(key);
+        if (cached.isPresent()) {
+            return Mono.just(cached.get());
+        }
+
+        return retrievals.execute(key, () -> pageEmbedder.embedQuery(question.trim())
+                .publishOn(Schedulers.boundedElastic())
+                .map(vector -> {
+                    List<Passage> passages = pageVectorIndex.search(vector, ef,
+                                    PageVectorIndex.documentFilter(documentId)).stream()
+                            .limit(topK)
+                            .map(hit -> new Passage(hit.pageId(), hit.pageNumber(), hit.chunk(), hit.score()))
+                            .toList();
+                    if (!passages.isEmpty()) {
+                        contexts.put(key, passages);
+                    }
+                    return passages;
+                }));
+    }
+
+    private static String formatContext(List<Passage> passages) {
+        StringBuilder context = new StringBuilder();
+        for (Passage passage : passages) {
+            context.append("[p. ").append(pageLabel(passage)).append("] ")
+                    .append(passage.text().trim())
+                    .append("\n\n");
+        }
+        return context.toString().trim();
+    }
+
+    private static List<AskCitation> citations(List<Passage> passages) {
+        Map<String, AskCitation> pages = new LinkedHashMap<>();
+        for (Passage passage : passages) {
+            pages.putIfAbsent(passage.pageId(), new AskCitation(passage.pageId(), passage.pageNumber()));
+        }
+        return List.copyOf(pages.values());
+    }
+
+    private static String pageLabel(Passage passage) {
+        return passage.pageNumber() != null ? String.valueOf(passage.pageNumber()) : passage.pageId();
+    }
+
+    private static String key(String documentId, String question) {
+        return documentId + "|" + question.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private ServerSentEvent<Object> sseEvent(String event, Object data) {
+        return ServerSentEvent.<Object>builder()
+                .event(event)
+                .data(data)
+                .build();
+    }
+}
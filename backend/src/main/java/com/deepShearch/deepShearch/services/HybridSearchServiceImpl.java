@@ -0,0 +1,195 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse;
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse.DocumentHitDto;
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse.SearchHitDto;
+import com.deepShearch.deepShearch.services.interfaces.HybridSearchService;
+import com.deepShearch.deepShearch.services.interfaces.SemanticSearchService;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs the BM25 and the vector search side by side and merges the two page
+ * rankings with reciprocal rank fusion: a page scores {@code 1 / (rrfK + rank)}
+ * in every ranking it appears in, so pages found by both rise to the top
+ * without having to compare BM25 and cosine scores. The fused list of every
+ * query is cached whole, so paging through it does not search again.
+ */
+@Slf4j
+@Service
+public class HybridSearchServiceImpl implements HybridSearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final PageTextIndex pageTextIndex;
+    private final SemanticSearchService semanticSearchService;
+    private final int depth;
+    private final int rrfK;
+    private final int pagesPerDocument;
+
+    private final LruCache<String, List<DocumentHitDto>> cache;
+    private final SingleFlight<Retrieval> inFlight = new SingleFlight<>();
+    /** Bumped on every invalidation, so a retrieval started before it is not cached after it. */
+    private long generation;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public HybridSearchServiceImpl(PageTextIndex pageTextIndex,
+                                   SemanticSearchService semanticSearchService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${search.hybrid.depth:50}") int depth,
+                                   @Value("${search.hybrid.rrf-k:60}") int rrfK,
+                                   @Value("${search.hybrid.pages-per-document:3}") int pagesPerDocument,
+                                   @Value("${search.hybrid.cache.max-entries:500}") int cacheMaxEntries,
+                                   @Value("${search.hybrid.cache.ttl:PT10M}") Duration cacheTtl) {
+        this.pageTextIndex = pageTextIndex;
+        this.semanticSearchService = semanticSearchService;
+        this.depth = Math.max(1, Math.min(depth, MAX_PAGE_SIZE));
+        this.rrfK = rrfK;
+        this.pagesPerDocument = Math.max(1, pagesPerDocument);
+        this.cache = new LruCache<>(cacheMaxEntries, cacheTtl);
+
+        Gauge.builder("search.hybrid.cache.size", cache, LruCache::size)
+                .description("Fused result lists in the hybrid search cache")
+                .register(meterRegistry);
+        this.cacheHits = Counter.builder("search.hybrid.cache").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("search.hybrid.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    @Override
+    public Mono<HybridSearchResponse> search(String query, String documentId, int page, int size) {
+        if (query == null || query.isBlank()) {
+            return Mono.error(new IllegalArgumentException("Search query is required"));
+        }
+        long start = System.nanoTime();
+        String normalized = query.trim().replaceAll("\\s+", " ");
+        String filter = documentId == null || documentId.isBlank() ? null : documentId;
+        String key = filter + "|" + normalized;
+        int boundedPage = Math.max(0, page);
+        int boundedSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        Optional<List<DocumentHitDto>> cached = cache.get(key);
+        if (cached.isPresent()) {
+            cacheHits.increment();
+            return Mono.just(respond(normalized, boundedPage, boundedSize, start, true, cached.get()));
+        }
+        cacheMisses.increment();
+        return inFlight.execute(key, () -> retrieve(key, normalized, filter))
+                .map(retrieval -> respond(normalized, boundedPage, boundedSize, start, false, retrieval.documents()));
+    }
+
+    @Override
+    public void invalidate(String documentId) {
+        // any cached query may now match the document, so none of them can be kept
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+        }
+        log.debug("Hybrid search cache cleared after document {} changed", documentId);
+    }
+
+    private Mono<Retrieval> retrieve(String key, String query, String documentId) {
+        long startedAt;
+        synchronized (cache) {
+            startedAt = generation;
+        }
+        Mono<List<SearchHitDto>> lexical = Mono
+                .fromCallable(() -> pageTextIndex.search(query, documentId, 0, depth).getHits())
+                .subscribeOn(Schedulers.boundedElastic());
+        Mono<Optional<List<SearchHitDto>>> semantic = semanticSearchService.search(query, documentId, depth, 0)
+                .map(SearchResponse::getHits)
+                .map(Optional::of)
+                .onErrorResume(error -> {
+                    log.warn("Semantic search failed, answering with keyword hits only: {}", error.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+
+        return Mono.zip(lexical, semantic)
+                .map(rankings -> {
+                    List<DocumentHitDto> documents = fuse(rankings.getT1(), rankings.getT2().orElse(List.of()),
+                            rrfK, pagesPerDocument);
+                    // results without the semantic half are served but not kept
+                    if (rankings.getT2().isPresent()) {
+                        synchronized (cache) {
+                            if (generation == startedAt) {
+                                cache.put(key, documents);
+                            }
+                        }
+                    }
+                    return new Retrieval(documents);
+                });
+    }
+
+    /**
+     * Reciprocal rank fusion of page rankings, grouped by document. A document
+     * ranks by its best page and keeps up to {@code pagesPerDocument} pages;
+     * the snippets of the first ranking that found a page are kept.
+     */
+    static List<DocumentHitDto> fuse(List<SearchHitDto> lexical, List<SearchHitDto> semantic, int rrfK,
+                                     int pagesPerDocument) {
+        Map<String, FusedPage> pages = new LinkedHashMap<>();
+        for (List<SearchHitDto> ranking : List.of(lexical, semantic)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                SearchHitDto hit = ranking.get(rank);
+                pages.computeIfAbsent(hit.getDocumentId() + ":" + hit.getPageId(), ignored -> new FusedPage(hit))
+                        .score += 1.0 / (rrfK + rank + 1);
+            }
+        }
+
+        List<FusedPage> ranked = new ArrayList<>(pages.values());
+        ranked.sort(Comparator.comparingDouble((FusedPage page) -> page.score).reversed());
+
+        Map<String, DocumentHitDto> documents = new LinkedHashMap<>();
+        for (FusedPage page : ranked) {
+            SearchHitDto hit = page.hit;
+            DocumentHitDto document = documents.computeIfAbsent(hit.getDocumentId(), id ->
+                    new DocumentHitDto(id, hit.getDocumentVersionId(), page.score, new ArrayList<>()));
+            if (document.getPages().size() < pagesPerDocument) {
+                document.getPages().add(new SearchHitDto(hit.getDocumentId(), hit.getDocumentVersionId(),
+                        hit.getPageId(), hit.getPageNumber(), (float) page.score, hit.getSnippets()));
+            }
+        }
+        return List.copyOf(documents.values());
+    }
+
+    private HybridSearchResponse respond(String query, int page, int size, long start, boolean cached,
+                                         List<DocumentHitDto> documents) {
+        int from = (int) Math.min(documents.size(), (long) page * size);
+        int to = Math.min(documents.size(), from + size);
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        return new HybridSearchResponse(query, documents.size(), page, size, tookMs, cached,
+                documents.subList(from, to));
+    }
+
+    private record Retrieval(List<DocumentHitDto> documents) {
+    }
+
+    private static final class FusedPage {
+        private final SearchHitDto hit;
+        private double score;
+
+        private FusedPage(SearchHitDto hit) {
+            this.hit = hit;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.services.interfaces.ImageVariantService;
+import com.deepShearch.deepShearch.services.interfaces.PageImageService;
+import com.deepShearch.deepShearch.utils.Bulkhead;
+import com.deepShearch.deepShearch.utils.ImageScaling;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Downscaled JPEGs of page images, for the thumbnail strip and small screens.
+ * The source is the full image when a reader already brought it into the
+ * {@link PageImageCache}; otherwise Mayan renders the page at the variant
+ * width, so variants never pull full-resolution originals into the cache. It
+ * is fetched through {@link PageImageService} and scaled on a dedicated pool of
+ * {@code image.variants.workers} threads whose queue is bounded, so a burst
+ * of thumbnails cannot take the CPU from request handling. Rendered variants
+ * are stored in the same cache as the originals, next to them. At most
+ * {@code image.variants.thumbnail-sets.max-concurrent} documents have their
+ * thumbnail set generated at a time, whoever opened them.
+ * <p>
+ * Widths and qualities are rounded to a few steps, so clients asking for
+ * slightly different sizes share the cached variants. When a variant cannot
+ * be rendered, for example because the worker queue is full or the source is
+ * not an image the JDK can decode, Mayan is asked to render the width itself.
+ */
+@Slf4j
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    static final int MIN_WIDTH = 16;
+    static final int MAX_WIDTH = 2048;
+    private static final int WIDTH_STEP = 16;
+    private static final int QUALITY_STEPS = 20;
+
+    private final PageImageService pageImageService;
+    private final PageImageCache cache;
+    private final int workers;
+    private final int thumbnailWidth;
+    private final float thumbnailQuality;
+    private final Scheduler renderers;
+    private final SingleFlight<Optional<PageImageCache.Entry>> renders = new SingleFlight<>();
+    /** Documents whose thumbnail set was generated recently. */
+    private final LruCache<String, Boolean> thumbnailSets;
+    private final Bulkhead thumbnailSetJobs;
+
+    private final Counter hits;
+    private final Counter rendered;
+    private final Counter fallbacks;
+    private final Timer renderTime;
+
+    public ImageVariantServiceImpl(PageImageService pageImageService,
+                                   PageImageCache cache,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${image.variants.workers:2}") int workers,
+                                   @Value("${image.variants.queue-size:256}") int queueSize,
+                                   @Value("${image.variants.thumbnail-width:160}") int thumbnailWidth,
+                                   @Value("${image.variants.thumbnail-quality:0.6}") float thumbnailQuality,
+                                   @Value("${image.variants.thumbnail-set-ttl:PT1H}") Duration thumbnailSetTtl,
+                                   @Value("${image.variants.thumbnail-sets.max-concurrent:2}") int maxConcurrentSets,
+                                   @Value("${image.variants.thumbnail-sets.max-waiting:32}") int maxWaitingSets,
+                                   @Value("${image.variants.thumbnail-sets.max-wait:PT1M}") Duration maxSetWait) {
+        this.pageImageService = pageImageService;
+        this.cache = cache;
+        this.workers = Math.max(1, workers);
+        this.thumbnailWidth = width(thumbnailWidth);
+        this.thumbnailQuality = quality(thumbnailQuality);
+        this.renderers = Schedulers.newBoundedElastic(this.workers, Math.max(1, queueSize), "image-variants");
+        this.thumbnailSets = new LruCache<>(1024, thumbnailSetTtl);
+        this.thumbnailSetJobs = new Bulkhead("thumbnail-sets", Math.max(1, maxConcurrentSets),
+                Math.max(0, maxWaitingSets), maxSetWait);
+
+        this.hits = Counter.builder("page.images.variants").tag("result", "hit").register(meterRegistry);
+        this.rendered = Counter.builder("page.images.variants").tag("result", "rendered").register(meterRegistry);
+        this.fallbacks = Counter.builder("page.images.variants").tag("result", "fallback").register(meterRegistry);
+        this.renderTime = Timer.builder("page.images.variants.render")
+                .description("Time to decode, scale and encode a page image variant")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ResponseEntity<StreamingResponseBody>> getVariant(String documentId, String fileId, String pageId,
+                                                                  Integer width, Float quality,
+                                                                  HttpHeaders requestHeaders) {
+        int w = width != null ? width(width) : thumbnailWidth;
+        float q = quality != null ? quality(quality) : thumbnailQuality;
+        String key = variantKey(documentId, fileId, pageId, w, q);
+        return Mono.fromCallable(() -> cache.get(documentId, key).flatMap(entry -> cache.serve(key, entry, requestHeaders)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(hit -> {
+                    if (hit.isPresent()) {
+                        hits.increment();
+                        return Mono.just(hit.get());
+                    }
+                    return render(documentId, fileId, pageId, w, q, key)
+                            .flatMap(stored -> stored.isEmpty()
+                                    ? Mono.<ResponseEntity<StreamingResponseBody>>empty()
+                                    : Mono.fromCallable(() -> cache.serve(key, stored.get(), requestHeaders))
+                                            .subscribeOn(Schedulers.boundedElastic())
+                                            .flatMap(served -> served.map(Mono::just).orElseGet(Mono::empty)))
+                            .switchIfEmpty(Mono.defer(() -> {
+                                fallbacks.increment();
+                                return pageImageService.getPageImage(documentId, fileId, pageId,
+                                        Map.of("width", Integer.toString(w)), requestHeaders);
+                            }));
+                });
+    }
+
+    @Override
+    public Mono<byte[]> getThumbnail(String documentId, String fileId, String pageId) {
+        String key = variantKey(documentId, fileId, pageId, thumbnailWidth, thumbnailQuality);
+        return Mono.fromCallable(() -> cache.get(documentId, key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> {
+                    if (cached.isPresent()) {
+                        hits.increment();
+                        return Mono.just(cached);
+                    }
+                    return render(documentId, fileId, pageId, thumbnailWidth, thumbnailQuality, key);
+                })
+                .flatMap(entry -> entry.isEmpty()
+                        ? Mono.<byte[]>empty()
+                        : Mono.fromCallable(() -> read(key, entry.get())).subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(bytes -> bytes.map(Mono::just).orElseGet(Mono::empty)));
+    }
+
+    private Optional<byte[]> read(String key, PageImageCache.Entry entry) {
+        try {
+            return Optional.of(Files.readAllBytes(entry.data()));
+        } catch (IOException e) {
+            // evicted meanwhile
+            cache.forget(key);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void generateThumbnails(String documentId, DocumentFilesResponse pages) {
+        if (pages == null || pages.getResults() == null || pages.getResults().isEmpty()
+                || thumbnailSets.get(documentId).isPresent()) {
+            return;
+        }
+        thumbnailSets.put(documentId, Boolean.TRUE);
+        long started = System.nanoTime();
+        thumbnailSetJobs.execute(() -> Flux.fromIterable(pages.getResults())
+                .filter(page -> page.getDocument_file_id() != null && page.getId() != null)
+                .flatMap(page -> {
+                    String fileId = String.valueOf(page.getDocument_file_id());
+                    String pageId = String.valueOf(page.getId());
+                    String key = variantKey(documentId, fileId, pageId, thumbnailWidth, thumbnailQuality);
+                    return Mono.fromCallable(() -> cache.get(documentId, key).isPresent())
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(cached -> cached
+                                    ? Mono.just(true)
+                                    : render(documentId, fileId, pageId, thumbnailWidth, thumbnailQuality, key)
+                                            .map(Optional::isPresent))
+                            .onErrorResume(error -> {
+                                log.debug("Thumbnail of page {} of document {} failed: {}", pageId, documentId,
+                                        error.toString());
+                                return Mono.just(false);
+                            });
+                }, workers)
+                .filter(Boolean::booleanValue)
+                .count())
+                .subscribe(
+                        count -> log.debug("Thumbnails of document {}: {} of {} pages in {} ms", documentId, count,
+                                pages.getResults().size(), Duration.ofNanos(System.nanoTime() - started).toMillis()),
+                        error -> {
+                            // generated on a later open
+                            thumbnailSets.remove(documentId);
+                            if (error instanceof Bulkhead.BulkheadFullException) {
+                                log.debug("Thumbnails of document {} skipped, too many sets queued", documentId);
+                            } else {
+                                log.warn("Thumbnails of document {} failed", documentId, error);
+                            }
+                        });
+    }
+
+    /**
+     * Render a variant into the cache, once for all concurrent callers.
+     *
+     * @return the stored variant, or empty when it could not be rendered
+     */
+    private Mono<Optional<PageImageCache.Entry>> render(String documentId, String fileId, String pageId,
+                                                        int width, float quality, String key) {
+        String originalKey = PageImageCache.key(documentId, fileId, pageId, Map.of());
+        Map<String, String> rendering = Map.of("width", Integer.toString(width));
+        String renderedKey = PageImageCache.key(documentId, fileId, pageId, rendering);
+        return renders.execute(key, () -> Mono.fromCallable(() -> cache.get(documentId, originalKey).isPresent())
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(hasOriginal -> hasOriginal
+                        ? Mono.just(originalKey)
+                        : pageImageService.prefetch(documentId, fileId, pageId, rendering).thenReturn(renderedKey))
+                .flatMap(sourceKey -> Mono.fromCallable(() -> cache.get(documentId, sourceKey).flatMap(source ->
+                                renderTime.record(() -> scale(sourceKey, source, width, quality))))
+                        .subscribeOn(renderers))
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(Optional.empty()))
+                .flatMap(variant -> {
+                    if (variant.isEmpty()) {
+                        return Mono.just(Optional.<PageImageCache.Entry>empty());
+                    }
+                    rendered.increment();
+                    byte[] bytes = variant.get().bytes();
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.IMAGE_JPEG);
+                    headers.setContentLength(bytes.length);
+                    headers.setETag(variant.get().etag());
+                    if (variant.get().lastModified() >= 0) {
+                        headers.setLastModified(variant.get().lastModified());
+                    }
+                    return cache.store(documentId, key, headers,
+                            Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes)));
+                }));
+    }
+
+    private record Variant(byte[] bytes, String etag, long lastModified) {
+    }
+
+    private Optional<Variant> scale(String sourceKey, PageImageCache.Entry source, int width, float quality) {
+        try (InputStream input = Files.newInputStream(source.data())) {
+            return ImageScaling.toJpeg(input, width, quality)
+                    .map(bytes -> new Variant(bytes, etag(source, width, quality), source.lastModified()));
+        } catch (IOException e) {
+            // the source may have been evicted meanwhile; the next request fetches it again
+            cache.forget(sourceKey);
+            log.debug("Could not scale page image {}: {}", source.data(), e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A variant changes exactly when its source or its parameters do.
+     */
+    private static String etag(PageImageCache.Entry source, int width, float quality) {
+        String identity = Objects.toString(source.etag(), "") + "|" + source.lastModified() + "|" + source.length()
+                + "|" + width + "|" + quality;
+        return "\"" + UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static String variantKey(String documentId, String fileId, String pageId, int width, float quality) {
+        return PageImageCache.key(documentId, fileId, pageId,
+                Map.of("variant-width", Integer.toString(width), "variant-quality", Float.toString(quality)));
+    }
+
+    /** Clamp a width and round it up to the next step. */
+    static int width(int width) {
+        int clamped = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, width));
+        return Math.min(MAX_WIDTH, (clamped + WIDTH_STEP - 1) / WIDTH_STEP * WIDTH_STEP);
+    }
+
+    /** Clamp a quality and round it to the nearest step. */
+    static float quality(float quality) {
+        float clamped = Math.max(0.1f, Math.min(1f, quality));
+        return (float) Math.round(clamped * QUALITY_STEPS) / QUALITY_STEPS;
+    }
+
+    @PreDestroy
+    void close() {
+        renderers.dispose();
+    }
+}
@@ -0,0 +1,414 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse.DocumentVersionPageDto;
+import com.deepShearch.deepShearch.Dto.IngestionProgress;
+import com.deepShearch.deepShearch.Model.IngestionJob;
+import com.deepShearch.deepShearch.Model.SummerizeDoc;
+import com.deepShearch.deepShearch.repository.IngestionJobRepository;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
+import com.deepShearch.deepShearch.services.interfaces.DocumentQaService;
+import com.deepShearch.deepShearch.services.interfaces.HybridSearchService;
+import com.deepShearch.deepShearch.services.interfaces.IngestionService;
+import com.deepShearch.deepShearch.services.interfaces.Llmservice;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Runs after an upload: waits until Mayan has created the document version and
+ * finished OCR, then fetches the page text, adds it to the search index, embeds
+ * it for semantic search and pre-computes the page summaries so the first
+ * reader does not pay for them.
+ * Pages that are already indexed, embedded and summarized are skipped, which makes a
+ * restarted ingestion resume where it stopped.
+ */
+@Slf4j
+@Service
+public class IngestionServiceImpl implements IngestionService {
+
+    private static final Set<IngestionJob.Stage> UNFINISHED =
+            EnumSet.of(IngestionJob.Stage.WAITING_OCR, IngestionJob.Stage.PROCESSING_PAGES);
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final SummerizeDocRepository sumerizeDocRepository;
+    private final MayanService mayanService;
+    private final Llmservice llmservice;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PageTextIndex pageTextIndex;
+    private final PageVectorIndex pageVectorIndex;
+    private final PageEmbedder pageEmbedder;
+    private final HybridSearchService hybridSearchService;
+    private final DocumentQaService documentQaService;
+    private final PageOcrCache pageOcrCache;
+
+    private final boolean enabled;
+    private final int ocrConcurrency;
+    private final int summaryConcurrency;
+    private final int embeddingBatchPages;
+    private final int maxPollAttempts;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public IngestionServiceImpl(IngestionJobRepository ingestionJobRepository,
+                                SummerizeDocRepository sumerizeDocRepository,
+                                MayanService mayanService,
+                                Llmservice llmservice,
+                                SimpMessagingTemplate messagingTemplate,
+                                PageTextIndex pageTextIndex,
+                                PageVectorIndex pageVectorIndex,
+                                PageEmbedder pageEmbedder,
+                                HybridSearchService hybridSearchService,
+                                DocumentQaService documentQaService,
+                                PageOcrCache pageOcrCache,
+                                @Value("${ingestion.enabled:true}") boolean enabled,
+                                @Value("${ingestion.ocr-concurrency:4}") int ocrConcurrency,
+                                @Value("${ingestion.summary-concurrency:1}") int summaryConcurrency,
+                                @Value("${ingestion.embedding-batch-pages:8}") int embeddingBatchPages,
+                                @Value("${ingestion.poll.max-attempts:20}") int maxPollAttempts,
+                                @Value("${ingestion.poll.min-backoff:PT5S}") Duration minBackoff,
+                                @Value("${ingestion.poll.max-backoff:PT2M}") Duration maxBackoff) {
+        this.ingestionJobRepository = ingestionJobRepository;
+        this.sumerizeDocRepository = sumerizeDocRepository;
+        this.mayanService = mayanService;
+        this.llmservice = llmservice;
+        this.messagingTemplate = messagingTemplate;
+        this.pageTextIndex = pageTextIndex;
+        this.pageVectorIndex = pageVectorIndex;
+        this.pageEmbedder = pageEmbedder;
+        this.hybridSearchService = hybridSearchService;
+        this.documentQaService = documentQaService;
+        this.pageOcrCache = pageOcrCache;
+        this.enabled = enabled;
+        this.ocrConcurrency = ocrConcurrency;
+        this.summaryConcurrency = summaryConcurrency;
+        this.embeddingBatchPages = Math.max(1, embeddingBatchPages);
+        this.maxPollAttempts = maxPollAttempts;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @Override
+    public void start(String documentId) {
+        ingest(documentId)
+                .subscribe(null, error -> log.error("Could not start ingestion of document {}", documentId, error));
+    }
+
+    @Override
+    public Mono<Void> ingest(String documentId) {
+        if (!enabled || documentId == null) {
+            return Mono.empty();
+        }
+        return blocking(() -> {
+            IngestionJob job = ingestionJobRepository.findById(documentId).orElseGet(IngestionJob::new);
+            job.setDocumentId(documentId);
+            // the active version is resolved again, it may have changed since the last run
+            job.setDocumentVersionId(null);
+            job.setStage(IngestionJob.Stage.WAITING_OCR);
+            job.setProcessedPages(0);
+            job.setError(null);
+            return ingestionJobRepository.save(job);
+        }).flatMap(this::run);
+    }
+
+    @Override
+    public Optional<IngestionProgress> getProgress(String documentId) {
+        return ingestionJobRepository.findById(documentId).map(this::toProgress);
+    }
+
+    /**
+     * Pick up the ingestions that were interrupted by a shutdown.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        if (!enabled) {
+            return;
+        }
+        blocking(() -> ingestionJobRepository.findByStageIn(UNFINISHED))
+                .flatMapMany(Flux::fromIterable)
+                .doOnNext(job -> log.info("Resuming ingestion of document {} at stage {}",
+                        job.getDocumentId(), job.getStage()))
+                .flatMap(this::run, 2)
+                .subscribe(null, error -> log.error("Could not resume unfinished ingestions", error));
+    }
+
+    private Mono<Void> run(IngestionJob job) {
+        String documentId = job.getDocumentId();
+        if (!running.add(documentId)) {
+            log.debug("Ingestion of document {} is already running", documentId);
+            return Mono.empty();
+        }
+
+        return resolveVersion(job)
+                .flatMap(versionId -> waitForOcr(documentId, versionId)
+                        .flatMap(pages -> processPages(job, versionId, pages)))
+                .then(Mono.defer(() -> {
+                    job.setStage(IngestionJob.Stage.COMPLETED);
+                    return saveAndPublish(job);
+                }))
+                .onErrorResume(error -> {
+                    log.error("Ingestion of document {} failed", documentId, error);
+                    job.setStage(IngestionJob.Stage.FAILED);
+                    job.setError(error.getMessage());
+                    return saveAndPublish(job);
+                })
+                .doFinally(signal -> running.remove(documentId));
+    }
+
+    /**
+     * Mayan creates the document version asynchronously after the upload, so
+     * poll the document until it has an active version.
+     */
+    private Mono<String> resolveVersion(IngestionJob job) {
+        if (job.getDocumentVersionId() != null) {
+            return Mono.just(job.getDocumentVersionId());
+        }
+        return mayanService.getDocument(job.getDocumentId())
+                .flatMap(document -> document.getVersionActive() != null && document.getVersionActive().getId() != null
+                        ? Mono.just(String.valueOf(document.getVersionActive().getId()))
+                        : Mono.<String>error(new NotReadyException("document has no active version yet")))
+                .retryWhen(readinessRetry())
+                .flatMap(versionId -> {
+                    job.setDocumentVersionId(versionId);
+                    return saveAndPublish(job).thenReturn(versionId);
+                });
+    }
+
+    /**
+     * Wait until the version has pages and the OCR of its last page is available.
+     * OCR runs in page order, so the last page is the last one to be ready. A
+     * last page that stays empty may simply be blank, so that is not an error.
+     */
+    private Mono<List<DocumentVersionPageDto>> waitForOcr(String documentId, String versionId) {
+        return mayanService.getDocumentVersionPages(documentId, versionId)
+                .filter(pages -> !pages.isEmpty())
+                .switchIfEmpty(Mono.error(new NotReadyException("version has no pages yet")))
+                .retryWhen(readinessRetry())
+                .flatMap(pages -> {
+                    DocumentVersionPageDto lastPage = pages.get(pages.size() - 1);
+                    return pageOcrCache.get(documentId, versionId, String.valueOf(lastPage.getId()))
+                            .filter(ocr -> ocr.getContent() != null && !ocr.getContent().isBlank())
+                            .switchIfEmpty(Mono.error(new NotReadyException("OCR is not finished yet")))
+                            .retryWhen(readinessRetry())
+                            .onErrorResume(Exceptions::isRetryExhausted, error -> {
+                                log.warn("OCR of the last page of document {} is still empty, continuing", documentId);
+                                return Mono.empty();
+                            })
+                            .thenReturn(pages);
+                });
+    }
+
+    private Mono<Void> processPages(IngestionJob job, String versionId, List<DocumentVersionPageDto> pages) {
+        String documentId = job.getDocumentId();
+
+        Mono<Set<String>> summarizedMono = blocking(() -> sumerizeDocRepository
+                .findByDocumentIdAndDocumentVersionId(documentId, versionId)
+                .stream()
+                .map(SummerizeDoc::getDocumentVersionPageId)
+                .collect(Collectors.toSet()));
+        Mono<Set<String>> indexedMono = blocking(() -> {
+            pageOcrCache.retainVersion(documentId, versionId);
+            pageTextIndex.retainVersion(documentId, versionId);
+            return pageTextIndex.indexedPageIds(documentId, versionId);
+        });
+        Mono<Set<String>> embeddedMono = blocking(() -> {
+            pageVectorIndex.retainVersion(documentId, versionId);
+            return pageVectorIndex.indexedPageIds(documentId, versionId);
+        });
+
+        return Mono.zip(summarizedMono, indexedMono, embeddedMono)
+                .flatMap(done -> {
+                    Set<String> summarized = done.getT1();
+                    Set<String> indexed = done.getT2();
+                    Set<String> embedded = done.getT3();
+                    List<DocumentVersionPageDto> missing = pages.stream()
+                            .filter(page -> !summarized.contains(String.valueOf(page.getId()))
+                                    || !indexed.contains(String.valueOf(page.getId()))
+                                    || !embedded.contains(String.valueOf(page.getId())))
+                            .toList();
+                    AtomicInteger processed = new AtomicInteger(pages.size() - missing.size());
+                    AtomicInteger failed = new AtomicInteger();
+
+                    job.setStage(IngestionJob.Stage.PROCESSING_PAGES);
+                    job.setTotalPages(pages.size());
+                    job.setProcessedPages(processed.get());
+                    log.info("Ingesting document {} version {}: {} of {} pages left",
+                            documentId, versionId, missing.size(), pages.size());
+
+                    return saveAndPublish(job)
+                            .thenMany(Flux.fromIterable(missing))
+                            .flatMapSequential(page -> pageOcrCache
+                                    .get(documentId, versionId, String.valueOf(page.getId()))
+                                    .map(ocr -> ocr.getContent() != null ? ocr.getContent() : "")
+                                    .onErrorResume(error -> {
+                                        log.warn("Could not fetch OCR of page {} of document {}: {}",
+                                                page.getId(), documentId, error.getMessage());
+                                        failed.incrementAndGet();
+                                        return Mono.just("");
+                                    })
+                                    .map(content -> new PageText(String.valueOf(page.getId()), page.getPage_number(),
+                                            content)), ocrConcurrency)
+                            .concatMap(page -> index(documentId, versionId, page, indexed, failed).thenReturn(page))
+                            .buffer(embeddingBatchPages)
+                            .concatMap(batch -> embed(documentId, versionId, batch, embedded, failed)
+                                    .then(refreshSearchers())
+                                    .thenMany(Flux.fromIterable(batch)))
+                            .flatMap(page -> (summarized.contains(page.pageId())
+                                    ? Mono.<Void>empty()
+                                    : summarize(documentId, versionId, page, failed))
+                                    .then(Mono.defer(() -> {
+                                        job.setProcessedPages(processed.incrementAndGet());
+                                        return saveAndPublish(job);
+                                    })), summaryConcurrency)
+                            .then(invalidateCaches(documentId))
+                            .then(Mono.fromRunnable(() -> {
+                                if (failed.get() > 0) {
+                                    job.setError(failed.get() + " page(s) could not be pre-processed");
+                                }
+                            }));
+                });
+    }
+
+    private Mono<Void> index(String documentId, String versionId, PageText page, Set<String> indexed,
+                             AtomicInteger failed) {
+        if (indexed.contains(page.pageId()) || page.content().isBlank()) {
+            return Mono.empty();
+        }
+        return Mono.<Void>fromRunnable(() -> pageTextIndex.indexPage(documentId, versionId, page.pageId(),
+                        page.pageNumber(), page.content()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Could not index page {} of document {}: {}", page.pageId(), documentId, error.getMessage());
+                    failed.incrementAndGet();
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> embed(String documentId, String versionId, List<PageText> batch, Set<String> embedded,
+                             AtomicInteger failed) {
+        List<PageEmbedder.Page> pages = batch.stream()
+                .filter(page -> !embedded.contains(page.pageId()) && !page.content().isBlank())
+                .map(page -> new PageEmbedder.Page(page.pageId(), page.pageNumber(), page.content()))
+                .toList();
+        if (pages.isEmpty()) {
+            return Mono.empty();
+        }
+        return pageEmbedder.embedPages(documentId, versionId, pages)
+                .contextWrite(LlmAdmissionController.lane(LlmAdmissionController.Lane.BACKGROUND))
+                .onErrorResume(error -> {
+                    log.warn("Could not embed {} page(s) of document {}: {}",
+                            pages.size(), documentId, error.getMessage());
+                    failed.addAndGet(pages.size());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Make the pages written so far searchable.
+     */
+    private Mono<Void> refreshSearchers() {
+        return Mono.<Void>fromRunnable(() -> {
+                    pageTextIndex.refresh();
+                    pageVectorIndex.refresh();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Drop the search results and question contexts cached while the document
+     * was being ingested, once all of its pages are searchable.
+     */
+    private Mono<Void> invalidateCaches(String documentId) {
+        return Mono.fromRunnable(() -> {
+            hybridSearchService.invalidate(documentId);
+            documentQaService.invalidate(documentId);
+        });
+    }
+
+    private Mono<Void> summarize(String documentId, String versionId, PageText page, AtomicInteger failed) {
+        if (page.content().isBlank()) {
+            return Mono.empty();
+        }
+        return llmservice.summarizePageContent(documentId, versionId, page.pageId(), null, page.content())
+                .contextWrite(LlmAdmissionController.lane(LlmAdmissionController.Lane.BACKGROUND))
+                .onErrorResume(error -> {
+                    log.warn("Could not pre-summarize page {} of document {}: {}",
+                            page.pageId(), documentId, error.getMessage());
+                    failed.incrementAndGet();
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Retry readinessRetry() {
+        return Retry.backoff(maxPollAttempts, minBackoff)
+                .maxBackoff(maxBackoff)
+                .filter(IngestionServiceImpl::isRetryable);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof NotReadyException || error instanceof WebClientRequestException) {
+            return true;
+        }
+        // Mayan answers 404 for OCR content that has not been produced yet
+        return error instanceof WebClientResponseException response
+                && (response.getStatusCode().value() == 404 || response.getStatusCode().is5xxServerError());
+    }
+
+    private Mono<Void> saveAndPublish(IngestionJob job) {
+        return blocking(() -> ingestionJobRepository.save(job))
+                .doOnNext(saved -> publish(toProgress(saved)))
+                .then();
+    }
+
+    private void publish(IngestionProgress progress) {
+        try {
+            messagingTemplate.convertAndSend("/topic/ingestion/" + progress.getDocumentId(), progress);
+        } catch (Exception e) {
+            log.warn("Could not publish ingestion progress of document {}: {}",
+                    progress.getDocumentId(), e.getMessage());
+        }
+    }
+
+    private IngestionProgress toProgress(IngestionJob job) {
+        return new IngestionProgress(job.getDocumentId(), job.getDocumentVersionId(), job.getStage().name(),
+                job.getProcessedPages(), job.getTotalPages(), job.getError());
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private record PageText(String pageId, Integer pageNumber, String content) {
+    }
+
+    private static class NotReadyException extends RuntimeException {
+        NotReadyException(String message) {
+            super(message);
+        }
+    }
+}
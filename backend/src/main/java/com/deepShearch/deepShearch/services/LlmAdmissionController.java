@@ -0,0 +1,340 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Bounds the number of model calls running at once. Calls beyond
+ * {@code maxInFlight} wait in a bounded queue per lane; interactive calls (a
+ * reader waiting for an answer) always start before background calls
+ * (ingestion, backfills). A call that finds its queue full, or cannot start
+ * within its lane's deadline, fails fast with a {@link RejectedException}
+ * carrying a retry hint instead of piling onto an overloaded model.
+ * <p>
+ * The lane is read from the Reactor context, see {@link #lane(Lane)};
+ * calls without one are interactive.
+ */
+@Slf4j
+@Component
+public class LlmAdmissionController {
+
+    private static final String LANE_KEY = LlmAdmissionController.class.getName() + ".lane";
+
+    public enum Lane {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final int maxInFlight;
+    private final Map<Lane, Integer> queueCapacity = new EnumMap<>(Lane.class);
+    private final Map<Lane, Duration> deadline = new EnumMap<>(Lane.class);
+
+    private final Object lock = new Object();
+    private final Map<Lane, Deque<Waiter>> queues = new EnumMap<>(Lane.class);
+    private int inFlight;
+    /** Moving average of how long a permit is held, used for the retry hint. */
+    private volatile double averageHoldMillis = 5_000;
+
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> queueFullRejections = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> timeoutRejections = new EnumMap<>(Lane.class);
+
+    public LlmAdmissionController(MeterRegistry meterRegistry,
+                                  @Value("${llm.admission.max-in-flight:2}") int maxInFlight,
+                                  @Value("${llm.admission.interactive.queue-capacity:16}") int interactiveCapacity,
+                                  @Value("${llm.admission.interactive.deadline:PT30S}") Duration interactiveDeadline,
+                                  @Value("${llm.admission.background.queue-capacity:64}") int backgroundCapacity,
+                                  @Value("${llm.admission.background.deadline:PT10M}") Duration backgroundDeadline) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        queueCapacity.put(Lane.INTERACTIVE, interactiveCapacity);
+        queueCapacity.put(Lane.BACKGROUND, backgroundCapacity);
+        deadline.put(Lane.INTERACTIVE, interactiveDeadline);
+        deadline.put(Lane.BACKGROUND, backgroundDeadline);
+
+        Gauge.builder("llm.admission.in_flight", this, controller -> controller.inFlight)
+                .description("Model calls currently running")
+                .register(meterRegistry);
+        for (Lane lane : Lane.values()) {
+            Deque<Waiter> queue = new ArrayDeque<>();
+            queues.put(lane, queue);
+            String tag = lane.name().toLowerCase();
+            Gauge.builder("llm.admission.queue.depth", queue, this::depth)
+                    .description("Model calls waiting to start")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("llm.admission.wait")
+                    .description("Time model calls waited before starting")
+                    .tag("lane", tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            queueFullRejections.put(lane, Counter.builder("llm.admission.rejected")
+                    .tag("lane", tag)
+                    .tag("reason", "queue_full")
+                    .register(meterRegistry));
+            timeoutRejections.put(lane, Counter.builder("llm.admission.rejected")
+                    .tag("lane", tag)
+                    .tag("reason", "deadline")
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return a context that runs the model calls of a pipeline in {@code lane}
+     */
+    public static Context lane(Lane lane) {
+        return Context.of(LANE_KEY, lane);
+    }
+
+    public static Lane laneOf(ContextView context) {
+        return context.getOrDefault(LANE_KEY, Lane.INTERACTIVE);
+    }
+
+    /**
+     * Run {@code call} once a permit is available, releasing it when the call
+     * completes, fails or is cancelled.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.deferContextual(context -> Mono.usingWhen(
+                acquire(laneOf(context)),
+                permit -> call.get(),
+                this::release,
+                (permit, error) -> release(permit),
+                this::release));
+    }
+
+    /**
+     * Streaming variant of {@link #execute(Supplier)}: the permit is held until the stream ends.
+     */
+    public <T> Flux<T> executeMany(Supplier<Flux<T>> call) {
+        return Flux.deferContextual(context -> Flux.usingWhen(
+                acquire(laneOf(context)),
+                permit -> call.get(),
+                this::release,
+                (permit, error) -> release(permit),
+                this::release));
+    }
+
+    private Mono<Permit> acquire(Lane lane) {
+        return Mono.defer(() -> {
+            long enqueuedAt = System.nanoTime();
+            Waiter waiter = new Waiter(lane, enqueuedAt);
+
+            synchronized (lock) {
+                if (inFlight < maxInFlight && nothingAhead(lane)) {
+                    inFlight++;
+                    return Mono.just(grantedNow(lane, enqueuedAt));
+                }
+                Deque<Waiter> queue = queues.get(lane);
+                if (queue.size() >= queueCapacity.get(lane)) {
+                    queueFullRejections.get(lane).increment();
+                    return Mono.error(new RejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                            "The summarization queue is full", retryAfterSeconds()));
+                }
+                queue.addLast(waiter);
+            }
+
+            return Mono.<Permit>create(sink -> {
+                        sink.onCancel(() -> abandon(waiter));
+                        waiter.attach(sink);
+                    })
+                    .timeout(deadline.get(lane))
+                    .onErrorMap(TimeoutException.class, error -> {
+                        timeoutRejections.get(lane).increment();
+                        return new RejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                                "The model is busy, the request could not start in time", retryAfterSeconds());
+                    });
+        });
+    }
+
+    /**
+     * Must be called while holding {@code lock}.
+     */
+    private boolean nothingAhead(Lane lane) {
+        if (!queues.get(Lane.INTERACTIVE).isEmpty()) {
+            return false;
+        }
+        return lane == Lane.INTERACTIVE || queues.get(Lane.BACKGROUND).isEmpty();
+    }
+
+    private Permit grantedNow(Lane lane, long enqueuedAt) {
+        long now = System.nanoTime();
+        waitTimers.get(lane).record(now - enqueuedAt, TimeUnit.NANOSECONDS);
+        return new Permit(now, new AtomicBoolean());
+    }
+
+    private Mono<Void> release(Permit permit) {
+        return Mono.fromRunnable(() -> releaseNow(permit));
+    }
+
+    private void releaseNow(Permit permit) {
+        if (!permit.released().compareAndSet(false, true)) {
+            return;
+        }
+        double heldMillis = (System.nanoTime() - permit.startedAt()) / 1_000_000.0;
+        averageHoldMillis = averageHoldMillis * 0.8 + heldMillis * 0.2;
+
+        Waiter next;
+        synchronized (lock) {
+            next = nextWaiter();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+            // the permit passes straight to the next waiter, inFlight is unchanged
+        }
+        handOver(next);
+    }
+
+    /**
+     * Must be called while holding {@code lock}. Interactive waiters go first.
+     */
+    private Waiter nextWaiter() {
+        Waiter next = queues.get(Lane.INTERACTIVE).pollFirst();
+        return next != null ? next : queues.get(Lane.BACKGROUND).pollFirst();
+    }
+
+    private void handOver(Waiter waiter) {
+        Permit permit = grantedNow(waiter.lane(), waiter.enqueuedAt());
+        if (!waiter.grant(permit)) {
+            // the waiter gave up in the meantime, pass the permit on
+            releaseNow(permit);
+        }
+    }
+
+    private void abandon(Waiter waiter) {
+        if (waiter.abandon()) {
+            synchronized (lock) {
+                queues.get(waiter.lane()).remove(waiter);
+            }
+        } else {
+            // granted but cancelled before the permit was used
+            Permit permit = waiter.permit();
+            if (permit != null) {
+                releaseNow(permit);
+            }
+        }
+    }
+
+    private int depth(Deque<Waiter> queue) {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    private long retryAfterSeconds() {
+        int waiting;
+        synchronized (lock) {
+            waiting = queues.values().stream().mapToInt(Deque::size).sum();
+        }
+        double seconds = averageHoldMillis * (waiting + 1) / maxInFlight / 1000.0;
+        return Math.max(1, (long) Math.ceil(seconds));
+    }
+
+    private record Permit(long startedAt, AtomicBoolean released) {
+    }
+
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int ABANDONED = 2;
+
+        private final Lane lane;
+        private final long enqueuedAt;
+        private int state = WAITING;
+        private MonoSink<Permit> sink;
+        private Permit permit;
+
+        Waiter(Lane lane, long enqueuedAt) {
+            this.lane = lane;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        Lane lane() {
+            return lane;
+        }
+
+        long enqueuedAt() {
+            return enqueuedAt;
+        }
+
+        void attach(MonoSink<Permit> sink) {
+            Permit granted;
+            synchronized (this) {
+                this.sink = sink;
+                granted = state == GRANTED ? permit : null;
+            }
+            if (granted != null) {
+                sink.success(granted);
+            }
+        }
+
+        boolean grant(Permit permit) {
+            MonoSink<Permit> attached;
+            synchronized (this) {
+                if (state != WAITING) {
+                    return false;
+                }
+                state = GRANTED;
+                this.permit = permit;
+                attached = sink;
+            }
+            // signal outside the monitor, the call may start right away on this thread
+            if (attached != null) {
+                attached.success(permit);
+            }
+            return true;
+        }
+
+        synchronized boolean abandon() {
+            if (state == GRANTED) {
+                return false;
+            }
+            state = ABANDONED;
+            return true;
+        }
+
+        synchronized Permit permit() {
+            return permit;
+        }
+    }
+
+    /**
+     * Thrown when a model call is shed instead of queued.
+     */
+    @Getter
+    public static class RejectedException extends RuntimeException {
+
+        private final HttpStatus status;
+        private final long retryAfterSeconds;
+
+        public RejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+            super(message);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+}
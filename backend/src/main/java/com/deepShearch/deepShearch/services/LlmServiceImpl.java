@@ -1,39 +1,121 @@
 package com.deepShearch.deepShearch.services;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 
 import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse.DocumentVersionPageDto;
 import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
 import com.deepShearch.deepShearch.Model.SummerizeDoc;
 import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
 import com.deepShearch.deepShearch.services.interfaces.Llmservice;
 import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.utils.TextChunker;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @Service
 public class LlmServiceImpl implements Llmservice {
+
+    private static final String SUMMARY_PROMPT = """
+            Summarize the following text concisely:
+
+            {content}
+
+            Produce the result in **valid JSON only**, in the following structure:
+
+            {
+              "summary": "A brief summary of the content.",
+              "keywords": ["keyword1", "keyword2", "keyword3"]
+            }
+            """;
+
+    private static final String REDUCE_PROMPT = """
+            The following texts are summaries of consecutive parts of the same document.
+            Combine them into one concise summary of the whole, and keep the most relevant keywords:
+
+            {content}
+
+            Produce the result in **valid JSON only**, in the following structure:
+
+            {
+              "summary": "A brief summary of the content.",
+              "keywords": ["keyword1", "keyword2", "keyword3"]
+            }
+            """;
+
+    /** Answered for a page without OCR text, which is never stored: OCR may just not be done yet. */
+    private static final String NO_TEXT_SUMMARY = "Page has no text to summarize.";
+
+    @Value("${llm.document.ocr-concurrency:8}")
+    private int ocrConcurrency;
+
+    @Value("${llm.document.llm-concurrency:2}")
+    private int llmConcurrency;
+
+    @Value("${llm.document.reduce-batch-chars:6000}")
+    private int reduceBatchChars;
+
     private final ChatClient chatClient;
     private final ObjectMapper objectMapper;
     private final MayanService mayanService;
     private final SummerizeDocRepository    sumerizeDocRepository;
+    private final SummaryCoordinator summaryCoordinator;
+    private final SummaryContentStore summaryContentStore;
+    private final TextChunker textChunker;
+    private final int chunkConcurrency;
+    private final SummaryBatcher summaryBatcher;
+    private final LlmAdmissionController admissionController;
+    private final PageOcrCache pageOcrCache;
 
 
     public LlmServiceImpl(ChatClient.Builder chatClientBuilder,
-                          ObjectMapper objectMapper,MayanService mayanService, SummerizeDocRepository sumerizeDocRepository) {
+                          ObjectMapper objectMapper,MayanService mayanService, SummerizeDocRepository sumerizeDocRepository,
+                          SummaryCoordinator summaryCoordinator,
+                          SummaryContentStore summaryContentStore,
+                          LlmAdmissionController admissionController,
+                          PageOcrCache pageOcrCache,
+                          @Value("${llm.chunk.max-tokens:1500}") int chunkMaxTokens,
+                          @Value("${llm.chunk.overlap-tokens:150}") int chunkOverlapTokens,
+                          @Value("${llm.chunk.concurrency:3}") int chunkConcurrency,
+                          @Value("${llm.batch.max-page-tokens:300}") int batchMaxPageTokens,
+                          @Value("${llm.batch.max-batch-tokens:1200}") int batchMaxTokens,
+                          @Value("${llm.batch.max-pages:8}") int batchMaxPages,
+                          @Value("${llm.batch.window:PT0.2S}") Duration batchWindow) {
         this.mayanService = mayanService;
         this.objectMapper = objectMapper;
         this.chatClient = chatClientBuilder.build();
         this.sumerizeDocRepository = sumerizeDocRepository;
+        this.summaryCoordinator = summaryCoordinator;
+        this.summaryContentStore = summaryContentStore;
+        this.admissionController = admissionController;
+        this.pageOcrCache = pageOcrCache;
+        this.textChunker = new TextChunker(chunkMaxTokens, chunkOverlapTokens);
+        this.chunkConcurrency = chunkConcurrency;
+        this.summaryBatcher = new SummaryBatcher(this::callModel,
+                content -> callModel(buildSummaryPrompt(content)).map(this::parseOrFail),
+                objectMapper, batchMaxPageTokens, batchMaxTokens, batchMaxPages, batchWindow);
     }
 
     @Override
@@ -50,65 +132,507 @@ public class LlmServiceImpl implements Llmservice {
             );
         }
 
-        Optional<SummerizeDoc> existingSummary = sumerizeDocRepository.findFirstByDocumentIdAndDocumentVersionIdAndDocumentVersionPageIdOrderByCreatedAtDesc(docId,documentVersionId, documentVersionPageId);
+        Optional<AiSumarizeResponse> existingSummary = findExistingSummary(docId, documentVersionId, documentVersionPageId);
         if (existingSummary.isPresent()) {
-            SummerizeDoc summaryDoc = existingSummary.get();
-            List<String> keywords = objectMapper.convertValue(summaryDoc.getKeyWords(), List.class);
-            return new AiSumarizeResponse(summaryDoc.getSummary(), keywords);
+            return existingSummary.get();
+        }
+
+        return summarizePage(docId, documentVersionId, documentVersionPageId, userId)
+                .onErrorResume(SummaryParseException.class, error -> Mono.just(new AiSumarizeResponse(
+                        "Failed to parse AI response.",
+                        List.of()
+                )))
+                .defaultIfEmpty(new AiSumarizeResponse(NO_TEXT_SUMMARY, List.of()))
+                .block();
+    }
+
+    @Override
+    public Flux<ServerSentEvent<Object>> streamSummary(
+            String docId,
+            String documentVersionId,
+            String documentVersionPageId,
+            String userId
+    ) {
+        if (docId == null || documentVersionId == null || documentVersionPageId == null) {
+            return Flux.just(sseEvent("error", "Invalid document identifiers provided."));
         }
 
-        Mono<MayanDocumentPageOCRResponse> contentMono =
-                mayanService.getDocumentPageOCR(docId, documentVersionId, documentVersionPageId);
+        Mono<Optional<AiSumarizeResponse>> existing = Mono
+                .fromCallable(() -> findExistingSummary(docId, documentVersionId, documentVersionPageId))
+                .subscribeOn(Schedulers.boundedElastic());
 
-        String ocrContent = contentMono.block().getContent();
+        return existing.flatMapMany(found -> {
+            if (found.isPresent()) {
+                return completeSummaryEvents(found.get());
+            }
+            // one reader, here or on another instance, streams the model answer; the others get its result
+            return summaryCoordinator.stream(pageKey(docId, documentVersionId, documentVersionPageId),
+                    () -> findExistingSummary(docId, documentVersionId, documentVersionPageId),
+                    result -> pageOcrCache.get(docId, documentVersionId, documentVersionPageId)
+                            .mapNotNull(MayanDocumentPageOCRResponse::getContent)
+                            // a blank page is neither hashed nor stored, and leaves the result empty
+                            .filter(ocrContent -> !ocrContent.isBlank())
+                            .flatMapMany(ocrContent -> {
+                                // identical text may already have been summarized for another page
+                                String contentHash = summaryContentStore.hash(ocrContent);
+                                return summaryContentStore.lookup(contentHash)
+                                        .flatMapMany(known -> Mono
+                                                .fromRunnable(() -> saveSummary(docId, documentVersionId,
+                                                        documentVersionPageId, userId, ocrContent, contentHash, known))
+                                                .subscribeOn(Schedulers.boundedElastic())
+                                                .doOnSuccess(done -> result.tryEmitValue(known))
+                                                .thenMany(completeSummaryEvents(known)))
+                                        .switchIfEmpty(Flux.defer(() -> {
+                                            summaryContentStore.recordMiss();
+                                            return streamFromModel(docId, documentVersionId, documentVersionPageId,
+                                                    userId, ocrContent, contentHash, result);
+                                        }));
+                            }),
+                    this::completeSummaryEvents)
+                    .switchIfEmpty(Flux.defer(() -> completeSummaryEvents(
+                            new AiSumarizeResponse(NO_TEXT_SUMMARY, List.of()))));
+        }).onErrorResume(LlmAdmissionController.RejectedException.class, error -> Flux.just(
+                ServerSentEvent.<Object>builder()
+                        .event("error")
+                        .data(error.getMessage())
+                        .retry(Duration.ofSeconds(error.getRetryAfterSeconds()))
+                        .build())
+        ).onErrorResume(error -> {
+            log.error("Streaming summary failed for document {} page {}", docId, documentVersionPageId, error);
+            return Flux.just(sseEvent("error", "Failed to generate summary."));
+        });
+    }
 
-        String PROMPT = """
-            Summarize the following text concisely:
+    @Override
+    public Mono<AiSumarizeResponse> generateDocumentSummary(String docId, String documentVersionId, String userId) {
+        if (docId == null || documentVersionId == null) {
+            return Mono.just(new AiSumarizeResponse("Invalid document identifiers provided.", List.of()));
+        }
 
-            {content}
+        Mono<List<SummerizeDoc>> storedMono = Mono
+                .fromCallable(() -> sumerizeDocRepository.findByDocumentIdAndDocumentVersionId(docId, documentVersionId))
+                .subscribeOn(Schedulers.boundedElastic());
 
-            Produce the result in **valid JSON only**, in the following structure:
+        return storedMono.flatMap(stored -> {
+            Optional<SummerizeDoc> documentSummary = stored.stream()
+                    .filter(doc -> SummerizeDoc.DOCUMENT_SUMMARY_PAGE_ID.equals(doc.getDocumentVersionPageId()))
+                    .findFirst();
+            if (documentSummary.isPresent()) {
+                return Mono.just(toResponse(documentSummary.get()));
+            }
 
-            {
-              "summary": "A brief summary of the content.",
-              "keywords": ["keyword1", "keyword2", "keyword3"]
+            Map<String, SummerizeDoc> storedPages = stored.stream()
+                    .collect(Collectors.toMap(SummerizeDoc::getDocumentVersionPageId, Function.identity(),
+                            (first, second) -> first));
+
+            return mayanService.getDocumentVersionPages(docId, documentVersionId)
+                    .flatMap(pages -> summarizePages(docId, documentVersionId, userId, pages, storedPages))
+                    .flatMap(summarized -> reduceSummaries(summarized.summaries())
+                            .flatMap(result -> {
+                                // the stored document summary is never regenerated, so it must cover every page
+                                if (summarized.failedPages() > 0) {
+                                    log.warn("Document {} version {}: {} pages could not be summarized, "
+                                                    + "the document summary is returned but not stored",
+                                            docId, documentVersionId, summarized.failedPages());
+                                    return Mono.just(result);
+                                }
+                                return Mono
+                                        .fromCallable(() -> {
+                                            saveSummary(docId, documentVersionId,
+                                                    SummerizeDoc.DOCUMENT_SUMMARY_PAGE_ID, userId,
+                                                    result.getSummary(), result);
+                                            return result;
+                                        })
+                                        .subscribeOn(Schedulers.boundedElastic());
+                            }));
+        }).defaultIfEmpty(new AiSumarizeResponse("Document has no text to summarize.", List.of()));
+    }
+
+    /**
+     * Page summaries ordered by page number, and how many pages with text, or
+     * whose text could not be read, are missing from them.
+     */
+    private record PageSummaries(List<AiSumarizeResponse> summaries, int failedPages) {
+    }
+
+    /**
+     * Map step: reuse stored page summaries and summarize the missing pages,
+     * fetching OCR and calling the model with bounded concurrency. A page that
+     * fails is left out and counted.
+     */
+    private Mono<PageSummaries> summarizePages(String docId, String documentVersionId, String userId,
+                                                          List<DocumentVersionPageDto> pages,
+                                                          Map<String, SummerizeDoc> storedPages) {
+        Map<Integer, AiSumarizeResponse> byPageNumber = new TreeMap<>();
+        List<DocumentVersionPageDto> missing = new ArrayList<>();
+        for (DocumentVersionPageDto page : pages) {
+            SummerizeDoc stored = storedPages.get(String.valueOf(page.getId()));
+            if (stored != null) {
+                byPageNumber.put(pageNumber(page), toResponse(stored));
+            } else {
+                missing.add(page);
             }
-            """;
+        }
+        log.info("Summarizing document {} version {}: {} pages stored, {} to summarize",
+                docId, documentVersionId, byPageNumber.size(), missing.size());
+        AtomicInteger failed = new AtomicInteger();
+
+        return Flux.fromIterable(missing)
+                .flatMap(page -> pageOcrCache
+                        .get(docId, documentVersionId, String.valueOf(page.getId()))
+                        .map(ocr -> Map.entry(page, ocr.getContent() != null ? ocr.getContent() : ""))
+                        .onErrorResume(error -> {
+                            failed.incrementAndGet();
+                            log.warn("Skipping page {} of document {}, OCR failed: {}",
+                                    page.getId(), docId, error.getMessage());
+                            return Mono.empty();
+                        }), ocrConcurrency)
+                .filter(entry -> !entry.getValue().isBlank())
+                .flatMap(entry -> {
+                    String pageId = String.valueOf(entry.getKey().getId());
+                    return summaryCoordinator
+                            .summarize(pageKey(docId, documentVersionId, pageId),
+                                    () -> findExistingSummary(docId, documentVersionId, pageId),
+                                    () -> summarizeAndSave(docId, documentVersionId, pageId, userId, entry.getValue()))
+                            .map(response -> Map.entry(pageNumber(entry.getKey()), response))
+                            // shed load is reported to the caller rather than hidden in a partial summary
+                            .onErrorResume(error -> !(error instanceof LlmAdmissionController.RejectedException), error -> {
+                                failed.incrementAndGet();
+                                log.warn("Skipping page {} of document {}: {}",
+                                        entry.getKey().getId(), docId, error.getMessage());
+                                return Mono.empty();
+                            });
+                }, llmConcurrency)
+                .collectList()
+                .map(summarized -> {
+                    summarized.forEach(entry -> byPageNumber.put(entry.getKey(), entry.getValue()));
+                    return new PageSummaries(List.copyOf(byPageNumber.values()), failed.get());
+                });
+    }
+
+    private Integer pageNumber(DocumentVersionPageDto page) {
+        return page.getPage_number() != null ? page.getPage_number() : page.getId();
+    }
+
+    /**
+     * Reduce step: merge partial summaries in groups bounded by
+     * {@code reduceBatchChars}, in parallel, until a single summary remains.
+     */
+    private Mono<AiSumarizeResponse> reduceSummaries(List<AiSumarizeResponse> partials) {
+        if (partials.isEmpty()) {
+            return Mono.empty();
+        }
+        if (partials.size() == 1) {
+            return Mono.just(partials.get(0));
+        }
+        return Flux.fromIterable(reduceGroups(partials))
+                .flatMapSequential(this::reduceGroup, llmConcurrency)
+                .collectList()
+                .flatMap(this::reduceSummaries);
+    }
+
+    /**
+     * Merge partial summaries in bounded groups only until they fit together
+     * in {@code reduceBatchChars}, so the caller can merge them in one prompt.
+     */
+    private Mono<List<AiSumarizeResponse>> reduceUntilFits(List<AiSumarizeResponse> partials) {
+        int chars = partials.stream().mapToInt(partial -> length(partial.getSummary())).sum();
+        if (partials.size() <= 1 || chars <= reduceBatchChars) {
+            return Mono.just(partials);
+        }
+        return Flux.fromIterable(reduceGroups(partials))
+                .flatMapSequential(this::reduceGroup, llmConcurrency)
+                .collectList()
+                .flatMap(this::reduceUntilFits);
+    }
+
+    /**
+     * Split partial summaries into consecutive groups of about {@code reduceBatchChars}.
+     */
+    private List<List<AiSumarizeResponse>> reduceGroups(List<AiSumarizeResponse> partials) {
+        List<List<AiSumarizeResponse>> groups = new ArrayList<>();
+        List<AiSumarizeResponse> current = new ArrayList<>();
+        int currentChars = 0;
+        for (AiSumarizeResponse partial : partials) {
+            int length = length(partial.getSummary());
+            // every group holds at least two summaries so each round shrinks the list
+            if (current.size() >= 2 && currentChars + length > reduceBatchChars) {
+                groups.add(current);
+                current = new ArrayList<>();
+                currentChars = 0;
+            }
+            current.add(partial);
+            currentChars += length;
+        }
+        groups.add(current);
+        return groups;
+    }
+
+    private static int length(String text) {
+        return text != null ? text.length() : 0;
+    }
+
+    private Mono<AiSumarizeResponse> reduceGroup(List<AiSumarizeResponse> group) {
+        if (group.size() == 1) {
+            return Mono.just(group.get(0));
+        }
+        String content = group.stream()
+                .map(AiSumarizeResponse::getSummary)
+                .collect(Collectors.joining("\n\n---\n\n"));
+
+        return callModel(REDUCE_PROMPT.replace("{content}", content))
+                .map(aiResult -> {
+                    try {
+                        return parseSummary(aiResult);
+                    } catch (Exception e) {
+                        // keep the partial results rather than losing the whole group
+                        return new AiSumarizeResponse(content, mergeKeywords(group));
+                    }
+                });
+    }
+
+    private List<String> mergeKeywords(List<AiSumarizeResponse> group) {
+        return group.stream()
+                .filter(response -> response.getKeywords() != null)
+                .flatMap(response -> response.getKeywords().stream())
+                .collect(Collectors.groupingBy(keyword -> keyword.toLowerCase(), LinkedHashMap::new, Collectors.counting()))
+                .entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(15)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Forward summary tokens as the model produces them, then persist the
+     * parsed result and emit the keywords once the JSON answer is complete.
+     * The parsed result also completes {@code result}, for the readers waiting on it.
+     */
+    private Flux<ServerSentEvent<Object>> streamFromModel(String docId, String documentVersionId,
+                                                          String documentVersionPageId, String userId,
+                                                          String ocrContent, String contentHash,
+                                                          Sinks.One<AiSumarizeResponse> result) {
+        SummaryStreamParser parser = new SummaryStreamParser();
+
+        Flux<ServerSentEvent<Object>> tokens = preparePrompt(ocrContent)
+                .flatMapMany(prompt -> admissionController.executeMany(() -> chatClient
+                        .prompt()
+                        .user(prompt)
+                        .stream()
+                        .content()))
+                .map(parser::feed)
+                .filter(token -> !token.isEmpty())
+                .map(token -> sseEvent("summary", token));
+
+        Mono<ServerSentEvent<Object>> keywords = Mono
+                .fromCallable(() -> {
+                    AiSumarizeResponse response = parseSummary(parser.raw());
+                    saveSummary(docId, documentVersionId, documentVersionPageId, userId,
+                            ocrContent, contentHash, response);
+                    return response;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(response -> summaryContentStore.store(contentHash, response).thenReturn(response))
+                .doOnNext(result::tryEmitValue)
+                .map(response -> sseEvent("keywords", response.getKeywords()));
+
+        return tokens
+                .concatWith(keywords)
+                .concatWith(Mono.just(sseEvent("done", "")));
+    }
+
+    private Flux<ServerSentEvent<Object>> completeSummaryEvents(AiSumarizeResponse response) {
+        return Flux.just(
+                sseEvent("summary", response.getSummary()),
+                sseEvent("keywords", response.getKeywords()),
+                sseEvent("done", ""));
+    }
+
+    @Override
+    public Mono<AiSumarizeResponse> summarizePageContent(String docId, String documentVersionId,
+                                                         String documentVersionPageId, String userId,
+                                                         String content) {
+        return summaryCoordinator.summarize(pageKey(docId, documentVersionId, documentVersionPageId),
+                () -> findExistingSummary(docId, documentVersionId, documentVersionPageId),
+                () -> summarizeAndSave(docId, documentVersionId, documentVersionPageId, userId, content));
+    }
+
+    /**
+     * Summarize one page, coalescing concurrent requests for it in this JVM
+     * and across instances through the summary claim table.
+     */
+    @Override
+    public Mono<AiSumarizeResponse> summarizePage(String docId, String documentVersionId,
+                                                   String documentVersionPageId, String userId) {
+        return summaryCoordinator.summarize(pageKey(docId, documentVersionId, documentVersionPageId),
+                () -> findExistingSummary(docId, documentVersionId, documentVersionPageId),
+                () -> pageOcrCache.get(docId, documentVersionId, documentVersionPageId)
+                        .mapNotNull(MayanDocumentPageOCRResponse::getContent)
+                        .flatMap(content -> summarizeAndSave(docId, documentVersionId,
+                                documentVersionPageId, userId, content)));
+    }
+
+    /**
+     * @return the summary of {@code content}, stored for the page, or empty when
+     *         the page has no text: every blank page would share one content hash
+     */
+    private Mono<AiSumarizeResponse> summarizeAndSave(String docId, String documentVersionId,
+                                                      String documentVersionPageId, String userId,
+                                                      String content) {
+        if (content == null || content.isBlank()) {
+            return Mono.empty();
+        }
+        String contentHash = summaryContentStore.hash(content);
+        return summaryContentStore.getOrCompute(contentHash, () -> summarizeContent(content))
+                .flatMap(response -> Mono
+                        .fromCallable(() -> {
+                            saveSummary(docId, documentVersionId, documentVersionPageId, userId,
+                                    content, contentHash, response);
+                            return response;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<AiSumarizeResponse> summarizeContent(String content) {
+        if (summaryBatcher.accepts(content)) {
+            return summaryBatcher.submit(content);
+        }
+        return preparePrompt(content)
+                .flatMap(this::callModel)
+                .map(this::parseOrFail);
+    }
 
-        String finalPrompt = PROMPT.replace("{content}", ocrContent);
+    /**
+     * Build the summary prompt for {@code content}. Text over the token budget
+     * is split into overlapping chunks that are summarized concurrently, and the
+     * prompt then asks to merge those chunk summaries, first merged in groups
+     * of {@code reduceBatchChars} when they are too long together, so the prompt size stays
+     * bounded whatever the size of the page.
+     */
+    private Mono<String> preparePrompt(String content) {
+        if (textChunker.fits(content)) {
+            return Mono.just(buildSummaryPrompt(content));
+        }
+        List<String> chunks = textChunker.split(content);
+        log.info("Page text of ~{} tokens split into {} chunks", TextChunker.estimateTokens(content), chunks.size());
 
-        String aiResult = chatClient
-                .prompt()
-                .user(finalPrompt)
-                .call()
-                .content();
+        return Flux.fromIterable(chunks)
+                .flatMapSequential(chunk -> callModel(buildSummaryPrompt(chunk))
+                        .map(this::parseOrFail)
+                        .onErrorResume(SummaryParseException.class, error -> Mono.empty()), chunkConcurrency)
+                .collectList()
+                .flatMap(summaries -> summaries.isEmpty()
+                        ? Mono.<List<AiSumarizeResponse>>error(new SummaryParseException(new IllegalStateException("No chunk could be summarized")))
+                        // a very long page has many chunk summaries: merge them in bounded groups first
+                        : reduceUntilFits(summaries))
+                .map(summaries -> REDUCE_PROMPT.replace("{content}", summaries.stream()
+                        .map(AiSumarizeResponse::getSummary)
+                        .collect(Collectors.joining("\n\n---\n\n"))));
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
+    private AiSumarizeResponse parseOrFail(String aiResult) {
+        try {
+            return parseSummary(aiResult);
+        } catch (Exception e) {
+            throw new SummaryParseException(e);
+        }
+    }
+
+    private String pageKey(String docId, String documentVersionId, String documentVersionPageId) {
+        return docId + ":" + documentVersionId + ":" + documentVersionPageId;
+    }
 
+    /**
+     * Blocking model call, started once the admission controller lets it in.
+     */
+    private Mono<String> callModel(String prompt) {
+        return admissionController.execute(() -> Mono
+                .fromCallable(() -> chatClient
+                        .prompt()
+                        .user(prompt)
+                        .call()
+                        .content())
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Optional<AiSumarizeResponse> findExistingSummary(String docId, String documentVersionId,
+                                                             String documentVersionPageId) {
+        return sumerizeDocRepository
+                .findFirstByDocumentIdAndDocumentVersionIdAndDocumentVersionPageIdOrderByCreatedAtDesc(
+                        docId, documentVersionId, documentVersionPageId)
+                .map(this::toResponse);
+    }
+
+    private AiSumarizeResponse toResponse(SummerizeDoc summaryDoc) {
+        List<String> keywords = objectMapper.convertValue(summaryDoc.getKeyWords(), List.class);
+        return new AiSumarizeResponse(summaryDoc.getSummary(), keywords);
+    }
+
+    private String buildSummaryPrompt(String content) {
+        return SUMMARY_PROMPT.replace("{content}", content == null ? "" : content);
+    }
+
+    /**
+     * Parse the model answer into a summary. qwen3 may prepend a
+     * {@code <think>} block, so only the outermost JSON object is read.
+     */
+    private AiSumarizeResponse parseSummary(String aiResult) throws Exception {
+        String json = aiResult;
+        int thinkEnd = json.lastIndexOf("</think>");
+        if (thinkEnd >= 0) {
+            json = json.substring(thinkEnd + "</think>".length());
+        }
+        int start = json.indexOf('{');
+        int end = json.lastIndexOf('}');
+        if (start >= 0 && end > start) {
+            json = json.substring(start, end + 1);
+        }
+
+        JsonNode node = objectMapper.readTree(json);
+        String summary = node.get("summary").asText();
+
+        List<String> keywords = new ArrayList<>();
+        if (node.has("keywords")) {
+            node.get("keywords").forEach(keyword -> keywords.add(keyword.asText()));
+        }
+        return new AiSumarizeResponse(summary, keywords);
+    }
+
+    private void saveSummary(String docId, String documentVersionId, String documentVersionPageId,
+                             String userId, String ocrContent, AiSumarizeResponse response) {
+        saveSummary(docId, documentVersionId, documentVersionPageId, userId, ocrContent, null, response);
+    }
+
+    private void saveSummary(String docId, String documentVersionId, String documentVersionPageId,
+                             String userId, String ocrContent, String contentHash, AiSumarizeResponse response) {
+        String content = ocrContent == null ? "" : ocrContent;
+        SummerizeDoc summerizeDoc = new SummerizeDoc();
+        summerizeDoc.setTitle(content.substring(0, Math.min(100, content.length())));
+        summerizeDoc.setDocumentId(docId);
+        summerizeDoc.setDocumentVersionId(documentVersionId);
+        summerizeDoc.setDocumentVersionPageId(documentVersionPageId);
+        summerizeDoc.setSummary(response.getSummary());
+        summerizeDoc.setKeyWords(response.getKeywords());
+        summerizeDoc.setUserId(userId);
+        summerizeDoc.setContentHash(contentHash);
         try {
-            JsonNode json = mapper.readTree(aiResult);
-
-            String summary = json.get("summary").asText();
-
-            List<String> keywords = new ArrayList<>();
-            json.get("keywords").forEach(node -> keywords.add(node.asText()));
-            SummerizeDoc summerizeDoc = new SummerizeDoc();
-            summerizeDoc.setTitle(ocrContent.substring(0, Math.min(100, ocrContent.length())));
-            summerizeDoc.setDocumentId(docId);
-            summerizeDoc.setDocumentVersionId(documentVersionId);
-            summerizeDoc.setDocumentVersionPageId(documentVersionPageId);
-            summerizeDoc.setSummary(summary);
-            summerizeDoc.setKeyWords(keywords);
-            summerizeDoc.setUserId(userId);
             sumerizeDocRepository.save(summerizeDoc);
-            return new AiSumarizeResponse(summary, keywords);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Summary for document {} page {} was already stored", docId, documentVersionPageId);
+        }
+    }
 
-        } catch (Exception e) {
-            return new AiSumarizeResponse(
-                    "Failed to parse AI response.",
-                    List.of()
-            );
+    private static class SummaryParseException extends RuntimeException {
+        SummaryParseException(Throwable cause) {
+            super("Failed to parse AI response.", cause);
         }
     }
 
+    private ServerSentEvent<Object> sseEvent(String event, Object data) {
+        return ServerSentEvent.<Object>builder()
+                .event(event)
+                .data(data)
+                .build();
+    }
+
     }
@@ -0,0 +1,213 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.deepShearch.deepShearch.utils.Bulkhead;
+import com.deepShearch.deepShearch.utils.CircuitBreaker;
+import com.deepShearch.deepShearch.utils.Hedging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+/**
+ * The HTTP client layer in front of Mayan. Every kind of call has its own
+ * connection pool, bulkhead, timeout and circuit breaker, so a stalled image
+ * render cannot take the connections or the failure budget of OCR reads.
+ * Idempotent reads are retried on transient failures with exponential backoff
+ * and jitter, and image and OCR reads can be hedged.
+ * <p>
+ * Each {@link Endpoint} is tuned under {@code mayan.client.<endpoint>}, e.g.
+ * {@code mayan.client.ocr.timeout}; unset properties fall back to the
+ * defaults of the endpoint. Pool metrics are published by Reactor Netty as
+ * {@code reactor.netty.connection.provider.*} with the pool name as tag.
+ */
+@Slf4j
+@Component
+public class MayanClient {
+
+    /**
+     * @param retries     retries of a failed read, 0 for calls that change data
+     * @param hedgeDelay  delay before a hedged second attempt, zero to never hedge
+     */
+    public enum Endpoint {
+        LIST(8, 32, Duration.ofSeconds(10), 2, Duration.ZERO),
+        DOCUMENT(16, 64, Duration.ofSeconds(10), 2, Duration.ZERO),
+        OCR(8, 256, Duration.ofSeconds(15), 2, Duration.ofSeconds(2)),
+        IMAGE(16, 128, Duration.ofSeconds(30), 1, Duration.ZERO),
+        WRITE(4, 16, Duration.ofMinutes(30), 0, Duration.ZERO);
+
+        private final int maxConcurrent;
+        private final int maxWaiting;
+        private final Duration timeout;
+        private final int retries;
+        private final Duration hedgeDelay;
+
+        Endpoint(int maxConcurrent, int maxWaiting, Duration timeout, int retries, Duration hedgeDelay) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaiting = maxWaiting;
+            this.timeout = timeout;
+            this.retries = retries;
+            this.hedgeDelay = hedgeDelay;
+        }
+
+        String property() {
+            return name().toLowerCase();
+        }
+    }
+
+    private record Policy(WebClient webClient, ConnectionProvider pool, Bulkhead bulkhead, CircuitBreaker breaker,
+                          Duration timeout, Retry retry, Duration hedgeDelay,
+                          Counter retried, Counter hedged, Counter rejected) {
+    }
+
+    private final Map<Endpoint, Policy> policies = new EnumMap<>(Endpoint.class);
+
+    public MayanClient(@Value("${host.mayan.url}") String mayanUrl,
+                       @Value("${host.mayan.username}") String username,
+                       @Value("${host.mayan.password}") String password,
+                       Environment environment,
+                       MeterRegistry meterRegistry) {
+        String authHeader = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes());
+        Duration connectTimeout = environment.getProperty("mayan.client.connect-timeout", Duration.class,
+                Duration.ofSeconds(5));
+        Duration minBackoff = environment.getProperty("mayan.client.retry.min-backoff", Duration.class,
+                Duration.ofMillis(200));
+        Duration maxBackoff = environment.getProperty("mayan.client.retry.max-backoff", Duration.class,
+                Duration.ofSeconds(2));
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            String prefix = "mayan.client." + endpoint.property() + ".";
+            int maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class, endpoint.maxConcurrent);
+            int maxWaiting = environment.getProperty(prefix + "max-waiting", Integer.class, endpoint.maxWaiting);
+            Duration timeout = environment.getProperty(prefix + "timeout", Duration.class, endpoint.timeout);
+            Duration maxWait = environment.getProperty(prefix + "max-wait", Duration.class, timeout);
+            int retries = environment.getProperty(prefix + "retries", Integer.class, endpoint.retries);
+            Duration hedgeDelay = environment.getProperty(prefix + "hedge-delay", Duration.class, endpoint.hedgeDelay);
+
+            // room for a hedged attempt of every call, so hedging never waits for a connection
+            int connections = hedgeDelay.isZero() ? maxConcurrent : maxConcurrent * 2;
+            ConnectionProvider pool = ConnectionProvider.builder("mayan-" + endpoint.property())
+                    .maxConnections(connections)
+                    .pendingAcquireMaxCount(-1)
+                    .pendingAcquireTimeout(maxWait.plus(timeout))
+                    .maxIdleTime(Duration.ofSeconds(30))
+                    .evictInBackground(Duration.ofSeconds(30))
+                    .metrics(true)
+                    .build();
+            HttpClient httpClient = HttpClient.create(pool)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                    .responseTimeout(timeout)
+                    .followRedirect(true);
+            WebClient webClient = WebClient.builder()
+                    .baseUrl(mayanUrl)
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .defaultHeader("Authorization", authHeader)
+                    .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(50 * 1024 * 1024)) // 50MB
+                    .build();
+
+            CircuitBreaker breaker = new CircuitBreaker("mayan-" + endpoint.property(),
+                    environment.getProperty(prefix + "breaker.window-size", Integer.class, 20),
+                    environment.getProperty(prefix + "breaker.minimum-calls", Integer.class, 10),
+                    environment.getProperty(prefix + "breaker.failure-rate", Double.class, 0.5),
+                    environment.getProperty(prefix + "breaker.open-duration", Duration.class, Duration.ofSeconds(30)),
+                    MayanClient::isTransient);
+            Bulkhead bulkhead = new Bulkhead("mayan-" + endpoint.property(), maxConcurrent, maxWaiting, maxWait);
+
+            String tag = endpoint.property();
+            Counter retried = Counter.builder("mayan.client.retries").tag("endpoint", tag).register(meterRegistry);
+            Retry retry = Retry.backoff(retries, minBackoff)
+                    .maxBackoff(maxBackoff)
+                    .jitter(0.5)
+                    .filter(MayanClient::isTransient)
+                    .doBeforeRetry(signal -> retried.increment())
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+            Counter hedged = Counter.builder("mayan.client.hedges").tag("endpoint", tag).register(meterRegistry);
+            Counter rejected = Counter.builder("mayan.client.rejections").tag("endpoint", tag).register(meterRegistry);
+            Gauge.builder("mayan.client.in.flight", bulkhead, Bulkhead::inUse).tag("endpoint", tag)
+                    .register(meterRegistry);
+            Gauge.builder("mayan.client.circuit.open", breaker,
+                            b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+
+            policies.put(endpoint, new Policy(webClient, pool, bulkhead, breaker, timeout, retry, hedgeDelay,
+                    retried, hedged, rejected));
+        }
+    }
+
+    /**
+     * Make a call of the given kind. {@code call} is invoked for every attempt,
+     * and must only read when the endpoint retries or hedges.
+     */
+    public <T> Mono<T> call(Endpoint endpoint, Function<WebClient, Mono<T>> call) {
+        return call(endpoint, call, value -> { });
+    }
+
+    /**
+     * As {@link #call(Endpoint, Function)}, with {@code discard} releasing a
+     * value that lost a hedged race, such as an unread response body.
+     */
+    public <T> Mono<T> call(Endpoint endpoint, Function<WebClient, Mono<T>> call, Consumer<T> discard) {
+        Policy policy = policies.get(endpoint);
+        Mono<T> attempt = Mono.defer(() -> call.apply(policy.webClient()))
+                .timeout(policy.timeout());
+        Mono<T> hedged = policy.hedgeDelay().isZero()
+                ? attempt
+                : Hedging.hedge(() -> attempt, policy.hedgeDelay(), policy.hedged()::increment, discard);
+        return policy.bulkhead().execute(() -> policy.breaker().execute(() -> hedged))
+                .retryWhen(policy.retry())
+                .doOnError(error -> error instanceof Bulkhead.BulkheadFullException
+                                || error instanceof CircuitBreaker.CircuitOpenException,
+                        error -> {
+                            policy.rejected().increment();
+                            log.warn("Mayan {} call rejected: {}", endpoint.property(), error.getMessage());
+                        });
+    }
+
+    public CircuitBreaker.State circuitState(Endpoint endpoint) {
+        return policies.get(endpoint).breaker().state();
+    }
+
+    /**
+     * Failures worth a retry and counted by the breakers: server errors, throttling,
+     * timeouts and broken connections. Client errors such as 404 are answers.
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || (status >= 500 && status != 501);
+        }
+        return error instanceof WebClientRequestException
+                || error instanceof TimeoutException
+                || error instanceof IOException
+                || error.getCause() instanceof IOException;
+    }
+
+    @PreDestroy
+    void close() {
+        policies.values().forEach(policy -> policy.pool().dispose());
+    }
+}
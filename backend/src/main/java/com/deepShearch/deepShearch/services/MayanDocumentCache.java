@@ -0,0 +1,83 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.utils.StaleWhileRevalidateCache;
+import com.deepShearch.deepShearch.utils.StaleWhileRevalidateCache.Result;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Document lists and document pages as last returned by Mayan, for the
+ * dashboard and the book view. Responses older than
+ * {@code cache.mayan-documents.soft-ttl} are served while they are refreshed in
+ * the background, so those requests do not wait on Mayan; past the hard TTL
+ * they are loaded again. Uploads and deletes invalidate the affected entries.
+ * Crawls and syncs that need Mayan's current state keep calling
+ * {@link MayanService} directly.
+ */
+@Component
+public class MayanDocumentCache {
+
+    private static final String LIST_PREFIX = "list|";
+    private static final String PAGES_PREFIX = "pages|";
+
+    private final MayanService mayanService;
+    private final StaleWhileRevalidateCache<MayanDocumentsListResponse> lists;
+    private final StaleWhileRevalidateCache<DocumentFilesResponse> pages;
+    private final Map<Result, Counter> listResults = new EnumMap<>(Result.class);
+    private final Map<Result, Counter> pageResults = new EnumMap<>(Result.class);
+
+    public MayanDocumentCache(MayanService mayanService,
+                              MeterRegistry meterRegistry,
+                              @Value("${cache.mayan-documents.max-entries:512}") int maxEntries,
+                              @Value("${cache.mayan-documents.soft-ttl:PT30S}") Duration softTtl,
+                              @Value("${cache.mayan-documents.hard-ttl:PT10M}") Duration hardTtl) {
+        this.mayanService = mayanService;
+        this.lists = new StaleWhileRevalidateCache<>(maxEntries, softTtl, hardTtl);
+        this.pages = new StaleWhileRevalidateCache<>(maxEntries, softTtl, hardTtl);
+        for (Result result : Result.values()) {
+            String tag = result.name().toLowerCase();
+            listResults.put(result, Counter.builder("mayan.documents.cache").tag("kind", "list").tag("result", tag)
+                    .register(meterRegistry));
+            pageResults.put(result, Counter.builder("mayan.documents.cache").tag("kind", "pages").tag("result", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    public Mono<MayanDocumentsListResponse> getDocuments(String ordering, Integer page, Integer pageSize) {
+        String key = LIST_PREFIX + ordering + "|" + page + "|" + pageSize;
+        return lists.get(key, () -> mayanService.getDocuments(ordering, page, pageSize),
+                result -> listResults.get(result).increment());
+    }
+
+    public Mono<DocumentFilesResponse> getDocumentsById(String documentId) {
+        return pages.get(PAGES_PREFIX + documentId, () -> mayanService.getDocumentsById(documentId),
+                result -> pageResults.get(result).increment());
+    }
+
+    /**
+     * A document was added: every cached list may be missing it.
+     */
+    public void documentAdded() {
+        lists.invalidateIf(key -> true);
+    }
+
+    /**
+     * A document was deleted: drop its pages and every cached list.
+     */
+    public void documentRemoved(String documentId) {
+        pages.invalidate(PAGES_PREFIX + documentId);
+        lists.invalidateIf(key -> true);
+    }
+}
@@ -1,74 +1,50 @@
 package com.deepShearch.deepShearch.services;
 
-import java.time.Duration;
-import java.util.Base64;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentUploadRequest;
 import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
+import com.deepShearch.deepShearch.services.MayanClient.Endpoint;
 import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.utils.StreamedResponses;
 
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 @Slf4j
 public class MayanServiceImpl implements MayanService {
+
+    private static final int VERSION_PAGES_PAGE_SIZE = 100;
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
     
-    private final WebClient webClient;
-    private final RestTemplate restTemplate;
-    private final String mayanUrl;
-    
-    private  final String USERNAME;
-    private  final String PASSWORD ;
-
-    public MayanServiceImpl(@Value("${host.mayan.url}") String mayanUrl,
-                            @Value("${host.mayan.username}") String username,
-                            @Value("${host.mayan.password}") String password) {
-        this.mayanUrl = mayanUrl;
-        this.USERNAME = username;
-        this.PASSWORD = password;
-        
-        // Configure HttpClient with proper settings for file uploads
-        HttpClient httpClient = HttpClient.create()     
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 60000)
-                .responseTimeout(Duration.ofMinutes(5))
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(5, TimeUnit.MINUTES))
-                        .addHandlerLast(new WriteTimeoutHandler(5, TimeUnit.MINUTES)))
-                .followRedirect(true);
-        
-        // Create Basic Auth header
-        String auth = USERNAME + ":" + PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes());
-        String authHeader = "Basic " + encodedAuth;
-        
-        this.webClient = WebClient.builder()
-                .baseUrl(mayanUrl)
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .defaultHeader("Authorization", authHeader)
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(50 * 1024 * 1024)) // 50MB
-                .build();
-        
-        // Initialize RestTemplate for multipart uploads
-        this.restTemplate = new RestTemplate();
+    private final MayanClient mayanClient;
+
+    public MayanServiceImpl(MayanClient mayanClient) {
+        this.mayanClient = mayanClient;
     }
     
     @Override
@@ -76,7 +52,7 @@ public class MayanServiceImpl implements MayanService {
         log.info("Fetching documents from Mayan EDMS - ordering: {}, page: {}, pageSize: {}", 
                 ordering, page, pageSize);
         
-        return webClient.get()
+        return mayanClient.call(Endpoint.LIST, client -> client.get()
                 .uri(uriBuilder -> {
                     var builder = uriBuilder.path("/api/v4/documents/");
                     if (ordering != null) {
@@ -91,29 +67,40 @@ public class MayanServiceImpl implements MayanService {
                     return builder.build();
                 })
                 .retrieve()
-                .bodyToMono(MayanDocumentsListResponse.class)
+                .bodyToMono(MayanDocumentsListResponse.class))
                 .doOnSuccess(response -> log.info("Successfully fetched {} documents", 
                         response != null ? response.getCount() : 0))
                 .doOnError(error -> log.error("Error fetching documents from Mayan EDMS", error));
     }
 
+    @Override
+    public Mono<MayanDocumentsListResponse> getDocumentsPage(String pageUrl) {
+        // keep only the query: the link is built with the host Mayan sees, which may not be ours
+        String query = pageUrl.contains("?") ? pageUrl.substring(pageUrl.indexOf('?') + 1) : pageUrl;
+        MultiValueMap<String, String> params = UriComponentsBuilder.newInstance().query(query).build().getQueryParams();
+        return mayanClient.call(Endpoint.LIST, client -> client.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/v4/documents/").queryParams(params).build())
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(MayanDocumentsListResponse.class));
+    }
+
     @Override
     public Mono<DocumentFilesResponse> getDocumentsById(String docId) {
         log.info("Fetching document by ID from Mayan EDMS - documentId: {}", docId);
         String fileId = docId;
-        return webClient.get()
+        return mayanClient.call(Endpoint.DOCUMENT, client -> client.get()
                 .uri("/api/v4/documents/{docId}/files/{fileId}/pages", docId, fileId)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .onStatus(
                         status -> !status.is2xxSuccessful(),
-                        response -> response.bodyToMono(String.class)
-                                .map(body -> {
-                                    log.error("Mayan API error for document {}: body={}", docId, body);
-                                    return new RuntimeException("Mayan API error: HTTP error response");
-                                })
+                        // keep the status, so server errors are retried and client errors are not
+                        response -> response.createException()
+                                .doOnNext(error -> log.error("Mayan API error for document {}: body={}", docId,
+                                        error.getResponseBodyAsString()))
                 )
-                .bodyToMono(DocumentFilesResponse.class)
+                .bodyToMono(DocumentFilesResponse.class))
                 .doOnSuccess(response -> log.info("Successfully fetched {} files for document: {}", 
                         response != null && response.getResults() != null ? response.getResults().size() : 0, docId))
                 .doOnError(error -> log.error("Error fetching files list for document ID: {}", docId, error));
@@ -121,6 +108,18 @@ public class MayanServiceImpl implements MayanService {
 
 
 
+    @Override
+    public Mono<MayanDocumentResponse> getDocument(String documentId) {
+        log.info("Fetching document details from Mayan EDMS - documentId: {}", documentId);
+
+        return mayanClient.call(Endpoint.DOCUMENT, client -> client.get()
+                .uri("/api/v4/documents/{document_id}/", documentId)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(MayanDocumentResponse.class))
+                .doOnError(error -> log.error("Error fetching document details - documentId: {}", documentId, error));
+    }
+
     @Override
     public Mono<MayanDocumentResponse> uploadDocument(MayanDocumentUploadRequest request) {
 
@@ -137,75 +136,62 @@ public class MayanServiceImpl implements MayanService {
             return Mono.error(new IllegalArgumentException("document_type_id is required"));
         }
         
-        return Mono.fromCallable(() -> {
-            byte[] fileBytes = request.getFile().getBytes();
-            String originalFilename = request.getFile().getOriginalFilename();
-            
-            log.info("Preparing upload - File size: {} bytes, Filename: {}, DocumentTypeId: {}", 
-                    fileBytes.length, originalFilename, request.getDocumentTypeId());
-            
-            // Build proper multipart body
-            String boundary = "----FormBoundary" + System.currentTimeMillis();
-            StringBuilder body = new StringBuilder();
-            
-            if (request.getLabel() != null && !request.getLabel().isEmpty()) {
-                body.append("--").append(boundary).append("\r\n")
-                    .append("Content-Disposition: form-data; name=\"label\"\r\n\r\n")
-                    .append(request.getLabel()).append("\r\n");
-            }
-            
-            if (request.getDescription() != null && !request.getDescription().isEmpty()) {
-                body.append("--").append(boundary).append("\r\n")
-                    .append("Content-Disposition: form-data; name=\"description\"\r\n\r\n")
-                    .append(request.getDescription()).append("\r\n");
-            }
-            
-            body.append("--").append(boundary).append("\r\n")
-                .append("Content-Disposition: form-data; name=\"document_type_id\"\r\n\r\n")
-                .append(request.getDocumentTypeId()).append("\r\n");
-            
-
-            body.append("--").append(boundary).append("\r\n")
-                .append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(originalFilename).append("\"\r\n")
+        String boundary = "----FormBoundary" + UUID.randomUUID().toString().replace("-", "");
+        StringBuilder prelude = new StringBuilder();
+        if (request.getLabel() != null && !request.getLabel().isEmpty()) {
+            appendField(prelude, boundary, "label", request.getLabel());
+        }
+        if (request.getDescription() != null && !request.getDescription().isEmpty()) {
+            appendField(prelude, boundary, "description", request.getDescription());
+        }
+        appendField(prelude, boundary, "document_type_id", String.valueOf(request.getDocumentTypeId()));
+        prelude.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: ").append(ContentDisposition.formData().name("file")
+                        .filename(request.getFile().getOriginalFilename()).build()).append("\r\n")
                 .append("Content-Type: application/octet-stream\r\n\r\n");
 
-            // Convert string parts to bytes
-            byte[] bodyStart = body.toString().getBytes();
-            byte[] boundaryEnd = ("\r\n--" + boundary + "--\r\n").getBytes();
-            
-            // Create full body
-            byte[] fullBody = new byte[bodyStart.length + fileBytes.length + boundaryEnd.length];
-            System.arraycopy(bodyStart, 0, fullBody, 0, bodyStart.length);
-            System.arraycopy(fileBytes, 0, fullBody, bodyStart.length, fileBytes.length);
-            System.arraycopy(boundaryEnd, 0, fullBody, bodyStart.length + fileBytes.length, boundaryEnd.length);
-            
-            // Create HTTP request
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.valueOf("multipart/form-data; boundary=" + boundary));
-            headers.set("Authorization", "Basic " + Base64.getEncoder()
-                    .encodeToString((USERNAME + ":" + PASSWORD).getBytes()));
-            headers.setContentLength(fullBody.length);
-            
-            HttpEntity<byte[]> entity = new HttpEntity<>(fullBody, headers);
-            
-            log.info("Sending multipart request to Mayan EDMS... (Body size: {} bytes)", fullBody.length);
-            
-            return restTemplate.postForObject(mayanUrl + "/api/v4/documents/upload/", 
-                    entity, MayanDocumentResponse.class);
-                    
-        }).doOnSuccess(response -> log.info("Successfully uploaded document with ID: {}", 
-                response != null ? response.getId() : null))
-        .doOnError(error -> log.error("Error uploading document to Mayan EDMS", error));
+        byte[] head = prelude.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        long fileSize = request.getFile().getSize();
+        log.info("Preparing upload - File size: {} bytes, Filename: {}, DocumentTypeId: {}",
+                fileSize, request.getFile().getOriginalFilename(), request.getDocumentTypeId());
+
+        // The file part is read from the spooled upload in chunks as the connection drains,
+        // so memory per upload stays at a few buffers whatever the size of the file
+        Flux<DataBuffer> body = Flux.concat(
+                Mono.fromSupplier(() -> DefaultDataBufferFactory.sharedInstance.wrap(head)),
+                DataBufferUtils.readInputStream(request.getFile()::getInputStream,
+                                DefaultDataBufferFactory.sharedInstance, UPLOAD_BUFFER_SIZE)
+                        .subscribeOn(Schedulers.boundedElastic()),
+                Mono.fromSupplier(() -> DefaultDataBufferFactory.sharedInstance.wrap(tail)));
+
+        return mayanClient.call(Endpoint.WRITE, client -> client.post()
+                .uri("/api/v4/documents/upload/")
+                .contentType(MediaType.parseMediaType("multipart/form-data; boundary=" + boundary))
+                .contentLength(head.length + fileSize + tail.length)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(body))
+                .retrieve()
+                .bodyToMono(MayanDocumentResponse.class))
+                .doOnSuccess(response -> log.info("Successfully uploaded document with ID: {}",
+                        response != null ? response.getId() : null))
+                .doOnError(error -> log.error("Error uploading document to Mayan EDMS", error));
+    }
+
+    private static void appendField(StringBuilder body, String boundary, String name, String value) {
+        body.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: ").append(ContentDisposition.formData().name(name).build()).append("\r\n\r\n")
+                .append(value).append("\r\n");
     }
     
     @Override
     public Mono<Void> deleteDocument(String documentId) {
         log.info("Deleting document from Mayan EDMS - documentId: {}", documentId);
         
-        return webClient.delete()
+        return mayanClient.call(Endpoint.WRITE, client -> client.delete()
                 .uri("/api/v4/documents/{document_id}/", documentId)
                 .retrieve()
-                .bodyToMono(Void.class)
+                .bodyToMono(Void.class))
                 .doOnSuccess(response -> log.info("Successfully deleted document with ID: {}", documentId))
                 .doOnError(error -> log.error("Error deleting document from Mayan EDMS - documentId: {}", 
                         documentId, error));
@@ -216,11 +202,11 @@ public class MayanServiceImpl implements MayanService {
         log.info("Fetching OCR content from Mayan EDMS - documentId: {}, versionId: {}, pageId: {}", 
                 documentId, documentVersionId, documentVersionPageId);
         
-        return webClient.get()
+        return mayanClient.call(Endpoint.OCR, client -> client.get()
                     .uri("/api/v4/documents/{document_id}/versions/{document_version_id}/pages/{document_version_page_id}/ocr/",
                         documentId, documentVersionId, documentVersionPageId)
                 .retrieve()
-                .bodyToMono(MayanDocumentPageOCRResponse.class)
+                .bodyToMono(MayanDocumentPageOCRResponse.class))
                 .doOnSuccess(response -> log.info("Successfully fetched OCR content for document ID: {}, page ID: {}", 
                         documentId, documentVersionPageId))
                 .doOnError(error -> log.error("Error fetching OCR content from Mayan EDMS - documentId: {}, pageId: {}", 
@@ -228,20 +214,78 @@ public class MayanServiceImpl implements MayanService {
     }
 
     @Override
-    public Mono<ResponseEntity<byte[]>> getDocumentsByIdwithPageId(String documentId, String fileId, String pageId) {
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getDocumentsByIdwithPageId(String documentId, String fileId, String pageId,
+                                                                            Map<String, String> rendering,
+                                                                            HttpHeaders requestHeaders) {
         log.info("Fetching document image from Mayan EDMS - documentId: {}, fileId: {}, pageId: {}",
                 documentId, fileId, pageId);
 
-        return webClient.get()
-                .uri("/api/v4/documents/{documentId}/files/{fileId}/pages/{pageId}/image/",
-                        documentId, fileId, pageId)
+        // The body is handed over as it arrives, so the image is never aggregated
+        // and the codec in-memory limit does not apply
+        return mayanClient.call(Endpoint.IMAGE, client -> client.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path("/api/v4/documents/{documentId}/files/{fileId}/pages/{pageId}/image/");
+                    rendering.forEach((name, value) -> uriBuilder.queryParam(name, value));
+                    return uriBuilder.build(documentId, fileId, pageId);
+                })
                 .accept(MediaType.ALL)
+                .headers(headers -> StreamedResponses.FORWARDED.forEach(name -> {
+                    List<String> values = requestHeaders.get(name);
+                    if (values != null) {
+                        headers.put(name, values);
+                    }
+                }))
                 .retrieve()
-                .toEntity(byte[].class)
-                .doOnSuccess(response -> log.info("Successfully fetched image for document ID: {}, page ID: {}",
-                        documentId, pageId))
+                .onStatus(status -> status.value() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(),
+                        response -> Mono.empty())
+                .toEntityFlux(DataBuffer.class)
+                .map(response -> StreamedResponses.negotiate(requestHeaders, response)),
+                // a hedged attempt that lost still holds a connection until its body is released
+                response -> {
+                    if (response.getBody() != null) {
+                        StreamedResponses.discard(response.getBody());
+                    }
+                })
+                .doOnSuccess(response -> log.info("Streaming image for document ID: {}, page ID: {} with status {}",
+                        documentId, pageId, response.getStatusCode()))
                 .doOnError(error -> log.error("Error fetching image from Mayan EDMS - documentId: {}, pageId: {}",
                         documentId, pageId, error));
     }
 
+    @Override
+    public Mono<List<DocumentVersionPagesResponse.DocumentVersionPageDto>> getDocumentVersionPages(String documentId, String documentVersionId) {
+        log.info("Fetching version pages from Mayan EDMS - documentId: {}, versionId: {}", documentId, documentVersionId);
+
+        // Read the first page to learn the total, then fetch the remaining pages concurrently
+        return fetchVersionPages(documentId, documentVersionId, 1)
+                .flatMap(first -> {
+                    int total = first.getCount() != null ? first.getCount() : 0;
+                    int pageCount = (total + VERSION_PAGES_PAGE_SIZE - 1) / VERSION_PAGES_PAGE_SIZE;
+                    return Flux.range(2, Math.max(0, pageCount - 1))
+                            .flatMapSequential(page -> fetchVersionPages(documentId, documentVersionId, page), 4)
+                            .startWith(first)
+                            .flatMapIterable(response -> response.getResults() != null
+                                    ? response.getResults()
+                                    : List.<DocumentVersionPagesResponse.DocumentVersionPageDto>of())
+                            .sort(Comparator.comparing(DocumentVersionPagesResponse.DocumentVersionPageDto::getPage_number,
+                                    Comparator.nullsLast(Comparator.naturalOrder())))
+                            .collectList();
+                })
+                .doOnSuccess(pages -> log.info("Successfully fetched {} version pages for document: {}",
+                        pages != null ? pages.size() : 0, documentId))
+                .doOnError(error -> log.error("Error fetching version pages for document ID: {}", documentId, error));
+    }
+
+    private Mono<DocumentVersionPagesResponse> fetchVersionPages(String documentId, String documentVersionId, int page) {
+        return mayanClient.call(Endpoint.DOCUMENT, client -> client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/v4/documents/{document_id}/versions/{document_version_id}/pages/")
+                        .queryParam("page", page)
+                        .queryParam("page_size", VERSION_PAGES_PAGE_SIZE)
+                        .build(documentId, documentVersionId))
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(DocumentVersionPagesResponse.class));
+    }
+
 }
@@ -10,7 +10,10 @@ import com.deepShearch.deepShearch.Model.Notification;
 import com.deepShearch.deepShearch.repository.NotificationRepository;
 import com.deepShearch.deepShearch.services.interfaces.NotificationService;
 
+import lombok.AllArgsConstructor;
+
 @Service
+@AllArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
 
     private NotificationRepository notificationRepository;
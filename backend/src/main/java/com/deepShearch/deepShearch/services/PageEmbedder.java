@@ -0,0 +1,111 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.utils.TextChunker;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Turns page text into chunk embeddings and stores them in the
+ * {@link PageVectorIndex}. Chunks of several pages are sent to the embedding
+ * model together, {@code search.embedding.batch-size} at a time, through the
+ * admission controller so embedding shares the model with summaries.
+ */
+@Slf4j
+@Component
+public class PageEmbedder {
+
+    private final EmbeddingModel embeddingModel;
+    private final LlmAdmissionController admissionController;
+    private final PageVectorIndex pageVectorIndex;
+    private final TextChunker chunker;
+    private final int batchSize;
+
+    public PageEmbedder(EmbeddingModel embeddingModel,
+                        LlmAdmissionController admissionController,
+                        PageVectorIndex pageVectorIndex,
+                        @Value("${search.embedding.chunk-tokens:256}") int chunkTokens,
+                        @Value("${search.embedding.overlap-tokens:32}") int overlapTokens,
+                        @Value("${search.embedding.batch-size:32}") int batchSize) {
+        this.embeddingModel = embeddingModel;
+        this.admissionController = admissionController;
+        this.pageVectorIndex = pageVectorIndex;
+        this.chunker = new TextChunker(chunkTokens, overlapTokens);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public record Page(String pageId, Integer pageNumber, String content) {
+    }
+
+    /**
+     * Embed the pages of a document version and replace their chunks in the vector index.
+     * Blank pages are skipped.
+     */
+    public Mono<Void> embedPages(String documentId, String documentVersionId, List<Page> pages) {
+        List<Page> embeddable = new ArrayList<>();
+        List<List<String>> chunksPerPage = new ArrayList<>();
+        List<String> allChunks = new ArrayList<>();
+        for (Page page : pages) {
+            if (page.content() == null || page.content().isBlank()) {
+                continue;
+            }
+            List<String> chunks = chunker.split(page.content());
+            embeddable.add(page);
+            chunksPerPage.add(chunks);
+            allChunks.addAll(chunks);
+        }
+        if (allChunks.isEmpty()) {
+            return Mono.empty();
+        }
+
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < allChunks.size(); from += batchSize) {
+            batches.add(allChunks.subList(from, Math.min(from + batchSize, allChunks.size())));
+        }
+
+        return Flux.fromIterable(batches)
+                .concatMap(this::embed)
+                .collectList()
+                .flatMap(embedded -> Mono.<Void>fromRunnable(() -> {
+                    List<float[]> vectors = embedded.stream().flatMap(List::stream).toList();
+                    int offset = 0;
+                    for (int i = 0; i < embeddable.size(); i++) {
+                        Page page = embeddable.get(i);
+                        List<String> chunks = chunksPerPage.get(i);
+                        pageVectorIndex.indexPage(documentId, documentVersionId, page.pageId(), page.pageNumber(),
+                                chunks, vectors.subList(offset, offset + chunks.size()));
+                        offset += chunks.size();
+                    }
+                    log.debug("Embedded {} pages of document {} as {} chunks",
+                            embeddable.size(), documentId, allChunks.size());
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * Embed a search query into the same space as the page chunks.
+     */
+    public Mono<float[]> embedQuery(String query) {
+        return embed(List.of(query)).map(vectors -> vectors.get(0));
+    }
+
+    private Mono<List<float[]>> embed(List<String> texts) {
+        return admissionController.execute(() -> Mono
+                .fromCallable(() -> {
+                    List<float[]> vectors = embeddingModel.embed(texts);
+                    if (vectors.size() != texts.size()) {
+                        throw new IllegalStateException("Expected " + texts.size() + " embeddings, got " + vectors.size());
+                    }
+                    return vectors;
+                })
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+}
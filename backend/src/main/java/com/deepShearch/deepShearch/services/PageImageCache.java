@@ -0,0 +1,446 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.StreamedResponses;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Page images on local disk, one directory per document. Every entry is a
+ * data file with a small properties file next to it holding the content type
+ * and validators. Files are written under a temporary name and moved into
+ * place, so a reader never sees a partial image.
+ * <p>
+ * The file modification time records the last access, and once the cache
+ * outgrows {@code cache.page-images.max-size} the least recently used files
+ * are deleted down to 90% of it. Only the metadata of recently hot entries is
+ * kept on the heap; everything else is looked up on disk.
+ */
+@Slf4j
+@Component
+public class PageImageCache {
+
+    private static final String DATA_SUFFIX = ".img";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long TOUCH_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private final Path root;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LruCache<String, Entry> hot;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private final Counter bytesServed;
+
+    public PageImageCache(@Value("${cache.page-images.path:./data/page-images}") String path,
+                          @Value("${cache.page-images.max-size:512MB}") DataSize maxSize,
+                          @Value("${cache.page-images.max-entry-size:16MB}") DataSize maxEntrySize,
+                          @Value("${cache.page-images.hot-entries:1024}") int hotEntries,
+                          MeterRegistry meterRegistry) throws IOException {
+        this.root = Path.of(path).toAbsolutePath();
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxBytes);
+        this.hot = new LruCache<>(Math.max(1, hotEntries), null);
+        Files.createDirectories(root);
+        scan();
+
+        Gauge.builder("page.images.cache.size", totalBytes, AtomicLong::get)
+                .description("Bytes of page images stored on disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("page.images.cache.entries", entryCount, AtomicLong::get)
+                .description("Page images stored on disk")
+                .register(meterRegistry);
+        Gauge.builder("page.images.cache.hot", hot, LruCache::size)
+                .description("Page image entries whose metadata is held on the heap")
+                .register(meterRegistry);
+        this.bytesServed = Counter.builder("page.images.served").tag("source", "cache").baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Page image cache at {} holds {} images, {} of {} bytes", root, entryCount.get(), totalBytes.get(), maxBytes);
+    }
+
+    /**
+     * A cached image. {@code lastModified} is -1 when Mayan did not send one.
+     */
+    public record Entry(Path data, long length, String contentType, String etag, long lastModified, long touchedAt) {
+
+        public HttpHeaders headers() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentLength(length);
+            if (contentType != null) {
+                headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+            }
+            if (etag != null) {
+                headers.set(HttpHeaders.ETAG, etag);
+            }
+            if (lastModified >= 0) {
+                headers.setLastModified(lastModified);
+            }
+            return headers;
+        }
+    }
+
+    /**
+     * Key of a rendered page; {@code rendering} holds the image parameters sent to Mayan.
+     */
+    public static String key(String documentId, String fileId, String pageId, Map<String, String> rendering) {
+        StringBuilder key = new StringBuilder().append(documentId).append('|').append(fileId).append('|').append(pageId);
+        rendering.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(parameter -> key.append('|').append(parameter.getKey()).append('=').append(parameter.getValue()));
+        return key.toString();
+    }
+
+    /**
+     * Look up an image and record the access. Blocks on disk when the entry is not hot.
+     */
+    public Optional<Entry> get(String documentId, String key) {
+        Optional<Entry> hit = hot.get(key);
+        if (hit.isEmpty()) {
+            hit = readEntry(dataFile(documentId, key), key);
+        }
+        return hit.map(entry -> {
+            long now = System.currentTimeMillis();
+            if (now - entry.touchedAt() < TOUCH_INTERVAL_MILLIS) {
+                return entry;
+            }
+            try {
+                Files.setLastModifiedTime(entry.data(), FileTime.fromMillis(now));
+            } catch (IOException e) {
+                hot.remove(key);
+                return null;
+            }
+            Entry touched = new Entry(entry.data(), entry.length(), entry.contentType(), entry.etag(),
+                    entry.lastModified(), now);
+            hot.put(key, touched);
+            return touched;
+        });
+    }
+
+    /**
+     * Answer a request from a cached file. The file is opened here, so an
+     * eviction racing with the response cannot take it away before it is sent.
+     *
+     * @return empty when the file is gone
+     */
+    public Optional<ResponseEntity<StreamingResponseBody>> serve(String key, Entry entry, HttpHeaders requestHeaders) {
+        StreamedResponses.Outcome outcome = StreamedResponses.evaluate(requestHeaders, entry.headers());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(outcome.status()).headers(outcome.headers());
+        if (!outcome.body()) {
+            return Optional.of(builder.build());
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(entry.data(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not open cached page image {}", entry.data(), e);
+            forget(key);
+            return Optional.empty();
+        }
+        long count = outcome.count() >= 0 ? outcome.count() : entry.length() - outcome.offset();
+        bytesServed.increment(count);
+        return Optional.of(builder.body(StreamedResponses.fromFile(channel, outcome.offset(), count)));
+    }
+
+    /**
+     * Forget an entry whose file turned out to be gone.
+     */
+    public void forget(String key) {
+        hot.remove(key);
+    }
+
+    /**
+     * Write a full image response to disk. The body is always consumed.
+     *
+     * @return the stored entry, or empty when the image is too large or could not be written
+     */
+    public Mono<Optional<Entry>> store(String documentId, String key, HttpHeaders headers, Flux<DataBuffer> body) {
+        long declared = headers.getContentLength();
+        if (declared > maxEntryBytes) {
+            StreamedResponses.discard(body);
+            return Mono.just(Optional.empty());
+        }
+        Path data = dataFile(documentId, key);
+        Path temp = root.resolve(data.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        AtomicLong written = new AtomicLong();
+        Flux<DataBuffer> counted = body.handle((buffer, sink) -> {
+            if (written.addAndGet(buffer.readableByteCount()) > maxEntryBytes) {
+                DataBufferUtils.release(buffer);
+                sink.error(new EntryTooLargeException());
+            } else {
+                sink.next(buffer);
+            }
+        });
+
+        return DataBufferUtils.write(counted, temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                .then(Mono.fromCallable(() -> {
+                    if (declared >= 0 && declared != written.get()) {
+                        throw new IOException("Expected " + declared + " bytes, received " + written.get());
+                    }
+                    return Optional.of(commit(key, data, temp, headers, written.get()));
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .onErrorResume(error -> Mono.fromCallable(() -> {
+                    Files.deleteIfExists(temp);
+                    if (!(error instanceof EntryTooLargeException)) {
+                        log.warn("Could not cache page image {}: {}", key, error.toString());
+                    }
+                    return Optional.<Entry>empty();
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * Delete every cached image of a document.
+     */
+    public void removeDocument(String documentId) {
+        Path directory = root.resolve(directoryName(documentId));
+        hot.removeIf((key, entry) -> entry.data().startsWith(directory));
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        synchronized (evictionLock) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    deleteFile(file);
+                }
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                log.warn("Could not remove cached page images of document {}", documentId, e);
+            }
+        }
+    }
+
+    private Entry commit(String key, Path data, Path temp, HttpHeaders headers, long length) throws IOException {
+        Entry entry = new Entry(data, length,
+                headers.getContentType() != null ? headers.getContentType().toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                headers.getETag(), headers.getLastModified(), System.currentTimeMillis());
+
+        Properties properties = new Properties();
+        properties.setProperty("key", key);
+        properties.setProperty("contentType", entry.contentType());
+        if (entry.etag() != null) {
+            properties.setProperty("etag", entry.etag());
+        }
+        properties.setProperty("lastModified", Long.toString(entry.lastModified()));
+        Path meta = metaFile(data);
+        Path metaTemp = root.resolve(meta.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        Files.createDirectories(data.getParent());
+        try (OutputStream output = Files.newOutputStream(metaTemp, StandardOpenOption.CREATE_NEW)) {
+            properties.store(output, null);
+        }
+
+        synchronized (evictionLock) {
+            long replaced = Files.exists(data) ? Files.size(data) : -1;
+            move(metaTemp, meta);
+            // the data file goes last: an image is visible only once its metadata is
+            move(temp, data);
+            if (replaced >= 0) {
+                totalBytes.addAndGet(length - replaced);
+            } else {
+                totalBytes.addAndGet(length);
+                entryCount.incrementAndGet();
+            }
+        }
+        hot.put(key, entry);
+        evictIfNeeded();
+        return entry;
+    }
+
+    private Optional<Entry> readEntry(Path data, String key) {
+        Properties properties = new Properties();
+        long length;
+        long accessed;
+        try (InputStream input = Files.newInputStream(metaFile(data))) {
+            properties.load(input);
+            length = Files.size(data);
+            accessed = Files.getLastModifiedTime(data).toMillis();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not read cached page image {}", data, e);
+            return Optional.empty();
+        }
+        if (!key.equals(properties.getProperty("key"))) {
+            return Optional.empty();
+        }
+        Entry entry = new Entry(data, length, properties.getProperty("contentType"), properties.getProperty("etag"),
+                Long.parseLong(properties.getProperty("lastModified", "-1")), accessed);
+        hot.put(key, entry);
+        return Optional.of(entry);
+    }
+
+    private void evictIfNeeded() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (evictionLock) {
+            long target = maxBytes / 10 * 9;
+            if (totalBytes.get() <= target) {
+                return;
+            }
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(file -> file.getFileName().toString().endsWith(DATA_SUFFIX)).forEach(files::add);
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Could not list the page image cache for eviction", e);
+                return;
+            }
+            List<Candidate> candidates = new ArrayList<>(files.size());
+            for (Path file : files) {
+                try {
+                    candidates.add(new Candidate(file, Files.getLastModifiedTime(file).toMillis()));
+                } catch (IOException e) {
+                    // deleted concurrently
+                }
+            }
+            candidates.sort(Comparator.comparingLong(Candidate::accessed));
+
+            Set<Path> evicted = new HashSet<>();
+            for (Candidate candidate : candidates) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                deleteFile(candidate.data());
+                evicted.add(candidate.data());
+            }
+            hot.removeIf((key, entry) -> evicted.contains(entry.data()));
+            log.debug("Evicted {} page images, cache now holds {} bytes", evicted.size(), totalBytes.get());
+        }
+    }
+
+    /** Rebuild the totals from disk and drop files left behind by an interrupted write. */
+    private void scan() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(DATA_SUFFIX)) {
+                    if (Files.exists(metaFile(file))) {
+                        totalBytes.addAndGet(Files.size(file));
+                        entryCount.incrementAndGet();
+                    } else {
+                        Files.deleteIfExists(file);
+                    }
+                } else if (name.endsWith(META_SUFFIX) && !Files.exists(dataFileOf(file))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /** Delete a data file together with its metadata, or an orphaned metadata file, keeping the totals right. */
+    private void deleteFile(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            if (name.endsWith(DATA_SUFFIX)) {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    totalBytes.addAndGet(-size);
+                    entryCount.decrementAndGet();
+                }
+                Files.deleteIfExists(metaFile(file));
+            } else if (name.endsWith(META_SUFFIX) && !Files.exists(dataFileOf(file))) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            // already gone
+        } catch (IOException e) {
+            log.warn("Could not delete cached page image {}", file, e);
+        }
+    }
+
+    private Path dataFile(String documentId, String key) {
+        return root.resolve(directoryName(documentId)).resolve(sha256(key) + DATA_SUFFIX);
+    }
+
+    private static Path metaFile(Path data) {
+        String name = data.getFileName().toString();
+        return data.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX);
+    }
+
+    private static Path dataFileOf(Path meta) {
+        String name = meta.getFileName().toString();
+        return meta.resolveSibling(name.substring(0, name.length() - META_SUFFIX.length()) + DATA_SUFFIX);
+    }
+
+    private static String directoryName(String documentId) {
+        return documentId.matches("[A-Za-z0-9_-]{1,64}") ? documentId : sha256(documentId);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Candidate(Path data, long accessed) {
+    }
+
+    private static class EntryTooLargeException extends RuntimeException {
+        EntryTooLargeException() {
+            super("Page image exceeds the cache entry size", null, false, false);
+        }
+    }
+}
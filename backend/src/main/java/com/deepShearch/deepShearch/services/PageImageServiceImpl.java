@@ -0,0 +1,157 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.PageImageService;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+import com.deepShearch.deepShearch.utils.StreamedResponses;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Serves page images from the {@link PageImageCache}. A miss fetches the
+ * whole image from Mayan once, however many readers ask for it at the same
+ * time, stores it and then serves it from disk like a hit. Images the cache
+ * will not take, such as ones above the entry size, are streamed straight
+ * from Mayan.
+ */
+@Slf4j
+@Service
+public class PageImageServiceImpl implements PageImageService {
+
+    private static final int PREFETCH_BUFFERS = 4;
+
+    private final MayanService mayanService;
+    private final PageImageCache cache;
+    private final SingleFlight<Optional<PageImageCache.Entry>> inFlight = new SingleFlight<>();
+    /** Keys that were not cacheable recently, so they skip the fetch-and-store attempt. */
+    private final LruCache<String, Boolean> uncacheable = new LruCache<>(1024, Duration.ofMinutes(10));
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypasses;
+    private final Counter bytesFromMayan;
+
+    public PageImageServiceImpl(MayanService mayanService, PageImageCache cache, MeterRegistry meterRegistry) {
+        this.mayanService = mayanService;
+        this.cache = cache;
+
+        this.hits = Counter.builder("page.images.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("page.images.cache").tag("result", "miss").register(meterRegistry);
+        this.bypasses = Counter.builder("page.images.cache").tag("result", "bypass").register(meterRegistry);
+        Gauge.builder("page.images.cache.hit.ratio", this, PageImageServiceImpl::hitRatio)
+                .description("Share of page image requests answered from the disk cache")
+                .register(meterRegistry);
+        this.bytesFromMayan = Counter.builder("page.images.served").tag("source", "mayan").baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ResponseEntity<StreamingResponseBody>> getPageImage(String documentId, String fileId, String pageId,
+                                                                    Map<String, String> rendering,
+                                                                    HttpHeaders requestHeaders) {
+        String key = PageImageCache.key(documentId, fileId, pageId, rendering);
+        return Mono.fromCallable(() -> cache.get(documentId, key).flatMap(entry -> cache.serve(key, entry, requestHeaders)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(hit -> {
+                    if (hit.isPresent()) {
+                        hits.increment();
+                        return Mono.just(hit.get());
+                    }
+                    if (uncacheable.get(key).isPresent()) {
+                        bypasses.increment();
+                        return stream(documentId, fileId, pageId, rendering, requestHeaders);
+                    }
+                    misses.increment();
+                    return fetchAndServe(documentId, fileId, pageId, rendering, key, requestHeaders);
+                });
+    }
+
+    @Override
+    public Mono<Void> removeDocument(String documentId) {
+        return Mono.fromRunnable(() -> cache.removeDocument(documentId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    @Override
+    public Mono<Void> prefetch(String documentId, String fileId, String pageId, Map<String, String> rendering) {
+        String key = PageImageCache.key(documentId, fileId, pageId, rendering);
+        return Mono.fromCallable(() -> cache.get(documentId, key).isPresent() || uncacheable.get(key).isPresent())
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(skip -> skip ? Mono.<Void>empty() : fetchAndStore(documentId, fileId, pageId, rendering, key).then());
+    }
+
+    private Mono<ResponseEntity<StreamingResponseBody>> fetchAndServe(String documentId, String fileId, String pageId,
+                                                                      Map<String, String> rendering, String key,
+                                                                      HttpHeaders requestHeaders) {
+        return fetchAndStore(documentId, fileId, pageId, rendering, key)
+                .flatMap(stored -> stored.isEmpty()
+                        ? Mono.<ResponseEntity<StreamingResponseBody>>empty()
+                        : Mono.fromCallable(() -> cache.serve(key, stored.get(), requestHeaders))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(served -> served.map(Mono::just).orElseGet(Mono::empty)))
+                .switchIfEmpty(Mono.defer(() -> stream(documentId, fileId, pageId, rendering, requestHeaders)));
+    }
+
+    /**
+     * Fetch the whole image from Mayan into the cache, once for all concurrent callers.
+     * The client's validators and ranges are applied when serving the stored file.
+     */
+    private Mono<Optional<PageImageCache.Entry>> fetchAndStore(String documentId, String fileId, String pageId,
+                                                               Map<String, String> rendering, String key) {
+        return inFlight.execute(key, () -> mayanService
+                        .getDocumentsByIdwithPageId(documentId, fileId, pageId, rendering, new HttpHeaders())
+                        .flatMap(response -> {
+                            Flux<DataBuffer> body = response.getBody() != null ? response.getBody() : Flux.empty();
+                            if (response.getStatusCode().value() != HttpStatus.OK.value()) {
+                                StreamedResponses.discard(body);
+                                return Mono.just(Optional.<PageImageCache.Entry>empty());
+                            }
+                            return cache.store(documentId, key, response.getHeaders(), body);
+                        }))
+                .doOnNext(stored -> {
+                    if (stored.isEmpty()) {
+                        uncacheable.put(key, Boolean.TRUE);
+                    }
+                });
+    }
+
+    private Mono<ResponseEntity<StreamingResponseBody>> stream(String documentId, String fileId, String pageId,
+                                                               Map<String, String> rendering,
+                                                               HttpHeaders requestHeaders) {
+        return mayanService.getDocumentsByIdwithPageId(documentId, fileId, pageId, rendering, requestHeaders)
+                .map(response -> {
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusCode())
+                            .headers(response.getHeaders());
+                    if (response.getBody() == null) {
+                        return builder.<StreamingResponseBody>build();
+                    }
+                    Flux<DataBuffer> counted = response.getBody()
+                            .doOnNext(buffer -> bytesFromMayan.increment(buffer.readableByteCount()));
+                    return builder.body(StreamedResponses.toStreamingBody(counted, PREFETCH_BUFFERS));
+                });
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count() + bypasses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
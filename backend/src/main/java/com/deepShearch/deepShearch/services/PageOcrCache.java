@@ -0,0 +1,159 @@
+package com.deepShearch.deepShearch.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
+import com.deepShearch.deepShearch.Model.PageOcrText;
+import com.deepShearch.deepShearch.repository.PageOcrTextRepository;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * OCR text of version pages, which never changes once Mayan has produced it.
+ * Recently read pages are kept on the heap up to {@code cache.ocr.max-heap-size};
+ * every page is also stored in the {@code page_ocr_texts} table, so a page is
+ * fetched from Mayan once per version, across restarts. Concurrent lookups of
+ * the same page share one load.
+ * <p>
+ * Entries are dropped only when the document gets a new version or is deleted.
+ * Blank text is not cached: OCR may simply not have reached the page yet.
+ */
+@Slf4j
+@Component
+public class PageOcrCache {
+
+    /** Rough heap cost of an entry besides its characters: key, wrappers and map node. */
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final MayanService mayanService;
+    private final PageOcrTextRepository repository;
+    private final LruCache<String, MayanDocumentPageOCRResponse> heap;
+    private final SingleFlight<MayanDocumentPageOCRResponse> inFlight = new SingleFlight<>();
+
+    private final Counter heapHits;
+    private final Counter storeHits;
+    private final Counter fetches;
+
+    public PageOcrCache(MayanService mayanService,
+                        PageOcrTextRepository repository,
+                        MeterRegistry meterRegistry,
+                        @Value("${cache.ocr.max-entries:10000}") int maxEntries,
+                        @Value("${cache.ocr.max-heap-size:32MB}") DataSize maxHeapSize) {
+        this.mayanService = mayanService;
+        this.repository = repository;
+        this.heap = new LruCache<>(maxEntries, maxHeapSize.toBytes(), PageOcrCache::weigh, null);
+
+        this.heapHits = Counter.builder("page.ocr.cache").tag("tier", "heap").register(meterRegistry);
+        this.storeHits = Counter.builder("page.ocr.cache").tag("tier", "store").register(meterRegistry);
+        this.fetches = Counter.builder("page.ocr.cache").tag("tier", "mayan").register(meterRegistry);
+        Gauge.builder("page.ocr.cache.heap.size", heap, LruCache::weight)
+                .description("Estimated bytes of OCR text held on the heap")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public Mono<MayanDocumentPageOCRResponse> get(String documentId, String documentVersionId,
+                                                  String documentVersionPageId) {
+        String key = key(documentId, documentVersionId, documentVersionPageId);
+        return Mono.defer(() -> heap.get(key)
+                .map(ocr -> {
+                    heapHits.increment();
+                    return Mono.just(ocr);
+                })
+                .orElseGet(() -> inFlight.execute(key, () -> load(key, documentId, documentVersionId,
+                        documentVersionPageId))));
+    }
+
+    /**
+     * Drop the pages of the other versions of a document, once it has a new active version.
+     * Blocks on the database.
+     */
+    public void retainVersion(String documentId, String documentVersionId) {
+        String prefix = documentId + "|";
+        String kept = key(documentId, documentVersionId, "");
+        heap.removeIf((key, ocr) -> key.startsWith(prefix) && !key.startsWith(kept));
+        int removed = repository.deleteOtherVersions(documentId, documentVersionId);
+        if (removed > 0) {
+            log.info("Dropped stored OCR of {} pages of older versions of document {}", removed, documentId);
+        }
+    }
+
+    /**
+     * Drop the pages of a deleted document.
+     */
+    public Mono<Void> removeDocument(String documentId) {
+        String prefix = documentId + "|";
+        return Mono.fromRunnable(() -> {
+                    heap.removeIf((key, ocr) -> key.startsWith(prefix));
+                    repository.deleteByDocument(documentId);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<MayanDocumentPageOCRResponse> load(String key, String documentId, String documentVersionId,
+                                                    String documentVersionPageId) {
+        Mono<MayanDocumentPageOCRResponse> stored = Mono.fromCallable(() -> repository.findById(key).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(text -> {
+                    storeHits.increment();
+                    return new MayanDocumentPageOCRResponse(text.getContent());
+                })
+                .onErrorResume(error -> {
+                    log.warn("Could not read stored OCR of page {}: {}", key, error.toString());
+                    return Mono.empty();
+                });
+
+        Mono<MayanDocumentPageOCRResponse> fetched = Mono.defer(() -> {
+            fetches.increment();
+            return mayanService.getDocumentPageOCR(documentId, documentVersionId, documentVersionPageId)
+                    .flatMap(ocr -> isBlank(ocr) ? Mono.just(ocr) : store(key, documentId, documentVersionId,
+                            documentVersionPageId, ocr).thenReturn(ocr));
+        });
+
+        return stored.switchIfEmpty(fetched)
+                .doOnNext(ocr -> {
+                    if (!isBlank(ocr)) {
+                        heap.put(key, ocr);
+                    }
+                });
+    }
+
+    /**
+     * Persist fetched text. A failed write only costs a later fetch, so it is not an error.
+     */
+    private Mono<Void> store(String key, String documentId, String documentVersionId, String documentVersionPageId,
+                             MayanDocumentPageOCRResponse ocr) {
+        return Mono.fromRunnable(() -> repository.save(new PageOcrText(key, documentId, documentVersionId,
+                        documentVersionPageId, ocr.getContent().replace("\0", ""), null)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Could not store OCR of page {}: {}", key, error.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static boolean isBlank(MayanDocumentPageOCRResponse ocr) {
+        return ocr.getContent() == null || ocr.getContent().isBlank();
+    }
+
+    private static long weigh(MayanDocumentPageOCRResponse ocr) {
+        // two bytes per character, the most a String needs
+        return ENTRY_OVERHEAD_BYTES + (ocr.getContent() != null ? ocr.getContent().length() * 2L : 0);
+    }
+
+    private static String key(String documentId, String documentVersionId, String documentVersionPageId) {
+        return documentId + "|" + documentVersionId + "|" + documentVersionPageId;
+    }
+}
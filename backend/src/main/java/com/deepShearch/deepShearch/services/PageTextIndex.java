@@ -0,0 +1,230 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse.SearchHitDto;
+import com.deepShearch.deepShearch.utils.LuceneIndex;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Embedded Lucene index over the OCR text of document version pages, one
+ * Lucene document per page, ranked with BM25. The index lives in a
+ * memory-mapped directory on local disk; writes become searchable within
+ * {@code search.index.refresh-interval} and durable within
+ * {@code search.index.commit-interval}.
+ */
+@Component
+public class PageTextIndex {
+
+    static final String ID = "id";
+    static final String DOCUMENT_ID = "documentId";
+    static final String VERSION_ID = "documentVersionId";
+    static final String PAGE_ID = "pageId";
+    static final String PAGE_NUMBER = "pageNumber";
+    static final String TEXT = "text";
+
+    private static final int SNIPPETS_PER_HIT = 2;
+    private static final int FALLBACK_SNIPPET_CHARS = 200;
+
+    /** Page text is stored for highlighting, with offsets so snippets do not re-analyze the page. */
+    private static final FieldType TEXT_TYPE = new FieldType();
+
+    static {
+        TEXT_TYPE.setTokenized(true);
+        TEXT_TYPE.setStored(true);
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.freeze();
+    }
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final LuceneIndex index;
+
+    public PageTextIndex(@Value("${search.index.path:./data/search-index}") String indexPath,
+                         @Value("${search.index.ram-buffer-mb:64}") double ramBufferMb) throws IOException {
+        this.index = new LuceneIndex("page text index", Path.of(indexPath), analyzer, ramBufferMb);
+    }
+
+    /**
+     * Add or replace the text of a page.
+     */
+    public void indexPage(String documentId, String documentVersionId, String pageId, Integer pageNumber, String text) {
+        Document document = new Document();
+        document.add(new StringField(ID, pageKey(documentId, documentVersionId, pageId), Field.Store.NO));
+        document.add(new StringField(DOCUMENT_ID, documentId, Field.Store.YES));
+        document.add(new StringField(VERSION_ID, documentVersionId, Field.Store.YES));
+        document.add(new StoredField(PAGE_ID, pageId));
+        if (pageNumber != null) {
+            document.add(new StoredField(PAGE_NUMBER, pageNumber));
+        }
+        document.add(new Field(TEXT, text != null ? text : "", TEXT_TYPE));
+        index.update(new Term(ID, pageKey(documentId, documentVersionId, pageId)), List.of(document));
+    }
+
+    /**
+     * @return ids of the pages of {@code documentVersionId} that are in the index
+     */
+    public Set<String> indexedPageIds(String documentId, String documentVersionId) {
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(VERSION_ID, documentVersionId)), BooleanClause.Occur.FILTER)
+                .build();
+        return index.withSearcher(searcher -> {
+            Set<String> pageIds = new HashSet<>();
+            int limit = Math.max(1, searcher.count(query));
+            StoredFields storedFields = searcher.storedFields();
+            for (ScoreDoc hit : searcher.search(query, limit).scoreDocs) {
+                pageIds.add(storedFields.document(hit.doc, Set.of(PAGE_ID)).get(PAGE_ID));
+            }
+            return pageIds;
+        });
+    }
+
+    /**
+     * Drop the pages of every version of {@code documentId} except {@code documentVersionId}.
+     */
+    public void retainVersion(String documentId, String documentVersionId) {
+        index.delete(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(VERSION_ID, documentVersionId)), BooleanClause.Occur.MUST_NOT)
+                .build());
+    }
+
+    public void deleteDocument(String documentId) {
+        index.delete(new TermQuery(new Term(DOCUMENT_ID, documentId)));
+    }
+
+    /**
+     * Run a query in Lucene syntax ({@code "exact phrase"}, {@code a OR b},
+     * {@code -term}, {@code prefix*}); all terms are required by default.
+     * Input that is not valid syntax is searched as plain words.
+     *
+     * @param documentId restrict the hits to one document, or null
+     * @param page       0-based result page
+     */
+    public SearchResponse search(String queryText, String documentId, int page, int size) {
+        long start = System.nanoTime();
+        Query query = filter(parse(queryText), documentId);
+        int from = page * size;
+
+        return index.withSearcher(searcher -> {
+            TopDocs top = searcher.search(query, from + size);
+            ScoreDoc[] pageHits = top.scoreDocs.length > from
+                    ? Arrays.copyOfRange(top.scoreDocs, from, top.scoreDocs.length)
+                    : new ScoreDoc[0];
+
+            String[] highlights = new String[0];
+            if (pageHits.length > 0) {
+                UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                        .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", " … ", true))
+                        .build();
+                highlights = highlighter.highlight(TEXT, query, new TopDocs(top.totalHits, pageHits), SNIPPETS_PER_HIT);
+            }
+
+            StoredFields storedFields = searcher.storedFields();
+            List<SearchHitDto> hits = new ArrayList<>(pageHits.length);
+            for (int i = 0; i < pageHits.length; i++) {
+                Document stored = storedFields.document(pageHits[i].doc);
+                hits.add(new SearchHitDto(
+                        stored.get(DOCUMENT_ID),
+                        stored.get(VERSION_ID),
+                        stored.get(PAGE_ID),
+                        stored.getField(PAGE_NUMBER) != null ? stored.getField(PAGE_NUMBER).numericValue().intValue() : null,
+                        pageHits[i].score,
+                        snippets(highlights[i], stored.get(TEXT))));
+            }
+            long tookMs = (System.nanoTime() - start) / 1_000_000;
+            return new SearchResponse(queryText, top.totalHits.value, page, size, tookMs, hits);
+        });
+    }
+
+    public int pageCount() {
+        return index.numDocs();
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval:PT1S}")
+    public void refresh() {
+        index.refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.commit-interval:PT30S}")
+    public void commit() {
+        index.commit();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        index.close();
+    }
+
+    private Query parse(String queryText) {
+        QueryParser parser = new QueryParser(TEXT, analyzer);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        try {
+            return parser.parse(queryText);
+        } catch (ParseException e) {
+            try {
+                return parser.parse(QueryParser.escape(queryText));
+            } catch (ParseException escaped) {
+                throw new IllegalArgumentException("Invalid search query: " + queryText, escaped);
+            }
+        }
+    }
+
+    private Query filter(Query query, String documentId) {
+        if (documentId == null || documentId.isBlank()) {
+            return query;
+        }
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    private List<String> snippets(String highlighted, String text) {
+        if (highlighted != null && !highlighted.isBlank()) {
+            return List.of(highlighted);
+        }
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        // no passage matched the text field itself (e.g. a pure filter query): show the page start
+        String start = text.length() > FALLBACK_SNIPPET_CHARS ? text.substring(0, FALLBACK_SNIPPET_CHARS) + " …" : text;
+        return List.of(start.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;"));
+    }
+
+    private static String pageKey(String documentId, String documentVersionId, String pageId) {
+        return documentId + ":" + documentVersionId + ":" + pageId;
+    }
+}
@@ -0,0 +1,263 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldExistsQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.utils.LuceneIndex;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Approximate nearest-neighbour index over the embeddings of page chunks,
+ * backed by Lucene's HNSW graphs. Vectors are kept in Lucene's flat vector
+ * files in a memory-mapped directory, off the Java heap, so a restart only
+ * maps the files again instead of rebuilding the graph. Each page is stored
+ * as a block of chunk documents replaced together when the page is re-embedded.
+ */
+@Component
+public class PageVectorIndex {
+
+    static final String PAGE_KEY = "pageKey";
+    static final String DOCUMENT_ID = "documentId";
+    static final String VERSION_ID = "documentVersionId";
+    static final String PAGE_ID = "pageId";
+    static final String PAGE_NUMBER = "pageNumber";
+    static final String CHUNK = "chunk";
+    static final String VECTOR = "vector";
+
+    private final LuceneIndex index;
+
+    public PageVectorIndex(@Value("${search.vector.path:./data/vector-index}") String indexPath,
+                           @Value("${search.vector.ram-buffer-mb:64}") double ramBufferMb) throws IOException {
+        this.index = new LuceneIndex("page vector index", Path.of(indexPath), new StandardAnalyzer(), ramBufferMb);
+    }
+
+    /**
+     * A chunk of page text that matched a vector query. Scores are in [0, 1],
+     * higher is closer.
+     */
+    public record ChunkHit(String documentId, String documentVersionId, String pageId, Integer pageNumber,
+                           String chunk, float score) {
+    }
+
+    /**
+     * Replace the chunks of a page with {@code chunks} and their embeddings.
+     */
+    public void indexPage(String documentId, String documentVersionId, String pageId, Integer pageNumber,
+                          List<String> chunks, List<float[]> vectors) {
+        if (chunks.size() != vectors.size()) {
+            throw new IllegalArgumentException("Expected one vector per chunk");
+        }
+        String pageKey = pageKey(documentId, documentVersionId, pageId);
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document document = new Document();
+            document.add(new StringField(PAGE_KEY, pageKey, Field.Store.NO));
+            document.add(new StringField(DOCUMENT_ID, documentId, Field.Store.YES));
+            document.add(new StringField(VERSION_ID, documentVersionId, Field.Store.YES));
+            document.add(new StringField(PAGE_ID, pageId, Field.Store.YES));
+            if (pageNumber != null) {
+                document.add(new StoredField(PAGE_NUMBER, pageNumber));
+            }
+            document.add(new StoredField(CHUNK, chunks.get(i)));
+            document.add(new KnnFloatVectorField(VECTOR, vectors.get(i), VectorSimilarityFunction.COSINE));
+            documents.add(document);
+        }
+        index.update(new Term(PAGE_KEY, pageKey), documents);
+    }
+
+    /**
+     * @return ids of the pages of {@code documentVersionId} that have embeddings
+     */
+    public Set<String> indexedPageIds(String documentId, String documentVersionId) {
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(VERSION_ID, documentVersionId)), BooleanClause.Occur.FILTER)
+                .build();
+        return index.withSearcher(searcher -> {
+            Set<String> pageIds = new HashSet<>();
+            StoredFields storedFields = searcher.storedFields();
+            for (ScoreDoc hit : all(searcher, query)) {
+                pageIds.add(storedFields.document(hit.doc, Set.of(PAGE_ID)).get(PAGE_ID));
+            }
+            return pageIds;
+        });
+    }
+
+    public void retainVersion(String documentId, String documentVersionId) {
+        index.delete(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(VERSION_ID, documentVersionId)), BooleanClause.Occur.MUST_NOT)
+                .build());
+    }
+
+    public void deleteDocument(String documentId) {
+        index.delete(new TermQuery(new Term(DOCUMENT_ID, documentId)));
+    }
+
+    /**
+     * Find the chunks closest to {@code vector}.
+     *
+     * @param candidates size of the HNSW candidate list: more candidates means
+     *                   better recall and a slower query
+     * @param filter     restricts the chunks considered, or null
+     */
+    public List<ChunkHit> search(float[] vector, int candidates, Query filter) {
+        return index.withSearcher(searcher -> {
+            ScoreDoc[] hits = searcher.search(new KnnFloatVectorQuery(VECTOR, vector, candidates, filter), candidates)
+                    .scoreDocs;
+            StoredFields storedFields = searcher.storedFields();
+            List<ChunkHit> chunks = new ArrayList<>(hits.length);
+            for (ScoreDoc hit : hits) {
+                Document stored = storedFields.document(hit.doc);
+                chunks.add(new ChunkHit(
+                        stored.get(DOCUMENT_ID),
+                        stored.get(VERSION_ID),
+                        stored.get(PAGE_ID),
+                        stored.getField(PAGE_NUMBER) != null ? stored.getField(PAGE_NUMBER).numericValue().intValue() : null,
+                        stored.get(CHUNK),
+                        hit.score));
+            }
+            return chunks;
+        });
+    }
+
+    /**
+     * @return the mean embedding of the chunks of a page, if it was embedded
+     */
+    public Optional<float[]> pageVector(String documentId, String pageId) {
+        return meanVector(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(PAGE_ID, pageId)), BooleanClause.Occur.FILTER)
+                .build());
+    }
+
+    /**
+     * @return the mean embedding of every chunk of a document, if it was embedded
+     */
+    public Optional<float[]> documentVector(String documentId) {
+        return meanVector(new TermQuery(new Term(DOCUMENT_ID, documentId)));
+    }
+
+    public static Query documentFilter(String documentId) {
+        return new TermQuery(new Term(DOCUMENT_ID, documentId));
+    }
+
+    /**
+     * @return a filter that keeps every chunk except those of the given document, or page when not null
+     */
+    public static Query exclusionFilter(String documentId, String pageId) {
+        BooleanQuery.Builder excluded = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(DOCUMENT_ID, documentId)), BooleanClause.Occur.FILTER);
+        if (pageId != null) {
+            excluded.add(new TermQuery(new Term(PAGE_ID, pageId)), BooleanClause.Occur.FILTER);
+        }
+        return new BooleanQuery.Builder()
+                .add(new FieldExistsQuery(VECTOR), BooleanClause.Occur.FILTER)
+                .add(excluded.build(), BooleanClause.Occur.MUST_NOT)
+                .build();
+    }
+
+    public int chunkCount() {
+        return index.numDocs();
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval:PT1S}")
+    public void refresh() {
+        index.refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.commit-interval:PT30S}")
+    public void commit() {
+        index.commit();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        index.close();
+    }
+
+    private Optional<float[]> meanVector(Query query) {
+        return index.withSearcher(searcher -> {
+            ScoreDoc[] hits = all(searcher, query);
+            if (hits.length == 0) {
+                return Optional.<float[]>empty();
+            }
+            // visit the documents in index order so each leaf's vector iterator only moves forward
+            Arrays.sort(hits, Comparator.comparingInt(hit -> hit.doc));
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+
+            float[] sum = null;
+            int count = 0;
+            int currentLeaf = -1;
+            FloatVectorValues values = null;
+            for (ScoreDoc hit : hits) {
+                int leafIndex = ReaderUtil.subIndex(hit.doc, leaves);
+                LeafReaderContext leaf = leaves.get(leafIndex);
+                if (leafIndex != currentLeaf) {
+                    currentLeaf = leafIndex;
+                    values = leaf.reader().getFloatVectorValues(VECTOR);
+                }
+                int target = hit.doc - leaf.docBase;
+                if (values == null || values.docID() > target || values.advance(target) != target) {
+                    continue;
+                }
+                float[] vector = values.vectorValue();
+                if (sum == null) {
+                    sum = new float[vector.length];
+                }
+                for (int i = 0; i < vector.length; i++) {
+                    sum[i] += vector[i];
+                }
+                count++;
+            }
+            if (sum == null) {
+                return Optional.<float[]>empty();
+            }
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] /= count;
+            }
+            return Optional.of(sum);
+        });
+    }
+
+    private static ScoreDoc[] all(IndexSearcher searcher, Query query) throws IOException {
+        int count = searcher.count(query);
+        return count == 0 ? new ScoreDoc[0] : searcher.search(query, count).scoreDocs;
+    }
+
+    private static String pageKey(String documentId, String documentVersionId, String pageId) {
+        return documentId + ":" + documentVersionId + ":" + pageId;
+    }
+}
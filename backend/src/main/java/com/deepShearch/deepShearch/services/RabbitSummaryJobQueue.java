@@ -0,0 +1,27 @@
+package com.deepShearch.deepShearch.services;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobQueue;
+
+@Component
+public class RabbitSummaryJobQueue implements SummaryJobQueue {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final String queueName;
+
+    public RabbitSummaryJobQueue(RabbitTemplate rabbitTemplate,
+                                 @Value("${llm.jobs.queue:summarize.jobs}") String queueName) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.queueName = queueName;
+    }
+
+    @Override
+    public void publish(SummaryJobMessage message) {
+        // default exchange routes by queue name; messages are persistent by default
+        rabbitTemplate.convertAndSend("", queueName, message);
+    }
+}
@@ -0,0 +1,389 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongToIntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.PageImageService;
+import com.deepShearch.deepShearch.services.interfaces.ReadAheadService;
+import com.deepShearch.deepShearch.utils.LruCache;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Warms the image and OCR text of the pages after the one a reader just
+ * opened, so the next page turns are served from the caches. How far ahead
+ * depends on the reader's pace: the pages they are expected to reach within
+ * {@code read-ahead.horizon} are warmed, between the configured minimum and
+ * maximum. Prefetching is best effort: it runs with bounded concurrency per
+ * reader, queues a page when {@code read-ahead.max-in-flight} prefetches are
+ * already running and starts it when one of them ends, and stops when the
+ * reader closes the book or has been idle for {@code read-ahead.idle-timeout}.
+ * At most {@code read-ahead.max-deferred} pages wait in the queue; beyond that
+ * the oldest, the one its reader is most likely past, is dropped.
+ */
+@Slf4j
+@Service
+public class ReadAheadServiceImpl implements ReadAheadService {
+
+    private final MayanService mayanService;
+    private final PageImageService pageImageService;
+    private final PageOcrCache pageOcrCache;
+    private final boolean enabled;
+    private final int initialPages;
+    private final int minPages;
+    private final int maxPages;
+    private final long horizonMillis;
+    private final int concurrency;
+    private final int maxInFlight;
+    private final int maxDeferred;
+    private final long idleTimeoutMillis;
+
+    private final ConcurrentMap<String, ReadingSession> sessions = new ConcurrentHashMap<>();
+    private final LruCache<String, ReadingPlan> plans;
+    private final SingleFlight<ReadingPlan> planLoads = new SingleFlight<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** Prefetches waiting for one of the {@code maxInFlight} running ones to end, oldest first. */
+    private final Deque<Deferred> deferred = new ArrayDeque<>();
+
+    private final Counter warmedImages;
+    private final Counter warmedOcr;
+    private final Counter skipped;
+
+    public ReadAheadServiceImpl(MayanService mayanService,
+                                PageImageService pageImageService,
+                                PageOcrCache pageOcrCache,
+                                MeterRegistry meterRegistry,
+                                @Value("${read-ahead.enabled:true}") boolean enabled,
+                                @Value("${read-ahead.initial-pages:2}") int initialPages,
+                                @Value("${read-ahead.min-pages:1}") int minPages,
+                                @Value("${read-ahead.max-pages:8}") int maxPages,
+                                @Value("${read-ahead.horizon:PT20S}") Duration horizon,
+                                @Value("${read-ahead.concurrency:2}") int concurrency,
+                                @Value("${read-ahead.max-in-flight:8}") int maxInFlight,
+                                @Value("${read-ahead.max-deferred:32}") int maxDeferred,
+                                @Value("${read-ahead.idle-timeout:PT10M}") Duration idleTimeout,
+                                @Value("${read-ahead.plan-ttl:PT10M}") Duration planTtl) {
+        this.mayanService = mayanService;
+        this.pageImageService = pageImageService;
+        this.pageOcrCache = pageOcrCache;
+        this.enabled = enabled;
+        this.minPages = Math.max(0, minPages);
+        this.maxPages = Math.max(this.minPages, maxPages);
+        this.initialPages = Math.max(this.minPages, Math.min(initialPages, this.maxPages));
+        this.horizonMillis = horizon.toMillis();
+        this.concurrency = Math.max(1, concurrency);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxDeferred = Math.max(0, maxDeferred);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.plans = new LruCache<>(256, planTtl);
+
+        Gauge.builder("reader.prefetch.sessions", sessions, Map::size)
+                .description("Readers whose next pages are being prefetched")
+                .register(meterRegistry);
+        this.warmedImages = Counter.builder("reader.prefetch").tag("kind", "image").register(meterRegistry);
+        this.warmedOcr = Counter.builder("reader.prefetch").tag("kind", "ocr").register(meterRegistry);
+        this.skipped = Counter.builder("reader.prefetch").tag("kind", "skipped").register(meterRegistry);
+    }
+
+    /** The pages of a document file in reading order, with the active version page of each page number. */
+    record ReadingPlan(List<DocumentFilesResponse.DocumentFileDto> pages, String versionId,
+                       Map<Integer, String> versionPageByNumber) {
+
+        int indexOf(String fileId, String pageId) {
+            for (int i = 0; i < pages.size(); i++) {
+                DocumentFilesResponse.DocumentFileDto page = pages.get(i);
+                if (String.valueOf(page.getId()).equals(pageId)
+                        && (page.getDocument_file_id() == null || String.valueOf(page.getDocument_file_id()).equals(fileId))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public void pageRequested(String readerId, String documentId, String fileId, String pageId,
+                              Map<String, String> rendering) {
+        if (!enabled || readerId == null) {
+            return;
+        }
+        String sessionKey = readerId + "|" + documentId;
+        ReadingSession session = sessions.computeIfAbsent(sessionKey, key -> new ReadingSession(documentId));
+        session.touch();
+        plan(documentId).subscribe(
+                plan -> {
+                    // the book may have been closed while the plan was loading
+                    if (sessions.get(sessionKey) == session) {
+                        advance(session, plan, fileId, pageId, rendering);
+                    }
+                },
+                error -> log.debug("No read-ahead for document {}: {}", documentId, error.toString()));
+    }
+
+    @Override
+    public void closeBook(String readerId, String documentId) {
+        if (readerId == null || documentId == null) {
+            return;
+        }
+        ReadingSession session = sessions.remove(readerId + "|" + documentId);
+        if (session != null) {
+            session.close();
+            log.debug("Reader {} closed document {}, read-ahead stopped", readerId, documentId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${read-ahead.sweep-interval:PT1M}")
+    public void closeIdleSessions() {
+        long now = System.currentTimeMillis();
+        sessions.entrySet().removeIf(entry -> {
+            if (now - entry.getValue().lastActivity() <= idleTimeoutMillis) {
+                return false;
+            }
+            entry.getValue().close();
+            return true;
+        });
+    }
+
+    /**
+     * Pages to read ahead for a reader at {@code millisPerPage}: those reached within the horizon.
+     */
+    int lookahead(long millisPerPage) {
+        if (millisPerPage <= 0) {
+            return initialPages;
+        }
+        long pages = (horizonMillis + millisPerPage - 1) / millisPerPage;
+        return (int) Math.max(minPages, Math.min(maxPages, pages));
+    }
+
+    private void advance(ReadingSession session, ReadingPlan plan, String fileId, String pageId,
+                         Map<String, String> rendering) {
+        int index = plan.indexOf(fileId, pageId);
+        if (index < 0) {
+            return;
+        }
+        List<DocumentFilesResponse.DocumentFileDto> ahead = session.turnTo(index, System.currentTimeMillis(),
+                idleTimeoutMillis, this::lookahead, plan.pages());
+        if (ahead.isEmpty()) {
+            return;
+        }
+        Disposable prefetch = Flux.fromIterable(ahead)
+                .flatMap(page -> warm(new Deferred(session, fileId, page, plan, rendering)), concurrency)
+                .subscribe();
+        session.track(prefetch);
+    }
+
+    private Mono<Void> warm(Deferred prefetch) {
+        String documentId = prefetch.session().documentId();
+        DocumentFilesResponse.DocumentFileDto page = prefetch.page();
+        ReadingPlan plan = prefetch.plan();
+        return Mono.defer(() -> {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                defer(prefetch);
+                return Mono.<Void>empty();
+            }
+            Mono<Void> image = pageImageService
+                    .prefetch(documentId, prefetch.fileId(), String.valueOf(page.getId()), prefetch.rendering())
+                    .doOnSuccess(done -> warmedImages.increment());
+            String versionPageId = plan.versionPageByNumber().get(page.getPage_number());
+            Mono<Void> ocr = versionPageId == null
+                    ? Mono.<Void>empty()
+                    : pageOcrCache.get(documentId, plan.versionId(), versionPageId)
+                            .doOnSuccess(done -> warmedOcr.increment())
+                            .then();
+            return Mono.when(image, ocr)
+                    .onErrorResume(error -> {
+                        log.debug("Read-ahead of page {} of document {} failed: {}",
+                                page.getId(), documentId, error.toString());
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> {
+                        inFlight.decrementAndGet();
+                        runDeferred();
+                    });
+        });
+    }
+
+    private void defer(Deferred prefetch) {
+        synchronized (deferred) {
+            if (deferred.size() >= maxDeferred) {
+                Deferred dropped = deferred.pollFirst();
+                skipped.increment();
+                if (dropped == null) {
+                    return;
+                }
+            }
+            deferred.addLast(prefetch);
+        }
+        // the prefetches that were running may all have ended in the meantime
+        runDeferred();
+    }
+
+    /**
+     * Start queued prefetches while there is room, skipping those of closed books.
+     */
+    private void runDeferred() {
+        while (inFlight.get() < maxInFlight) {
+            Deferred next;
+            synchronized (deferred) {
+                next = deferred.pollFirst();
+            }
+            if (next == null) {
+                return;
+            }
+            if (!next.session().isClosed()) {
+                next.session().track(warm(next).subscribe());
+            }
+        }
+    }
+
+    private Mono<ReadingPlan> plan(String documentId) {
+        return Mono.defer(() -> plans.get(documentId)
+                .map(Mono::just)
+                .orElseGet(() -> planLoads.execute(documentId, () -> loadPlan(documentId)
+                        .doOnNext(plan -> plans.put(documentId, plan)))));
+    }
+
+    private Mono<ReadingPlan> loadPlan(String documentId) {
+        Mono<List<DocumentFilesResponse.DocumentFileDto>> filePages = mayanService.getDocumentsById(documentId)
+                .map(response -> {
+                    List<DocumentFilesResponse.DocumentFileDto> pages = response.getResults() != null
+                            ? new ArrayList<>(response.getResults())
+                            : new ArrayList<>();
+                    pages.sort(Comparator.comparing(DocumentFilesResponse.DocumentFileDto::getPage_number,
+                            Comparator.nullsLast(Comparator.naturalOrder())));
+                    return pages;
+                });
+        // OCR is per version page; an unknown active version only disables the OCR half
+        Mono<ReadingPlan> versionPages = mayanService.getDocument(documentId)
+                .filter(document -> document.getVersionActive() != null && document.getVersionActive().getId() != null)
+                .flatMap(document -> {
+                    String versionId = String.valueOf(document.getVersionActive().getId());
+                    return mayanService.getDocumentVersionPages(documentId, versionId)
+                            .map(pages -> {
+                                Map<Integer, String> byNumber = new HashMap<>();
+                                for (DocumentVersionPagesResponse.DocumentVersionPageDto page : pages) {
+                                    if (page.getPage_number() != null && page.getId() != null) {
+                                        byNumber.put(page.getPage_number(), String.valueOf(page.getId()));
+                                    }
+                                }
+                                return new ReadingPlan(List.of(), versionId, byNumber);
+                            });
+                })
+                .onErrorResume(error -> Mono.empty())
+                .defaultIfEmpty(new ReadingPlan(List.of(), null, Map.of()));
+        return Mono.zip(filePages, versionPages,
+                (pages, versions) -> new ReadingPlan(pages, versions.versionId(), versions.versionPageByNumber()));
+    }
+
+    private record Deferred(ReadingSession session, String fileId, DocumentFilesResponse.DocumentFileDto page,
+                            ReadingPlan plan, Map<String, String> rendering) {
+    }
+
+    /**
+     * Where a reader is in a document and how fast they turn pages.
+     */
+    private static final class ReadingSession {
+
+        /** Weight of the latest page turn in the pace estimate. */
+        private static final double PACE_WEIGHT = 0.3;
+
+        private final String documentId;
+        private final List<Disposable> prefetches = new ArrayList<>();
+        private boolean closed;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private int lastIndex = -1;
+        private long lastTurnAt;
+        private long millisPerPage;
+        /** Highest page index already scheduled for prefetch. */
+        private int scheduledThrough = -1;
+
+        ReadingSession(String documentId) {
+            this.documentId = documentId;
+        }
+
+        String documentId() {
+            return documentId;
+        }
+
+        long lastActivity() {
+            return lastActivity;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * Move to page {@code index}, update the pace on a forward turn, and
+         * return the pages ahead that are not scheduled yet.
+         */
+        synchronized List<DocumentFilesResponse.DocumentFileDto> turnTo(int index, long now, long idleMillis,
+                                                                        LongToIntFunction lookahead,
+                                                                        List<DocumentFilesResponse.DocumentFileDto> pages) {
+            if (lastIndex >= 0 && index == lastIndex + 1 && now - lastTurnAt < idleMillis) {
+                long interval = Math.max(1, now - lastTurnAt);
+                millisPerPage = millisPerPage == 0
+                        ? interval
+                        : Math.round(PACE_WEIGHT * interval + (1 - PACE_WEIGHT) * millisPerPage);
+            }
+            if (index < lastIndex || index > scheduledThrough + 1) {
+                // a jump: what was scheduled is no longer ahead of the reader
+                scheduledThrough = index;
+            }
+            lastIndex = index;
+            lastTurnAt = now;
+
+            int last = Math.min(pages.size() - 1, index + lookahead.applyAsInt(millisPerPage));
+            int first = Math.max(index + 1, scheduledThrough + 1);
+            if (first > last) {
+                return List.of();
+            }
+            scheduledThrough = last;
+            return pages.subList(first, last + 1);
+        }
+
+        synchronized void track(Disposable prefetch) {
+            if (closed) {
+                prefetch.dispose();
+                return;
+            }
+            prefetches.removeIf(Disposable::isDisposed);
+            prefetches.add(prefetch);
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized void close() {
+            closed = true;
+            prefetches.forEach(Disposable::dispose);
+            prefetches.clear();
+        }
+    }
+}
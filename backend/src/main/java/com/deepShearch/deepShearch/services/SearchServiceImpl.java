@@ -0,0 +1,168 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.services.interfaces.DocumentQaService;
+import com.deepShearch.deepShearch.services.interfaces.HybridSearchService;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.SearchService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@Slf4j
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int CRAWL_PAGE_SIZE = 100;
+
+    private final PageTextIndex pageTextIndex;
+    private final PageVectorIndex pageVectorIndex;
+    private final PageOcrCache pageOcrCache;
+    private final HybridSearchService hybridSearchService;
+    private final DocumentQaService documentQaService;
+    private final MayanService mayanService;
+    private final int reindexConcurrency;
+    private final int reindexOcrConcurrency;
+
+    public SearchServiceImpl(PageTextIndex pageTextIndex,
+                             PageVectorIndex pageVectorIndex,
+                             PageOcrCache pageOcrCache,
+                             HybridSearchService hybridSearchService,
+                             DocumentQaService documentQaService,
+                             MayanService mayanService,
+                             @Value("${search.reindex-concurrency:2}") int reindexConcurrency,
+                             @Value("${search.reindex-ocr-concurrency:4}") int reindexOcrConcurrency) {
+        this.pageTextIndex = pageTextIndex;
+        this.pageVectorIndex = pageVectorIndex;
+        this.pageOcrCache = pageOcrCache;
+        this.hybridSearchService = hybridSearchService;
+        this.documentQaService = documentQaService;
+        this.mayanService = mayanService;
+        this.reindexConcurrency = reindexConcurrency;
+        this.reindexOcrConcurrency = reindexOcrConcurrency;
+    }
+
+    @Override
+    public SearchResponse search(String query, String documentId, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        int boundedSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return pageTextIndex.search(query.trim(), documentId, Math.max(0, page), boundedSize);
+    }
+
+    @Override
+    public void reindexDocument(String documentId) {
+        mayanService.getDocument(documentId)
+                .flatMap(document -> reindex(document, true))
+                .subscribe(pages -> log.info("Reindexed {} pages of document {}", pages, documentId),
+                        error -> log.error("Could not reindex document {}", documentId, error));
+    }
+
+    @Override
+    public void reindexAll() {
+        log.info("Reindexing every Mayan document");
+        crawl(1)
+                .flatMap(document -> reindex(document, false), reindexConcurrency)
+                .subscribe(null,
+                        error -> log.error("Reindexing stopped", error),
+                        () -> log.info("Reindexing finished, {} pages in the text index", pageTextIndex.pageCount()));
+    }
+
+    @Override
+    public void removeDocument(String documentId) {
+        deleteFromIndexes(documentId);
+    }
+
+    private void deleteFromIndexes(String documentId) {
+        pageTextIndex.deleteDocument(documentId);
+        pageVectorIndex.deleteDocument(documentId);
+        pageTextIndex.refresh();
+        pageVectorIndex.refresh();
+        hybridSearchService.invalidate(documentId);
+        documentQaService.invalidate(documentId);
+    }
+
+    /**
+     * Index the OCR text of the active version of a document. This only feeds
+     * the text index: summaries and embeddings do not depend on it and are left
+     * to the ingestion, so a full reindex never queues work for the model.
+     *
+     * @param rebuild replace every indexed page of the document; otherwise
+     *                only the pages missing from the index are added
+     * @return the number of pages written to the index
+     */
+    private Mono<Integer> reindex(MayanDocumentResponse document, boolean rebuild) {
+        String documentId = String.valueOf(document.getId());
+        if (document.getVersionActive() == null || document.getVersionActive().getId() == null) {
+            log.debug("Document {} has no active version, nothing to index", documentId);
+            return Mono.just(0);
+        }
+        String versionId = String.valueOf(document.getVersionActive().getId());
+
+        Mono<Set<String>> indexedMono = rebuild
+                ? Mono.just(Set.of())
+                : Mono.fromCallable(() -> pageTextIndex.indexedPageIds(documentId, versionId))
+                        .subscribeOn(Schedulers.boundedElastic());
+
+        return indexedMono.flatMap(indexed -> mayanService.getDocumentVersionPages(documentId, versionId)
+                .flatMapMany(Flux::fromIterable)
+                .filter(page -> !indexed.contains(String.valueOf(page.getId())))
+                .flatMap(page -> pageOcrCache.get(documentId, versionId, String.valueOf(page.getId()))
+                        .filter(ocr -> ocr.getContent() != null && !ocr.getContent().isBlank())
+                        .map(ocr -> new PageText(String.valueOf(page.getId()), page.getPage_number(),
+                                ocr.getContent()))
+                        .onErrorResume(error -> {
+                            log.warn("Could not fetch OCR of page {} of document {}: {}",
+                                    page.getId(), documentId, error.getMessage());
+                            return Mono.empty();
+                        }), reindexOcrConcurrency)
+                .collectList()
+                .filter(pages -> rebuild || !pages.isEmpty())
+                // the old entries stay searchable until the new text is at hand
+                .flatMap(pages -> Mono.fromCallable(() -> {
+                            if (rebuild) {
+                                pageTextIndex.deleteDocument(documentId);
+                            } else {
+                                pageTextIndex.retainVersion(documentId, versionId);
+                            }
+                            pages.forEach(page -> pageTextIndex.indexPage(documentId, versionId, page.pageId(),
+                                    page.pageNumber(), page.content()));
+                            pageTextIndex.refresh();
+                            hybridSearchService.invalidate(documentId);
+                            documentQaService.invalidate(documentId);
+                            return pages.size();
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .defaultIfEmpty(0));
+    }
+
+    /**
+     * Page through the Mayan document list one page at a time.
+     */
+    private Flux<MayanDocumentResponse> crawl(int page) {
+        return mayanService.getDocuments(null, page, CRAWL_PAGE_SIZE)
+                .flatMapMany(response -> {
+                    List<MayanDocumentResponse> results = response.getResults() != null
+                            ? response.getResults()
+                            : List.<MayanDocumentResponse>of();
+                    Flux<MayanDocumentResponse> current = Flux.fromIterable(results);
+                    return response.getNext() != null && !results.isEmpty()
+                            ? current.concatWith(Flux.defer(() -> crawl(page + 1)))
+                            : current;
+                });
+    }
+
+    private record PageText(String pageId, Integer pageNumber, String content) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.lucene.search.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse.SearchHitDto;
+import com.deepShearch.deepShearch.services.PageVectorIndex.ChunkHit;
+import com.deepShearch.deepShearch.services.interfaces.SemanticSearchService;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@Service
+public class SemanticSearchServiceImpl implements SemanticSearchService {
+
+    private static final int MAX_K = 100;
+    private static final int MAX_EF = 1000;
+    /** Pages are made of several chunks, so look at a few chunks per requested page. */
+    private static final int CHUNKS_PER_HIT = 4;
+    private static final int SNIPPET_CHARS = 300;
+
+    private final PageVectorIndex pageVectorIndex;
+    private final PageEmbedder pageEmbedder;
+    private final int defaultEf;
+
+    public SemanticSearchServiceImpl(PageVectorIndex pageVectorIndex,
+                                     PageEmbedder pageEmbedder,
+                                     @Value("${search.vector.default-ef:100}") int defaultEf) {
+        this.pageVectorIndex = pageVectorIndex;
+        this.pageEmbedder = pageEmbedder;
+        this.defaultEf = defaultEf;
+    }
+
+    @Override
+    public Mono<SearchResponse> search(String query, String documentId, int k, int ef) {
+        if (query == null || query.isBlank()) {
+            return Mono.error(new IllegalArgumentException("Search query is required"));
+        }
+        long start = System.nanoTime();
+        Query filter = documentId == null || documentId.isBlank() ? null : PageVectorIndex.documentFilter(documentId);
+        return pageEmbedder.embedQuery(query.trim())
+                .publishOn(Schedulers.boundedElastic())
+                .map(vector -> respond(query, k, start,
+                        pageVectorIndex.search(vector, candidates(k, ef), filter), ChunkHit::pageId));
+    }
+
+    @Override
+    public Mono<SearchResponse> similarPages(String documentId, String pageId, int k, int ef) {
+        long start = System.nanoTime();
+        return Mono.fromCallable(() -> pageVectorIndex.pageVector(documentId, pageId)
+                        .map(vector -> respond(null, k, start, pageVectorIndex.search(vector, candidates(k, ef),
+                                PageVectorIndex.exclusionFilter(documentId, pageId)), ChunkHit::pageId))
+                        .orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<SearchResponse> similarDocuments(String documentId, int k, int ef) {
+        long start = System.nanoTime();
+        return Mono.fromCallable(() -> pageVectorIndex.documentVector(documentId)
+                        .map(vector -> respond(null, k, start, pageVectorIndex.search(vector, candidates(k, ef),
+                                PageVectorIndex.exclusionFilter(documentId, null)), ChunkHit::documentId))
+                        .orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private int candidates(int k, int ef) {
+        int requested = ef > 0 ? ef : defaultEf;
+        return Math.min(MAX_EF, Math.max(requested, bounded(k) * CHUNKS_PER_HIT));
+    }
+
+    /**
+     * Keep the best chunk of each group, in score order, up to {@code k} groups.
+     */
+    private SearchResponse respond(String query, int k, long start, List<ChunkHit> chunks,
+                                   Function<ChunkHit, String> groupBy) {
+        int size = bounded(k);
+        Map<String, ChunkHit> best = new LinkedHashMap<>();
+        for (ChunkHit chunk : chunks) {
+            if (best.size() == size) {
+                break;
+            }
+            best.putIfAbsent(groupBy.apply(chunk), chunk);
+        }
+        List<SearchHitDto> hits = new ArrayList<>(best.size());
+        for (ChunkHit chunk : best.values()) {
+            hits.add(new SearchHitDto(chunk.documentId(), chunk.documentVersionId(), chunk.pageId(),
+                    chunk.pageNumber(), chunk.score(), List.of(snippet(chunk.chunk()))));
+        }
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResponse(query, hits.size(), 0, size, tookMs, hits);
+    }
+
+    private static int bounded(int k) {
+        return Math.max(1, Math.min(k, MAX_K));
+    }
+
+    private static String snippet(String chunk) {
+        if (chunk == null) {
+            return "";
+        }
+        String text = chunk.length() > SNIPPET_CHARS ? chunk.substring(0, SNIPPET_CHARS) + " …" : chunk;
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
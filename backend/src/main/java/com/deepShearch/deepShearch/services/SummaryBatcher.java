@@ -0,0 +1,258 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.services.LlmAdmissionController.Lane;
+import com.deepShearch.deepShearch.utils.TextChunker;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Groups summarization requests for short pages into a single prompt. While
+ * the model is busy with earlier pages, pages are collected for at most
+ * {@code window}, or until the batch reaches its token or page budget, then
+ * sent together with a request for a JSON array of per-page results. Pages
+ * the model leaves out of the answer, or batches whose answer cannot be
+ * parsed, fall back to one prompt per page. A batch runs in
+ * the interactive admission lane as soon as one of its pages does. A page
+ * that arrives when nothing is queued or in flight is sent at once, so a lone
+ * reader never waits for the window.
+ */
+@Slf4j
+public class SummaryBatcher {
+
+    private static final String BATCH_PROMPT = """
+            Summarize each of the following pages separately and concisely.
+
+            {pages}
+
+            Produce the result in **valid JSON only**: a JSON array with one object per page,
+            in the same order as the pages, in the following structure:
+
+            [
+              {"page": 1, "summary": "A brief summary of page 1.", "keywords": ["keyword1", "keyword2"]},
+              {"page": 2, "summary": "A brief summary of page 2.", "keywords": ["keyword1", "keyword2"]}
+            ]
+            """;
+
+    private final Function<String, Mono<String>> modelCall;
+    private final Function<String, Mono<AiSumarizeResponse>> singleSummary;
+    private final ObjectMapper objectMapper;
+    private final int maxPageTokens;
+    private final int maxBatchTokens;
+    private final int maxBatchPages;
+    private final Duration window;
+
+    private final Object lock = new Object();
+    private List<PendingPage> pending = new ArrayList<>();
+    private int pendingTokens;
+    private long generation;
+    /** Batches taken from {@code pending} whose answer has not arrived yet. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param modelCall     sends a prompt to the model and returns its raw answer
+     * @param singleSummary summarizes one page on its own, used as fallback
+     */
+    public SummaryBatcher(Function<String, Mono<String>> modelCall,
+                          Function<String, Mono<AiSumarizeResponse>> singleSummary,
+                          ObjectMapper objectMapper,
+                          int maxPageTokens, int maxBatchTokens, int maxBatchPages, Duration window) {
+        this.modelCall = modelCall;
+        this.singleSummary = singleSummary;
+        this.objectMapper = objectMapper;
+        this.maxPageTokens = maxPageTokens;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchPages = maxBatchPages;
+        this.window = window;
+    }
+
+    /**
+     * @return whether {@code content} is short enough to be batched
+     */
+    public boolean accepts(String content) {
+        return maxBatchPages > 1 && TextChunker.estimateTokens(content) <= maxPageTokens;
+    }
+
+    public Mono<AiSumarizeResponse> submit(String content) {
+        return Mono.deferContextual(context -> {
+            PendingPage page = new PendingPage(content, TextChunker.estimateTokens(content),
+                    LlmAdmissionController.laneOf(context), new CompletableFuture<>());
+            List<PendingPage> ready = null;
+            List<PendingPage> overflow = null;
+            boolean startTimer = false;
+            long timerGeneration;
+
+            synchronized (lock) {
+                if (pending.isEmpty() && inFlight.get() == 0) {
+                    // nothing to batch with: waiting would only add latency
+                    ready = List.of(page);
+                    generation++;
+                    inFlight.incrementAndGet();
+                } else if (!pending.isEmpty() && pendingTokens + page.tokens() > maxBatchTokens) {
+                    overflow = drain();
+                }
+                if (ready == null) {
+                    pending.add(page);
+                    pendingTokens += page.tokens();
+                    if (pending.size() >= maxBatchPages || pendingTokens >= maxBatchTokens) {
+                        ready = drain();
+                    } else if (pending.size() == 1) {
+                        startTimer = true;
+                    }
+                }
+                timerGeneration = generation;
+            }
+
+            if (overflow != null) {
+                send(overflow);
+            }
+            if (ready != null) {
+                send(ready);
+            }
+            if (startTimer) {
+                Mono.delay(window).subscribe(tick -> flush(timerGeneration));
+            }
+            return Mono.fromFuture(page.result(), true);
+        });
+    }
+
+    private void flush(long expectedGeneration) {
+        List<PendingPage> ready;
+        synchronized (lock) {
+            // the batch this timer was started for has already been sent
+            if (generation != expectedGeneration || pending.isEmpty()) {
+                return;
+            }
+            ready = drain();
+        }
+        send(ready);
+    }
+
+    /**
+     * Must be called while holding {@code lock}.
+     */
+    private List<PendingPage> drain() {
+        List<PendingPage> drained = pending;
+        pending = new ArrayList<>();
+        pendingTokens = 0;
+        generation++;
+        // counted from here, so pages arriving before send() runs still see the model busy
+        inFlight.incrementAndGet();
+        return drained;
+    }
+
+    private void send(List<PendingPage> batch) {
+        if (batch.size() == 1) {
+            PendingPage page = batch.get(0);
+            page.result().whenComplete((result, error) -> inFlight.decrementAndGet());
+            sendSingle(page);
+            return;
+        }
+        log.debug("Sending a batch of {} pages to the model", batch.size());
+
+        StringBuilder pages = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            pages.append("=== PAGE ").append(i + 1).append(" ===\n")
+                    .append(batch.get(i).content()).append("\n\n");
+        }
+
+        Lane lane = batch.stream().anyMatch(page -> page.lane() == Lane.INTERACTIVE)
+                ? Lane.INTERACTIVE
+                : Lane.BACKGROUND;
+        modelCall.apply(BATCH_PROMPT.replace("{pages}", pages.toString().trim()))
+                .contextWrite(LlmAdmissionController.lane(lane))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe(answer -> dispatch(batch, answer),
+                        error -> {
+                            if (error instanceof LlmAdmissionController.RejectedException) {
+                                // retrying page by page would only add load
+                                batch.forEach(page -> page.result().completeExceptionally(error));
+                                return;
+                            }
+                            log.warn("Batched summary failed, retrying {} pages one by one: {}",
+                                    batch.size(), error.getMessage());
+                            batch.forEach(this::sendSingle);
+                        });
+    }
+
+    private void dispatch(List<PendingPage> batch, String answer) {
+        Map<Integer, AiSumarizeResponse> results = parseBatch(answer, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            AiSumarizeResponse result = results.get(i + 1);
+            if (result != null) {
+                batch.get(i).result().complete(result);
+            } else {
+                sendSingle(batch.get(i));
+            }
+        }
+    }
+
+    private void sendSingle(PendingPage page) {
+        singleSummary.apply(page.content())
+                .contextWrite(LlmAdmissionController.lane(page.lane()))
+                .subscribe(page.result()::complete,
+                        page.result()::completeExceptionally,
+                        () -> page.result().completeExceptionally(
+                                new IllegalStateException("No summary was produced")));
+    }
+
+    /**
+     * @return results by 1-based page position; empty when the answer cannot be parsed
+     */
+    private Map<Integer, AiSumarizeResponse> parseBatch(String answer, int size) {
+        Map<Integer, AiSumarizeResponse> results = new HashMap<>();
+        if (answer == null) {
+            return results;
+        }
+        String json = answer;
+        int thinkEnd = json.lastIndexOf("</think>");
+        if (thinkEnd >= 0) {
+            json = json.substring(thinkEnd + "</think>".length());
+        }
+        int start = json.indexOf('[');
+        int end = json.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            return results;
+        }
+
+        try {
+            JsonNode array = objectMapper.readTree(json.substring(start, end + 1));
+            int position = 0;
+            for (JsonNode item : array) {
+                position++;
+                if (!item.hasNonNull("summary")) {
+                    continue;
+                }
+                int page = item.has("page") ? item.get("page").asInt(position) : position;
+                if (page < 1 || page > size) {
+                    continue;
+                }
+                List<String> keywords = new ArrayList<>();
+                if (item.has("keywords")) {
+                    item.get("keywords").forEach(keyword -> keywords.add(keyword.asText()));
+                }
+                results.putIfAbsent(page, new AiSumarizeResponse(item.get("summary").asText(), keywords));
+            }
+        } catch (Exception e) {
+            log.warn("Could not parse batched summary answer: {}", e.getMessage());
+            results.clear();
+        }
+        return results;
+    }
+
+    private record PendingPage(String content, int tokens, Lane lane,
+                               CompletableFuture<AiSumarizeResponse> result) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.Model.SummaryContent;
+import com.deepShearch.deepShearch.repository.SummaryContentRepository;
+import com.deepShearch.deepShearch.utils.ContentHasher;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Content-addressed summary store: text that was already summarized anywhere
+ * in the corpus (re-uploads, unchanged pages of a new version, cover and legal
+ * pages) is answered from the table instead of calling the model again.
+ * Hits and misses are exported as {@code summary.content.lookups}.
+ */
+@Slf4j
+@Component
+public class SummaryContentStore {
+
+    private final SummaryContentRepository summaryContentRepository;
+    private final SingleFlight<AiSumarizeResponse> singleFlight = new SingleFlight<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public SummaryContentStore(SummaryContentRepository summaryContentRepository, MeterRegistry meterRegistry) {
+        this.summaryContentRepository = summaryContentRepository;
+        this.hits = Counter.builder("summary.content.lookups")
+                .description("Summary lookups by content hash")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("summary.content.lookups")
+                .description("Summary lookups by content hash")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public String hash(String content) {
+        return ContentHasher.hash(content);
+    }
+
+    /**
+     * Return the stored summary of {@code contentHash}, or run {@code compute}
+     * once for it and store the result.
+     */
+    public Mono<AiSumarizeResponse> getOrCompute(String contentHash, Supplier<Mono<AiSumarizeResponse>> compute) {
+        return lookup(contentHash)
+                .switchIfEmpty(Mono.defer(() -> singleFlight.execute(contentHash, () -> {
+                    misses.increment();
+                    return compute.get().flatMap(response -> store(contentHash, response).thenReturn(response));
+                })));
+    }
+
+    /**
+     * Find the stored summary of {@code contentHash}, counting a hit when there is one.
+     * Callers that then compute the summary themselves should {@link #recordMiss()}.
+     */
+    public Mono<AiSumarizeResponse> lookup(String contentHash) {
+        return find(contentHash).doOnNext(found -> hits.increment());
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    private Mono<AiSumarizeResponse> find(String contentHash) {
+        // a null result completes the Mono empty
+        return Mono.fromCallable(() -> summaryContentRepository.findById(contentHash)
+                        .map(content -> new AiSumarizeResponse(content.getSummary(),
+                                content.getKeyWords() != null ? List.copyOf(content.getKeyWords()) : List.<String>of()))
+                        .orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Void> store(String contentHash, AiSumarizeResponse response) {
+        return Mono.fromRunnable(() -> {
+                    SummaryContent content = new SummaryContent();
+                    content.setContentHash(contentHash);
+                    content.setSummary(response.getSummary());
+                    content.setKeyWords(response.getKeywords());
+                    try {
+                        summaryContentRepository.save(content);
+                    } catch (DataIntegrityViolationException e) {
+                        log.debug("Summary for content {} was already stored", contentHash);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+}
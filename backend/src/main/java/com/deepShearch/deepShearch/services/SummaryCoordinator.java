@@ -0,0 +1,225 @@
+package com.deepShearch.deepShearch.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.repository.SummaryClaimRepository;
+import com.deepShearch.deepShearch.utils.SingleFlight;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Makes sure a page is summarized once no matter how many readers ask for it
+ * at the same time. Callers in this JVM attach to the pending computation;
+ * callers on other instances see the claim row and wait for the stored result.
+ */
+@Slf4j
+@Component
+public class SummaryCoordinator {
+
+    private final SingleFlight<AiSumarizeResponse> singleFlight = new SingleFlight<>();
+    /** Streams led in this JVM by page key, guarded by itself together with their reader counts. */
+    private final Map<String, Lead> leads = new HashMap<>();
+    private final SummaryClaimRepository claimRepository;
+    private final String owner = UUID.randomUUID().toString();
+    private final Duration claimTtl;
+    private final Duration pollInterval;
+
+    public SummaryCoordinator(SummaryClaimRepository claimRepository,
+                              @Value("${llm.claim.ttl:PT5M}") Duration claimTtl,
+                              @Value("${llm.claim.poll-interval:PT1S}") Duration pollInterval) {
+        this.claimRepository = claimRepository;
+        this.claimTtl = claimTtl;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Return the stored summary for {@code pageKey}, or compute it exactly once.
+     *
+     * @param pageKey identifies the document version page
+     * @param lookup  blocking read of an already stored summary
+     * @param compute computes and stores the summary
+     */
+    public Mono<AiSumarizeResponse> summarize(String pageKey,
+                                             Supplier<Optional<AiSumarizeResponse>> lookup,
+                                             Supplier<Mono<AiSumarizeResponse>> compute) {
+        return singleFlight.execute(pageKey, () -> blocking(lookup::get)
+                .flatMap(found -> found.map(Mono::just).orElseGet(() -> claimOrWait(pageKey, lookup, compute))));
+    }
+
+    /**
+     * @return the computation currently running in this JVM for {@code pageKey}, if any
+     */
+    public Optional<Mono<AiSumarizeResponse>> join(String pageKey) {
+        return singleFlight.join(pageKey);
+    }
+
+    /**
+     * Stream the summary of {@code pageKey} from exactly one caller. The first
+     * caller in this JVM registers itself and takes the claim row; it runs
+     * {@code leader}, which must complete the given sink with the final summary.
+     * Concurrent callers in this JVM, and callers on an instance that finds the
+     * claim taken, wait for that summary and get {@code follower} of it.
+     * <p>
+     * The leader's generation is subscribed here rather than by its reader, so
+     * the reader leaving does not stop it for the followers; it is cancelled
+     * once the leader's reader and every follower in this JVM have left.
+     *
+     * @param lookup blocking read of an already stored summary, polled while another instance holds the claim
+     */
+    public <E> Flux<E> stream(String pageKey,
+                              Supplier<Optional<AiSumarizeResponse>> lookup,
+                              Function<Sinks.One<AiSumarizeResponse>, Flux<E>> leader,
+                              Function<AiSumarizeResponse, Flux<E>> follower) {
+        return Flux.deferContextual(context -> {
+            Sinks.One<AiSumarizeResponse> result = Sinks.one();
+            Optional<Mono<AiSumarizeResponse>> pending;
+            Lead lead;
+            synchronized (leads) {
+                pending = singleFlight.register(pageKey, result.asMono());
+                if (pending.isPresent()) {
+                    lead = leads.get(pageKey);
+                } else {
+                    lead = new Lead(result);
+                    leads.put(pageKey, lead);
+                }
+                if (lead != null) {
+                    lead.readers++;
+                }
+            }
+            if (pending.isPresent()) {
+                // a computation started by summarize() has no lead, and is never cancelled
+                Mono<AiSumarizeResponse> awaited = lead == null
+                        ? pending.get()
+                        : pending.get().doFinally(signal -> leave(pageKey, lead));
+                return awaited.flatMapMany(follower);
+            }
+
+            Flux<E> leading = Flux.defer(() -> leader.apply(result));
+            Flux<E> generation = claim(pageKey)
+                    .flatMapMany(claimed -> {
+                        if (claimed) {
+                            return leading.doFinally(signal -> release(pageKey));
+                        }
+                        return waitForStored(pageKey, lookup)
+                                .doOnNext(result::tryEmitValue)
+                                .flatMapMany(follower)
+                                .switchIfEmpty(leading.doFinally(signal -> release(pageKey)));
+                    })
+                    // whatever happens, followers must not wait forever
+                    .doOnComplete(result::tryEmitEmpty)
+                    .doOnError(result::tryEmitError)
+                    .doFinally(signal -> {
+                        synchronized (leads) {
+                            leads.remove(pageKey, lead);
+                        }
+                    })
+                    .contextWrite(context);
+
+            Sinks.Many<E> events = Sinks.many().unicast().onBackpressureBuffer();
+            lead.generation = generation.subscribe(events::tryEmitNext, events::tryEmitError,
+                    events::tryEmitComplete);
+            return events.asFlux().doOnCancel(() -> leave(pageKey, lead));
+        });
+    }
+
+    /**
+     * Count one reader of {@code lead} out, and cancel its generation once none is left.
+     */
+    private void leave(String pageKey, Lead lead) {
+        boolean abandoned;
+        synchronized (leads) {
+            abandoned = --lead.readers == 0;
+        }
+        // followers leave once they have the summary, which the generation may still be finishing up after
+        if (abandoned && !Boolean.TRUE.equals(lead.result.scan(Scannable.Attr.TERMINATED))) {
+            lead.generation.dispose();
+            // summarize() callers attached to it are not counted, and must not wait forever either
+            lead.result.tryEmitError(new CancellationException("Every reader of summary " + pageKey + " left"));
+        }
+    }
+
+    private Mono<AiSumarizeResponse> claimOrWait(String pageKey,
+                                                 Supplier<Optional<AiSumarizeResponse>> lookup,
+                                                 Supplier<Mono<AiSumarizeResponse>> compute) {
+        return claim(pageKey).flatMap(claimed -> {
+            if (claimed) {
+                return compute.get()
+                        .doFinally(signal -> release(pageKey));
+            }
+            return waitForStored(pageKey, lookup)
+                    .switchIfEmpty(Mono.defer(() -> compute.get().doFinally(signal -> release(pageKey))));
+        });
+    }
+
+    /**
+     * Take the claim row of {@code pageKey}, replacing a claim older than the TTL
+     * left by an instance that died.
+     *
+     * @return whether this instance now holds the claim
+     */
+    private Mono<Boolean> claim(String pageKey) {
+        return blocking(() -> {
+            claimRepository.deleteStale(pageKey, LocalDateTime.now().minus(claimTtl));
+            return claimRepository.tryClaim(pageKey, owner, LocalDateTime.now()) == 1;
+        }).onErrorResume(error -> {
+            // the claim is an optimisation, never a reason to fail the request
+            log.warn("Could not claim summary {}: {}", pageKey, error.getMessage());
+            return Mono.just(true);
+        });
+    }
+
+    /**
+     * Poll for the summary stored by the instance holding the claim, for at most the claim TTL.
+     *
+     * @return the stored summary, or empty when it did not appear in time
+     */
+    private Mono<AiSumarizeResponse> waitForStored(String pageKey, Supplier<Optional<AiSumarizeResponse>> lookup) {
+        log.debug("Summary {} is being computed by another instance, waiting", pageKey);
+        long maxPolls = Math.max(1, claimTtl.toMillis() / Math.max(1, pollInterval.toMillis()));
+        return blocking(lookup::get)
+                .flatMap(found -> found.map(Mono::just).orElseGet(Mono::empty))
+                .repeatWhenEmpty(polls -> polls.take(maxPolls).delayElements(pollInterval));
+    }
+
+    private void release(String pageKey) {
+        blocking(() -> claimRepository.release(pageKey, owner))
+                .subscribe(released -> { }, error -> log.warn("Could not release summary claim {}", pageKey, error));
+    }
+
+    private <R> Mono<R> blocking(Callable<R> callable) {
+        return Mono.fromCallable(callable).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * A summary streamed by a reader in this JVM: the subscription that
+     * generates it, and how many readers, leader included, still want it.
+     */
+    private static final class Lead {
+        private final Sinks.One<AiSumarizeResponse> result;
+        private volatile Disposable generation;
+        private int readers;
+
+        private Lead(Sinks.One<AiSumarizeResponse> result) {
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.deepShearch.deepShearch.services;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Consumes summarization jobs. Prefetch and the number of consumers are set
+ * through spring.rabbitmq.listener.simple.*.
+ */
+@Component
+@RequiredArgsConstructor
+public class SummaryJobListener {
+
+    private final SummaryJobService summaryJobService;
+
+    @RabbitListener(queues = "${llm.jobs.queue:summarize.jobs}")
+    public void onJob(SummaryJobMessage message) {
+        summaryJobService.process(message);
+    }
+}
@@ -0,0 +1,144 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+import com.deepShearch.deepShearch.Dto.SummaryJobResponse;
+import com.deepShearch.deepShearch.Model.Notification;
+import com.deepShearch.deepShearch.Model.SummaryJob;
+import com.deepShearch.deepShearch.repository.SummaryJobRepository;
+import com.deepShearch.deepShearch.services.interfaces.Llmservice;
+import com.deepShearch.deepShearch.services.interfaces.NotificationService;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobQueue;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SummaryJobServiceImpl implements SummaryJobService {
+
+    private final SummaryJobRepository summaryJobRepository;
+    private final SummaryJobQueue summaryJobQueue;
+    private final Llmservice llmservice;
+    private final NotificationService notificationService;
+
+    @Override
+    public SummaryJobResponse submitPageJob(String documentId, String documentVersionId,
+                                            String documentVersionPageId, String userId) {
+        SummaryJob job = new SummaryJob();
+        job.setDocumentId(documentId);
+        job.setDocumentVersionId(documentVersionId);
+        job.setDocumentVersionPageId(documentVersionPageId);
+        job.setUserId(userId);
+        return submit(job);
+    }
+
+    @Override
+    public SummaryJobResponse submitDocumentJob(String documentId, String documentVersionId, String userId) {
+        SummaryJob job = new SummaryJob();
+        job.setDocumentId(documentId);
+        job.setDocumentVersionId(documentVersionId);
+        job.setUserId(userId);
+        return submit(job);
+    }
+
+    private SummaryJobResponse submit(SummaryJob job) {
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(SummaryJob.JobStatus.QUEUED);
+        SummaryJob saved = summaryJobRepository.save(job);
+
+        try {
+            summaryJobQueue.publish(new SummaryJobMessage(saved.getId()));
+            log.info("Queued summary job {} for document {} page {}",
+                    saved.getId(), saved.getDocumentId(), saved.getDocumentVersionPageId());
+        } catch (RuntimeException e) {
+            log.error("Could not queue summary job {}", saved.getId(), e);
+            saved.setStatus(SummaryJob.JobStatus.FAILED);
+            saved.setError("Could not queue the job: " + e.getMessage());
+            saved = summaryJobRepository.save(saved);
+        }
+        return toResponse(saved);
+    }
+
+    @Override
+    public Optional<SummaryJobResponse> getJob(String jobId) {
+        return summaryJobRepository.findById(jobId).map(this::toResponse);
+    }
+
+    @Override
+    public void process(SummaryJobMessage message) {
+        Optional<SummaryJob> found = summaryJobRepository.findById(message.getJobId());
+        if (found.isEmpty()) {
+            log.warn("Received unknown summary job {}", message.getJobId());
+            return;
+        }
+        SummaryJob job = found.get();
+        if (job.getStatus() == SummaryJob.JobStatus.COMPLETED) {
+            // redelivered after the result was stored
+            return;
+        }
+
+        job.setStatus(SummaryJob.JobStatus.RUNNING);
+        job = summaryJobRepository.save(job);
+
+        try {
+            // summarizePage fails on an unparseable answer, where generateSummary returns a placeholder
+            AiSumarizeResponse result = job.getDocumentVersionPageId() == null
+                    ? llmservice.generateDocumentSummary(job.getDocumentId(), job.getDocumentVersionId(), job.getUserId()).block()
+                    : llmservice.summarizePage(job.getDocumentId(), job.getDocumentVersionId(),
+                            job.getDocumentVersionPageId(), job.getUserId()).block();
+            if (result == null) {
+                throw new IllegalStateException("No summary was produced, the page has no text yet");
+            }
+
+            job.setSummary(result.getSummary());
+            job.setKeyWords(result.getKeywords());
+            job.setStatus(SummaryJob.JobStatus.COMPLETED);
+            job = summaryJobRepository.save(job);
+            notifyUser(job, Notification.NotificationType.SUCCESS, "Summary ready",
+                    "The summary of document " + job.getDocumentId() + " is ready.");
+        } catch (RuntimeException e) {
+            log.error("Summary job {} failed", job.getId(), e);
+            job.setStatus(SummaryJob.JobStatus.FAILED);
+            job.setError(e.getMessage());
+            job = summaryJobRepository.save(job);
+            notifyUser(job, Notification.NotificationType.ERROR, "Summary failed",
+                    "The summary of document " + job.getDocumentId() + " could not be generated.");
+        }
+    }
+
+    private void notifyUser(SummaryJob job, Notification.NotificationType type, String title, String text) {
+        try {
+            Notification notification = new Notification();
+            notification.setTitle(title);
+            notification.setMessage(text + " (job " + job.getId() + ")");
+            notification.setType(type);
+            notification.setUserId(job.getUserId());
+            notificationService.createNotification(notification);
+        } catch (RuntimeException e) {
+            log.warn("Could not notify user {} about summary job {}", job.getUserId(), job.getId(), e);
+        }
+    }
+
+    private SummaryJobResponse toResponse(SummaryJob job) {
+        return SummaryJobResponse.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .documentId(job.getDocumentId())
+                .documentVersionId(job.getDocumentVersionId())
+                .documentVersionPageId(job.getDocumentVersionPageId())
+                .summary(job.getSummary())
+                .keywords(job.getKeyWords())
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.deepShearch.deepShearch.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.Dto.PageSummaryResponse;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository.PageSummary;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.SummaryLookupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads the stored page summaries of a version with one query instead of one
+ * lookup per page. Rows come from a read-only transaction as a stream of
+ * projections and are written out as they arrive, so a large book is never
+ * held in memory. A page range is given in page numbers, which are turned
+ * into version page ids through Mayan first. The lines come ordered by
+ * version page id compared as text, not by page number: the client places
+ * each summary by its id.
+ */
+@Slf4j
+@Service
+public class SummaryLookupServiceImpl implements SummaryLookupService {
+
+    /** Rows written between two flushes, so the client sees the first ones early. */
+    private static final int FLUSH_EVERY = 64;
+
+    private final SummerizeDocRepository sumerizeDocRepository;
+    private final MayanService mayanService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnly;
+
+    public SummaryLookupServiceImpl(SummerizeDocRepository sumerizeDocRepository,
+                                    MayanService mayanService,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager) {
+        this.sumerizeDocRepository = sumerizeDocRepository;
+        this.mayanService = mayanService;
+        this.objectMapper = objectMapper;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    @Override
+    public Mono<StreamingResponseBody> streamPageSummaries(String documentId, String documentVersionId,
+                                                           Integer fromPage, Integer toPage) {
+        if ((fromPage != null && fromPage < 1) || (fromPage != null && toPage != null && fromPage > toPage)) {
+            return Mono.error(new IllegalArgumentException("Invalid page range " + fromPage + "-" + toPage));
+        }
+        return pageIds(documentId, documentVersionId, fromPage, toPage)
+                .<StreamingResponseBody>map(pageIds -> output -> write(documentId, documentVersionId, pageIds, output));
+    }
+
+    /**
+     * The version page ids of the range, or empty for the whole version.
+     */
+    private Mono<Optional<List<String>>> pageIds(String documentId, String documentVersionId,
+                                                 Integer fromPage, Integer toPage) {
+        if (fromPage == null && toPage == null) {
+            return Mono.just(Optional.empty());
+        }
+        int first = fromPage != null ? fromPage : 1;
+        int last = toPage != null ? toPage : Integer.MAX_VALUE;
+        return mayanService.getDocumentVersionPages(documentId, documentVersionId)
+                .map(pages -> Optional.of(pages.stream()
+                        .filter(page -> page.getId() != null && page.getPage_number() != null
+                                && page.getPage_number() >= first && page.getPage_number() <= last)
+                        .map(page -> String.valueOf(page.getId()))
+                        .toList()));
+    }
+
+    private void write(String documentId, String documentVersionId, Optional<List<String>> pageIds,
+                       OutputStream output) throws IOException {
+        if (pageIds.isPresent() && pageIds.get().isEmpty()) {
+            return;
+        }
+        OutputStream buffered = new BufferedOutputStream(output, 8192);
+        try {
+            int written = readOnly.execute(status -> {
+                try (Stream<PageSummary> rows = pageIds.isPresent()
+                        ? sumerizeDocRepository.streamPageSummaries(documentId, documentVersionId, pageIds.get())
+                        : sumerizeDocRepository.streamPageSummaries(documentId, documentVersionId)) {
+                    int count = 0;
+                    Iterator<PageSummary> iterator = rows.iterator();
+                    while (iterator.hasNext()) {
+                        PageSummary row = iterator.next();
+                        buffered.write(objectMapper.writeValueAsBytes(new PageSummaryResponse(
+                                row.getDocumentVersionPageId(), row.getSummary(),
+                                row.getKeyWords() != null ? List.copyOf(row.getKeyWords()) : List.of(),
+                                row.getCreatedAt())));
+                        buffered.write('\n');
+                        if (++count % FLUSH_EVERY == 0) {
+                            buffered.flush();
+                        }
+                    }
+                    return count;
+                } catch (IOException e) {
+                    // the client went away; rolling back only ends the read
+                    throw new UncheckedIOException(e);
+                }
+            });
+            buffered.flush();
+            log.debug("Streamed {} page summaries of document {} version {}", written, documentId, documentVersionId);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.deepShearch.deepShearch.services;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Incrementally extracts the value of the "summary" field from a JSON answer
+ * that the model produces token by token, so the text can be forwarded to the
+ * client before the whole JSON document is complete.
+ */
+public class SummaryStreamParser {
+
+    private static final Pattern SUMMARY_KEY = Pattern.compile("\"summary\"\\s*:\\s*\"");
+
+    private enum State { SEARCHING_KEY, IN_VALUE, DONE }
+
+    private final StringBuilder raw = new StringBuilder();
+    private State state = State.SEARCHING_KEY;
+    private int position;
+
+    /**
+     * Feed the next chunk of model output.
+     *
+     * @param chunk raw text emitted by the model
+     * @return the newly decoded part of the summary value (may be empty)
+     */
+    public synchronized String feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        raw.append(chunk);
+
+        if (state == State.SEARCHING_KEY) {
+            Matcher matcher = SUMMARY_KEY.matcher(raw);
+            if (!matcher.find()) {
+                return "";
+            }
+            position = matcher.end();
+            state = State.IN_VALUE;
+        }
+        if (state == State.DONE) {
+            return "";
+        }
+
+        StringBuilder decoded = new StringBuilder();
+        while (position < raw.length()) {
+            char c = raw.charAt(position);
+            if (c == '"') {
+                state = State.DONE;
+                position++;
+                break;
+            }
+            if (c != '\\') {
+                decoded.append(c);
+                position++;
+                continue;
+            }
+            // escape sequence: wait until it is complete
+            if (position + 1 >= raw.length()) {
+                break;
+            }
+            char escaped = raw.charAt(position + 1);
+            if (escaped == 'u') {
+                if (position + 6 > raw.length()) {
+                    break;
+                }
+                String hex = raw.substring(position + 2, position + 6);
+                try {
+                    decoded.append((char) Integer.parseInt(hex, 16));
+                } catch (NumberFormatException e) {
+                    decoded.append(hex);
+                }
+                position += 6;
+                continue;
+            }
+            decoded.append(switch (escaped) {
+                case 'n' -> '\n';
+                case 't' -> '\t';
+                case 'r' -> '\r';
+                case 'b' -> '\b';
+                case 'f' -> '\f';
+                default -> escaped;
+            });
+            position += 2;
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * @return everything the model has produced so far
+     */
+    public synchronized String raw() {
+        return raw.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.CatalogPageResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface CatalogService {
+
+    enum Ordering {
+        /** Newest first */
+        CREATED,
+        /** Label, case-insensitive */
+        LABEL,
+        /** Mayan id */
+        ID
+    }
+
+    /**
+     * List the documents of the local catalog, one keyset page at a time
+     * @param ordering       ordering of the list
+     * @param cursor         the {@code next} cursor of the previous page, or null for the first page
+     * @param limit          documents per page
+     * @param documentTypeId keep only this document type, or null
+     * @param labelPrefix    keep only labels starting with this text, case-insensitive, or null
+     * @return Mono of the page and the cursor of the following one
+     */
+    Mono<CatalogPageResponse> list(Ordering ordering, String cursor, int limit, Long documentTypeId, String labelPrefix);
+
+    /**
+     * List the catalog in the shape of Mayan's document list, newest first. The {@code next} link
+     * carries a keyset cursor, so following it costs the same however deep the list is; the count
+     * is the one recorded by the last sync
+     * @param page     1-based page number, used when there is no cursor
+     * @param pageSize documents per page
+     * @param cursor   the cursor of a {@code next} link, or null
+     * @return Mono of the page, with {@code next} and {@code previous} as relative links
+     */
+    Mono<MayanDocumentsListResponse> listPage(int page, int pageSize, String cursor);
+
+    /**
+     * @return true once a full sync of the Mayan catalog has completed
+     */
+    boolean isReady();
+
+    /**
+     * Record a document this application created or changed in Mayan, without waiting for the next sync
+     */
+    Mono<Void> upsert(MayanDocumentResponse document);
+
+    /**
+     * Forget a document this application deleted from Mayan
+     */
+    Mono<Void> remove(String documentId);
+
+    /**
+     * Walk the whole Mayan catalog now, in the background
+     */
+    void syncAll();
+}
@@ -0,0 +1,16 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.DocumentOpenResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface DocumentOpenService {
+
+    /**
+     * Gather the metadata, pages, stored summaries and first page thumbnail of a document concurrently
+     * @param documentId        The ID of the document
+     * @param documentVersionId the version to read the summaries of, or null for the active version
+     * @return Mono of the combined response; fails when the metadata or the pages cannot be fetched
+     */
+    Mono<DocumentOpenResponse> open(String documentId, String documentVersionId);
+}
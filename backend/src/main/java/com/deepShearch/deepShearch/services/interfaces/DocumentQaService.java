@@ -0,0 +1,21 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import org.springframework.http.codec.ServerSentEvent;
+
+import reactor.core.publisher.Flux;
+
+public interface DocumentQaService {
+
+    /**
+     * Answer a question about a document from its most relevant passages, as server-sent events.
+     * Emits a "citations" event with the pages the passages come from, then "answer" events
+     * carrying text fragments as the model produces them, then "done".
+     * @param previousQuestion the question this one follows up on, or null; its passages are reused
+     */
+    Flux<ServerSentEvent<Object>> ask(String documentId, String question, String previousQuestion);
+
+    /**
+     * Forget the passages retrieved for a document whose pages changed
+     */
+    void invalidate(String documentId);
+}
@@ -0,0 +1,24 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface HybridSearchService {
+
+    /**
+     * Keyword and semantic search fused into one ranking, grouped by document
+     * @param query      words, "phrases" and operators in Lucene query syntax; also embedded as is
+     * @param documentId restrict the hits to one document, or null
+     * @param page       0-based page of documents
+     * @param size       documents per page
+     * @return documents ranked by their best page, each with its best matching pages
+     */
+    Mono<HybridSearchResponse> search(String query, String documentId, int page, int size);
+
+    /**
+     * Forget every cached result, called once the pages of {@code documentId} have changed in the
+     * indexes: any cached query may now match the document or rank it differently.
+     */
+    void invalidate(String documentId);
+}
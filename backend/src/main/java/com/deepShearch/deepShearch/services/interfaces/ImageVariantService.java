@@ -0,0 +1,41 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface ImageVariantService {
+
+    /**
+     * Get a downscaled JPEG of a document file page, rendered once and then served from the local cache
+     * @param documentId     The ID of the document
+     * @param fileId         The ID of the document file
+     * @param pageId         The ID of the file page
+     * @param width          maximum width in pixels, or null for the thumbnail width
+     * @param quality        JPEG quality between 0 and 1, or null for the thumbnail quality
+     * @param requestHeaders headers of the client request; validators and ranges are honoured
+     * @return Mono of the response, with the body written as the client reads it
+     */
+    Mono<ResponseEntity<StreamingResponseBody>> getVariant(String documentId, String fileId, String pageId,
+                                                           Integer width, Float quality, HttpHeaders requestHeaders);
+
+    /**
+     * Get the thumbnail of a document file page as JPEG bytes, rendering it when it is not cached yet
+     * @param documentId The ID of the document
+     * @param fileId     The ID of the document file
+     * @param pageId     The ID of the file page
+     * @return Mono of the thumbnail, or empty when it cannot be rendered
+     */
+    Mono<byte[]> getThumbnail(String documentId, String fileId, String pageId);
+
+    /**
+     * Render the thumbnails of every page in the background, once per document
+     * @param documentId The ID of the document
+     * @param pages      the file pages of the document
+     */
+    void generateThumbnails(String documentId, DocumentFilesResponse pages);
+}
@@ -0,0 +1,24 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import java.util.Optional;
+
+import com.deepShearch.deepShearch.Dto.IngestionProgress;
+
+import reactor.core.publisher.Mono;
+
+public interface IngestionService {
+
+    /**
+     * Start the ingestion of a freshly uploaded document in the background:
+     * wait for Mayan's OCR, then fetch and pre-process every page.
+     * Progress is published on /topic/ingestion/{documentId}.
+     */
+    void start(String documentId);
+
+    /**
+     * Run the ingestion of a document and complete when it is done.
+     */
+    Mono<Void> ingest(String documentId);
+
+    Optional<IngestionProgress> getProgress(String documentId);
+}
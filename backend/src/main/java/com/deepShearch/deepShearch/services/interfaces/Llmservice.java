@@ -1,8 +1,44 @@
 package com.deepShearch.deepShearch.services.interfaces;
 
+import org.springframework.http.codec.ServerSentEvent;
+
 import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 public interface Llmservice {
 
     AiSumarizeResponse generateSummary(String documentId, String documentVersionId,
                                         String documentVersionPageId ,String userId);
+
+    /**
+     * Stream the summary of a document version page as server-sent events.
+     * Emits "summary" events carrying text fragments as the model produces them,
+     * then a "keywords" event once the answer is complete, then "done".
+     * The result is persisted when the stream finishes.
+     */
+    Flux<ServerSentEvent<Object>> streamSummary(String documentId, String documentVersionId,
+                                                String documentVersionPageId, String userId);
+
+    /**
+     * Summarize a whole document version: page summaries are computed in parallel
+     * (reusing the stored ones) and then reduced into one summary and keyword set.
+     */
+    Mono<AiSumarizeResponse> generateDocumentSummary(String documentId, String documentVersionId, String userId);
+
+    /**
+     * Summarize a page, reusing the stored summary when there is one and storing
+     * the result otherwise. Unlike {@link #generateSummary}, a model answer that
+     * cannot be parsed is an error rather than a placeholder summary, and a page
+     * without OCR text, which may only mean OCR is not done yet, gives an empty result.
+     */
+    Mono<AiSumarizeResponse> summarizePage(String documentId, String documentVersionId,
+                                           String documentVersionPageId, String userId);
+
+    /**
+     * Summarize a page whose OCR text the caller already fetched, reusing the
+     * stored summary when there is one and storing the result otherwise.
+     */
+    Mono<AiSumarizeResponse> summarizePageContent(String documentId, String documentVersionId,
+                                                  String documentVersionPageId, String userId, String content);
 }
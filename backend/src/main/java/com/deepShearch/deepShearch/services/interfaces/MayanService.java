@@ -1,22 +1,54 @@
 package com.deepShearch.deepShearch.services.interfaces;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
+import java.util.Map;
+
 import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
 import com.deepShearch.deepShearch.Dto.MayanDocumentUploadRequest;
 import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface MayanService {
     
 
     Mono<MayanDocumentsListResponse> getDocuments(String ordering, Integer page, Integer pageSize);
+
+    /**
+     * Get the page of the document list a {@code next} or {@code previous} link points to
+     * @param pageUrl link from a previous list response
+     * @return Mono of the linked page
+     */
+    Mono<MayanDocumentsListResponse> getDocumentsPage(String pageUrl);
     Mono<DocumentFilesResponse> getDocumentsById(String docId);
 
-    Mono<ResponseEntity<byte[]>> getDocumentsByIdwithPageId(String documentId, String fileId, String pageId);
+    /**
+     * Get the details of a document, including its active version
+     * @param documentId The ID of the document
+     * @return Mono of the document
+     */
+    Mono<MayanDocumentResponse> getDocument(String documentId);
+
+    /**
+     * Stream the rendered image of a document file page without buffering it
+     * @param documentId The ID of the document
+     * @param fileId The ID of the document file
+     * @param pageId The ID of the file page
+     * @param rendering image parameters such as width, zoom or rotation, passed to Mayan as query parameters
+     * @param requestHeaders headers of the client request; validators and ranges are honoured
+     * @return Mono of the response whose body is streamed from Mayan
+     */
+    Mono<ResponseEntity<Flux<DataBuffer>>> getDocumentsByIdwithPageId(String documentId, String fileId, String pageId,
+                                                                     Map<String, String> rendering,
+                                                                     HttpHeaders requestHeaders);
 
  
 
@@ -37,4 +69,12 @@ public interface MayanService {
      * @return Mono of MayanDocumentPageOCRResponse containing the OCR content
      */
     Mono<MayanDocumentPageOCRResponse> getDocumentPageOCR(String documentId, String documentVersionId, String documentVersionPageId);
+
+    /**
+     * Get every page of a document version, following Mayan's pagination
+     * @param documentId The ID of the document
+     * @param documentVersionId The ID of the document version
+     * @return Mono of the version pages ordered by page number
+     */
+    Mono<List<DocumentVersionPagesResponse.DocumentVersionPageDto>> getDocumentVersionPages(String documentId, String documentVersionId);
 }
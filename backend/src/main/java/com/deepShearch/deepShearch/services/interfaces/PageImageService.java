@@ -0,0 +1,41 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import reactor.core.publisher.Mono;
+
+public interface PageImageService {
+
+    /**
+     * Get the image of a document file page, from the local cache when it holds it
+     * @param documentId     The ID of the document
+     * @param fileId         The ID of the document file
+     * @param pageId         The ID of the file page
+     * @param rendering      image parameters such as width, zoom or rotation; part of the cache key
+     * @param requestHeaders headers of the client request; validators and ranges are honoured
+     * @return Mono of the response, with the body written as the client reads it
+     */
+    Mono<ResponseEntity<StreamingResponseBody>> getPageImage(String documentId, String fileId, String pageId,
+                                                             Map<String, String> rendering, HttpHeaders requestHeaders);
+
+    /**
+     * Load a page image into the local cache ahead of a reader, unless it is already there
+     * @param documentId The ID of the document
+     * @param fileId     The ID of the document file
+     * @param pageId     The ID of the file page
+     * @param rendering  image parameters, as for {@link #getPageImage}
+     * @return Mono completing once the image is cached
+     */
+    Mono<Void> prefetch(String documentId, String fileId, String pageId, Map<String, String> rendering);
+
+    /**
+     * Drop the cached images of a deleted document
+     * @param documentId The ID of the document
+     * @return Mono completing once the files are gone
+     */
+    Mono<Void> removeDocument(String documentId);
+}
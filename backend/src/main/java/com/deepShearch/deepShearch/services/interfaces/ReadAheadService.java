@@ -0,0 +1,23 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import java.util.Map;
+
+public interface ReadAheadService {
+
+    /**
+     * Record that a reader opened a page and warm the pages after it in the background
+     * @param readerId   the authenticated reader, the subject of their token
+     * @param documentId The ID of the document
+     * @param fileId     The ID of the document file
+     * @param pageId     The ID of the file page
+     * @param rendering  image parameters of the request, reused for the pages ahead
+     */
+    void pageRequested(String readerId, String documentId, String fileId, String pageId, Map<String, String> rendering);
+
+    /**
+     * Stop reading ahead for a reader who closed the document
+     * @param readerId   the reader
+     * @param documentId The ID of the document
+     */
+    void closeBook(String readerId, String documentId);
+}
@@ -0,0 +1,28 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+
+public interface SearchService {
+
+    /**
+     * Full-text search over the OCR text of every indexed page
+     * @param query      words, "phrases" and operators in Lucene query syntax
+     * @param documentId restrict the hits to one document, or null
+     * @param page       0-based result page
+     * @param size       hits per page
+     * @return ranked page hits with highlighted snippets
+     */
+    SearchResponse search(String query, String documentId, int page, int size);
+
+    /**
+     * Rebuild the text index entries of a document from the OCR text of its active version, in the background
+     */
+    void reindexDocument(String documentId);
+
+    /**
+     * Add every document known to Mayan to the text index in the background, skipping pages already indexed
+     */
+    void reindexAll();
+
+    void removeDocument(String documentId);
+}
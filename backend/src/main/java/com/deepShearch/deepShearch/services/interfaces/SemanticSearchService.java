@@ -0,0 +1,30 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface SemanticSearchService {
+
+    /**
+     * Search the pages whose meaning is closest to the query, whatever words they use
+     * @param query      natural language query
+     * @param documentId restrict the hits to one document, or null
+     * @param k          number of pages to return
+     * @param ef         HNSW candidate list size: higher means better recall and slower queries
+     * @return pages ranked by cosine similarity, with the closest chunk as snippet
+     */
+    Mono<SearchResponse> search(String query, String documentId, int k, int ef);
+
+    /**
+     * Pages of any document similar to the given page
+     * @return the similar pages, or empty when the page has no embeddings yet
+     */
+    Mono<SearchResponse> similarPages(String documentId, String pageId, int k, int ef);
+
+    /**
+     * Other documents similar to the given document, with their closest page
+     * @return the similar documents, or empty when the document has no embeddings yet
+     */
+    Mono<SearchResponse> similarDocuments(String documentId, int k, int ef);
+}
@@ -0,0 +1,11 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+
+/**
+ * Transport used to hand summarization jobs to the consumers.
+ */
+public interface SummaryJobQueue {
+
+    void publish(SummaryJobMessage message);
+}
@@ -0,0 +1,29 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import java.util.Optional;
+
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+import com.deepShearch.deepShearch.Dto.SummaryJobResponse;
+
+public interface SummaryJobService {
+
+    /**
+     * Enqueue the summarization of one document version page
+     * @return the queued job, to be polled with {@link #getJob(String)}
+     */
+    SummaryJobResponse submitPageJob(String documentId, String documentVersionId,
+                                     String documentVersionPageId, String userId);
+
+    /**
+     * Enqueue the summarization of a whole document version
+     * @return the queued job, to be polled with {@link #getJob(String)}
+     */
+    SummaryJobResponse submitDocumentJob(String documentId, String documentVersionId, String userId);
+
+    Optional<SummaryJobResponse> getJob(String jobId);
+
+    /**
+     * Run a job taken from the queue and notify its user when it finishes
+     */
+    void process(SummaryJobMessage message);
+}
@@ -0,0 +1,22 @@
+package com.deepShearch.deepShearch.services.interfaces;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import reactor.core.publisher.Mono;
+
+public interface SummaryLookupService {
+
+    /**
+     * Stream the stored page summaries of a document version as newline-delimited JSON,
+     * one {@link com.deepShearch.deepShearch.Dto.PageSummaryResponse} per page, ordered by
+     * version page id as text rather than by page number
+     * @param documentId        The ID of the document
+     * @param documentVersionId The ID of the document version
+     * @param fromPage          first page number to include, or null to start at the first page
+     * @param toPage            last page number to include, or null to go to the last page
+     * @return Mono of the body, read from the database as the client reads it;
+     *         fails with IllegalArgumentException for an invalid range
+     */
+    Mono<StreamingResponseBody> streamPageSummaries(String documentId, String documentVersionId,
+                                                    Integer fromPage, Integer toPage);
+}
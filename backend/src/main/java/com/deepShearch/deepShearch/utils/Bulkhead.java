@@ -0,0 +1,143 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Limits how many calls of one kind run at the same time, without blocking a
+ * thread. A call over the limit waits in a bounded queue for at most
+ * {@code maxWait}; when the queue is full or the wait runs out it fails with
+ * {@link BulkheadFullException}, so a slow dependency cannot pile up unbounded
+ * work behind it.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final Duration maxWait;
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private int inUse;
+
+    public Bulkhead(String name, int maxConcurrent, int maxWaiting, Duration maxWait) {
+        if (maxConcurrent <= 0 || maxWaiting < 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive and maxWaiting not negative");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.maxWait = maxWait;
+    }
+
+    public static class BulkheadFullException extends RuntimeException {
+        public BulkheadFullException(String name) {
+            super("Bulkhead " + name + " is full");
+        }
+    }
+
+    /**
+     * Run {@code call} once a permit is free. The permit is returned when the
+     * call terminates or is cancelled.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.usingWhen(acquire(),
+                permit -> call.get(),
+                permit -> Mono.fromRunnable(permit::release),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    public synchronized int inUse() {
+        return inUse;
+    }
+
+    public synchronized int waiting() {
+        return waiting.size();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            synchronized (this) {
+                if (inUse < maxConcurrent) {
+                    inUse++;
+                    sink.success(new Permit());
+                    return;
+                }
+                if (waiting.size() >= maxWaiting) {
+                    sink.error(new BulkheadFullException(name));
+                    return;
+                }
+                waiting.addLast(waiter);
+            }
+            Disposable timer = Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    if (!waiting.remove(waiter)) {
+                        return;
+                    }
+                }
+                sink.error(new BulkheadFullException(name));
+            }, maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            sink.onDispose(timer);
+            sink.onCancel(() -> {
+                Permit granted;
+                synchronized (this) {
+                    waiting.remove(waiter);
+                    granted = waiter.granted;
+                }
+                // a permit handed over just as the caller gave up would otherwise be lost
+                if (granted != null) {
+                    granted.release();
+                }
+            });
+        });
+    }
+
+    private void handOver() {
+        Waiter next;
+        Permit permit = new Permit();
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                inUse--;
+                return;
+            }
+            // the permit goes straight to the next caller, so inUse does not change
+            next.granted = permit;
+        }
+        next.sink.success(permit);
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Permit> sink;
+        private Permit granted;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    private final class Permit {
+
+        private boolean released;
+
+        void release() {
+            synchronized (Bulkhead.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            handOver();
+        }
+    }
+}
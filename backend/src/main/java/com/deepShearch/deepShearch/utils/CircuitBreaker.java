@@ -0,0 +1,157 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Fails calls fast while a dependency is down. The outcomes of the last
+ * {@code windowSize} calls are kept; once at least {@code minimumCalls} of
+ * them are recorded and the share of failures reaches
+ * {@code failureRateThreshold}, the breaker opens and calls fail at once with
+ * {@link CircuitOpenException}. After {@code openDuration} one trial call is
+ * let through: its success closes the breaker, its failure opens it again.
+ * <p>
+ * Only errors matching {@code recordFailure} count as failures, so that a
+ * 404 for a missing document does not trip the breaker. Cancelled calls are
+ * not recorded.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final Predicate<Throwable> recordFailure;
+    private final LongSupplier clock;
+
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialRunning;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, Predicate<Throwable> recordFailure) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, openDuration, recordFailure, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                   Duration openDuration, Predicate<Throwable> recordFailure, LongSupplier clock) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.recordFailure = recordFailure;
+        this.clock = clock;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String name) {
+            super("Circuit " + name + " is open");
+        }
+    }
+
+    /**
+     * Run {@code call} if the breaker lets it through, and record its outcome.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            boolean trial;
+            synchronized (this) {
+                trial = state == State.OPEN && clock.getAsLong() - openedAt >= openNanos && !trialRunning;
+                if (trial) {
+                    state = State.HALF_OPEN;
+                    trialRunning = true;
+                } else if (state != State.CLOSED) {
+                    return Mono.error(new CircuitOpenException(name));
+                }
+            }
+            return call.get()
+                    .doOnSuccess(value -> onSuccess(trial))
+                    .doOnError(error -> onError(trial, error))
+                    .doFinally(signal -> {
+                        if (trial && signal == SignalType.CANCEL) {
+                            // nothing was learned, let the next call try again
+                            synchronized (this) {
+                                trialRunning = false;
+                                state = State.OPEN;
+                            }
+                        }
+                    });
+        });
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private synchronized void onSuccess(boolean trial) {
+        if (trial) {
+            trialRunning = false;
+            state = State.CLOSED;
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    private synchronized void onError(boolean trial, Throwable error) {
+        boolean failure = recordFailure.test(error);
+        if (trial) {
+            trialRunning = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                reset();
+            }
+            return;
+        }
+        record(failure);
+    }
+
+    private void record(boolean failure) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == windowSize && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failure;
+        next = (next + 1) % windowSize;
+        recorded = Math.min(windowSize, recorded + 1);
+        if (failure) {
+            failures++;
+        }
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        reset();
+    }
+
+    private void reset() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,44 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Hashes OCR text after normalization, so that the same text extracted from
+ * different uploads, versions or pages gets the same key.
+ */
+public final class ContentHasher {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private ContentHasher() {
+    }
+
+    /**
+     * Unicode NFKC, lower case, and every run of whitespace collapsed to one space.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * @return hex encoded SHA-256 of the normalized text
+     */
+    public static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalize(text).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the passages that go into a prompt: best first, skipping passages that
+ * mostly repeat one already picked (overlapping chunks, headers repeated on
+ * every page), until the token budget is spent. The picked passages are
+ * returned in page order so the model reads them as the document does.
+ */
+public class ContextPacker {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int SHINGLE_WORDS = 4;
+
+    private final int maxTokens;
+    private final double duplicateThreshold;
+
+    /**
+     * @param duplicateThreshold share of a passage's word shingles already seen
+     *                           in a picked passage above which it is dropped
+     */
+    public ContextPacker(int maxTokens, double duplicateThreshold) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be positive");
+        }
+        this.maxTokens = maxTokens;
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    public record Passage(String pageId, Integer pageNumber, String text, float score) {
+    }
+
+    /**
+     * @param candidates passages ordered from most to least relevant
+     */
+    public List<Passage> pack(List<Passage> candidates) {
+        List<Passage> picked = new ArrayList<>();
+        List<Set<String>> pickedShingles = new ArrayList<>();
+        int tokens = 0;
+        for (Passage candidate : candidates) {
+            if (candidate.text() == null || candidate.text().isBlank()) {
+                continue;
+            }
+            int cost = TextChunker.estimateTokens(candidate.text());
+            if (tokens + cost > maxTokens) {
+                continue;
+            }
+            Set<String> shingles = shingles(candidate.text());
+            if (pickedShingles.stream().anyMatch(seen -> containment(shingles, seen) > duplicateThreshold)) {
+                continue;
+            }
+            picked.add(candidate);
+            pickedShingles.add(shingles);
+            tokens += cost;
+        }
+        picked.sort(Comparator.comparing(Passage::pageNumber, Comparator.nullsLast(Comparator.naturalOrder())));
+        return picked;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    private static Set<String> shingles(String text) {
+        String[] words = NON_WORD.split(text.toLowerCase(Locale.ROOT).trim());
+        Set<String> shingles = new HashSet<>();
+        if (words.length < SHINGLE_WORDS) {
+            shingles.add(String.join(" ", words));
+            return shingles;
+        }
+        List<String> wordList = Arrays.asList(words);
+        for (int i = 0; i + SHINGLE_WORDS <= words.length; i++) {
+            shingles.add(String.join(" ", wordList.subList(i, i + SHINGLE_WORDS)));
+        }
+        return shingles;
+    }
+
+    /**
+     * @return the share of {@code candidate}'s shingles that also appear in {@code seen}
+     */
+    private static double containment(Set<String> candidate, Set<String> seen) {
+        if (candidate.isEmpty()) {
+            return 1;
+        }
+        int shared = 0;
+        for (String shingle : candidate) {
+            if (seen.contains(shingle)) {
+                shared++;
+            }
+        }
+        return (double) shared / candidate.size();
+    }
+}
@@ -0,0 +1,69 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Hedged requests for idempotent reads: when the first attempt has not
+ * answered after {@code delay}, a second identical attempt is started and
+ * whichever answers first wins; the other one is cancelled. This trims the
+ * tail latency caused by a single slow server worker, for the price of a
+ * little extra load on slow calls only.
+ */
+public final class Hedging {
+
+    private Hedging() {
+    }
+
+    /**
+     * @param onHedge called when the second attempt is started, e.g. for metrics
+     * @param discard releases a value that arrived after the winner, such as a response body
+     */
+    public static <T> Mono<T> hedge(Supplier<Mono<T>> call, Duration delay, Runnable onHedge, Consumer<T> discard) {
+        return Mono.create(sink -> {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger running = new AtomicInteger(1);
+            Disposable.Composite attempts = Disposables.composite();
+            sink.onDispose(attempts);
+
+            Consumer<Mono<T>> start = attempt -> attempts.add(attempt.subscribe(
+                    value -> {
+                        if (done.compareAndSet(false, true)) {
+                            sink.success(value);
+                        } else {
+                            discard.accept(value);
+                        }
+                    },
+                    error -> {
+                        // the other attempt may still succeed
+                        if (running.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                            sink.error(error);
+                        }
+                    },
+                    () -> {
+                        if (done.compareAndSet(false, true)) {
+                            sink.success();
+                        }
+                    }));
+
+            attempts.add(Schedulers.parallel().schedule(() -> {
+                if (done.get()) {
+                    return;
+                }
+                running.incrementAndGet();
+                onHedge.run();
+                start.accept(Mono.defer(call));
+            }, delay.toMillis(), TimeUnit.MILLISECONDS));
+            start.accept(Mono.defer(call));
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Downscaling of page images to small JPEGs with the JDK's image codecs.
+ * Large sources are subsampled while they are decoded, so a full page render
+ * never has to be held on the heap at its original resolution.
+ */
+public final class ImageScaling {
+
+    private ImageScaling() {
+    }
+
+    /**
+     * Scale an encoded image to at most {@code width} pixels wide, keeping its
+     * aspect ratio, and encode it as a JPEG. Images already narrower are only
+     * re-encoded.
+     *
+     * @param quality JPEG quality between 0 and 1
+     * @return the JPEG, or empty when the source is not an image the JDK can decode
+     */
+    public static Optional<byte[]> toJpeg(InputStream source, int width, float quality) throws IOException {
+        BufferedImage image = decode(source, width);
+        if (image == null) {
+            return Optional.empty();
+        }
+        return Optional.of(encodeJpeg(downscale(image, width), quality));
+    }
+
+    /**
+     * Decode an image, skipping source pixels when it is more than twice as wide
+     * as needed. Keeping at least twice the target width leaves enough detail for
+     * a smooth final scale.
+     */
+    private static BufferedImage decode(InputStream source, int width) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, reader.getWidth(0) / (width * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halve the image with bilinear filtering until one more step reaches the
+     * target, which looks close to an area average at a fraction of the cost.
+     * The result is opaque RGB with transparent areas painted white.
+     */
+    static BufferedImage downscale(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            int nextWidth = Math.max(targetWidth, currentWidth / 2);
+            int nextHeight = nextWidth == targetWidth
+                    ? Math.max(1, Math.round((float) image.getHeight() * targetWidth / image.getWidth()))
+                    : Math.max(1, currentHeight / 2);
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth > targetWidth);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
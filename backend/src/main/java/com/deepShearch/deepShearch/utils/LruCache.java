@@ -0,0 +1,122 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A size-bounded map that evicts the least recently used entry, with an
+ * optional time to live. The bound is a number of entries, or a total weight
+ * such as an estimate of the bytes held when values differ much in size.
+ * Access is synchronized, so it suits small caches of expensive values rather
+ * than hot counters.
+ */
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long weight;
+
+    /**
+     * @param ttl how long an entry stays valid after it was put, or null to keep it until evicted
+     */
+    public LruCache(int maxEntries, Duration ttl) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0, ttl);
+    }
+
+    /**
+     * @param maxWeight bound on the sum of {@code weigher} over all entries; an entry
+     *                  heavier than that on its own is not kept
+     * @param ttl       how long an entry stays valid after it was put, or null to keep it until evicted
+     */
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher, Duration ttl) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.ttlNanos = ttl == null || ttl.isZero() || ttl.isNegative() ? Long.MAX_VALUE : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    weight -= eldest.getValue().weight();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized Optional<V> get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (System.nanoTime() - entry.createdAt() > ttlNanos) {
+            remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value());
+    }
+
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            remove(key);
+            return;
+        }
+        Entry<V> replaced = entries.put(key, new Entry<>(value, System.nanoTime(), valueWeight));
+        weight += valueWeight - (replaced != null ? replaced.weight() : 0);
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight();
+            eldest.remove();
+        }
+    }
+
+    public synchronized void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    public synchronized void removeIf(BiPredicate<K, V> predicate) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value())) {
+                weight -= entry.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The summed weight of the entries, 0 when the cache is bounded by count only.
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    private record Entry<V>(V value, long createdAt, long weight) {
+    }
+}
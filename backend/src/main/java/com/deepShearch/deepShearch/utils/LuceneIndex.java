@@ -0,0 +1,117 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.MMapDirectory;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A Lucene index in a memory-mapped directory with a single writer and
+ * near-real-time searchers. Changes become visible on {@link #refresh()} and
+ * durable on {@link #commit()}, which only writes when something changed.
+ */
+@Slf4j
+public class LuceneIndex implements Closeable {
+
+    private final String name;
+    private final MMapDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public LuceneIndex(String name, Path path, Analyzer analyzer, double ramBufferMb) throws IOException {
+        this.name = name;
+        Files.createDirectories(path);
+        this.directory = new MMapDirectory(path);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(ramBufferMb);
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(writer, null);
+        log.info("Opened {} at {} with {} documents", name, path.toAbsolutePath(), numDocs());
+    }
+
+    /**
+     * Replace the documents identified by {@code id} with {@code documents}, atomically.
+     */
+    public void update(Term id, Iterable<Document> documents) {
+        try {
+            writer.updateDocuments(id, documents);
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the " + name, e);
+        }
+    }
+
+    public void delete(Query query) {
+        try {
+            writer.deleteDocuments(query);
+            dirty.set(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete from the " + name, e);
+        }
+    }
+
+    public <T> T withSearcher(SearcherCall<T> call) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return call.apply(searcher);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search the " + name, e);
+        }
+    }
+
+    public int numDocs() {
+        return writer.getDocStats().numDocs;
+    }
+
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Could not refresh the {}: {}", name, e.getMessage());
+        }
+    }
+
+    public void commit() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("Could not commit the {}: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    @FunctionalInterface
+    public interface SearcherCall<T> {
+        T apply(IndexSearcher searcher) throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces concurrent executions for the same key: the first caller runs the
+ * computation and every caller that arrives while it is pending receives the
+ * same result. The key is released as soon as the computation terminates.
+ * The computation runs with the Reactor context of the caller that started it.
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run {@code supplier} for {@code key}, or attach to the pending run for it.
+     * Cancelling one subscriber does not cancel the shared computation.
+     */
+    public Mono<T> execute(String key, Supplier<Mono<T>> supplier) {
+        return Mono.deferContextual(context -> {
+            CompletableFuture<T> created = new CompletableFuture<>();
+            CompletableFuture<T> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                return Mono.fromFuture(existing, true);
+            }
+
+            try {
+                supplier.get().contextWrite(context).subscribe(
+                        result -> complete(key, created, result),
+                        error -> fail(key, created, error),
+                        () -> complete(key, created, null));
+            } catch (RuntimeException e) {
+                fail(key, created, e);
+            }
+            return Mono.fromFuture(created, true);
+        });
+    }
+
+    /**
+     * Make {@code result}, driven by the caller, the pending computation for
+     * {@code key}, unless another one is already pending. The check and the
+     * registration are atomic, so of two concurrent callers exactly one wins.
+     *
+     * @return the computation already pending, or empty when {@code result} was registered
+     */
+    public Optional<Mono<T>> register(String key, Mono<T> result) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return Optional.of(Mono.fromFuture(existing, true));
+        }
+        result.subscribe(value -> complete(key, created, value), error -> fail(key, created, error),
+                () -> complete(key, created, null));
+        return Optional.empty();
+    }
+
+    /**
+     * @return the pending computation for {@code key}, if there is one
+     */
+    public Optional<Mono<T>> join(String key) {
+        CompletableFuture<T> existing = inFlight.get(key);
+        return existing == null ? Optional.empty() : Optional.of(Mono.fromFuture(existing, true));
+    }
+
+    /**
+     * Release the key before the waiters: a waiter that calls again for the
+     * same key as it is handed the result must start a fresh run, not attach
+     * to the finished one.
+     */
+    private void complete(String key, CompletableFuture<T> future, T result) {
+        inFlight.remove(key, future);
+        future.complete(result);
+    }
+
+    private void fail(String key, CompletableFuture<T> future, Throwable error) {
+        inFlight.remove(key, future);
+        future.completeExceptionally(error);
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,104 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches the results of {@link Mono} loads by key. A value younger than the
+ * soft TTL is served as is; an older one is still served immediately, while a
+ * reload refreshes it in the background. Past the hard TTL a value is no
+ * longer served and callers wait for the load. Loads of the same key, whether
+ * for a caller or a background refresh, are coalesced.
+ * <p>
+ * A load that started before an invalidation does not store its result, so
+ * an invalidated value cannot come back through a refresh that was in flight.
+ */
+@Slf4j
+public class StaleWhileRevalidateCache<T> {
+
+    /** How a lookup was answered. */
+    public enum Result { FRESH, STALE, MISS }
+
+    private final long softTtlNanos;
+    private final long hardTtlNanos;
+    private final LongSupplier clock;
+    private final LruCache<String, Entry<T>> entries;
+    private final SingleFlight<T> loads = new SingleFlight<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public StaleWhileRevalidateCache(int maxEntries, Duration softTtl, Duration hardTtl) {
+        this(maxEntries, softTtl, hardTtl, System::nanoTime);
+    }
+
+    StaleWhileRevalidateCache(int maxEntries, Duration softTtl, Duration hardTtl, LongSupplier clock) {
+        if (softTtl.compareTo(hardTtl) > 0) {
+            throw new IllegalArgumentException("softTtl must not exceed hardTtl");
+        }
+        this.softTtlNanos = softTtl.toNanos();
+        this.hardTtlNanos = hardTtl.toNanos();
+        this.clock = clock;
+        this.entries = new LruCache<>(maxEntries, null);
+    }
+
+    /**
+     * Get the value of {@code key}, loading it with {@code loader} when there is
+     * no usable one. An empty load is not cached.
+     *
+     * @param onResult told how the lookup was answered, e.g. for metrics
+     */
+    public Mono<T> get(String key, Supplier<Mono<T>> loader, Consumer<Result> onResult) {
+        return Mono.defer(() -> {
+            long now = clock.getAsLong();
+            Entry<T> entry = entries.get(key).orElse(null);
+            if (entry != null && now - entry.loadedAt() < hardTtlNanos) {
+                if (now - entry.loadedAt() < softTtlNanos) {
+                    onResult.accept(Result.FRESH);
+                } else {
+                    onResult.accept(Result.STALE);
+                    load(key, loader).subscribe(null,
+                            error -> log.debug("Background refresh of {} failed: {}", key, error.toString()));
+                }
+                return Mono.just(entry.value());
+            }
+            onResult.accept(Result.MISS);
+            return load(key, loader);
+        });
+    }
+
+    public synchronized void invalidate(String key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<String> keys) {
+        generation.incrementAndGet();
+        entries.removeIf((key, entry) -> keys.test(key));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Mono<T> load(String key, Supplier<Mono<T>> loader) {
+        return loads.execute(key, () -> {
+            long startedIn = generation.get();
+            return loader.get().doOnNext(value -> store(key, value, startedIn));
+        });
+    }
+
+    private synchronized void store(String key, T value, long startedIn) {
+        if (generation.get() == startedIn) {
+            entries.put(key, new Entry<>(value, clock.getAsLong()));
+        }
+    }
+
+    private record Entry<T>(T value, long loadedAt) {
+    }
+}
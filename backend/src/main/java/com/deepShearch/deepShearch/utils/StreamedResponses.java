@@ -0,0 +1,229 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Helpers for proxying a binary body as a stream of {@link DataBuffer}s without
+ * aggregating it, or an open file. Conditional requests and single byte
+ * ranges are answered here when the upstream server ignored them, so clients
+ * get 304 and 206 responses either way.
+ */
+public final class StreamedResponses {
+
+    private static final List<String> PASSED_THROUGH = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_RANGE,
+            HttpHeaders.ACCEPT_RANGES, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.EXPIRES);
+
+    /** Request headers that let the upstream server answer with 304 or 206 itself. */
+    public static final List<String> FORWARDED = List.of(
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.RANGE, HttpHeaders.IF_RANGE);
+
+    private StreamedResponses() {
+    }
+
+    /**
+     * What to send for a representation with the given headers: 304 when the
+     * client's validators match, 206 or 416 for a single byte range when the
+     * length is known, otherwise the whole body with status 200.
+     *
+     * @param body whether a body is sent at all
+     * @param offset first byte of the body to send
+     * @param count number of bytes to send, or -1 for everything from {@code offset}
+     */
+    public record Outcome(HttpStatus status, HttpHeaders headers, boolean body, long offset, long count) {
+    }
+
+    /**
+     * Evaluate the conditional and range headers of {@code request} against a
+     * representation. Only content and validator headers of
+     * {@code representation} end up in the outcome.
+     */
+    public static Outcome evaluate(HttpHeaders request, HttpHeaders representation) {
+        HttpHeaders headers = passThrough(representation);
+
+        if (isNotModified(request, headers)) {
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return new Outcome(HttpStatus.NOT_MODIFIED, headers, false, 0, 0);
+        }
+
+        long length = headers.getContentLength();
+        if (length < 0) {
+            return new Outcome(HttpStatus.OK, headers, true, 0, -1);
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = request.getRange();
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        // Multiple ranges would need a multipart body; serving the whole entity is allowed instead
+        if (ranges.size() != 1 || !rangeStillValid(request, headers)) {
+            return new Outcome(HttpStatus.OK, headers, true, 0, length);
+        }
+
+        long start;
+        long end;
+        try {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            start = length;
+            end = length - 1;
+        }
+        if (length == 0 || start >= length || start > end) {
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.setContentLength(0);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return new Outcome(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, headers, false, 0, 0);
+        }
+
+        long count = end - start + 1;
+        headers.setContentLength(count);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        return new Outcome(HttpStatus.PARTIAL_CONTENT, headers, true, start, count);
+    }
+
+    /**
+     * Shape an upstream response for the client that sent {@code request}.
+     * A 200 is turned into 304, 206 or 416 as {@link #evaluate} decides, and
+     * the body is then sliced or cancelled. Any other upstream status is
+     * passed through.
+     */
+    public static ResponseEntity<Flux<DataBuffer>> negotiate(HttpHeaders request,
+                                                             ResponseEntity<Flux<DataBuffer>> upstream) {
+        Flux<DataBuffer> body = upstream.getBody() != null ? upstream.getBody() : Flux.empty();
+        if (upstream.getStatusCode().value() != HttpStatus.OK.value()) {
+            return ResponseEntity.status(upstream.getStatusCode()).headers(passThrough(upstream.getHeaders())).body(body);
+        }
+
+        Outcome outcome = evaluate(request, upstream.getHeaders());
+        if (!outcome.body()) {
+            discard(body);
+            return ResponseEntity.status(outcome.status()).headers(outcome.headers()).build();
+        }
+        if (outcome.status() == HttpStatus.PARTIAL_CONTENT) {
+            body = DataBufferUtils.takeUntilByteCount(DataBufferUtils.skipUntilByteCount(body, outcome.offset()),
+                    outcome.count());
+        }
+        return ResponseEntity.status(outcome.status()).headers(outcome.headers()).body(body);
+    }
+
+    /**
+     * Write {@code body} to the servlet response from the request's async thread.
+     * At most {@code prefetch} buffers are requested ahead of the client, so
+     * memory per response stays constant whatever the size of the body.
+     */
+    public static StreamingResponseBody toStreamingBody(Flux<DataBuffer> body, int prefetch) {
+        return output -> {
+            try (Stream<DataBuffer> buffers = body
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .toStream(Math.max(1, prefetch))) {
+                for (DataBuffer buffer : (Iterable<DataBuffer>) buffers::iterator) {
+                    try (InputStream input = buffer.asInputStream(true)) {
+                        input.transferTo(output);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Write {@code count} bytes of an open file from {@code offset} with
+     * {@link FileChannel#transferTo}, which lets the JDK skip the heap copy
+     * when the target allows it. The channel is closed afterwards.
+     */
+    public static StreamingResponseBody fromFile(FileChannel channel, long offset, long count) {
+        return output -> {
+            try (channel) {
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = offset;
+                long end = offset + count;
+                while (position < end) {
+                    long written = channel.transferTo(position, end - position, target);
+                    if (written <= 0) {
+                        throw new EOFException("File ended at byte " + position + " of " + end);
+                    }
+                    position += written;
+                }
+            }
+        };
+    }
+
+    /**
+     * Cancel a body that will not be sent, releasing anything already received.
+     */
+    public static void discard(Flux<DataBuffer> body) {
+        body.doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .subscribe(DataBufferUtils::release, error -> { })
+                .dispose();
+    }
+
+    private static HttpHeaders passThrough(HttpHeaders source) {
+        HttpHeaders headers = new HttpHeaders();
+        PASSED_THROUGH.forEach(name -> {
+            List<String> values = source.get(name);
+            if (values != null) {
+                headers.put(name, values);
+            }
+        });
+        return headers;
+    }
+
+    private static boolean isNotModified(HttpHeaders request, HttpHeaders response) {
+        List<String> ifNoneMatch = request.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String etag = response.getETag();
+            if (etag == null) {
+                return false;
+            }
+            // If-None-Match uses the weak comparison
+            String opaque = opaque(etag);
+            return ifNoneMatch.stream().anyMatch(candidate -> "*".equals(candidate) || opaque(candidate).equals(opaque));
+        }
+        long ifModifiedSince = request.getIfModifiedSince();
+        long lastModified = response.getLastModified();
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean rangeStillValid(HttpHeaders request, HttpHeaders response) {
+        String ifRange = request.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range uses the strong comparison, so weak tags never match
+            String etag = response.getETag();
+            return etag != null && !etag.startsWith("W/") && etag.equals(ifRange);
+        }
+        try {
+            return request.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == response.getLastModified() / 1000
+                    && response.getLastModified() >= 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
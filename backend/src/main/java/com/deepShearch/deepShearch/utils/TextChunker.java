@@ -0,0 +1,155 @@
+package com.deepShearch.deepShearch.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long text into windows that fit a token budget. Text is cut on
+ * paragraph boundaries first, then on sentence boundaries, and only as a last
+ * resort inside a sentence. Consecutive windows share up to
+ * {@code overlapTokens} of text so context is not lost at the cut.
+ */
+public class TextChunker {
+
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?;:])\\s+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    public TextChunker(int maxTokens, int overlapTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be positive");
+        }
+        this.maxTokens = maxTokens;
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, maxTokens / 2));
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Rough token count for prompt budgeting: about four characters per token
+     * for Latin text, with a floor based on the number of words.
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isBlank()) {
+            return 0;
+        }
+        int words = WHITESPACE.split(text.trim()).length;
+        return Math.max((words * 4 + 2) / 3, (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN);
+    }
+
+    public boolean fits(String text) {
+        return estimateTokens(text) <= maxTokens;
+    }
+
+    public List<String> split(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        if (fits(text)) {
+            return List.of(text.trim());
+        }
+
+        List<Unit> units = new ArrayList<>();
+        for (String paragraph : PARAGRAPH_BREAK.split(text)) {
+            String trimmed = paragraph.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (fits(trimmed)) {
+                units.add(new Unit(trimmed, estimateTokens(trimmed), "\n\n"));
+                continue;
+            }
+            String separator = "\n\n";
+            for (String sentence : SENTENCE_BREAK.split(trimmed)) {
+                for (String piece : splitOversized(sentence)) {
+                    units.add(new Unit(piece, estimateTokens(piece), separator));
+                    separator = " ";
+                }
+            }
+        }
+        return pack(units);
+    }
+
+    /**
+     * Cut a sentence that is longer than the budget on word boundaries.
+     */
+    private List<String> splitOversized(String sentence) {
+        if (fits(sentence)) {
+            return List.of(sentence);
+        }
+        List<String> pieces = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int words = 0;
+        for (String word : WHITESPACE.split(sentence)) {
+            int chars = current.length() + 1 + word.length();
+            int tokens = Math.max(((words + 1) * 4 + 2) / 3, (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN);
+            if (words > 0 && tokens > maxTokens) {
+                pieces.add(current.toString());
+                current.setLength(0);
+                words = 0;
+            }
+            if (current.length() > 0) {
+                current.append(' ');
+            }
+            current.append(word);
+            words++;
+        }
+        if (current.length() > 0) {
+            pieces.add(current.toString());
+        }
+        return pieces;
+    }
+
+    private List<String> pack(List<Unit> units) {
+        List<String> chunks = new ArrayList<>();
+        List<Unit> window = new ArrayList<>();
+        int windowTokens = 0;
+
+        for (Unit unit : units) {
+            if (!window.isEmpty() && windowTokens + unit.tokens() > maxTokens) {
+                chunks.add(join(window));
+                // carry the tail of the previous window over as overlap
+                List<Unit> overlap = new ArrayList<>();
+                int overlapSize = 0;
+                for (int i = window.size() - 1; i >= 0; i--) {
+                    Unit previous = window.get(i);
+                    if (overlapSize + previous.tokens() > overlapTokens
+                            || overlapSize + previous.tokens() + unit.tokens() > maxTokens) {
+                        break;
+                    }
+                    overlap.add(0, previous);
+                    overlapSize += previous.tokens();
+                }
+                window = overlap;
+                windowTokens = overlapSize;
+            }
+            window.add(unit);
+            windowTokens += unit.tokens();
+        }
+        if (!window.isEmpty()) {
+            chunks.add(join(window));
+        }
+        return chunks;
+    }
+
+    private String join(List<Unit> window) {
+        StringBuilder joined = new StringBuilder();
+        for (Unit unit : window) {
+            if (joined.length() > 0) {
+                joined.append(unit.separator());
+            }
+            joined.append(unit.text());
+        }
+        return joined.toString();
+    }
+
+    private record Unit(String text, int tokens, String separator) {
+    }
+}
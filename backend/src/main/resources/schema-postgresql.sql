@@ -0,0 +1,10 @@
+-- Run after Hibernate has created or updated the tables (spring.jpa.defer-datasource-initialization).
+-- Indexes JPA cannot declare live here; every statement must be safe to run on each start.
+
+-- label_sort LIKE 'prefix%' filter of the catalog list: the plain index follows the
+-- collation and only serves the ordering, a prefix match needs the pattern operators
+CREATE INDEX IF NOT EXISTS idx_catalog_label_prefix ON catalog_documents (label_sort text_pattern_ops);
+
+-- Superseded by the index of the (documentId, documentVersionId, documentVersionPageId)
+-- unique constraint; ddl-auto update never drops indexes itself
+DROP INDEX IF EXISTS idx_documents_version_page_created;
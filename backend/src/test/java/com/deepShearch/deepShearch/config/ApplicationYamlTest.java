@@ -0,0 +1,51 @@
+package com.deepShearch.deepShearch.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+class ApplicationYamlTest {
+
+    private final StandardEnvironment environment = new StandardEnvironment();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME);
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_PROPERTIES_PROPERTY_SOURCE_NAME);
+        for (PropertySource<?> source : new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"))) {
+            environment.getPropertySources().addLast(source);
+        }
+    }
+
+    @Test
+    void keycloakSettingsStayUnderHost() {
+        environment.getPropertySources().addFirst(new MapPropertySource("env", Map.of(
+                "KEYCLOAK_REALM", "other-realm",
+                "KEYCLOAK_RESOURCE", "other-client")));
+
+        assertThat(environment.getProperty("host.keycloak.realm")).isEqualTo("other-realm");
+        assertThat(environment.getProperty("host.keycloak.resource")).isEqualTo("other-client");
+        assertThat(environment.getProperty("host.keycloak.auth-server-url")).isEqualTo("http://localhost:8080");
+        assertThat(environment.getProperty("host.keycloak.name")).isEqualTo("admin");
+        assertThat(environment.getProperty("host.keycloak.password")).isEqualTo("admin_password");
+        assertThat(environment.containsProperty("mayan.keycloak.realm")).isFalse();
+    }
+
+    @Test
+    void mayanHostAndClientSettingsAreBothBound() {
+        assertThat(environment.getProperty("host.mayan.url")).isEqualTo("http://127.0.0.1");
+        assertThat(environment.getProperty("host.mayan.username")).isEqualTo("admin");
+        assertThat(environment.getProperty("mayan.client.ocr.timeout")).isEqualTo("15s");
+        assertThat(environment.getProperty("mayan.client.write.timeout")).isEqualTo("30m");
+    }
+}
@@ -0,0 +1,188 @@
+package com.deepShearch.deepShearch.fakes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Base of the in-process stand-in servers: a JDK {@link HttpServer} on a free
+ * local port with a thread per concurrent request, a configurable latency
+ * added to every answer and a request counter per route.
+ */
+public abstract class FakeHttpServer implements AutoCloseable {
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile Duration latency = Duration.ZERO;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private final AtomicInteger slowAnswersLeft = new AtomicInteger();
+    private volatile Duration slowAnswerDelay = Duration.ZERO;
+
+    public FakeHttpServer start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start " + getClass().getSimpleName(), e);
+        }
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                sleep(latency);
+                if (slowAnswersLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                    sleep(slowAnswerDelay);
+                }
+                if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                    count("failed");
+                    drain(exchange.getRequestBody());
+                    sendText(exchange, failureStatus, "injected failure");
+                    return;
+                }
+                handle(exchange);
+            } catch (Exception e) {
+                sendText(exchange, 500, e.toString());
+            }
+        });
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay added before every answer, on top of any per-route cost.
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Answer the next {@code requests} requests with {@code status}, whatever the route.
+     * They are counted under the route "failed".
+     */
+    public void failNext(int requests, int status) {
+        this.failureStatus = status;
+        failuresLeft.set(requests);
+    }
+
+    /**
+     * Hold the next {@code requests} answers back by {@code delay}, on top of the latency.
+     */
+    public void delayNext(int requests, Duration delay) {
+        this.slowAnswerDelay = delay;
+        slowAnswersLeft.set(requests);
+    }
+
+    public long requestCount(String route) {
+        LongAdder count = requests.get(route);
+        return count == null ? 0 : count.sum();
+    }
+
+    public void resetCounts() {
+        requests.clear();
+    }
+
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    protected void count(String route) {
+        requests.computeIfAbsent(route, key -> new LongAdder()).increment();
+    }
+
+    protected void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, status, bytes);
+    }
+
+    protected void sendText(HttpExchange exchange, int status, String body) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+
+    protected void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    protected static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    protected static Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return params;
+    }
+
+    protected static int intParam(Map<String, String> params, String name, int defaultValue) {
+        try {
+            return params.containsKey(name) ? Integer.parseInt(params.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    protected static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
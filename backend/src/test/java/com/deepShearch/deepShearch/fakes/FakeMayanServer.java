@@ -0,0 +1,208 @@
+package com.deepShearch.deepShearch.fakes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Stand-in for the parts of the Mayan EDMS REST API the backend uses. Every
+ * document has one file and one version with {@code pagesPerDocument} pages;
+ * page ids are {@code documentId * 10000 + pageNumber}. OCR text and images
+ * are generated deterministically from the page id at the configured size.
+ */
+public class FakeMayanServer extends FakeHttpServer {
+
+    private static final Pattern DOCUMENTS = Pattern.compile("^/api/v4/documents/?$");
+    private static final Pattern UPLOAD = Pattern.compile("^/api/v4/documents/upload/?$");
+    private static final Pattern DOCUMENT = Pattern.compile("^/api/v4/documents/(\\d+)/?$");
+    private static final Pattern FILE_PAGES = Pattern.compile("^/api/v4/documents/(\\d+)/files/(\\d+)/pages/?$");
+    private static final Pattern FILE_PAGE_IMAGE =
+            Pattern.compile("^/api/v4/documents/(\\d+)/files/(\\d+)/pages/(\\d+)/image/?$");
+    private static final Pattern VERSION_PAGES = Pattern.compile("^/api/v4/documents/(\\d+)/versions/(\\d+)/pages/?$");
+    private static final Pattern VERSION_PAGE_OCR =
+            Pattern.compile("^/api/v4/documents/(\\d+)/versions/(\\d+)/pages/(\\d+)/ocr/?$");
+
+    private static final String[] WORDS = {
+            "contract", "payment", "invoice", "delivery", "warranty", "clause", "party", "period",
+            "report", "analysis", "budget", "revenue", "quarter", "growth", "risk", "policy",
+            "the", "of", "and", "to", "in", "for", "with", "on", "by", "is", "are", "this"
+    };
+
+    private volatile int documentCount = 50;
+    private volatile int pagesPerDocument = 20;
+    private volatile int ocrChars = 2000;
+    private volatile int imageBytes = 200 * 1024;
+    private final AtomicLong nextDocumentId = new AtomicLong(100_000);
+
+    public FakeMayanServer documents(int documentCount) {
+        this.documentCount = documentCount;
+        return this;
+    }
+
+    public FakeMayanServer pagesPerDocument(int pagesPerDocument) {
+        this.pagesPerDocument = pagesPerDocument;
+        return this;
+    }
+
+    public FakeMayanServer ocrChars(int ocrChars) {
+        this.ocrChars = ocrChars;
+        return this;
+    }
+
+    public FakeMayanServer imageBytes(int imageBytes) {
+        this.imageBytes = imageBytes;
+        return this;
+    }
+
+    public int getPagesPerDocument() {
+        return pagesPerDocument;
+    }
+
+    public static long pageId(long documentId, int pageNumber) {
+        return documentId * 10_000 + pageNumber;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        Matcher matcher;
+
+        if ("POST".equals(method) && UPLOAD.matcher(path).matches()) {
+            count("upload");
+            drain(exchange.getRequestBody());
+            sendJson(exchange, 202, document(nextDocumentId.incrementAndGet()));
+        } else if (DOCUMENTS.matcher(path).matches()) {
+            count("documents");
+            Map<String, String> params = query(exchange.getRequestURI());
+            sendJson(exchange, 200, documentList(intParam(params, "page", 1), intParam(params, "page_size", 20)));
+        } else if ((matcher = DOCUMENT.matcher(path)).matches()) {
+            count("document");
+            if ("DELETE".equals(method)) {
+                send(exchange, 202, new byte[0]);
+            } else {
+                sendJson(exchange, 200, document(Long.parseLong(matcher.group(1))));
+            }
+        } else if ((matcher = FILE_PAGES.matcher(path)).matches()) {
+            count("file-pages");
+            sendJson(exchange, 200, filePages(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))));
+        } else if ((matcher = FILE_PAGE_IMAGE.matcher(path)).matches()) {
+            count("image");
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("ETag", "\"page-" + matcher.group(3) + "-" + imageBytes + "\"");
+            send(exchange, 200, bytes(Long.parseLong(matcher.group(3)), imageBytes));
+        } else if ((matcher = VERSION_PAGES.matcher(path)).matches()) {
+            count("version-pages");
+            Map<String, String> params = query(exchange.getRequestURI());
+            sendJson(exchange, 200, versionPages(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                    intParam(params, "page", 1), intParam(params, "page_size", 100)));
+        } else if ((matcher = VERSION_PAGE_OCR.matcher(path)).matches()) {
+            count("ocr");
+            sendJson(exchange, 200, Map.of("content", ocrText(Long.parseLong(matcher.group(3)))));
+        } else {
+            count("unknown");
+            sendText(exchange, 404, "Not found: " + method + " " + path);
+        }
+    }
+
+    private Map<String, Object> documentList(int page, int pageSize) {
+        List<Object> results = new ArrayList<>();
+        int first = (page - 1) * pageSize;
+        for (int i = first; i < Math.min(documentCount, first + pageSize); i++) {
+            results.add(document(i + 1));
+        }
+        return paginated(documentCount, page, pageSize, results);
+    }
+
+    private Map<String, Object> document(long id) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", id);
+        document.put("uuid", "00000000-0000-0000-0000-" + String.format("%012d", id));
+        document.put("label", "Document " + id);
+        document.put("description", "Generated document " + id);
+        document.put("datetime_created", "2024-01-01T10:00:00");
+        document.put("language", "eng");
+        document.put("document_type", Map.of("id", 1, "label", "Default"));
+        document.put("file_latest", Map.of("id", id, "filename", "document-" + id + ".pdf",
+                "encoding", "binary", "mimetype", "application/pdf", "size", (long) imageBytes * pagesPerDocument,
+                "checksum", Long.toHexString(id)));
+        document.put("version_active", Map.of("id", id, "comment", "", "version_number", 1));
+        document.put("url", baseUrl() + "/api/v4/documents/" + id + "/");
+        return document;
+    }
+
+    private Map<String, Object> filePages(long documentId, long fileId) {
+        List<Object> results = new ArrayList<>();
+        for (int number = 1; number <= pagesPerDocument; number++) {
+            long pageId = pageId(documentId, number);
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("document_file_id", fileId);
+            page.put("document_file_url", baseUrl() + "/api/v4/documents/" + documentId + "/files/" + fileId + "/");
+            page.put("id", pageId);
+            page.put("image_url", baseUrl() + "/api/v4/documents/" + documentId + "/files/" + fileId
+                    + "/pages/" + pageId + "/image/");
+            page.put("page_number", number);
+            page.put("url", baseUrl() + "/api/v4/documents/" + documentId + "/files/" + fileId + "/pages/" + pageId + "/");
+            results.add(page);
+        }
+        return paginated(pagesPerDocument, 1, pagesPerDocument, results);
+    }
+
+    private Map<String, Object> versionPages(long documentId, long versionId, int page, int pageSize) {
+        List<Object> results = new ArrayList<>();
+        int first = (page - 1) * pageSize;
+        for (int number = first + 1; number <= Math.min(pagesPerDocument, first + pageSize); number++) {
+            long pageId = pageId(documentId, number);
+            Map<String, Object> versionPage = new LinkedHashMap<>();
+            versionPage.put("id", pageId);
+            versionPage.put("document_version_id", versionId);
+            versionPage.put("page_number", number);
+            versionPage.put("image_url", baseUrl() + "/api/v4/documents/" + documentId + "/versions/" + versionId
+                    + "/pages/" + pageId + "/image/");
+            versionPage.put("url", baseUrl() + "/api/v4/documents/" + documentId + "/versions/" + versionId
+                    + "/pages/" + pageId + "/");
+            results.add(versionPage);
+        }
+        return paginated(pagesPerDocument, page, pageSize, results);
+    }
+
+    private Map<String, Object> paginated(int count, int page, int pageSize, List<Object> results) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("count", count);
+        response.put("next", (long) page * pageSize < count ? "page=" + (page + 1) : null);
+        response.put("previous", page > 1 ? "page=" + (page - 1) : null);
+        response.put("results", results);
+        return response;
+    }
+
+    /**
+     * Text that differs from page to page, so content-addressed caches do not
+     * turn the whole corpus into a single entry.
+     */
+    public String ocrText(long pageId) {
+        Random random = new Random(pageId);
+        StringBuilder text = new StringBuilder(ocrChars + 16);
+        text.append("Page ").append(pageId).append('.');
+        while (text.length() < ocrChars) {
+            text.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(12) == 0) {
+                text.append('.');
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] bytes(long seed, int size) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
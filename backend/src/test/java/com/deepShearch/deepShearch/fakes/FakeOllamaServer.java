@@ -0,0 +1,173 @@
+package com.deepShearch.deepShearch.fakes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Stand-in for Ollama's {@code /api/chat} and {@code /api/embed}. Answers with a
+ * well-formed summary JSON (or a JSON array for batched page prompts), produced
+ * at a configurable token rate so the latency profile of a real model can be
+ * approximated, and streams it as NDJSON when asked to. Embeddings are hashed
+ * bags of words, so texts sharing words are close to each other.
+ */
+public class FakeOllamaServer extends FakeHttpServer {
+
+    private static final Pattern BATCH_PAGE = Pattern.compile("=== PAGE (\\d+) ===");
+    private static final int EMBEDDING_DIMENSIONS = 64;
+
+    private volatile double tokensPerSecond = 200;
+    private volatile Duration timeToFirstToken = Duration.ofMillis(20);
+
+    public FakeOllamaServer tokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+
+    public FakeOllamaServer timeToFirstToken(Duration timeToFirstToken) {
+        this.timeToFirstToken = timeToFirstToken;
+        return this;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod()) && path.startsWith("/api/embed")) {
+            count("embed");
+            embed(exchange);
+            return;
+        }
+        if (!"POST".equals(exchange.getRequestMethod()) || !path.startsWith("/api/chat")) {
+            count("unknown");
+            sendText(exchange, 404, "Not found: " + path);
+            return;
+        }
+        count("chat");
+
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String model = request.path("model").asText("fake");
+        boolean stream = request.path("stream").asBoolean(false);
+        String prompt = lastUserMessage(request);
+        List<String> tokens = tokenize(answer(prompt));
+
+        sleep(timeToFirstToken);
+        if (stream) {
+            streamAnswer(exchange, model, tokens);
+        } else {
+            sleep(tokenDelay().multipliedBy(tokens.size()));
+            sendJson(exchange, 200, chunk(model, String.join("", tokens), true));
+        }
+    }
+
+    private void embed(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        JsonNode input = request.path("input");
+        List<float[]> embeddings = new ArrayList<>();
+        if (input.isArray()) {
+            input.forEach(text -> embeddings.add(embedding(text.asText(""))));
+        } else {
+            embeddings.add(embedding(input.asText("")));
+        }
+        sleep(timeToFirstToken);
+        sendJson(exchange, 200, Map.of("model", request.path("model").asText("fake"), "embeddings", embeddings));
+    }
+
+    private static float[] embedding(String text) {
+        float[] vector = new float[EMBEDDING_DIMENSIONS];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                vector[Math.floorMod(word.hashCode(), EMBEDDING_DIMENSIONS)] += 1;
+            }
+        }
+        // an all-zero vector has no direction for cosine similarity
+        vector[0] += 0.01f;
+        return vector;
+    }
+
+    private void streamAnswer(HttpExchange exchange, String model, List<String> tokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        Duration delay = tokenDelay();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String token : tokens) {
+                sleep(delay);
+                writeLine(out, chunk(model, token, false));
+            }
+            writeLine(out, chunk(model, "", true));
+        }
+    }
+
+    private void writeLine(OutputStream out, Map<String, Object> chunk) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(chunk));
+        out.write('\n');
+        out.flush();
+    }
+
+    private Map<String, Object> chunk(String model, String content, boolean done) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        chunk.put("message", Map.of("role", "assistant", "content", content));
+        chunk.put("done", done);
+        if (done) {
+            chunk.put("done_reason", "stop");
+            chunk.put("total_duration", 0);
+            chunk.put("prompt_eval_count", 0);
+            chunk.put("eval_count", 0);
+        }
+        return chunk;
+    }
+
+    private Duration tokenDelay() {
+        return tokensPerSecond <= 0 ? Duration.ZERO : Duration.ofNanos((long) (1_000_000_000L / tokensPerSecond));
+    }
+
+    private String lastUserMessage(JsonNode request) {
+        String prompt = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                prompt = message.path("content").asText("");
+            }
+        }
+        return prompt;
+    }
+
+    private String answer(String prompt) throws IOException {
+        Matcher pages = BATCH_PAGE.matcher(prompt);
+        List<Object> batch = new ArrayList<>();
+        while (pages.find()) {
+            int page = Integer.parseInt(pages.group(1));
+            batch.add(Map.of("page", page, "summary", "Summary of batched page " + page + ".",
+                    "keywords", List.of("batch", "page" + page)));
+        }
+        if (!batch.isEmpty()) {
+            return objectMapper.writeValueAsString(batch);
+        }
+        int words = prompt.isBlank() ? 0 : prompt.trim().split("\\s+").length;
+        return objectMapper.writeValueAsString(Map.of(
+                "summary", "A generated summary of a text of " + words + " words, covering its main points "
+                        + "and the parties involved.",
+                "keywords", List.of("summary", "fake", "load")));
+    }
+
+    /**
+     * Cut the answer in pieces of about four characters, like a real tokenizer would.
+     */
+    private static List<String> tokenize(String answer) {
+        List<String> tokens = new ArrayList<>();
+        for (int start = 0; start < answer.length(); start += 4) {
+            tokens.add(answer.substring(start, Math.min(answer.length(), start + 4)));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,184 @@
+package com.deepShearch.deepShearch.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.deepShearch.deepShearch.fakes.FakeMayanServer;
+import com.deepShearch.deepShearch.fakes.FakeOllamaServer;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+/**
+ * End-to-end load scenario against in-process fakes of Mayan and Ollama. Not
+ * part of the default build; run it with {@code mvn test -Pload}. Sizes can be
+ * tuned with system properties, e.g. {@code -Dload.requests=1000
+ * -Dload.concurrency=32 -Dload.mayan.latency-ms=20 -Dload.ollama.tokens-per-second=50},
+ * and a flow fails when its p99 exceeds {@code -Dload.<flow>.max-p99-ms}.
+ * The report is printed and written to {@code target/load-report.txt}.
+ */
+@Tag("load")
+@ActiveProfiles("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DocumentControllerLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("load.requests", 300);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int SUMMARIZE_REQUESTS = Integer.getInteger("load.summarize.requests", 40);
+    private static final int DOCUMENTS = 50;
+    private static final int PAGES_PER_DOCUMENT = 20;
+
+    private static final FakeMayanServer MAYAN = new FakeMayanServer()
+            .documents(DOCUMENTS)
+            .pagesPerDocument(PAGES_PER_DOCUMENT)
+            .ocrChars(Integer.getInteger("load.mayan.ocr-chars", 2000))
+            .imageBytes(Integer.getInteger("load.mayan.image-bytes", 200 * 1024));
+    private static final FakeOllamaServer OLLAMA = new FakeOllamaServer()
+            .tokensPerSecond(Integer.getInteger("load.ollama.tokens-per-second", 400));
+
+    private static final List<LoadScenario.Result> RESULTS = new ArrayList<>();
+
+    static {
+        MAYAN.setLatency(Duration.ofMillis(Integer.getInteger("load.mayan.latency-ms", 5)));
+        MAYAN.start();
+        OLLAMA.start();
+    }
+
+    @DynamicPropertySource
+    static void fakeServers(DynamicPropertyRegistry registry) {
+        registry.add("host.mayan.url", MAYAN::baseUrl);
+        registry.add("spring.ai.ollama.base-url", OLLAMA::baseUrl);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MayanService mayanService;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String token = JWT.create()
+            .withSubject("load-test")
+            .withClaim("preferred_username", "load-test")
+            .withClaim("realm_access", Map.of("roles", List.of("admin", "user")))
+            .sign(Algorithm.none());
+
+    @AfterAll
+    static void report() throws IOException {
+        MAYAN.close();
+        OLLAMA.close();
+
+        StringBuilder report = new StringBuilder(LoadScenario.Result.header()).append('\n');
+        synchronized (RESULTS) {
+            RESULTS.forEach(result -> report.append(result).append('\n'));
+        }
+        System.out.println(report);
+        Path target = Path.of("target");
+        if (Files.isDirectory(target)) {
+            Files.writeString(target.resolve("load-report.txt"), report, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void listDocuments() throws Exception {
+        record(LoadScenario.run("list", REQUESTS, CONCURRENCY,
+                i -> get("/api/v1/documents/mayan?page=" + (i % 3 + 1) + "&pageSize=20")));
+    }
+
+    @Test
+    void pageImages() throws Exception {
+        record(LoadScenario.run("image", REQUESTS, CONCURRENCY, i -> {
+            long documentId = i % DOCUMENTS + 1;
+            long pageId = FakeMayanServer.pageId(documentId, i % PAGES_PER_DOCUMENT + 1);
+            get("/api/v1/documents/mayan/" + documentId + "/files/" + documentId + "/pages/" + pageId + "/image/");
+        }));
+    }
+
+    @Test
+    void pageOcr() throws Exception {
+        // OCR is only reached through the services, so this flow measures the client layer
+        record(LoadScenario.run("ocr", REQUESTS, CONCURRENCY, i -> {
+            long documentId = i % DOCUMENTS + 1;
+            long pageId = FakeMayanServer.pageId(documentId, i % PAGES_PER_DOCUMENT + 1);
+            String content = mayanService.getDocumentPageOCR(String.valueOf(documentId), String.valueOf(documentId),
+                    String.valueOf(pageId)).block(Duration.ofSeconds(30)).getContent();
+            if (content == null || content.isEmpty()) {
+                throw new IllegalStateException("Empty OCR for page " + pageId);
+            }
+        }));
+    }
+
+    @Test
+    void summarizePages() throws Exception {
+        // every request targets a different page so each one is a cold summary
+        record(LoadScenario.run("summarize", SUMMARIZE_REQUESTS, Math.min(CONCURRENCY, 8), i -> {
+            long documentId = i / PAGES_PER_DOCUMENT % DOCUMENTS + 1;
+            long pageId = FakeMayanServer.pageId(documentId, i % PAGES_PER_DOCUMENT + 1);
+            post("/api/v1/documents/Summrize/" + documentId + "/versions/" + documentId
+                    + "/pages/" + pageId + "/user/load-test");
+        }));
+    }
+
+    private void record(LoadScenario.Result result) {
+        synchronized (RESULTS) {
+            RESULTS.add(result);
+        }
+        assertThat(result.errors())
+                .as("%s failed requests, e.g. %s", result.name(), result.errorSamples())
+                .isZero();
+        String maxP99 = System.getProperty("load." + result.name() + ".max-p99-ms");
+        if (maxP99 != null) {
+            assertThat(result.p99Millis())
+                    .as("%s p99 latency", result.name())
+                    .isLessThanOrEqualTo(Double.parseDouble(maxP99));
+        }
+    }
+
+    private void get(String path) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(uri(path)).GET());
+    }
+
+    private void post(String path) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private void send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request
+                        .header("Authorization", "Bearer " + token)
+                        .timeout(Duration.ofSeconds(60))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " for " + response.uri());
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,108 @@
+package com.deepShearch.deepShearch.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one flow a fixed number of times from a fixed number of concurrent
+ * clients and reports throughput and latency percentiles.
+ */
+public final class LoadScenario {
+
+    /**
+     * One request of the flow; returns normally on success and throws on failure.
+     *
+     * @param iteration 0-based index of the request, to spread requests over the data set
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run(int iteration) throws Exception;
+    }
+
+    private LoadScenario() {
+    }
+
+    public static Result run(String name, int requests, int concurrency, Step step) throws InterruptedException {
+        // warm up connection pools and caches so they do not skew the first percentiles
+        int warmup = Math.min(concurrency, requests);
+        for (int i = 0; i < warmup; i++) {
+            try {
+                step.run(i);
+            } catch (Exception ignored) {
+                // failures are counted in the measured run
+            }
+        }
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requests));
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        List<String> errorSamples = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            futures.add(clients.submit(() -> {
+                int iteration;
+                while ((iteration = next.getAndIncrement()) < requests) {
+                    long begin = System.nanoTime();
+                    try {
+                        step.run(warmup + iteration);
+                        latencies.add(System.nanoTime() - begin);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        if (errorSamples.size() < 5) {
+                            errorSamples.add(e.toString());
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("Load client failed", e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Result(name, requests, concurrency, errors.get(), elapsed,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), List.copyOf(errorSamples));
+    }
+
+    private static double percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index))) / 1_000_000.0;
+    }
+
+    public record Result(String name, int requests, int concurrency, int errors, long elapsedNanos,
+                         double p50Millis, double p99Millis, List<String> errorSamples) {
+
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : (requests - errors) / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        public static String header() {
+            return String.format("%-12s %8s %6s %7s %10s %10s %10s",
+                    "flow", "requests", "conc", "errors", "req/s", "p50 ms", "p99 ms");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %8d %6d %7d %10.1f %10.1f %10.1f",
+                    name, requests, concurrency, errors, throughput(), p50Millis, p99Millis);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentsListResponse;
+import com.deepShearch.deepShearch.Model.CatalogDocument;
+import com.deepShearch.deepShearch.Model.CatalogSyncState;
+import com.deepShearch.deepShearch.repository.CatalogDocumentRepository;
+import com.deepShearch.deepShearch.repository.CatalogSyncStateRepository;
+import com.deepShearch.deepShearch.services.interfaces.CatalogService.Ordering;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+class CatalogServiceImplTest {
+
+    private final CatalogDocumentRepository repository = mock(CatalogDocumentRepository.class);
+    private final CatalogSyncStateRepository stateRepository = mock(CatalogSyncStateRepository.class);
+    private final CatalogServiceImpl service = new CatalogServiceImpl(repository, stateRepository,
+            mock(MayanService.class), false, 100, 2, Duration.ofMinutes(10));
+
+    @Test
+    void cursorKeepsThePositionOfTheLastRow() {
+        CatalogDocument row = new CatalogDocument();
+        row.setId(42L);
+        row.setLabelSort("annual report | 2024");
+        row.setDatetimeCreated(LocalDateTime.of(2024, 3, 1, 12, 30, 15));
+
+        CatalogServiceImpl.Cursor byCreated = CatalogServiceImpl.Cursor.decode(
+                CatalogServiceImpl.Cursor.of(Ordering.CREATED, row).encode(), Ordering.CREATED);
+        CatalogServiceImpl.Cursor byLabel = CatalogServiceImpl.Cursor.decode(
+                CatalogServiceImpl.Cursor.of(Ordering.LABEL, row).encode(), Ordering.LABEL);
+
+        assertThat(byCreated.id()).isEqualTo(42L);
+        assertThat(byCreated.created()).isEqualTo(row.getDatetimeCreated());
+        assertThat(byLabel.label()).isEqualTo("annual report | 2024");
+    }
+
+    @Test
+    void cursorOfAnotherOrderingOrGarbageIsRejected() {
+        CatalogDocument row = new CatalogDocument();
+        row.setId(7L);
+        String byId = CatalogServiceImpl.Cursor.of(Ordering.ID, row).encode();
+
+        assertThatThrownBy(() -> CatalogServiceImpl.Cursor.decode(byId, Ordering.LABEL))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CatalogServiceImpl.Cursor.decode("not a cursor", Ordering.ID))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void firstPageIsReadByKeysetAndNotCounted() {
+        when(stateRepository.findById(any())).thenReturn(Optional.of(
+                new CatalogSyncState("mayan-documents", null, null, null, 1234L)));
+        doReturn(rows(10, 9, 8)).when(repository).findBy(anySpecification(), any());
+
+        MayanDocumentsListResponse page = service.listPage(1, 2, null).block();
+
+        assertThat(page.getCount()).isEqualTo(1234);
+        assertThat(page.getResults()).extracting(MayanDocumentResponse::getId).containsExactly(10L, 9L);
+        assertThat(page.getPrevious()).isNull();
+        String cursor = page.getNext().substring("?cursor=".length(), page.getNext().indexOf('&'));
+        assertThat(CatalogServiceImpl.Cursor.decode(cursor, Ordering.CREATED).id()).isEqualTo(9L);
+        verify(repository, never()).count();
+        verify(repository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void nextLinkContinuesFromItsCursor() {
+        String cursor = CatalogServiceImpl.Cursor.of(Ordering.CREATED, rows(9).get(0)).encode();
+        doReturn(rows(8)).when(repository).findBy(anySpecification(), any());
+
+        MayanDocumentsListResponse page = service.listPage(1, 2, cursor).block();
+
+        assertThat(page.getResults()).extracting(MayanDocumentResponse::getId).containsExactly(8L);
+        assertThat(page.getNext()).isNull();
+        assertThat(page.getPrevious()).isNull();
+    }
+
+    @Test
+    void pageAskedByNumberIsReadAsASlice() {
+        when(repository.findAllBy(any())).thenReturn(new SliceImpl<>(rows(6, 5), PageRequest.of(1, 2), true));
+
+        MayanDocumentsListResponse page = service.listPage(2, 2, null).block();
+
+        assertThat(page.getResults()).extracting(MayanDocumentResponse::getId).containsExactly(6L, 5L);
+        assertThat(page.getNext()).startsWith("?cursor=").endsWith("&pageSize=2");
+        assertThat(page.getPrevious()).isEqualTo("?page=1&pageSize=2");
+        verify(repository, never()).count();
+    }
+
+    private static Specification<CatalogDocument> anySpecification() {
+        return any();
+    }
+
+    private static List<CatalogDocument> rows(long... ids) {
+        return LongStream.of(ids).mapToObj(id -> {
+            CatalogDocument row = new CatalogDocument();
+            row.setId(id);
+            row.setLabelSort("document " + id);
+            row.setDatetimeCreated(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(id));
+            return row;
+        }).toList();
+    }
+}
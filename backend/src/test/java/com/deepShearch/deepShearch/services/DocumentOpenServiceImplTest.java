@@ -0,0 +1,106 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.util.unit.DataSize;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse.DocumentFileDto;
+import com.deepShearch.deepShearch.Dto.DocumentOpenResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.Model.SummerizeDoc;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
+import com.deepShearch.deepShearch.services.interfaces.ImageVariantService;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+import reactor.core.publisher.Mono;
+
+class DocumentOpenServiceImplTest {
+
+    private final MayanService mayanService = mock(MayanService.class);
+    private final MayanDocumentCache mayanDocumentCache = mock(MayanDocumentCache.class);
+    private final SummerizeDocRepository summerizeDocRepository = mock(SummerizeDocRepository.class);
+    private final ImageVariantService imageVariantService = mock(ImageVariantService.class);
+    private final DocumentFilesResponse pages = new DocumentFilesResponse(2, null, null, List.of(
+            new DocumentFileDto(1, null, 102, null, 2, null),
+            new DocumentFileDto(1, null, 101, null, 1, null)));
+
+    private DocumentOpenServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MayanDocumentResponse document = new MayanDocumentResponse();
+        document.setId(1L);
+        document.setVersionActive(new MayanDocumentResponse.DocumentVersionDto(5L, null, 1));
+        when(mayanService.getDocument("1")).thenReturn(Mono.just(document));
+        when(mayanDocumentCache.getDocumentsById("1")).thenReturn(Mono.just(pages));
+        when(summerizeDocRepository.findByDocumentIdAndDocumentVersionId("1", "5")).thenReturn(List.of(
+                summary("201", "first page"),
+                summary("202", "second page"),
+                summary(SummerizeDoc.DOCUMENT_SUMMARY_PAGE_ID, "whole book")));
+
+        service = new DocumentOpenServiceImpl(mayanService, mayanDocumentCache, summerizeDocRepository,
+                imageVariantService, Duration.ofMillis(200), DataSize.ofKilobytes(32));
+    }
+
+    @Test
+    void combinesMetadataPagesSummariesAndFirstPageThumbnail() {
+        when(imageVariantService.getThumbnail("1", "1", "101")).thenReturn(Mono.just(new byte[] {1, 2, 3}));
+
+        DocumentOpenResponse response = service.open("1", null).block();
+
+        assertThat(response.getDocument().getId()).isEqualTo(1L);
+        assertThat(response.getDocumentVersionId()).isEqualTo("5");
+        assertThat(response.getPages()).isSameAs(pages);
+        assertThat(response.getDocumentSummary().getSummary()).isEqualTo("whole book");
+        assertThat(response.getPageSummaries()).containsOnlyKeys("201", "202");
+        assertThat(response.getPageSummaries().get("201").getKeywords()).containsExactly("keyword");
+        assertThat(response.getFirstPageThumbnail()).isEqualTo("data:image/jpeg;base64,AQID");
+        verify(imageVariantService).generateThumbnails("1", pages);
+    }
+
+    @Test
+    void slowThumbnailIsLeftOutInsteadOfDelayingTheReader() {
+        when(imageVariantService.getThumbnail(eq("1"), any(), any())).thenReturn(Mono.never());
+
+        long started = System.nanoTime();
+        DocumentOpenResponse response = service.open("1", "5").block();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        assertThat(response.getFirstPageThumbnail()).isNull();
+        assertThat(response.getPageSummaries()).hasSize(2);
+        // the set that keeps rendering the first page was started before the wait
+        InOrder order = inOrder(imageVariantService);
+        order.verify(imageVariantService).generateThumbnails("1", pages);
+        order.verify(imageVariantService).getThumbnail(eq("1"), any(), any());
+    }
+
+    @Test
+    void failingSummaryQueryOnlyLeavesTheSummariesOut() {
+        when(summerizeDocRepository.findByDocumentIdAndDocumentVersionId("1", "5"))
+                .thenThrow(new IllegalStateException("database down"));
+        when(imageVariantService.getThumbnail(eq("1"), any(), any())).thenReturn(Mono.empty());
+
+        DocumentOpenResponse response = service.open("1", null).block();
+
+        assertThat(response.getPages()).isSameAs(pages);
+        assertThat(response.getDocumentSummary()).isNull();
+        assertThat(response.getPageSummaries()).isEmpty();
+    }
+
+    private static SummerizeDoc summary(String pageId, String text) {
+        return new SummerizeDoc(null, "title", "1", text, List.of("keyword"), "5", pageId, "user", null, null);
+    }
+}
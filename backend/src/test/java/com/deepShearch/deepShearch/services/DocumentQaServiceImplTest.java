@@ -0,0 +1,91 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.http.codec.ServerSentEvent;
+
+import com.deepShearch.deepShearch.Dto.AskCitation;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class DocumentQaServiceImplTest {
+
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final LlmAdmissionController admissionController = mock(LlmAdmissionController.class);
+    private final PageVectorIndex pageVectorIndex = mock(PageVectorIndex.class);
+    private final PageEmbedder pageEmbedder = mock(PageEmbedder.class);
+
+    private DocumentQaServiceImpl service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(chatClient);
+        when(chatClient.prompt().user(anyString()).stream().content()).thenReturn(Flux.just("answer"));
+        when(admissionController.executeMany(any()))
+                .thenAnswer(invocation -> ((Supplier<Flux<String>>) invocation.getArgument(0)).get());
+
+        // each question is embedded as its first letter, which picks its page
+        when(pageEmbedder.embedQuery(anyString())).thenAnswer(invocation ->
+                Mono.just(new float[]{invocation.<String>getArgument(0).charAt(0)}));
+        when(pageVectorIndex.search(any(), anyInt(), any())).thenAnswer(invocation -> {
+            char page = (char) invocation.<float[]>getArgument(0)[0];
+            return List.of(new PageVectorIndex.ChunkHit("1", "10", "page-" + page, (int) page,
+                    "text about " + page + " with nothing in common", 0.9f));
+        });
+
+        service = new DocumentQaServiceImpl(builder, admissionController, pageVectorIndex, pageEmbedder,
+                16, 100, 2000, 0.6, 10, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void followUpAddsThePassagesOfThePreviousQuestion() {
+        assertThat(citedPages(service.ask("1", "A question", null))).containsExactly("page-A");
+
+        assertThat(citedPages(service.ask("1", "B question", "A question"))).containsExactly("page-A", "page-B");
+    }
+
+    @Test
+    void cachedQuestionDoesNotKeepAnotherConversationsPassages() {
+        citedPages(service.ask("1", "A question", null));
+        citedPages(service.ask("1", "B question", "A question"));
+
+        assertThat(citedPages(service.ask("1", "b  QUESTION", null))).containsExactly("page-B");
+        verify(pageEmbedder, times(1)).embedQuery("B question");
+    }
+
+    @Test
+    void invalidationRetrievesAgain() {
+        citedPages(service.ask("1", "A question", null));
+
+        service.invalidate("1");
+        citedPages(service.ask("1", "A question", null));
+
+        verify(pageEmbedder, times(2)).embedQuery("A question");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> citedPages(Flux<ServerSentEvent<Object>> events) {
+        ServerSentEvent<Object> citations = events
+                .filter(event -> "citations".equals(event.event()))
+                .blockFirst(Duration.ofSeconds(5));
+        return ((List<AskCitation>) citations.data()).stream().map(AskCitation::getPageId).toList();
+    }
+}
@@ -0,0 +1,105 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse;
+import com.deepShearch.deepShearch.Dto.HybridSearchResponse.DocumentHitDto;
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+import com.deepShearch.deepShearch.Dto.SearchResponse.SearchHitDto;
+import com.deepShearch.deepShearch.services.interfaces.SemanticSearchService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+class HybridSearchServiceImplTest {
+
+    private static final List<SearchHitDto> LEXICAL = List.of(hit("1", "11"), hit("2", "21"), hit("1", "12"));
+    private static final List<SearchHitDto> SEMANTIC = List.of(hit("2", "21"), hit("3", "31"));
+
+    private final PageTextIndex pageTextIndex = mock(PageTextIndex.class);
+    private final SemanticSearchService semanticSearchService = mock(SemanticSearchService.class);
+
+    private HybridSearchServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(pageTextIndex.search(anyString(), any(), anyInt(), anyInt()))
+                .thenReturn(new SearchResponse("q", LEXICAL.size(), 0, 50, 1, LEXICAL));
+        when(semanticSearchService.search(anyString(), any(), anyInt(), anyInt()))
+                .thenReturn(Mono.just(new SearchResponse("q", SEMANTIC.size(), 0, 50, 1, SEMANTIC)));
+        service = new HybridSearchServiceImpl(pageTextIndex, semanticSearchService, new SimpleMeterRegistry(),
+                50, 60, 3, 10, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void pagesFoundByBothRankingsComeFirstGroupedByDocument() {
+        List<DocumentHitDto> documents = HybridSearchServiceImpl.fuse(LEXICAL, SEMANTIC, 60, 3);
+
+        // page 2:21 is second in the keyword ranking and first in the semantic one
+
+        assertThat(documents).extracting(DocumentHitDto::getDocumentId).containsExactly("2", "1", "3");
+        assertThat(documents.get(0).getScore()).isEqualTo(1.0 / 62 + 1.0 / 61, within(1e-9));
+        assertThat(documents.get(1).getPages()).extracting(SearchHitDto::getPageId).containsExactly("11", "12");
+    }
+
+    @Test
+    void pagingThroughAQueryDoesNotSearchAgain() {
+        HybridSearchResponse first = service.search("  supplier   delivery ", null, 0, 2).block();
+        HybridSearchResponse second = service.search("supplier delivery", null, 1, 2).block();
+
+        assertThat(first.isCached()).isFalse();
+        assertThat(first.getDocuments()).extracting(DocumentHitDto::getDocumentId).containsExactly("2", "1");
+        assertThat(second.isCached()).isTrue();
+        assertThat(second.getTotal()).isEqualTo(3);
+        assertThat(second.getDocuments()).extracting(DocumentHitDto::getDocumentId).containsExactly("3");
+        verify(pageTextIndex, times(1)).search(anyString(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void reindexingAndSemanticFailuresAreNotServedFromTheCache() {
+        service.search("supplier", null, 0, 10).block();
+        service.invalidate("1");
+        assertThat(service.search("supplier", null, 0, 10).block().isCached()).isFalse();
+
+        when(semanticSearchService.search(anyString(), any(), anyInt(), anyInt()))
+                .thenReturn(Mono.error(new IllegalStateException("model is down")));
+        assertThat(service.search("invoice", null, 0, 10).block().getDocuments())
+                .extracting(DocumentHitDto::getDocumentId)
+                .containsExactly("1", "2");
+        assertThat(service.search("invoice", null, 0, 10).block().isCached()).isFalse();
+    }
+
+    @Test
+    void invalidationDropsQueriesThatMayNowMatchTheDocument() {
+        service.search("supplier", null, 0, 10).block();
+        service.search("supplier", "1", 0, 10).block();
+
+        // document 9 is in none of the cached results, but may match them once indexed
+        when(pageTextIndex.search(anyString(), any(), anyInt(), anyInt()))
+                .thenReturn(new SearchResponse("q", 1, 0, 50, 1, List.of(hit("9", "91"))));
+        service.invalidate("9");
+
+        HybridSearchResponse response = service.search("supplier", null, 0, 10).block();
+        assertThat(response.isCached()).isFalse();
+        assertThat(response.getDocuments()).extracting(DocumentHitDto::getDocumentId).contains("9");
+        assertThat(service.search("supplier", "1", 0, 10).block().isCached()).isFalse();
+    }
+
+    private static SearchHitDto hit(String documentId, String pageId) {
+        return new SearchHitDto(documentId, documentId + "0", pageId, 1, 1f, List.of("snippet " + pageId));
+    }
+}
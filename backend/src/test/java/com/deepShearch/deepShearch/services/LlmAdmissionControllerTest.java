@@ -0,0 +1,79 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class LlmAdmissionControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void interactiveCallsStartBeforeQueuedBackgroundCalls() {
+        LlmAdmissionController controller = new LlmAdmissionController(meterRegistry, 1,
+                4, Duration.ofSeconds(5), 4, Duration.ofSeconds(5));
+        List<String> started = new CopyOnWriteArrayList<>();
+        Sinks.One<String> running = Sinks.one();
+
+        controller.execute(() -> running.asMono()).subscribe();
+        controller.execute(() -> record(started, "background"))
+                .contextWrite(LlmAdmissionController.lane(LlmAdmissionController.Lane.BACKGROUND))
+                .subscribe();
+        controller.execute(() -> record(started, "interactive")).subscribe();
+
+        assertThat(started).isEmpty();
+        assertThat(meterRegistry.get("llm.admission.queue.depth").tag("lane", "background").gauge().value())
+                .isEqualTo(1.0);
+
+        running.tryEmitValue("done");
+
+        assertThat(started).containsExactly("interactive", "background");
+        assertThat(meterRegistry.get("llm.admission.in_flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void fullQueueIsRejectedWithTooManyRequests() {
+        LlmAdmissionController controller = new LlmAdmissionController(meterRegistry, 1,
+                1, Duration.ofSeconds(5), 1, Duration.ofSeconds(5));
+        controller.execute(() -> Sinks.<String>one().asMono()).subscribe();
+        controller.execute(() -> Mono.just("queued")).subscribe();
+
+        assertThatThrownBy(() -> controller.execute(() -> Mono.just("rejected")).block())
+                .isInstanceOfSatisfying(LlmAdmissionController.RejectedException.class, error -> {
+                    assertThat(error.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(error.getRetryAfterSeconds()).isPositive();
+                });
+    }
+
+    @Test
+    void callThatCannotStartBeforeItsDeadlineIsRejectedAndFreesItsSlot() {
+        LlmAdmissionController controller = new LlmAdmissionController(meterRegistry, 1,
+                1, Duration.ofMillis(50), 1, Duration.ofMillis(50));
+        Sinks.One<String> running = Sinks.one();
+        controller.execute(() -> running.asMono()).subscribe();
+
+        assertThatThrownBy(() -> controller.execute(() -> Mono.just("late")).block())
+                .isInstanceOfSatisfying(LlmAdmissionController.RejectedException.class,
+                        error -> assertThat(error.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        running.tryEmitValue("done");
+        assertThat(controller.execute(() -> Mono.just("next")).block()).isEqualTo("next");
+    }
+
+    private Mono<String> record(List<String> started, String name) {
+        return Mono.fromCallable(() -> {
+            started.add(name);
+            return name;
+        });
+    }
+}
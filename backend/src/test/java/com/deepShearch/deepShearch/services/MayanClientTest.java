@@ -0,0 +1,117 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.deepShearch.deepShearch.fakes.FakeMayanServer;
+import com.deepShearch.deepShearch.services.MayanClient.Endpoint;
+import com.deepShearch.deepShearch.utils.CircuitBreaker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MayanClientTest {
+
+    private final FakeMayanServer mayan = new FakeMayanServer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MayanClient client;
+    private MayanServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        mayan.start();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("mayan.client.retry.min-backoff", "10ms")
+                .withProperty("mayan.client.retry.max-backoff", "20ms")
+                .withProperty("mayan.client.ocr.hedge-delay", "100ms")
+                .withProperty("mayan.client.document.retries", "0")
+                .withProperty("mayan.client.document.breaker.minimum-calls", "4")
+                .withProperty("mayan.client.document.breaker.open-duration", "1m")
+                .withProperty("mayan.client.image.max-concurrent", "1")
+                .withProperty("mayan.client.image.max-waiting", "0");
+        // Spring Boot's conversions, so that durations such as "10ms" are read as in the application
+        environment.setConversionService(new ApplicationConversionService());
+        client = new MayanClient(mayan.baseUrl(), "user", "password", environment, meterRegistry);
+        service = new MayanServiceImpl(client);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        mayan.close();
+    }
+
+    @Test
+    void readsAreRetriedAfterServerErrors() {
+        mayan.failNext(2, 503);
+
+        String content = service.getDocumentPageOCR("1", "1", String.valueOf(FakeMayanServer.pageId(1, 1)))
+                .block().getContent();
+
+        assertThat(content).startsWith("Page ");
+        assertThat(mayan.requestCount("failed")).isEqualTo(2);
+        assertThat(meterRegistry.counter("mayan.client.retries", "endpoint", "ocr").count()).isEqualTo(2);
+    }
+
+    @Test
+    void clientErrorsAndWritesAreNotRetried() {
+        mayan.failNext(1, 404);
+        assertThatThrownBy(() -> service.getDocument("1").block()).isInstanceOf(WebClientResponseException.NotFound.class);
+
+        mayan.failNext(1, 503);
+        assertThatThrownBy(() -> service.deleteDocument("1").block()).isInstanceOf(WebClientResponseException.class);
+        assertThat(mayan.requestCount("failed")).isEqualTo(2);
+    }
+
+    @Test
+    void slowOcrReadIsHedged() {
+        mayan.delayNext(1, Duration.ofSeconds(3));
+
+        long started = System.nanoTime();
+        String content = service.getDocumentPageOCR("1", "1", String.valueOf(FakeMayanServer.pageId(1, 2)))
+                .block().getContent();
+
+        assertThat(content).startsWith("Page ");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        assertThat(meterRegistry.counter("mayan.client.hedges", "endpoint", "ocr").count()).isEqualTo(1);
+    }
+
+    @Test
+    void breakerOpensAndFailsFastWithoutCallingMayan() {
+        mayan.failNext(4, 500);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> service.getDocument("1").block()).isInstanceOf(WebClientResponseException.class);
+        }
+        mayan.resetCounts();
+
+        assertThat(client.circuitState(Endpoint.DOCUMENT)).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> service.getDocument("1").block())
+                .isInstanceOf(CircuitBreaker.CircuitOpenException.class);
+        assertThat(mayan.requestCount("document")).isZero();
+        // other endpoints keep working
+        assertThat(service.getDocumentPageOCR("1", "1", String.valueOf(FakeMayanServer.pageId(1, 1))).block())
+                .isNotNull();
+    }
+
+    @Test
+    void fullBulkheadRejectsInsteadOfQueueing() {
+        mayan.delayNext(1, Duration.ofSeconds(1));
+        var first = service.getDocumentsByIdwithPageId("1", "1", String.valueOf(FakeMayanServer.pageId(1, 1)),
+                Map.of(), new HttpHeaders()).toFuture();
+
+        assertThatThrownBy(() -> service.getDocumentsByIdwithPageId("1", "1",
+                String.valueOf(FakeMayanServer.pageId(1, 2)), Map.of(), new HttpHeaders()).block())
+                .hasMessageContaining("is full");
+        assertThat(first.join().getStatusCode().value()).isEqualTo(200);
+    }
+}
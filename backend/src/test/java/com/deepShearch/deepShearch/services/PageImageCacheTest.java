@@ -0,0 +1,91 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+class PageImageCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private PageImageCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new PageImageCache(directory.toString(), DataSize.ofBytes(1000), DataSize.ofBytes(400), 2,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void storedImagesSurviveARestartWithTheirValidators() throws IOException {
+        String key = PageImageCache.key("1", "10", "101", Map.of("zoom", "100", "width", "800"));
+        assertThat(key).isEqualTo("1|10|101|width=800|zoom=100");
+
+        PageImageCache.Entry stored = store("1", key, 300).orElseThrow();
+        PageImageCache reopened = new PageImageCache(directory.toString(), DataSize.ofBytes(1000),
+                DataSize.ofBytes(400), 2, new SimpleMeterRegistry());
+
+        PageImageCache.Entry entry = reopened.get("1", key).orElseThrow();
+        assertThat(entry.data()).isEqualTo(stored.data());
+        assertThat(entry.length()).isEqualTo(300);
+        assertThat(entry.etag()).isEqualTo("\"v300\"");
+        assertThat(entry.contentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        assertThat(Files.size(entry.data())).isEqualTo(300);
+    }
+
+    @Test
+    void imagesAboveTheEntrySizeAreNotStored() throws IOException {
+        assertThat(store("1", "too-large", 500)).isEmpty();
+        assertThat(cache.get("1", "too-large")).isEmpty();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).noneMatch(file -> file.toString().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedImagesAreEvictedOverBudget() throws IOException {
+        store("1", "a", 300);
+        store("1", "b", 300);
+        store("2", "c", 300);
+        Files.setLastModifiedTime(cache.get("1", "a").orElseThrow().data(),
+                FileTime.fromMillis(1_000));
+
+        store("2", "d", 300);
+
+        assertThat(cache.get("1", "a")).isEmpty();
+        assertThat(cache.get("2", "d")).isPresent();
+
+        cache.removeDocument("2");
+        assertThat(cache.get("2", "c")).isEmpty();
+        assertThat(cache.get("1", "b")).isPresent();
+    }
+
+    private Optional<PageImageCache.Entry> store(String documentId, String key, int size) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentLength(size);
+        headers.setETag("\"v" + size + "\"");
+        Flux<DataBuffer> body = Flux.range(0, size / 100)
+                .<DataBuffer>map(i -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[100]));
+        return cache.store(documentId, key, headers, body).block();
+    }
+}
@@ -0,0 +1,100 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
+import com.deepShearch.deepShearch.Model.PageOcrText;
+import com.deepShearch.deepShearch.repository.PageOcrTextRepository;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+class PageOcrCacheTest {
+
+    private final MayanService mayanService = mock(MayanService.class);
+    private final PageOcrTextRepository repository = mock(PageOcrTextRepository.class);
+    private final Map<String, PageOcrText> rows = new ConcurrentHashMap<>();
+
+    private PageOcrCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.getArgument(0))));
+        when(repository.save(any(PageOcrText.class))).thenAnswer(invocation -> {
+            PageOcrText row = invocation.getArgument(0);
+            rows.put(row.getPageKey(), row);
+            return row;
+        });
+        when(mayanService.getDocumentPageOCR("1", "5", "7"))
+                .thenReturn(Mono.fromSupplier(() -> new MayanDocumentPageOCRResponse("page seven")));
+        cache = newCache(DataSize.ofMegabytes(1));
+    }
+
+    @Test
+    void pageIsFetchedFromMayanOnce() {
+        assertThat(cache.get("1", "5", "7").block().getContent()).isEqualTo("page seven");
+        assertThat(cache.get("1", "5", "7").block().getContent()).isEqualTo("page seven");
+
+        verify(mayanService, times(1)).getDocumentPageOCR("1", "5", "7");
+        assertThat(rows).containsKey("1|5|7");
+    }
+
+    @Test
+    void storedPageSurvivesARestart() {
+        cache.get("1", "5", "7").block();
+
+        PageOcrCache restarted = newCache(DataSize.ofMegabytes(1));
+
+        assertThat(restarted.get("1", "5", "7").block().getContent()).isEqualTo("page seven");
+        verify(mayanService, times(1)).getDocumentPageOCR("1", "5", "7");
+    }
+
+    @Test
+    void blankTextIsNotCachedBecauseOcrMayNotBeDone() {
+        when(mayanService.getDocumentPageOCR("1", "5", "8"))
+                .thenReturn(Mono.fromSupplier(() -> new MayanDocumentPageOCRResponse("")));
+
+        cache.get("1", "5", "8").block();
+        cache.get("1", "5", "8").block();
+
+        verify(mayanService, times(2)).getDocumentPageOCR("1", "5", "8");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void olderVersionsAreDroppedFromTheHeap() {
+        when(mayanService.getDocumentPageOCR("1", "4", "7"))
+                .thenReturn(Mono.fromSupplier(() -> new MayanDocumentPageOCRResponse("old page seven")));
+        cache.get("1", "4", "7").block();
+        cache.get("1", "5", "7").block();
+        rows.clear();
+
+        cache.retainVersion("1", "5");
+        cache.get("1", "4", "7").block();
+        cache.get("1", "5", "7").block();
+
+        verify(repository).deleteOtherVersions("1", "5");
+        verify(mayanService, times(2)).getDocumentPageOCR("1", "4", "7");
+        verify(mayanService, times(1)).getDocumentPageOCR("1", "5", "7");
+    }
+
+    private PageOcrCache newCache(DataSize heapSize) {
+        return new PageOcrCache(mayanService, repository, new SimpleMeterRegistry(), 100, heapSize);
+    }
+}
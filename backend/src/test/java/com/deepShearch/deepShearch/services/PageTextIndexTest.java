@@ -0,0 +1,72 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.deepShearch.deepShearch.Dto.SearchResponse;
+
+class PageTextIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private PageTextIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new PageTextIndex(directory.toString(), 16);
+        index.indexPage("1", "10", "101", 1, "The supplier shall deliver the goods within thirty days.");
+        index.indexPage("1", "10", "102", 2, "Payment is due thirty days after delivery of the invoice.");
+        index.indexPage("2", "20", "201", 1, "Quarterly revenue grew while delivery costs went down.");
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void ranksPagesAndHighlightsMatches() {
+        SearchResponse response = index.search("delivery", null, 0, 10);
+
+        assertThat(response.getTotal()).isEqualTo(2);
+        assertThat(response.getHits()).extracting(SearchResponse.SearchHitDto::getPageId)
+                .containsExactlyInAnyOrder("102", "201");
+        assertThat(response.getHits().get(0).getSnippets().get(0)).contains("<mark>delivery</mark>");
+    }
+
+    @Test
+    void phraseQueryMatchesOnlyTheExactPhrase() {
+        SearchResponse response = index.search("\"thirty days after\"", null, 0, 10);
+
+        assertThat(response.getHits()).extracting(SearchResponse.SearchHitDto::getPageId).containsExactly("102");
+        assertThat(response.getHits().get(0).getPageNumber()).isEqualTo(2);
+    }
+
+    @Test
+    void filtersByDocumentAndToleratesInvalidSyntax() {
+        assertThat(index.search("delivery", "2", 0, 10).getHits())
+                .extracting(SearchResponse.SearchHitDto::getDocumentId)
+                .containsExactly("2");
+        assertThat(index.search("thirty days (", null, 0, 10).getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    void newVersionReplacesThePagesOfTheOldOne() {
+        index.retainVersion("1", "11");
+        index.indexPage("1", "11", "111", 1, "Amended contract without any schedule.");
+        index.refresh();
+
+        assertThat(index.indexedPageIds("1", "10")).isEmpty();
+        assertThat(index.indexedPageIds("1", "11")).containsExactly("111");
+        assertThat(index.search("thirty", null, 0, 10).getTotal()).isZero();
+    }
+}
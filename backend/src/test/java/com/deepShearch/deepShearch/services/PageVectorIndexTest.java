@@ -0,0 +1,79 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PageVectorIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private PageVectorIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new PageVectorIndex(directory.toString(), 16);
+        index.indexPage("1", "10", "101", 1, List.of("contract", "delivery"),
+                List.of(new float[] {1, 0, 0}, new float[] {0.9f, 0.1f, 0}));
+        index.indexPage("1", "10", "102", 2, List.of("invoice"), List.of(new float[] {0, 1, 0}));
+        index.indexPage("2", "20", "201", 1, List.of("revenue"), List.of(new float[] {0.8f, 0.2f, 0}));
+        index.indexPage("3", "30", "301", 1, List.of("weather"), List.of(new float[] {0, 0, 1}));
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void ranksChunksByCosineSimilarity() {
+        List<PageVectorIndex.ChunkHit> hits = index.search(new float[] {1, 0, 0}, 10, null);
+
+        assertThat(hits).extracting(PageVectorIndex.ChunkHit::chunk)
+                .containsSubsequence("contract", "delivery", "revenue", "invoice");
+        assertThat(hits.get(0).pageNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void filtersByDocument() {
+        assertThat(index.search(new float[] {1, 0, 0}, 10, PageVectorIndex.documentFilter("2")))
+                .extracting(PageVectorIndex.ChunkHit::pageId)
+                .containsExactly("201");
+    }
+
+    @Test
+    void similarPagesExcludeTheSourcePage() {
+        float[] pageVector = index.pageVector("1", "101").orElseThrow();
+
+        assertThat(pageVector[0]).isCloseTo(0.95f, within(1e-6f));
+        assertThat(index.search(pageVector, 10, PageVectorIndex.exclusionFilter("1", "101")))
+                .extracting(PageVectorIndex.ChunkHit::pageId)
+                .startsWith("201")
+                .doesNotContain("101");
+        assertThat(index.search(pageVector, 10, PageVectorIndex.exclusionFilter("1", null)))
+                .extracting(PageVectorIndex.ChunkHit::documentId)
+                .doesNotContain("1");
+    }
+
+    @Test
+    void newVersionReplacesTheChunksOfTheOldOne() {
+        index.retainVersion("1", "11");
+        index.indexPage("1", "11", "111", 1, List.of("amended"), List.of(new float[] {1, 0, 0}));
+        index.refresh();
+
+        assertThat(index.indexedPageIds("1", "10")).isEmpty();
+        assertThat(index.indexedPageIds("1", "11")).containsExactly("111");
+        assertThat(index.documentVector("1")).hasValueSatisfying(vector -> assertThat(vector).containsExactly(1, 0, 0));
+        assertThat(index.documentVector("9")).isEmpty();
+    }
+}
@@ -0,0 +1,114 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse;
+import com.deepShearch.deepShearch.Dto.DocumentFilesResponse.DocumentFileDto;
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse.DocumentVersionPageDto;
+import com.deepShearch.deepShearch.Dto.MayanDocumentPageOCRResponse;
+import com.deepShearch.deepShearch.Dto.MayanDocumentResponse;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.deepShearch.deepShearch.services.interfaces.PageImageService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class ReadAheadServiceImplTest {
+
+    private final MayanService mayanService = mock(MayanService.class);
+    private final PageImageService pageImageService = mock(PageImageService.class);
+    private final PageOcrCache pageOcrCache = mock(PageOcrCache.class);
+    private final List<String> prefetchedImages = new ArrayList<>();
+
+    private ReadAheadServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        List<DocumentFileDto> filePages = new ArrayList<>();
+        List<DocumentVersionPageDto> versionPages = new ArrayList<>();
+        for (int number = 10; number >= 1; number--) {
+            filePages.add(new DocumentFileDto(1, null, 100 + number, null, number, null));
+            versionPages.add(new DocumentVersionPageDto(200 + number, 5, number, null, null));
+        }
+        MayanDocumentResponse document = new MayanDocumentResponse();
+        document.setVersionActive(new MayanDocumentResponse.DocumentVersionDto(5L, null, 1));
+
+        when(mayanService.getDocumentsById("1")).thenReturn(Mono.just(new DocumentFilesResponse(10, null, null, filePages)));
+        when(mayanService.getDocument("1")).thenReturn(Mono.just(document));
+        when(mayanService.getDocumentVersionPages("1", "5")).thenReturn(Mono.just(versionPages));
+        when(pageImageService.prefetch(eq("1"), eq("1"), anyString(), any())).thenAnswer(invocation -> {
+            prefetchedImages.add(invocation.getArgument(2));
+            return Mono.empty();
+        });
+        when(pageOcrCache.get(eq("1"), eq("5"), anyString())).thenReturn(Mono.just(new MayanDocumentPageOCRResponse("text")));
+
+        service = new ReadAheadServiceImpl(mayanService, pageImageService, pageOcrCache, new SimpleMeterRegistry(),
+                true, 2, 1, 8, Duration.ofSeconds(20), 2, 8, 32, Duration.ofMinutes(10), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void lookaheadFollowsTheReadingPace() {
+        assertThat(service.lookahead(0)).isEqualTo(2);
+        assertThat(service.lookahead(60_000)).isEqualTo(1);
+        assertThat(service.lookahead(5_000)).isEqualTo(4);
+        assertThat(service.lookahead(100)).isEqualTo(8);
+    }
+
+    @Test
+    void fastReaderGetsTheWholeWindowWarmedOnce() {
+        service.pageRequested("reader", "1", "1", "101", Map.of());
+        assertThat(prefetchedImages).containsExactly("102", "103");
+
+        service.pageRequested("reader", "1", "1", "102", Map.of());
+        assertThat(prefetchedImages).containsExactly("102", "103", "104", "105", "106", "107", "108", "109", "110");
+        verify(pageOcrCache).get("1", "5", "210");
+        verify(pageOcrCache, never()).get("1", "5", "201");
+        verify(mayanService).getDocumentsById("1");
+    }
+
+    @Test
+    void pagesOverTheInFlightLimitWaitForARunningPrefetch() {
+        Sinks.Empty<Void> firstPage = Sinks.empty();
+        when(pageImageService.prefetch(eq("1"), eq("1"), anyString(), any())).thenAnswer(invocation -> {
+            prefetchedImages.add(invocation.getArgument(2));
+            return prefetchedImages.size() == 1 ? firstPage.asMono() : Mono.empty();
+        });
+        service = new ReadAheadServiceImpl(mayanService, pageImageService, pageOcrCache, new SimpleMeterRegistry(),
+                true, 2, 1, 8, Duration.ofSeconds(20), 2, 1, 32, Duration.ofMinutes(10), Duration.ofMinutes(10));
+
+        service.pageRequested("reader", "1", "1", "101", Map.of());
+        assertThat(prefetchedImages).containsExactly("102");
+
+        firstPage.tryEmitEmpty();
+        assertThat(prefetchedImages).containsExactly("102", "103");
+    }
+
+    @Test
+    void closingTheBookCancelsPendingPrefetches() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(pageImageService.prefetch(eq("1"), eq("1"), anyString(), any()))
+                .thenReturn(Mono.<Void>never().doOnCancel(() -> cancelled.set(true)));
+
+        service.pageRequested("reader", "1", "1", "105", Map.of());
+        service.closeBook("reader", "1");
+
+        assertThat(cancelled).isTrue();
+    }
+}
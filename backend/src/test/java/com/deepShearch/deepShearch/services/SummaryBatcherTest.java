@@ -0,0 +1,139 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class SummaryBatcherTest {
+
+    /** Batched prompts sent to the model, each answered through its sink. */
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private final List<Sinks.One<String>> answers = new CopyOnWriteArrayList<>();
+    /** Holds the single summary of the page "busy", to keep the model busy. */
+    private final Sinks.One<AiSumarizeResponse> busy = Sinks.one();
+
+    private SummaryBatcher batcher(int maxBatchTokens, int maxBatchPages, Duration window) {
+        return new SummaryBatcher(prompt -> {
+            Sinks.One<String> answer = Sinks.one();
+            prompts.add(prompt);
+            answers.add(answer);
+            return answer.asMono();
+        }, content -> content.equals("busy")
+                ? busy.asMono()
+                : Mono.just(new AiSumarizeResponse("single " + content, List.of())),
+                new ObjectMapper(), 300, maxBatchTokens, maxBatchPages, window);
+    }
+
+    @Test
+    void lonePageIsSentAtOnce() {
+        SummaryBatcher batcher = batcher(1200, 8, Duration.ofSeconds(30));
+
+        AiSumarizeResponse result = batcher.submit("alone").block(Duration.ofSeconds(2));
+
+        assertThat(result.getSummary()).isEqualTo("single alone");
+        assertThat(prompts).isEmpty();
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        SummaryBatcher batcher = batcher(1200, 3, Duration.ofSeconds(30));
+        batcher.submit("busy").toFuture();
+
+        CompletableFuture<AiSumarizeResponse> a = batcher.submit("alpha").toFuture();
+        CompletableFuture<AiSumarizeResponse> b = batcher.submit("beta").toFuture();
+        assertThat(prompts).isEmpty();
+        CompletableFuture<AiSumarizeResponse> c = batcher.submit("gamma").toFuture();
+
+        assertThat(prompts).hasSize(1);
+        assertThat(prompts.get(0)).contains("=== PAGE 1 ===\nalpha", "=== PAGE 2 ===\nbeta", "=== PAGE 3 ===\ngamma");
+        answers.get(0).tryEmitValue("""
+                [{"page": 1, "summary": "a", "keywords": ["x"]},
+                 {"page": 2, "summary": "b", "keywords": []},
+                 {"page": 3, "summary": "c", "keywords": []}]""");
+        assertThat(a.join().getSummary()).isEqualTo("a");
+        assertThat(a.join().getKeywords()).containsExactly("x");
+        assertThat(b.join().getSummary()).isEqualTo("b");
+        assertThat(c.join().getSummary()).isEqualTo("c");
+    }
+
+    @Test
+    void partialBatchIsSentWhenTheWindowEnds() {
+        SummaryBatcher batcher = batcher(1200, 8, Duration.ofMillis(50));
+        batcher.submit("busy").toFuture();
+
+        CompletableFuture<AiSumarizeResponse> a = batcher.submit("alpha").toFuture();
+        CompletableFuture<AiSumarizeResponse> b = batcher.submit("beta").toFuture();
+        awaitPrompts(1);
+
+        assertThat(prompts.get(0)).contains("alpha", "beta");
+        // the model left page 2 out: it falls back to a prompt of its own
+        answers.get(0).tryEmitValue("[{\"page\": 1, \"summary\": \"a\"}]");
+        assertThat(a.join().getSummary()).isEqualTo("a");
+        assertThat(b.join().getSummary()).isEqualTo("single beta");
+    }
+
+    @Test
+    void pageOverTheTokenBudgetSendsThePendingBatchFirst() {
+        // each page is about 6 tokens
+        SummaryBatcher batcher = batcher(10, 8, Duration.ofSeconds(30));
+        batcher.submit("busy").toFuture();
+
+        CompletableFuture<AiSumarizeResponse> first = batcher.submit("one two three four").toFuture();
+        CompletableFuture<AiSumarizeResponse> second = batcher.submit("five six seven eight").toFuture();
+
+        assertThat(first.join().getSummary()).isEqualTo("single one two three four");
+        assertThat(second).isNotDone();
+        assertThat(prompts).isEmpty();
+    }
+
+    @Test
+    void rejectedBatchFailsEveryPageOfIt() {
+        SummaryBatcher batcher = batcher(1200, 2, Duration.ofSeconds(30));
+        batcher.submit("busy").toFuture();
+        CompletableFuture<AiSumarizeResponse> a = batcher.submit("alpha").toFuture();
+        CompletableFuture<AiSumarizeResponse> b = batcher.submit("beta").toFuture();
+
+        LlmAdmissionController.RejectedException rejected =
+                new LlmAdmissionController.RejectedException(HttpStatus.SERVICE_UNAVAILABLE, "busy", 5);
+        answers.get(0).tryEmitError(rejected);
+
+        for (CompletableFuture<AiSumarizeResponse> page : List.of(a, b)) {
+            assertThatThrownBy(page::join).isInstanceOf(CompletionException.class).hasCause(rejected);
+        }
+    }
+
+    @Test
+    void failedBatchIsRetriedPageByPage() {
+        SummaryBatcher batcher = batcher(1200, 2, Duration.ofSeconds(30));
+        batcher.submit("busy").toFuture();
+        CompletableFuture<AiSumarizeResponse> a = batcher.submit("alpha").toFuture();
+        CompletableFuture<AiSumarizeResponse> b = batcher.submit("beta").toFuture();
+
+        answers.get(0).tryEmitError(new IllegalStateException("model crashed"));
+
+        assertThat(a.join().getSummary()).isEqualTo("single alpha");
+        assertThat(b.join().getSummary()).isEqualTo("single beta");
+    }
+
+    private void awaitPrompts(int count) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (prompts.size() < count && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(prompts).hasSizeGreaterThanOrEqualTo(count);
+    }
+}
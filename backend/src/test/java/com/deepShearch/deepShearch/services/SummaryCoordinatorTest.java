@@ -0,0 +1,209 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.repository.SummaryClaimRepository;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class SummaryCoordinatorTest {
+
+    private static final String PAGE = "1:5:201";
+    private static final AiSumarizeResponse SUMMARY = new AiSumarizeResponse("summary", List.of("keyword"));
+
+    private final SummaryClaimRepository claims = mock(SummaryClaimRepository.class);
+    private SummaryCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        when(claims.tryClaim(anyString(), anyString(), any())).thenReturn(1);
+        coordinator = new SummaryCoordinator(claims, Duration.ofMillis(200), Duration.ofMillis(10));
+    }
+
+    @Test
+    void concurrentCallersJoinTheRunningComputation() {
+        Sinks.One<AiSumarizeResponse> model = Sinks.one();
+        AtomicInteger computed = new AtomicInteger();
+
+        Mono<AiSumarizeResponse> first = coordinator.summarize(PAGE, Optional::empty, () -> {
+            computed.incrementAndGet();
+            return model.asMono();
+        });
+        var firstResult = first.toFuture();
+        verify(claims, timeout(1000)).tryClaim(eq(PAGE), anyString(), any());
+
+        assertThat(coordinator.join(PAGE)).isPresent();
+        var secondResult = coordinator.summarize(PAGE, Optional::empty, () -> {
+            computed.incrementAndGet();
+            return Mono.just(SUMMARY);
+        }).toFuture();
+
+        model.tryEmitValue(SUMMARY);
+        assertThat(firstResult.join()).isSameAs(SUMMARY);
+        assertThat(secondResult.join()).isSameAs(SUMMARY);
+        assertThat(computed).hasValue(1);
+        assertThat(coordinator.join(PAGE)).isEmpty();
+    }
+
+    @Test
+    void claimHolderComputesAndReleasesTheClaim() {
+        AiSumarizeResponse result = coordinator.summarize(PAGE, Optional::empty, () -> Mono.just(SUMMARY)).block();
+
+        assertThat(result).isSameAs(SUMMARY);
+        verify(claims, timeout(1000)).release(eq(PAGE), anyString());
+    }
+
+    @Test
+    void staleClaimIsDeletedBeforeClaiming() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(200));
+
+        coordinator.summarize(PAGE, Optional::empty, () -> Mono.just(SUMMARY)).block();
+
+        InOrder order = inOrder(claims);
+        order.verify(claims).deleteStale(eq(PAGE), argThat(cutoff -> !cutoff.isBefore(before)
+                && cutoff.isBefore(LocalDateTime.now())));
+        order.verify(claims).tryClaim(eq(PAGE), anyString(), any());
+    }
+
+    @Test
+    void claimHeldElsewhereIsWaitedForByPolling() {
+        when(claims.tryClaim(anyString(), anyString(), any())).thenReturn(0);
+        AtomicInteger lookups = new AtomicInteger();
+        AtomicInteger computed = new AtomicInteger();
+
+        AiSumarizeResponse result = coordinator.summarize(PAGE,
+                () -> lookups.incrementAndGet() < 4 ? Optional.empty() : Optional.of(SUMMARY),
+                () -> {
+                    computed.incrementAndGet();
+                    return Mono.just(SUMMARY);
+                }).block();
+
+        assertThat(result).isSameAs(SUMMARY);
+        assertThat(lookups.get()).isGreaterThanOrEqualTo(4);
+        assertThat(computed).hasValue(0);
+    }
+
+    @Test
+    void waitingGivesUpAfterTheClaimTtlAndComputes() {
+        when(claims.tryClaim(anyString(), anyString(), any())).thenReturn(0);
+
+        AiSumarizeResponse result = coordinator.summarize(PAGE, Optional::empty, () -> Mono.just(SUMMARY))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(result).isSameAs(SUMMARY);
+    }
+
+    @Test
+    void concurrentStreamsRunTheModelOnce() {
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger leaders = new AtomicInteger();
+
+        Flux<String> first = coordinator.stream(PAGE, Optional::empty, result -> {
+            leaders.incrementAndGet();
+            return tokens.asFlux().doOnComplete(() -> result.tryEmitValue(SUMMARY));
+        }, summary -> Flux.just("stored:" + summary.getSummary()));
+        var firstEvents = first.collectList().toFuture();
+        verify(claims, timeout(1000)).tryClaim(eq(PAGE), anyString(), any());
+
+        var secondEvents = coordinator.stream(PAGE, Optional::empty, result -> {
+            leaders.incrementAndGet();
+            return Flux.just("second leader");
+        }, summary -> Flux.just("stored:" + summary.getSummary())).collectList().toFuture();
+
+        tokens.tryEmitNext("token");
+        tokens.tryEmitComplete();
+        assertThat(firstEvents.join()).containsExactly("token");
+        assertThat(secondEvents.join()).containsExactly("stored:summary");
+        assertThat(leaders).hasValue(1);
+        verify(claims, timeout(1000)).release(eq(PAGE), anyString());
+    }
+
+    @Test
+    void streamWaitsForAnotherInstanceHoldingTheClaim() {
+        when(claims.tryClaim(anyString(), anyString(), any())).thenReturn(0);
+        AtomicInteger lookups = new AtomicInteger();
+
+        List<String> events = coordinator.stream(PAGE,
+                () -> lookups.incrementAndGet() < 3 ? Optional.empty() : Optional.of(SUMMARY),
+                result -> Flux.just("model"),
+                summary -> Flux.just("stored:" + summary.getSummary())).collectList().block();
+
+        assertThat(events).containsExactly("stored:summary");
+    }
+
+    @Test
+    void failedLeaderDoesNotLeaveFollowersWaiting() {
+        Flux<String> failing = coordinator.stream(PAGE, Optional::empty,
+                result -> Flux.<String>error(new IllegalStateException("model down")),
+                summary -> Flux.just(summary.getSummary()));
+
+        assertThat(failing.onErrorReturn("failed").collectList().block()).containsExactly("failed");
+        assertThat(coordinator.join(PAGE)).isEmpty();
+    }
+
+    @Test
+    void leaderLeavingDoesNotStopTheSummaryForFollowers() {
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean generationCancelled = new AtomicBoolean();
+
+        Disposable leader = coordinator.stream(PAGE, Optional::empty,
+                result -> tokens.asFlux()
+                        .doOnComplete(() -> result.tryEmitValue(SUMMARY))
+                        .doOnCancel(() -> generationCancelled.set(true)),
+                summary -> Flux.just("stored:" + summary.getSummary())).subscribe();
+        verify(claims, timeout(1000)).tryClaim(eq(PAGE), anyString(), any());
+        var followerEvents = coordinator.stream(PAGE, Optional::empty, result -> Flux.just("second leader"),
+                summary -> Flux.just("stored:" + summary.getSummary())).collectList().toFuture();
+
+        leader.dispose();
+        tokens.tryEmitNext("token");
+        tokens.tryEmitComplete();
+
+        assertThat(followerEvents.join()).containsExactly("stored:summary");
+        assertThat(generationCancelled).isFalse();
+    }
+
+    @Test
+    void generationIsCancelledOnceEveryReaderLeft() {
+        AtomicBoolean generationCancelled = new AtomicBoolean();
+        Flux<String> never = Flux.<String>never().doOnCancel(() -> generationCancelled.set(true));
+
+        Disposable leader = coordinator.stream(PAGE, Optional::empty, result -> never,
+                summary -> Flux.just(summary.getSummary())).subscribe();
+        verify(claims, timeout(1000)).tryClaim(eq(PAGE), anyString(), any());
+        Disposable follower = coordinator.stream(PAGE, Optional::empty, result -> never,
+                summary -> Flux.just(summary.getSummary())).subscribe();
+
+        leader.dispose();
+        assertThat(generationCancelled).isFalse();
+        follower.dispose();
+
+        assertThat(generationCancelled).isTrue();
+        verify(claims, timeout(1000)).release(eq(PAGE), anyString());
+        assertThat(coordinator.join(PAGE)).isEmpty();
+    }
+}
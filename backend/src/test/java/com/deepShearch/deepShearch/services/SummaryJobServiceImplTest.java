@@ -0,0 +1,155 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.deepShearch.deepShearch.Dto.AiSumarizeResponse;
+import com.deepShearch.deepShearch.Dto.SummaryJobMessage;
+import com.deepShearch.deepShearch.Dto.SummaryJobResponse;
+import com.deepShearch.deepShearch.Model.Notification;
+import com.deepShearch.deepShearch.Model.SummaryJob;
+import com.deepShearch.deepShearch.repository.SummaryJobRepository;
+import com.deepShearch.deepShearch.services.interfaces.Llmservice;
+import com.deepShearch.deepShearch.services.interfaces.NotificationService;
+import com.deepShearch.deepShearch.services.interfaces.SummaryJobQueue;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the job pipeline end to end with an in-memory queue standing in for RabbitMQ.
+ */
+class SummaryJobServiceImplTest {
+
+    private final Map<String, SummaryJob> jobs = new ConcurrentHashMap<>();
+    private final InMemorySummaryJobQueue queue = new InMemorySummaryJobQueue();
+    private final SummaryJobRepository repository = mock(SummaryJobRepository.class);
+    private final Llmservice llmservice = mock(Llmservice.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+
+    private SummaryJobServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.save(any(SummaryJob.class))).thenAnswer(invocation -> {
+            SummaryJob job = invocation.getArgument(0);
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+        service = new SummaryJobServiceImpl(repository, queue, llmservice, notificationService);
+    }
+
+    @Test
+    void pageJobIsQueuedThenCompletedAndNotified() {
+        when(llmservice.summarizePage("1", "2", "3", "user"))
+                .thenReturn(Mono.just(new AiSumarizeResponse("short summary", List.of("alpha", "beta"))));
+
+        SummaryJobResponse submitted = service.submitPageJob("1", "2", "3", "user");
+
+        assertThat(submitted.getStatus()).isEqualTo("QUEUED");
+        assertThat(queue.messages).hasSize(1);
+        verify(llmservice, never()).summarizePage(anyString(), anyString(), anyString(), anyString());
+
+        queue.deliverAll(service);
+
+        SummaryJobResponse done = service.getJob(submitted.getJobId()).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo("COMPLETED");
+        assertThat(done.getSummary()).isEqualTo("short summary");
+        assertThat(done.getKeywords()).containsExactly("alpha", "beta");
+
+        ArgumentCaptor<Notification> notification = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationService).createNotification(notification.capture());
+        assertThat(notification.getValue().getUserId()).isEqualTo("user");
+        assertThat(notification.getValue().getType()).isEqualTo(Notification.NotificationType.SUCCESS);
+    }
+
+    @Test
+    void documentJobFailureIsRecordedAndNotified() {
+        when(llmservice.generateDocumentSummary("1", "2", "user"))
+                .thenReturn(Mono.error(new IllegalStateException("ollama unavailable")));
+
+        SummaryJobResponse submitted = service.submitDocumentJob("1", "2", "user");
+        queue.deliverAll(service);
+
+        SummaryJobResponse failed = service.getJob(submitted.getJobId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo("FAILED");
+        assertThat(failed.getError()).contains("ollama unavailable");
+
+        ArgumentCaptor<Notification> notification = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationService).createNotification(notification.capture());
+        assertThat(notification.getValue().getType()).isEqualTo(Notification.NotificationType.ERROR);
+    }
+
+    @Test
+    void pageJobWhoseAnswerCannotBeParsedFails() {
+        when(llmservice.summarizePage("1", "2", "3", "user"))
+                .thenReturn(Mono.error(new IllegalStateException("Failed to parse AI response.")));
+
+        SummaryJobResponse submitted = service.submitPageJob("1", "2", "3", "user");
+        queue.deliverAll(service);
+
+        SummaryJobResponse failed = service.getJob(submitted.getJobId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo("FAILED");
+        assertThat(failed.getSummary()).isNull();
+        assertThat(failed.getError()).isEqualTo("Failed to parse AI response.");
+        verify(llmservice, never()).generateSummary(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void pageJobWithoutTextFails() {
+        when(llmservice.summarizePage("1", "2", "3", "user")).thenReturn(Mono.empty());
+
+        SummaryJobResponse submitted = service.submitPageJob("1", "2", "3", "user");
+        queue.deliverAll(service);
+
+        SummaryJobResponse failed = service.getJob(submitted.getJobId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo("FAILED");
+        assertThat(failed.getError()).contains("no text");
+    }
+
+    @Test
+    void redeliveredCompletedJobIsNotRunAgain() {
+        when(llmservice.summarizePage("1", "2", "3", "user"))
+                .thenReturn(Mono.just(new AiSumarizeResponse("short summary", List.of())));
+
+        SummaryJobResponse submitted = service.submitPageJob("1", "2", "3", "user");
+        queue.deliverAll(service);
+        service.process(new SummaryJobMessage(submitted.getJobId()));
+
+        verify(llmservice).summarizePage("1", "2", "3", "user");
+    }
+
+    private static class InMemorySummaryJobQueue implements SummaryJobQueue {
+
+        private final BlockingQueue<SummaryJobMessage> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void publish(SummaryJobMessage message) {
+            messages.add(message);
+        }
+
+        void deliverAll(SummaryJobServiceImpl consumer) {
+            SummaryJobMessage message;
+            while ((message = messages.poll()) != null) {
+                consumer.process(message);
+            }
+        }
+    }
+}
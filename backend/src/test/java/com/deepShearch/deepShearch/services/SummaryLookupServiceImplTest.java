@@ -0,0 +1,116 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.deepShearch.deepShearch.Dto.DocumentVersionPagesResponse.DocumentVersionPageDto;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository;
+import com.deepShearch.deepShearch.repository.SummerizeDocRepository.PageSummary;
+import com.deepShearch.deepShearch.services.interfaces.MayanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
+
+class SummaryLookupServiceImplTest {
+
+    private final SummerizeDocRepository repository = mock(SummerizeDocRepository.class);
+    private final MayanService mayanService = mock(MayanService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private SummaryLookupServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        service = new SummaryLookupServiceImpl(repository, mayanService, new ObjectMapper().findAndRegisterModules(),
+                transactionManager);
+    }
+
+    @Test
+    void streamsOneLinePerPageInsideAReadOnlyTransaction() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamPageSummaries("1", "5")).thenReturn(Stream.of(
+                        summary("201", "first", LocalDateTime.of(2026, 1, 2, 0, 0)),
+                        summary("202", "second", LocalDateTime.of(2026, 1, 1, 0, 0)))
+                .onClose(() -> closed.set(true)));
+
+        String body = write(service.streamPageSummaries("1", "5", null, null).block());
+
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("\"documentVersionPageId\":\"201\"", "\"summary\":\"first\"",
+                "\"keywords\":[\"keyword\"]");
+        assertThat(lines.get(1)).contains("\"documentVersionPageId\":\"202\"");
+        assertThat(closed).isTrue();
+        verify(transactionManager).getTransaction(argThat(definition -> definition != null && definition.isReadOnly()));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void pageRangeIsResolvedToVersionPageIds() throws Exception {
+        when(mayanService.getDocumentVersionPages("1", "5")).thenReturn(Mono.just(List.of(
+                new DocumentVersionPageDto(201, 5, 1, null, null),
+                new DocumentVersionPageDto(202, 5, 2, null, null),
+                new DocumentVersionPageDto(203, 5, 3, null, null))));
+        when(repository.streamPageSummaries("1", "5", List.of("202", "203")))
+                .thenReturn(Stream.of(summary("203", "third", LocalDateTime.of(2026, 1, 1, 0, 0))));
+
+        String body = write(service.streamPageSummaries("1", "5", 2, null).block());
+
+        assertThat(body).contains("\"documentVersionPageId\":\"203\"").endsWith("\n");
+    }
+
+    @Test
+    void invalidRangeIsRejected() {
+        assertThatThrownBy(() -> service.streamPageSummaries("1", "5", 3, 2).block())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String write(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        body.writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static PageSummary summary(String pageId, String text, LocalDateTime createdAt) {
+        return new PageSummary() {
+            @Override
+            public String getDocumentVersionPageId() {
+                return pageId;
+            }
+
+            @Override
+            public String getSummary() {
+                return text;
+            }
+
+            @Override
+            public List<String> getKeyWords() {
+                return List.of("keyword");
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return createdAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.deepShearch.deepShearch.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SummaryStreamParserTest {
+
+    private final SummaryStreamParser parser = new SummaryStreamParser();
+
+    @Test
+    void summarySplitAcrossChunksIsForwardedAsItArrives() {
+        List<String> decoded = feed("{\"sum", "mary\": \"Quarterly ", "supplier ", "report\", ");
+
+        assertThat(decoded).containsExactly("", "Quarterly ", "supplier ", "report");
+    }
+
+    @Test
+    void escapesSplitAcrossChunksAreDecodedOnceComplete() {
+        List<String> decoded = feed("{\"summary\": \"line one\\", "nline \\u00", "e9t\\", "\"e\\\" \\t.\"}");
+
+        assertThat(decoded).containsExactly("line one", "\nline ", "\u00e9t", "\"e\" \t.");
+    }
+
+    @Test
+    void keywordsArrivingLastAddNothingToTheSummary() {
+        List<String> decoded = feed("{\"summary\": \"An invoice.\",", " \"keywords\": [\"invoice\",", " \"total\"]}");
+
+        assertThat(decoded).containsExactly("An invoice.", "", "");
+        assertThat(parser.raw()).isEqualTo("{\"summary\": \"An invoice.\", \"keywords\": [\"invoice\", \"total\"]}");
+    }
+
+    @Test
+    void keywordsBeforeTheSummaryAndReasoningAreSkipped() {
+        List<String> decoded = feed("<think>the \"summary\" should be short</think>",
+                "{\"keywords\": [\"summary\"], \"summary\"", " : \"Short.\"}");
+
+        assertThat(String.join("", decoded)).isEqualTo("Short.");
+    }
+
+    @Test
+    void answerWithoutASummaryFieldYieldsNothingButIsKept() {
+        List<String> decoded = feed("I cannot summarize ", "this page.", null, "");
+
+        assertThat(decoded).containsOnly("");
+        assertThat(parser.raw()).isEqualTo("I cannot summarize this page.");
+    }
+
+    @Test
+    void truncatedAnswerForwardsWhatWasComplete() {
+        List<String> decoded = feed("{\"summary\": \"Cut off mid", " sentence \\u00");
+
+        assertThat(decoded).containsExactly("Cut off mid", " sentence ");
+        assertThat(parser.raw()).endsWith("\\u00");
+    }
+
+    @Test
+    void invalidUnicodeEscapeIsKeptAsText() {
+        assertThat(parser.feed("{\"summary\": \"code \\uZZZZ.\"}")).isEqualTo("code ZZZZ.");
+    }
+
+    private List<String> feed(String... chunks) {
+        List<String> decoded = new ArrayList<>();
+        for (String chunk : chunks) {
+            decoded.add(parser.feed(chunk));
+        }
+        return decoded;
+    }
+}
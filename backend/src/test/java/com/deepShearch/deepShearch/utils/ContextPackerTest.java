@@ -0,0 +1,39 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.deepShearch.deepShearch.utils.ContextPacker.Passage;
+
+class ContextPackerTest {
+
+    private static final String CLAUSE = "The supplier shall deliver the goods to the warehouse within thirty days of the order.";
+
+    @Test
+    void dropsPassagesThatRepeatAPickedOneAndKeepsPageOrder() {
+        ContextPacker packer = new ContextPacker(1000, 0.6);
+
+        List<Passage> packed = packer.pack(List.of(
+                new Passage("9", 9, CLAUSE + " Late delivery is penalized.", 0.9f),
+                new Passage("2", 2, "Payment is due after delivery of the invoice.", 0.8f),
+                new Passage("4", 4, CLAUSE, 0.7f)));
+
+        assertThat(packed).extracting(Passage::pageId).containsExactly("2", "9");
+    }
+
+    @Test
+    void staysWithinTheTokenBudget() {
+        String page = "Quarterly revenue grew while delivery costs went down in every region. ";
+        ContextPacker packer = new ContextPacker(TextChunker.estimateTokens(page) * 2, 0.6);
+
+        List<Passage> packed = packer.pack(List.of(
+                new Passage("1", 1, page + "North.", 0.9f),
+                new Passage("2", 2, page + page + "South.", 0.8f),
+                new Passage("3", 3, "A short note.", 0.7f)));
+
+        assertThat(packed).extracting(Passage::pageId).containsExactly("1", "3");
+    }
+}
@@ -0,0 +1,56 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class ImageScalingTest {
+
+    @Test
+    void largePageBecomesASmallThumbnailWithItsAspectRatio() throws IOException {
+        byte[] page = png(1700, 2200);
+
+        byte[] thumbnail = ImageScaling.toJpeg(new ByteArrayInputStream(page), 160, 0.6f).orElseThrow();
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertThat(decoded.getWidth()).isEqualTo(160);
+        assertThat(decoded.getHeight()).isEqualTo(207);
+        assertThat(thumbnail.length).isLessThan(16 * 1024);
+    }
+
+    @Test
+    void narrowImagesAreNotEnlarged() throws IOException {
+        byte[] thumbnail = ImageScaling.toJpeg(new ByteArrayInputStream(png(100, 50)), 800, 0.8f).orElseThrow();
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertThat(decoded.getWidth()).isEqualTo(100);
+        assertThat(decoded.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void undecodableSourceGivesNothing() throws IOException {
+        assertThat(ImageScaling.toJpeg(new ByteArrayInputStream("%PDF-1.7".getBytes()), 160, 0.6f)).isEmpty();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        for (int y = 20; y < height; y += 40) {
+            graphics.fillRect(20, y, width - 40, 12);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
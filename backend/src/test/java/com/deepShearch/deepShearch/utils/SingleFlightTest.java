@@ -0,0 +1,75 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneRun() {
+        Sinks.One<String> run = Sinks.one();
+        AtomicInteger runs = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> {
+            runs.incrementAndGet();
+            return run.asMono();
+        }).toFuture();
+        CompletableFuture<String> second = singleFlight.execute("key", () -> {
+            runs.incrementAndGet();
+            return Mono.just("second");
+        }).toFuture();
+        run.tryEmitValue("first");
+
+        assertThat(first.join()).isEqualTo("first");
+        assertThat(second.join()).isEqualTo("first");
+        assertThat(runs).hasValue(1);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    void callingAgainAsTheResultArrivesStartsAFreshRun() {
+        Sinks.One<String> run = Sinks.one();
+        CompletableFuture<String> again = new CompletableFuture<>();
+
+        singleFlight.execute("key", run::asMono).subscribe(result ->
+                singleFlight.execute("key", () -> Mono.just("fresh")).subscribe(again::complete));
+        run.tryEmitValue("stale");
+
+        assertThat(Mono.fromFuture(again).block(Duration.ofSeconds(2))).isEqualTo("fresh");
+    }
+
+    @Test
+    void callingAgainAfterAFailureStartsAFreshRun() {
+        Sinks.One<String> run = Sinks.one();
+        CompletableFuture<String> again = new CompletableFuture<>();
+
+        singleFlight.execute("key", run::asMono).subscribe(result -> { }, error ->
+                singleFlight.execute("key", () -> Mono.just("fresh")).subscribe(again::complete));
+        run.tryEmitError(new IllegalStateException("down"));
+
+        assertThat(Mono.fromFuture(again).block(Duration.ofSeconds(2))).isEqualTo("fresh");
+    }
+
+    @Test
+    void registeredRunIsReleasedBeforeItsWaiters() {
+        Sinks.One<String> run = Sinks.one();
+        CompletableFuture<Boolean> pendingAgain = new CompletableFuture<>();
+
+        assertThat(singleFlight.register("key", run.asMono())).isEmpty();
+        singleFlight.join("key").orElseThrow()
+                .subscribe(result -> pendingAgain.complete(singleFlight.join("key").isPresent()));
+        run.tryEmitValue("done");
+
+        assertThat(Mono.fromFuture(pendingAgain).block(Duration.ofSeconds(2))).isFalse();
+    }
+}
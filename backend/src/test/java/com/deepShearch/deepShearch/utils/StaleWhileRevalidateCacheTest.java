@@ -0,0 +1,92 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.deepShearch.deepShearch.utils.StaleWhileRevalidateCache.Result;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class StaleWhileRevalidateCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Result> results = new ArrayList<>();
+    private final StaleWhileRevalidateCache<String> cache =
+            new StaleWhileRevalidateCache<>(10, Duration.ofSeconds(30), Duration.ofMinutes(10), now::get);
+
+    @Test
+    void freshValueIsServedWithoutLoading() {
+        assertThat(get()).isEqualTo("v1");
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertThat(get()).isEqualTo("v1");
+        assertThat(loads).hasValue(1);
+        assertThat(results).containsExactly(Result.MISS, Result.FRESH);
+    }
+
+    @Test
+    void staleValueIsServedWhileItIsRefreshed() {
+        get();
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+
+        assertThat(get()).isEqualTo("v1");
+        assertThat(get()).isEqualTo("v2");
+        assertThat(results).containsExactly(Result.MISS, Result.STALE, Result.FRESH);
+    }
+
+    @Test
+    void expiredValueIsNotServed() {
+        get();
+        now.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertThat(get()).isEqualTo("v2");
+        assertThat(results).containsExactly(Result.MISS, Result.MISS);
+    }
+
+    @Test
+    void concurrentRefreshesShareOneLoad() {
+        get();
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+        Sinks.One<String> pending = Sinks.one();
+
+        cache.get("k", () -> {
+            loads.incrementAndGet();
+            return pending.asMono();
+        }, results::add).block();
+        cache.get("k", () -> {
+            loads.incrementAndGet();
+            return pending.asMono();
+        }, results::add).block();
+        pending.tryEmitValue("v2");
+
+        assertThat(loads).hasValue(2);
+        assertThat(get()).isEqualTo("v2");
+    }
+
+    @Test
+    void refreshInFlightDuringInvalidationIsNotStored() {
+        get();
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+        Sinks.One<String> pending = Sinks.one();
+        cache.get("k", pending::asMono, results::add).block();
+
+        cache.invalidate("k");
+        pending.tryEmitValue("stale");
+
+        assertThat(cache.size()).isZero();
+        assertThat(get()).isEqualTo("v2");
+    }
+
+    private String get() {
+        return cache.get("k", () -> Mono.fromSupplier(() -> "v" + loads.incrementAndGet()), results::add).block();
+    }
+}
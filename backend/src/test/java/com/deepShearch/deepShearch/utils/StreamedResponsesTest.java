@@ -0,0 +1,92 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import reactor.core.publisher.Flux;
+
+class StreamedResponsesTest {
+
+    private static final String BODY = "0123456789abcdefghij";
+
+    @Test
+    void matchingEtagTurnsAFullResponseIntoNotModified() {
+        HttpHeaders request = new HttpHeaders();
+        request.setIfNoneMatch("W/\"v1\"");
+
+        ResponseEntity<Flux<DataBuffer>> response = StreamedResponses.negotiate(request, upstream());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"v1\"");
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    void singleRangeIsSlicedAcrossBuffers() throws IOException {
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=3-11");
+
+        ResponseEntity<Flux<DataBuffer>> response = StreamedResponses.negotiate(request, upstream());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 3-11/20");
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(9);
+        assertThat(write(response)).isEqualTo("3456789ab");
+    }
+
+    @Test
+    void staleIfRangeAndMultipleRangesGetTheWholeBody() throws IOException {
+        HttpHeaders stale = new HttpHeaders();
+        stale.set(HttpHeaders.RANGE, "bytes=0-3");
+        stale.set(HttpHeaders.IF_RANGE, "\"v0\"");
+        HttpHeaders multiple = new HttpHeaders();
+        multiple.set(HttpHeaders.RANGE, "bytes=0-3,5-6");
+
+        ResponseEntity<Flux<DataBuffer>> response = StreamedResponses.negotiate(stale, upstream());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(write(response)).isEqualTo(BODY);
+        assertThat(StreamedResponses.negotiate(multiple, upstream()).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void rangePastTheEndIsNotSatisfiable() {
+        HttpHeaders request = new HttpHeaders();
+        request.set(HttpHeaders.RANGE, "bytes=40-");
+
+        ResponseEntity<Flux<DataBuffer>> response = StreamedResponses.negotiate(request, upstream());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */20");
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> upstream() {
+        DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+        Flux<DataBuffer> body = Flux.just(BODY.substring(0, 7), BODY.substring(7, 14), BODY.substring(14))
+                .<DataBuffer>map(part -> factory.wrap(part.getBytes(StandardCharsets.US_ASCII)));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentLength(BODY.length());
+        headers.setETag("\"v1\"");
+        headers.set(HttpHeaders.CONNECTION, "keep-alive");
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    private static String write(ResponseEntity<Flux<DataBuffer>> response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StreamedResponses.toStreamingBody(response.getBody(), 2).writeTo(output);
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+}
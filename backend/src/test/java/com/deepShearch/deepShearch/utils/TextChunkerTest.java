@@ -0,0 +1,59 @@
+package com.deepShearch.deepShearch.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextChunkerTest {
+
+    @Test
+    void shortTextIsKeptWhole() {
+        TextChunker chunker = new TextChunker(100, 10);
+
+        assertThat(chunker.split("  A short page.  ")).containsExactly("A short page.");
+    }
+
+    @Test
+    void longTextIsSplitWithinBudgetOnParagraphs() {
+        String paragraph = "This sentence is about twelve tokens long in our estimate. ".repeat(5).trim();
+        String text = String.join("\n\n", paragraph, paragraph, paragraph, paragraph);
+        TextChunker chunker = new TextChunker(TextChunker.estimateTokens(paragraph) * 2, 0);
+
+        List<String> chunks = chunker.split(text);
+
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunker.fits(chunk)).isTrue());
+    }
+
+    @Test
+    void consecutiveChunksOverlap() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("Sentence number ").append(i).append(" ends here. ");
+        }
+        TextChunker chunker = new TextChunker(40, 10);
+
+        List<String> chunks = chunker.split(text.toString());
+
+        assertThat(chunks.size()).isGreaterThan(1);
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String lastSentence = previous.substring(previous.lastIndexOf("Sentence number"));
+            assertThat(chunks.get(i)).startsWith(lastSentence);
+        }
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunker.fits(chunk)).isTrue());
+    }
+
+    @Test
+    void sentenceLongerThanBudgetIsCutOnWords() {
+        String text = "word ".repeat(500);
+        TextChunker chunker = new TextChunker(50, 0);
+
+        List<String> chunks = chunker.split(text);
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunker.fits(chunk)).isTrue());
+        assertThat(String.join(" ", chunks).split(" ")).hasSize(500);
+    }
+}